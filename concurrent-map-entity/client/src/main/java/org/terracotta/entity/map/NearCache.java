@@ -0,0 +1,244 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map;
+
+import org.terracotta.entity.map.common.NearCacheStatistics;
+import org.terracotta.entity.map.common.ValueWrapper;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A client side cache of encoded keys and values, bounded by the estimated size of its entries and evicting the least
+ * recently used ones first.
+ * <p>
+ * Reads going to the server {@link #reserve(Object) reserve} their key before sending the message, and only
+ * {@link #fill(Object, Object, Object) fill} it with the value read if no invalidation of that key happened in
+ * between : an invalidation overtaking the response of a read can not leave a stale value in the cache. Reads
+ * {@link #release(Object, Object) release} their reservation once done, filled or not.
+ */
+class NearCache implements NearCacheStatistics {
+
+  // estimated overhead of an entry : the linked hash map entry, the weighed entry and the reservation
+  private static final long ENTRY_OVERHEAD = 96L;
+  private static final long OBJECT_OVERHEAD = 16L;
+  private static final long MIN_ENTRY_WEIGHT = ENTRY_OVERHEAD + 2 * OBJECT_OVERHEAD;
+
+  private final long maxSizeInBytes;
+  private final LinkedHashMap<Object, Weighed> entries = new LinkedHashMap<Object, Weighed>(16, 0.75f, true);
+  private final Map<Object, Object> reservations = new HashMap<Object, Object>();
+  private long sizeInBytes;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param maxSizeInBytes the maximum estimated size of the entries
+   * @throws IllegalArgumentException if the size is not positive
+   */
+  NearCache(long maxSizeInBytes) throws IllegalArgumentException {
+    if (maxSizeInBytes <= 0L) {
+      throw new IllegalArgumentException("Near cache size must be positive : " + maxSizeInBytes);
+    }
+    this.maxSizeInBytes = maxSizeInBytes;
+  }
+
+  /**
+   * @return the maximum number of entries the cache can hold, all of the smallest estimated size
+   */
+  int getMaxEntries() {
+    return (int) Math.max(1L, Math.min(Integer.MAX_VALUE, maxSizeInBytes / MIN_ENTRY_WEIGHT));
+  }
+
+  /**
+   * @param key an encoded key
+   * @return the encoded value of that key, or {@code null} if it is not cached
+   */
+  Object get(Object key) {
+    Weighed entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.value;
+  }
+
+  /**
+   * Reserves a key before reading it from the server.
+   *
+   * @param key an encoded key
+   * @return the reservation to fill the key with
+   */
+  synchronized Object reserve(Object key) {
+    Object reservation = new Object();
+    reservations.put(key, reservation);
+    return reservation;
+  }
+
+  /**
+   * Caches the value read from the server, unless the key was invalidated or reserved again since it was reserved.
+   *
+   * @param key an encoded key
+   * @param reservation the reservation returned by {@link #reserve(Object)}
+   * @param value the encoded value read, {@code null} if the key is not mapped
+   */
+  synchronized void fill(Object key, Object reservation, Object value) {
+    if (reservations.get(key) != reservation) {
+      return;
+    }
+    reservations.remove(key);
+    if (value == null) {
+      return;
+    }
+    long weight = ENTRY_OVERHEAD + weigh(key) + weigh(value);
+    if (weight > maxSizeInBytes) {
+      return;
+    }
+    Weighed previous = entries.put(key, new Weighed(value, weight));
+    if (previous != null) {
+      sizeInBytes -= previous.weight;
+    }
+    sizeInBytes += weight;
+    for (Iterator<Weighed> it = entries.values().iterator(); sizeInBytes > maxSizeInBytes && it.hasNext(); ) {
+      sizeInBytes -= it.next().weight;
+      it.remove();
+      evictions.increment();
+    }
+  }
+
+  /**
+   * Releases the reservation of a key, unless it was filled, invalidated or reserved again since : reads that fail
+   * must release their reservation for it not to be kept forever.
+   *
+   * @param key an encoded key
+   * @param reservation the reservation returned by {@link #reserve(Object)}
+   */
+  synchronized void release(Object key, Object reservation) {
+    reservations.remove(key, reservation);
+  }
+
+  /**
+   * Drops a key mutated by this client.
+   *
+   * @param key an encoded key
+   * @return whether the key was cached
+   */
+  synchronized boolean remove(Object key) {
+    reservations.remove(key);
+    Weighed removed = entries.remove(key);
+    if (removed == null) {
+      return false;
+    }
+    sizeInBytes -= removed.weight;
+    return true;
+  }
+
+  /**
+   * Drops a key invalidated by the server.
+   *
+   * @param key an encoded key
+   */
+  void invalidate(Object key) {
+    if (remove(key)) {
+      invalidations.increment();
+    }
+  }
+
+  /**
+   * Drops every entry, and every pending reservation.
+   */
+  synchronized void clear() {
+    reservations.clear();
+    entries.clear();
+    sizeInBytes = 0L;
+  }
+
+  /**
+   * Drops every entry, as invalidated by the server.
+   */
+  void invalidateAll() {
+    long dropped;
+    synchronized (this) {
+      dropped = entries.size();
+      clear();
+    }
+    invalidations.add(dropped);
+  }
+
+  @Override
+  public long getHits() {
+    return hits.sum();
+  }
+
+  @Override
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public long getInvalidations() {
+    return invalidations.sum();
+  }
+
+  @Override
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  @Override
+  public synchronized long getEntryCount() {
+    return entries.size();
+  }
+
+  @Override
+  public synchronized long getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  /**
+   * Estimates the heap size of an encoded key or value.
+   */
+  static long weigh(Object encoded) {
+    if (encoded instanceof String) {
+      return 2 * OBJECT_OVERHEAD + 2L * ((String) encoded).length();
+    } else if (encoded instanceof byte[]) {
+      return OBJECT_OVERHEAD + ((byte[]) encoded).length;
+    } else if (encoded instanceof ValueWrapper) {
+      return 2 * OBJECT_OVERHEAD + ((ValueWrapper) encoded).getValue().length;
+    } else {
+      return OBJECT_OVERHEAD;
+    }
+  }
+
+  private static final class Weighed {
+    private final Object value;
+    private final long weight;
+
+    Weighed(Object value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map;
+
+import org.terracotta.entity.EntityResponse;
+import org.terracotta.entity.InvokeFuture;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Completes {@link CompletableFuture}s from the {@link InvokeFuture}s of in-flight invocations, using a single thread
+ * to wait on them whatever their number.
+ * <p>
+ * The thread waits on the oldest invocation in flight, and completes the invocations done behind it once it is
+ * answered. An invocation answered before older ones is found by a scan of the invocations in flight, made every time
+ * the oldest is not answered within the poll interval : the interval starts at {@link #MIN_POLL_INTERVAL_MILLIS},
+ * and doubles up to {@link #MAX_POLL_INTERVAL_MILLIS} while scans find nothing to complete.
+ * <p>
+ * The futures are completed through the executor given with each invocation, never on the waiting thread : the
+ * dependent stages of a future can block, or wait on other invocations, without delaying their completion. The
+ * thread is started on the first invocation, and parks while none is in flight.
+ */
+class ResponseCompleter {
+
+  static final long MIN_POLL_INTERVAL_MILLIS = 1L;
+  static final long MAX_POLL_INTERVAL_MILLIS = 32L;
+
+  private final LinkedBlockingQueue<Pending<?>> submitted = new LinkedBlockingQueue<Pending<?>>();
+  private final String name;
+  private Thread thread;
+  private boolean closed;
+
+  /**
+   * @param name the name of the waiting thread
+   */
+  ResponseCompleter(String name) {
+    this.name = name;
+  }
+
+  /**
+   * @param future the future of an invocation
+   * @param executor the executor completing the returned future
+   * @return a future completed with the response of the invocation, or exceptionally with its failure
+   */
+  <R extends EntityResponse> CompletableFuture<R> complete(InvokeFuture<R> future, Executor executor) {
+    Pending<R> pending = new Pending<R>(future, executor);
+    synchronized (this) {
+      if (closed) {
+        pending.fail(new IllegalStateException("Map closed"));
+        return pending.completion;
+      }
+      if (thread == null) {
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+      }
+      submitted.add(pending);
+    }
+    return pending.completion;
+  }
+
+  /**
+   * Stops the waiting thread, and fails the invocations still in flight.
+   */
+  void close() {
+    Thread toStop;
+    synchronized (this) {
+      closed = true;
+      toStop = thread;
+    }
+    if (toStop != null) {
+      toStop.interrupt();
+    } else {
+      failAll(submitted);
+    }
+  }
+
+  private void run() {
+    ArrayDeque<Pending<?>> inFlight = new ArrayDeque<Pending<?>>();
+    long pollInterval = MIN_POLL_INTERVAL_MILLIS;
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        if (inFlight.isEmpty()) {
+          inFlight.add(submitted.take());
+        }
+        submitted.drainTo(inFlight);
+
+        if (inFlight.peek().await(pollInterval)) {
+          inFlight.poll();
+          // invocations answered in order are found done behind the oldest one
+          while (!inFlight.isEmpty() && inFlight.peek().future.isDone()) {
+            // removed once completed, so that an interrupt meanwhile leaves it to be failed on close
+            inFlight.peek().complete();
+            inFlight.poll();
+          }
+          pollInterval = MIN_POLL_INTERVAL_MILLIS;
+        } else if (completeDone(inFlight)) {
+          pollInterval = MIN_POLL_INTERVAL_MILLIS;
+        } else {
+          pollInterval = Math.min(MAX_POLL_INTERVAL_MILLIS, pollInterval * 2);
+        }
+      }
+    } catch (InterruptedException e) {
+      // closed
+    } finally {
+      failAll(inFlight);
+      synchronized (this) {
+        closed = true;
+      }
+      failAll(submitted);
+    }
+  }
+
+  private static boolean completeDone(ArrayDeque<Pending<?>> inFlight) throws InterruptedException {
+    boolean completed = false;
+    for (Iterator<Pending<?>> it = inFlight.iterator(); it.hasNext(); ) {
+      Pending<?> pending = it.next();
+      if (pending.future.isDone()) {
+        pending.complete();
+        it.remove();
+        completed = true;
+      }
+    }
+    return completed;
+  }
+
+  private static void failAll(Iterable<? extends Pending<?>> pendings) {
+    List<Pending<?>> toFail = new ArrayList<Pending<?>>();
+    for (Pending<?> pending : pendings) {
+      toFail.add(pending);
+    }
+    for (Pending<?> pending : toFail) {
+      pending.fail(new IllegalStateException("Map closed"));
+    }
+  }
+
+  private static final class Pending<R extends EntityResponse> {
+    private final InvokeFuture<R> future;
+    private final Executor executor;
+    private final CompletableFuture<R> completion = new CompletableFuture<R>();
+
+    Pending(InvokeFuture<R> future, Executor executor) {
+      this.future = future;
+      this.executor = executor;
+    }
+
+    void complete() throws InterruptedException {
+      try {
+        succeed(future.get());
+      } catch (InterruptedException e) {
+        throw e;
+      } catch (Exception e) {
+        fail(e);
+      }
+    }
+
+    /**
+     * @return {@code true} if the invocation completed within the poll interval
+     */
+    boolean await(long pollInterval) throws InterruptedException {
+      try {
+        succeed(future.getWithTimeout(pollInterval, TimeUnit.MILLISECONDS));
+      } catch (TimeoutException e) {
+        return false;
+      } catch (InterruptedException e) {
+        throw e;
+      } catch (Exception e) {
+        fail(e);
+      }
+      return true;
+    }
+
+    private void succeed(R response) {
+      execute(() -> completion.complete(response));
+    }
+
+    void fail(Throwable failure) {
+      execute(() -> completion.completeExceptionally(failure));
+    }
+
+    private void execute(Runnable completing) {
+      try {
+        executor.execute(completing);
+      } catch (RejectedExecutionException e) {
+        completing.run();
+      }
+    }
+  }
+}
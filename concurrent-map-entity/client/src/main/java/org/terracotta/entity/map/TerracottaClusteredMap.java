@@ -15,9 +15,15 @@
  */
 package org.terracotta.entity.map;
 
+import org.terracotta.entity.EndpointDelegate;
 import org.terracotta.entity.EntityClientEndpoint;
+import org.terracotta.entity.InvokeFuture;
+import org.terracotta.entity.map.common.AsyncClusteredMap;
+import org.terracotta.entity.map.common.BatchOperation;
+import org.terracotta.entity.map.common.BatchResponse;
 import org.terracotta.entity.map.common.BooleanResponse;
 import org.terracotta.entity.map.common.ClearOperation;
+import org.terracotta.entity.map.common.ClusteredMapConfiguration;
 import org.terracotta.entity.map.common.ConcurrentClusteredMap;
 import org.terracotta.entity.map.common.ConditionalRemoveOperation;
 import org.terracotta.entity.map.common.ConditionalReplaceOperation;
@@ -26,55 +32,102 @@ import org.terracotta.entity.map.common.ContainsValueOperation;
 import org.terracotta.entity.map.common.EntrySetOperation;
 import org.terracotta.entity.map.common.EntrySetResponse;
 import org.terracotta.entity.map.common.GetOperation;
+import org.terracotta.entity.map.common.InvalidateAllResponse;
+import org.terracotta.entity.map.common.InvalidationResponse;
 import org.terracotta.entity.map.common.KeySetOperation;
 import org.terracotta.entity.map.common.KeySetResponse;
+import org.terracotta.entity.map.common.KeyedOperation;
+import org.terracotta.entity.map.common.MapBatch;
 import org.terracotta.entity.map.common.MapOperation;
 import org.terracotta.entity.map.common.MapResponse;
 import org.terracotta.entity.map.common.MapValueResponse;
+import org.terracotta.entity.map.common.NearCacheStatistics;
 import org.terracotta.entity.map.common.PutAllOperation;
 import org.terracotta.entity.map.common.PutIfAbsentOperation;
 import org.terracotta.entity.map.common.PutIfPresentOperation;
 import org.terracotta.entity.map.common.PutOperation;
+import org.terracotta.entity.map.common.RegisterNearCacheOperation;
 import org.terracotta.entity.map.common.RemoveOperation;
 import org.terracotta.entity.map.common.SizeOperation;
 import org.terracotta.entity.map.common.SizeResponse;
 import org.terracotta.entity.map.common.ValueCollectionResponse;
+import org.terracotta.entity.map.common.ValueSerializer;
 import org.terracotta.entity.map.common.ValuesOperation;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 import static org.terracotta.entity.map.ValueCodecFactory.getCodecForClass;
 
 @SuppressWarnings("unchecked")
 public class TerracottaClusteredMap<K, V> implements ConcurrentClusteredMap<K, V> {
 
+  // maximum number of operations sent in a single batch message
+  static final int MAX_BATCH_OPERATIONS = 1024;
+
   private final EntityClientEndpoint<MapOperation, MapResponse> endpoint;
+  private final ClusteredMapConfiguration configuration;
+  private final ResponseCompleter completer = new ResponseCompleter("clustered-map-completer");
+  private final AsyncClusteredMap<K, V> async = new AsyncView(ForkJoinPool.commonPool());
 
   private Class<K> keyClass;
   private Class<V> valueClass;
   private ValueCodec<K> keyValueCodec;
   private ValueCodec<V> valueValueCodec;
+  private volatile NearCache nearCache;
 
   public TerracottaClusteredMap(EntityClientEndpoint<MapOperation, MapResponse> endpoint) {
     this.endpoint = endpoint;
+    this.configuration = ClusteredMapConfiguration.decode(endpoint.getEntityConfiguration());
   }
 
   @Override
   public void setTypes(Class<K> keyClass, Class<V> valueClass) {
+    setTypes(keyClass, valueClass, null, null);
+  }
+
+  @Override
+  public void setTypes(Class<K> keyClass, Class<V> valueClass, ValueSerializer<K> keySerializer, ValueSerializer<V> valueSerializer) {
     this.keyClass = keyClass;
     this.valueClass = valueClass;
-    keyValueCodec = getCodecForClass(keyClass);
-    valueValueCodec = getCodecForClass(valueClass);
+    keyValueCodec = getCodecForClass(keyClass, keySerializer);
+    valueValueCodec = getCodecForClass(valueClass, valueSerializer);
+  }
+
+  @Override
+  public void enableNearCache(long maxSizeInBytes) throws IllegalArgumentException, IllegalStateException {
+    NearCache cache = new NearCache(maxSizeInBytes);
+    if (nearCache != null) {
+      throw new IllegalStateException("Near cache already enabled");
+    }
+    endpoint.setDelegate(new NearCacheDelegate());
+    invokeWithReturn(new RegisterNearCacheOperation(cache.getMaxEntries()));
+    nearCache = cache;
+  }
+
+  @Override
+  public NearCacheStatistics getNearCacheStatistics() throws IllegalStateException {
+    NearCache cache = nearCache;
+    if (cache == null) {
+      throw new IllegalStateException("Near cache not enabled");
+    }
+    return cache;
   }
 
   @Override
   public void close() {
+    this.completer.close();
     this.endpoint.close();
   }
 
@@ -100,7 +153,12 @@ public class TerracottaClusteredMap<K, V> implements ConcurrentClusteredMap<K, V
     if (!keyClass.isAssignableFrom(key.getClass())) {
       return false;
     }
-    return ((BooleanResponse)invokeWithReturn(new ContainsKeyOperation(keyValueCodec.encode((K)key)))).isTrue();
+    Object encodedKey = keyValueCodec.encode((K) key);
+    NearCache cache = nearCache;
+    if (cache != null && cache.get(encodedKey) != null) {
+      return true;
+    }
+    return ((BooleanResponse)invokeWithReturn(new ContainsKeyOperation(encodedKey))).isTrue();
   }
 
   @Override
@@ -116,8 +174,25 @@ public class TerracottaClusteredMap<K, V> implements ConcurrentClusteredMap<K, V
     if (!keyClass.isAssignableFrom(key.getClass())) {
       return null;
     }
-    MapValueResponse response = (MapValueResponse) invokeWithReturn(new GetOperation(keyValueCodec.encode((K) key)));
-    return valueValueCodec.decode(response.getValue());
+    Object encodedKey = keyValueCodec.encode((K) key);
+    NearCache cache = nearCache;
+    if (cache == null) {
+      MapValueResponse response = (MapValueResponse) invokeWithReturn(new GetOperation(encodedKey));
+      return valueValueCodec.decode(response.getValue());
+    }
+
+    Object cached = cache.get(encodedKey);
+    if (cached != null) {
+      return valueValueCodec.decode(cached);
+    }
+    Object reservation = cache.reserve(encodedKey);
+    try {
+      MapValueResponse response = (MapValueResponse) invokeWithReturn(new GetOperation(encodedKey));
+      cache.fill(encodedKey, reservation, response.getValue());
+      return valueValueCodec.decode(response.getValue());
+    } finally {
+      cache.release(encodedKey, reservation);
+    }
   }
 
   @Override
@@ -139,11 +214,43 @@ public class TerracottaClusteredMap<K, V> implements ConcurrentClusteredMap<K, V
     try {
       return endpoint.beginInvoke()
           .message(operation)
-          .replicate(operation.operationType().replicate())
+          .replicate(operation.replicate())
           .invoke()
           .get();
     } catch (Exception e) {
       throw new RuntimeException("Exception while processing map operation " + operation, e);
+    } finally {
+      removeFromNearCache(operation);
+    }
+  }
+
+  /**
+   * Drops from the near cache the keys mutated by an operation of this client, once the server executed it : the
+   * server does not notify the client mutating a key.
+   */
+  private void removeFromNearCache(MapOperation operation) {
+    NearCache cache = nearCache;
+    if (cache == null || !operation.replicate()) {
+      return;
+    }
+    switch (operation.operationType()) {
+      case CLEAR:
+        cache.clear();
+        break;
+      case PUT_ALL:
+        for (Object key : ((Map<Object, Object>) ((PutAllOperation) operation).getMap()).keySet()) {
+          cache.remove(key);
+        }
+        break;
+      case BATCH:
+        for (KeyedOperation keyedOperation : ((BatchOperation) operation).getOperations()) {
+          removeFromNearCache(keyedOperation);
+        }
+        break;
+      default:
+        if (operation instanceof KeyedOperation) {
+          cache.remove(((KeyedOperation) operation).getKey());
+        }
     }
   }
 
@@ -221,4 +328,456 @@ public class TerracottaClusteredMap<K, V> implements ConcurrentClusteredMap<K, V
     MapValueResponse response = (MapValueResponse) invokeWithReturn(operation);
     return valueValueCodec.decode(response.getValue());
   }
+
+  @Override
+  public Map<K, V> getAll(Collection<? extends K> keys) {
+    Reads reads = new Reads();
+    try {
+      for (K key : keys) {
+        if (keyClass.isAssignableFrom(key.getClass())) {
+          reads.add(key);
+        }
+      }
+      return reads.complete(invokeBatch(reads.operations));
+    } finally {
+      reads.release();
+    }
+  }
+
+  @Override
+  public void removeAll(Collection<? extends K> keys) {
+    List<KeyedOperation> operations = new ArrayList<KeyedOperation>(keys.size());
+    for (K key : keys) {
+      if (keyClass.isAssignableFrom(key.getClass())) {
+        operations.add(new RemoveOperation(keyValueCodec.encode(key)));
+      }
+    }
+    invokeBatch(operations);
+  }
+
+  @Override
+  public Map<K, V> putAllIfAbsent(Map<? extends K, ? extends V> entries) {
+    List<K> requested = new ArrayList<K>(entries.size());
+    List<KeyedOperation> operations = new ArrayList<KeyedOperation>(entries.size());
+    for (Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+      requested.add(entry.getKey());
+      operations.add(new PutIfAbsentOperation(keyValueCodec.encode(entry.getKey()), valueValueCodec.encode(entry.getValue())));
+    }
+    List<MapResponse> responses = invokeBatch(operations);
+    Map<K, V> existing = new HashMap<K, V>();
+    for (int i = 0; i < responses.size(); i++) {
+      V value = valueValueCodec.decode(((MapValueResponse) responses.get(i)).getValue());
+      if (value != null) {
+        existing.put(requested.get(i), value);
+      }
+    }
+    return existing;
+  }
+
+  @Override
+  public MapBatch<K, V> batch() {
+    return new Batch();
+  }
+
+  @Override
+  public AsyncClusteredMap<K, V> async() {
+    return async;
+  }
+
+  @Override
+  public AsyncClusteredMap<K, V> async(Executor executor) {
+    if (executor == null) {
+      throw new NullPointerException("executor");
+    }
+    return new AsyncView(executor);
+  }
+
+  /**
+   * Sends the operations grouped by segment, without waiting for a response before all messages are sent.
+   *
+   * @return the responses to the operations, in order
+   */
+  private List<MapResponse> invokeBatch(List<KeyedOperation> operations) {
+    List<List<Integer>> sent = new ArrayList<List<Integer>>();
+    List<InvokeFuture<MapResponse>> futures = sendBatches(operations, sent);
+
+    MapResponse[] responses = new MapResponse[operations.size()];
+    try {
+      for (int i = 0; i < futures.size(); i++) {
+        placeResponses(responses, sent.get(i), futures.get(i).get());
+      }
+    } catch (Exception e) {
+      throw new RuntimeException("Exception while processing map batch", e);
+    } finally {
+      for (KeyedOperation operation : operations) {
+        removeFromNearCache(operation);
+      }
+    }
+    return Arrays.asList(responses);
+  }
+
+  /**
+   * Asynchronous version of {@link #invokeBatch(List)}.
+   *
+   * @param executor the executor completing the returned future
+   */
+  private CompletableFuture<List<MapResponse>> invokeBatchAsync(List<KeyedOperation> operations, Executor executor) {
+    List<List<Integer>> sent = new ArrayList<List<Integer>>();
+    List<InvokeFuture<MapResponse>> futures;
+    try {
+      futures = sendBatches(operations, sent);
+    } catch (RuntimeException e) {
+      return failed(e);
+    }
+
+    MapResponse[] responses = new MapResponse[operations.size()];
+    CompletableFuture<?>[] completions = new CompletableFuture<?>[futures.size()];
+    for (int i = 0; i < futures.size(); i++) {
+      List<Integer> chunk = sent.get(i);
+      completions[i] = completer.complete(futures.get(i), executor).thenAccept(response -> placeResponses(responses, chunk, response));
+    }
+    return CompletableFuture.allOf(completions)
+        .whenComplete((done, failure) -> {
+          for (KeyedOperation operation : operations) {
+            removeFromNearCache(operation);
+          }
+        })
+        .thenApply(done -> Arrays.asList(responses));
+  }
+
+  /**
+   * Sends the operations in batches of a single segment.
+   *
+   * @param sent receives, for every batch sent, the indexes of its operations
+   * @return the futures of the batches sent
+   */
+  private List<InvokeFuture<MapResponse>> sendBatches(List<KeyedOperation> operations, List<List<Integer>> sent) {
+    Map<Integer, List<Integer>> segments = new HashMap<Integer, List<Integer>>();
+    for (int i = 0; i < operations.size(); i++) {
+      Integer segment = configuration.segmentKey(operations.get(i).getKey());
+      List<Integer> indexes = segments.get(segment);
+      if (indexes == null) {
+        indexes = new ArrayList<Integer>();
+        segments.put(segment, indexes);
+      }
+      indexes.add(i);
+    }
+
+    List<InvokeFuture<MapResponse>> futures = new ArrayList<InvokeFuture<MapResponse>>();
+    for (List<Integer> indexes : segments.values()) {
+      for (int from = 0; from < indexes.size(); from += MAX_BATCH_OPERATIONS) {
+        List<Integer> chunk = indexes.subList(from, Math.min(indexes.size(), from + MAX_BATCH_OPERATIONS));
+        List<KeyedOperation> batch = new ArrayList<KeyedOperation>(chunk.size());
+        for (int index : chunk) {
+          batch.add(operations.get(index));
+        }
+        sent.add(chunk);
+        futures.add(invokeAsync(new BatchOperation(batch)));
+      }
+    }
+
+    return futures;
+  }
+
+  private static void placeResponses(MapResponse[] responses, List<Integer> chunk, MapResponse batchResponse) {
+    List<MapResponse> batchResponses = ((BatchResponse) batchResponse).getResponses();
+    for (int j = 0; j < chunk.size(); j++) {
+      responses[chunk.get(j)] = batchResponses.get(j);
+    }
+  }
+
+  private InvokeFuture<MapResponse> invokeAsync(MapOperation operation) {
+    try {
+      return endpoint.beginInvoke()
+          .message(operation)
+          .replicate(operation.replicate())
+          .invoke();
+    } catch (Exception e) {
+      throw new RuntimeException("Exception while processing map operation " + operation, e);
+    }
+  }
+
+  private CompletableFuture<MapResponse> invokeWithFuture(MapOperation operation, Executor executor) {
+    try {
+      return completer.complete(invokeAsync(operation), executor).whenComplete((response, failure) -> removeFromNearCache(operation));
+    } catch (RuntimeException e) {
+      return failed(e);
+    }
+  }
+
+  private static <T> CompletableFuture<T> failed(Throwable failure) {
+    CompletableFuture<T> future = new CompletableFuture<T>();
+    future.completeExceptionally(failure);
+    return future;
+  }
+
+  private class Batch implements MapBatch<K, V> {
+    private final List<KeyedOperation> operations = new ArrayList<KeyedOperation>();
+    private boolean executed;
+
+    @Override
+    public MapBatch<K, V> get(K key) {
+      return add(new GetOperation(keyValueCodec.encode(key)));
+    }
+
+    @Override
+    public MapBatch<K, V> containsKey(K key) {
+      return add(new ContainsKeyOperation(keyValueCodec.encode(key)));
+    }
+
+    @Override
+    public MapBatch<K, V> put(K key, V value) {
+      return add(new PutOperation(keyValueCodec.encode(key), valueValueCodec.encode(value)));
+    }
+
+    @Override
+    public MapBatch<K, V> putIfAbsent(K key, V value) {
+      return add(new PutIfAbsentOperation(keyValueCodec.encode(key), valueValueCodec.encode(value)));
+    }
+
+    @Override
+    public MapBatch<K, V> replace(K key, V value) {
+      return add(new PutIfPresentOperation(keyValueCodec.encode(key), valueValueCodec.encode(value)));
+    }
+
+    @Override
+    public MapBatch<K, V> remove(K key) {
+      return add(new RemoveOperation(keyValueCodec.encode(key)));
+    }
+
+    @Override
+    public int size() {
+      return operations.size();
+    }
+
+    @Override
+    public List<Object> execute() throws IllegalStateException {
+      if (executed) {
+        throw new IllegalStateException("Batch already executed");
+      }
+      executed = true;
+      List<MapResponse> responses = invokeBatch(operations);
+      List<Object> results = new ArrayList<Object>(responses.size());
+      for (MapResponse response : responses) {
+        if (response instanceof BooleanResponse) {
+          results.add(((BooleanResponse) response).isTrue());
+        } else {
+          results.add(valueValueCodec.decode(((MapValueResponse) response).getValue()));
+        }
+      }
+      return results;
+    }
+
+    private MapBatch<K, V> add(KeyedOperation operation) {
+      if (executed) {
+        throw new IllegalStateException("Batch already executed");
+      }
+      operations.add(operation);
+      return this;
+    }
+  }
+
+  private class AsyncView implements AsyncClusteredMap<K, V> {
+
+    private final Executor executor;
+
+    AsyncView(Executor executor) {
+      this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<V> getAsync(K key) {
+      Object encodedKey = keyValueCodec.encode(key);
+      NearCache cache = nearCache;
+      if (cache == null) {
+        return value(invokeWithFuture(new GetOperation(encodedKey), executor));
+      }
+
+      Object cached = cache.get(encodedKey);
+      if (cached != null) {
+        return CompletableFuture.completedFuture(valueValueCodec.decode(cached));
+      }
+      Object reservation = cache.reserve(encodedKey);
+      return invokeWithFuture(new GetOperation(encodedKey), executor).thenApply(response -> {
+        Object value = ((MapValueResponse) response).getValue();
+        cache.fill(encodedKey, reservation, value);
+        return valueValueCodec.decode(value);
+      }).whenComplete((value, failure) -> cache.release(encodedKey, reservation));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> containsKeyAsync(K key) {
+      return bool(invokeWithFuture(new ContainsKeyOperation(keyValueCodec.encode(key)), executor));
+    }
+
+    @Override
+    public CompletableFuture<V> putAsync(K key, V value) {
+      return value(invokeWithFuture(new PutOperation(keyValueCodec.encode(key), valueValueCodec.encode(value)), executor));
+    }
+
+    @Override
+    public CompletableFuture<V> putIfAbsentAsync(K key, V value) {
+      return value(invokeWithFuture(new PutIfAbsentOperation(keyValueCodec.encode(key), valueValueCodec.encode(value)), executor));
+    }
+
+    @Override
+    public CompletableFuture<V> removeAsync(K key) {
+      return value(invokeWithFuture(new RemoveOperation(keyValueCodec.encode(key)), executor));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> removeAsync(K key, V value) {
+      return bool(invokeWithFuture(new ConditionalRemoveOperation(keyValueCodec.encode(key), valueValueCodec.encode(value)), executor));
+    }
+
+    @Override
+    public CompletableFuture<V> replaceAsync(K key, V value) {
+      return value(invokeWithFuture(new PutIfPresentOperation(keyValueCodec.encode(key), valueValueCodec.encode(value)), executor));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> replaceAsync(K key, V oldValue, V newValue) {
+      return bool(invokeWithFuture(new ConditionalReplaceOperation(keyValueCodec.encode(key), valueValueCodec.encode(oldValue), valueValueCodec.encode(newValue)), executor));
+    }
+
+    @Override
+    public CompletableFuture<V> computeIfAbsentAsync(K key, Function<? super K, ? extends V> mappingFunction) {
+      return getAsync(key).thenComposeAsync(existing -> {
+        if (existing != null) {
+          return CompletableFuture.completedFuture(existing);
+        }
+        V computed = mappingFunction.apply(key);
+        if (computed == null) {
+          return CompletableFuture.completedFuture(null);
+        }
+        return putIfAbsentAsync(key, computed).thenApply(previous -> previous == null ? computed : previous);
+      }, executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<K, V>> getAllAsync(Collection<? extends K> keys) {
+      Reads reads = new Reads();
+      try {
+        for (K key : keys) {
+          reads.add(key);
+        }
+      } catch (RuntimeException e) {
+        reads.release();
+        throw e;
+      }
+      return invokeBatchAsync(reads.operations, executor).thenApply(reads::complete)
+          .whenComplete((values, failure) -> reads.release());
+    }
+
+    @Override
+    public CompletableFuture<Integer> sizeAsync() {
+      return invokeWithFuture(new SizeOperation(), executor).thenApply(response -> {
+        long size = ((SizeResponse) response).getSize();
+        return (int) Math.max(0L, Math.min(Integer.MAX_VALUE, size));
+      });
+    }
+
+    private CompletableFuture<V> value(CompletableFuture<MapResponse> response) {
+      return response.thenApply(r -> valueValueCodec.decode(((MapValueResponse) r).getValue()));
+    }
+
+    private CompletableFuture<Boolean> bool(CompletableFuture<MapResponse> response) {
+      return response.thenApply(r -> ((BooleanResponse) r).isTrue());
+    }
+  }
+
+  /**
+   * Reads of several keys, answered from the near cache when possible.
+   */
+  private class Reads {
+    private final NearCache cache = nearCache;
+    private final Map<K, V> values = new HashMap<K, V>();
+    private final List<K> requested = new ArrayList<K>();
+    private final List<KeyedOperation> operations = new ArrayList<KeyedOperation>();
+    private final List<Object> reservations = new ArrayList<Object>();
+
+    void add(K key) {
+      Object encodedKey = keyValueCodec.encode(key);
+      if (cache != null) {
+        Object cached = cache.get(encodedKey);
+        if (cached != null) {
+          values.put(key, valueValueCodec.decode(cached));
+          return;
+        }
+        reservations.add(cache.reserve(encodedKey));
+      }
+      requested.add(key);
+      operations.add(new GetOperation(encodedKey));
+    }
+
+    /**
+     * @param responses the responses to the operations sent for the keys not cached
+     * @return the values of the keys that are mapped
+     */
+    Map<K, V> complete(List<MapResponse> responses) {
+      for (int i = 0; i < responses.size(); i++) {
+        Object value = ((MapValueResponse) responses.get(i)).getValue();
+        if (cache != null) {
+          cache.fill(operations.get(i).getKey(), reservations.get(i), value);
+        }
+        if (value != null) {
+          values.put(requested.get(i), valueValueCodec.decode(value));
+        }
+      }
+      return values;
+    }
+
+    /**
+     * Releases the reservations of the keys that were not filled.
+     */
+    void release() {
+      if (cache != null) {
+        for (int i = 0; i < reservations.size(); i++) {
+          cache.release(operations.get(i).getKey(), reservations.get(i));
+        }
+      }
+    }
+  }
+
+  /**
+   * Applies the invalidations pushed by the server to the near cache, and empties it when the connection to the
+   * server is lost : the invalidations sent in the meantime are lost as well.
+   */
+  private class NearCacheDelegate implements EndpointDelegate<MapResponse> {
+
+    @Override
+    public void handleMessage(MapResponse message) {
+      NearCache cache = nearCache;
+      if (cache == null) {
+        return;
+      }
+      if (message instanceof InvalidationResponse) {
+        for (Object key : ((InvalidationResponse) message).getKeys()) {
+          cache.invalidate(key);
+        }
+      } else if (message instanceof InvalidateAllResponse) {
+        cache.invalidateAll();
+      } else {
+        throw new AssertionError("Received unexpected message from server: " + message);
+      }
+    }
+
+    @Override
+    public byte[] createExtendedReconnectData() {
+      NearCache cache = nearCache;
+      if (cache == null) {
+        return new byte[0];
+      }
+      cache.clear();
+      return new RegisterNearCacheOperation(cache.getMaxEntries()).reconnectData();
+    }
+
+    @Override
+    public void didDisconnectUnexpectedly() {
+      NearCache cache = nearCache;
+      if (cache != null) {
+        cache.clear();
+      }
+    }
+  }
 }
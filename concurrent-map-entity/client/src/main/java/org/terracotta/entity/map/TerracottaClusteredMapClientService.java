@@ -19,25 +19,26 @@ import org.terracotta.entity.EntityClientEndpoint;
 import org.terracotta.entity.EntityClientService;
 import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.map.common.ClusteredMapCodec;
+import org.terracotta.entity.map.common.ClusteredMapConfiguration;
 import org.terracotta.entity.map.common.ConcurrentClusteredMap;
 import org.terracotta.entity.map.common.MapOperation;
 import org.terracotta.entity.map.common.MapResponse;
 
 @SuppressWarnings("rawtypes")
-public class TerracottaClusteredMapClientService implements EntityClientService<ConcurrentClusteredMap, Void, MapOperation, MapResponse, Object> {
+public class TerracottaClusteredMapClientService implements EntityClientService<ConcurrentClusteredMap, ClusteredMapConfiguration, MapOperation, MapResponse, Object> {
   @Override
   public boolean handlesEntityType(Class<ConcurrentClusteredMap> cls) {
     return cls == ConcurrentClusteredMap.class;
   }
 
   @Override
-  public byte[] serializeConfiguration(Void configuration) {
-    return new byte[0];
+  public byte[] serializeConfiguration(ClusteredMapConfiguration configuration) {
+    return configuration == null ? new byte[0] : configuration.encode();
   }
 
   @Override
-  public Void deserializeConfiguration(byte[] configuration) {
-    return null;
+  public ClusteredMapConfiguration deserializeConfiguration(byte[] configuration) {
+    return ClusteredMapConfiguration.decode(configuration);
   }
 
   @SuppressWarnings("unchecked")
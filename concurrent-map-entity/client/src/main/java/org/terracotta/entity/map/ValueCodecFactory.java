@@ -15,6 +15,7 @@
  */
 package org.terracotta.entity.map;
 
+import org.terracotta.entity.map.common.ValueSerializer;
 import org.terracotta.entity.map.common.ValueWrapper;
 
 import java.io.ByteArrayInputStream;
@@ -23,22 +24,32 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * ValueCodecFactory
  */
 public class ValueCodecFactory {
   static <T> ValueCodec<T> getCodecForClass(Class<T> clazz) {
-    if (!Serializable.class.isAssignableFrom(clazz)) {
-      throw new IllegalArgumentException("The provided type is invalid as it is not Serializable " + clazz);
-    }
+    return getCodecForClass(clazz, null);
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T> ValueCodec<T> getCodecForClass(Class<T> clazz, ValueSerializer<T> serializer) {
     if (Integer.class.equals(clazz) || Long.class.equals(clazz)
         || Float.class.equals(clazz) || Double.class.equals(clazz)
         || Byte.class.equals(clazz) || Character.class.equals(clazz)
+        || Short.class.equals(clazz) || Boolean.class.equals(clazz)
         || clazz.isPrimitive() || String.class.equals(clazz)) {
       return new IdentityCodec<T>();
+    } else if (byte[].class.equals(clazz)) {
+      return (ValueCodec<T>) new ByteArrayCodec();
+    } else if (serializer != null) {
+      return new SerializerCodec<T>(serializer);
+    } else if (Serializable.class.isAssignableFrom(clazz)) {
+      return new SerializerCodec<T>(new JavaSerializer<T>());
     } else {
-      return new SerializationWrapperCodec<T>();
+      throw new IllegalArgumentException("The provided type is invalid as it is not Serializable and has no serializer " + clazz);
     }
   }
 
@@ -54,37 +65,72 @@ public class ValueCodecFactory {
     }
   }
 
-  private static class SerializationWrapperCodec<T> implements ValueCodec<T> {
+  /**
+   * Wraps arrays, so that the server compares them by content.
+   */
+  private static class ByteArrayCodec implements ValueCodec<byte[]> {
+    @Override
+    public Object encode(byte[] input) {
+      if (input == null) {
+        return null;
+      }
+      return new ValueWrapper(Arrays.hashCode(input), input);
+    }
+
+    @Override
+    public byte[] decode(Object input) {
+      if (input == null) {
+        return null;
+      }
+      return ((ValueWrapper) input).getValue();
+    }
+  }
+
+  private static class SerializerCodec<T> implements ValueCodec<T> {
+    private final ValueSerializer<T> serializer;
+
+    SerializerCodec(ValueSerializer<T> serializer) {
+      this.serializer = serializer;
+    }
+
     @Override
     public Object encode(T input) {
       if (input == null) {
         return null;
       }
+      return new ValueWrapper(input.hashCode(), serializer.serialize(input));
+    }
+
+    @Override
+    public T decode(Object input) {
+      if (input == null) {
+        return null;
+      }
+      return serializer.deserialize(((ValueWrapper) input).getValue());
+    }
+  }
+
+  private static class JavaSerializer<T> implements ValueSerializer<T> {
+    @Override
+    public byte[] serialize(T object) {
       ByteArrayOutputStream baos = new ByteArrayOutputStream();
       try {
         ObjectOutputStream oos = new ObjectOutputStream(baos);
         try {
-          oos.writeObject(input);
-        } catch(IOException e) {
-          throw new RuntimeException("Object cannot be serialized", e);
+          oos.writeObject(object);
         } finally {
           oos.close();
         }
       } catch(IOException e) {
-        // ignore
+        throw new RuntimeException("Object cannot be serialized", e);
       }
-      return new ValueWrapper(input.hashCode(), baos.toByteArray());
+      return baos.toByteArray();
     }
 
     @Override
-    public T decode(Object input) {
-      if (input == null) {
-        return null;
-      }
-      ValueWrapper data = (ValueWrapper) input;
-      ByteArrayInputStream bais = new ByteArrayInputStream(data.getValue());
+    public T deserialize(byte[] bytes) {
       try {
-        ObjectInputStream ois = new ObjectInputStream(bais);
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
         try {
           return (T) ois.readObject();
         } catch (ClassNotFoundException e) {
@@ -93,9 +139,8 @@ public class ValueCodecFactory {
           ois.close();
         }
       } catch(IOException e) {
-        // ignore
+        throw new RuntimeException("Object cannot be deserialized", e);
       }
-      throw new AssertionError("Cannot reach here!");
     }
   }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class NearCacheTest {
+
+  @Test
+  public void testFillAndHit() {
+    NearCache cache = new NearCache(1024L * 1024L);
+
+    assertThat(cache.get(1L), nullValue());
+    cache.fill(1L, cache.reserve(1L), "one");
+
+    assertThat(cache.get(1L), is((Object) "one"));
+    assertThat(cache.getHits(), is(1L));
+    assertThat(cache.getMisses(), is(1L));
+    assertThat(cache.getEntryCount(), is(1L));
+  }
+
+  @Test
+  public void testInvalidationBeforeFillIsNotOvertaken() {
+    NearCache cache = new NearCache(1024L * 1024L);
+
+    Object reservation = cache.reserve(1L);
+    cache.invalidate(1L);
+    cache.fill(1L, reservation, "stale");
+
+    assertThat(cache.get(1L), nullValue());
+    assertThat(cache.getEntryCount(), is(0L));
+  }
+
+  @Test
+  public void testOnlyTheLatestReservationFills() {
+    NearCache cache = new NearCache(1024L * 1024L);
+
+    Object first = cache.reserve(1L);
+    Object second = cache.reserve(1L);
+    cache.fill(1L, first, "first");
+    assertThat(cache.getEntryCount(), is(0L));
+
+    cache.fill(1L, second, "second");
+    assertThat(cache.get(1L), is((Object) "second"));
+  }
+
+  @Test
+  public void testReleaseOnlyDropsItsOwnReservation() {
+    NearCache cache = new NearCache(1024L * 1024L);
+
+    Object failed = cache.reserve(1L);
+    cache.release(1L, failed);
+    cache.fill(1L, failed, "failed");
+    assertThat(cache.getEntryCount(), is(0L));
+
+    Object stale = cache.reserve(2L);
+    Object latest = cache.reserve(2L);
+    cache.release(2L, stale);
+    cache.fill(2L, latest, "latest");
+    assertThat(cache.get(2L), is((Object) "latest"));
+
+    // releasing after a fill leaves the entry
+    cache.release(2L, latest);
+    assertThat(cache.get(2L), is((Object) "latest"));
+  }
+
+  @Test
+  public void testInvalidations() {
+    NearCache cache = new NearCache(1024L * 1024L);
+    for (long i = 0; i < 10; i++) {
+      cache.fill(i, cache.reserve(i), "value" + i);
+    }
+
+    cache.invalidate(0L);
+    cache.invalidate(42L);
+    assertThat(cache.getInvalidations(), is(1L));
+
+    cache.remove(1L);
+    assertThat(cache.getInvalidations(), is(1L));
+
+    cache.invalidateAll();
+    assertThat(cache.getInvalidations(), is(9L));
+    assertThat(cache.getEntryCount(), is(0L));
+    assertThat(cache.getSizeInBytes(), is(0L));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntriesAreEvicted() {
+    long entrySize = weigh(0L, "value");
+    NearCache cache = new NearCache(3 * entrySize);
+    for (long i = 0; i < 3; i++) {
+      cache.fill(i, cache.reserve(i), "value");
+    }
+    cache.get(0L);
+
+    cache.fill(3L, cache.reserve(3L), "value");
+
+    assertThat(cache.getEvictions(), is(1L));
+    assertThat(cache.get(1L), nullValue());
+    assertThat(cache.get(0L), is((Object) "value"));
+    assertThat(cache.getSizeInBytes(), lessThanOrEqualTo(3 * entrySize));
+  }
+
+  @Test
+  public void testMaxEntriesBoundsTheSmallestEntries() {
+    NearCache cache = new NearCache(4096L);
+    for (long i = 0; i < 2 * cache.getMaxEntries(); i++) {
+      cache.fill(i, cache.reserve(i), i);
+    }
+    assertThat(cache.getEntryCount(), is((long) cache.getMaxEntries()));
+    assertThat(new NearCache(1L).getMaxEntries(), is(1));
+  }
+
+  @Test
+  public void testEntriesAreWeighed() {
+    NearCache cache = new NearCache(4096L);
+
+    cache.fill(1L, cache.reserve(1L), new byte[1024]);
+    cache.fill(2L, cache.reserve(2L), new byte[1024]);
+    cache.fill(3L, cache.reserve(3L), new byte[1024]);
+    cache.fill(4L, cache.reserve(4L), new byte[1024]);
+    cache.fill(5L, cache.reserve(5L), new byte[8192]);
+
+    assertThat(cache.getEntryCount(), is(3L));
+    assertThat(cache.getEvictions(), is(1L));
+    assertThat(cache.get(5L), nullValue());
+    assertThat(cache.getSizeInBytes(), lessThanOrEqualTo(4096L));
+  }
+
+  @Test
+  public void testInvalidSize() {
+    try {
+      new NearCache(0L);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+  }
+
+  private static long weigh(Object key, Object value) {
+    NearCache cache = new NearCache(Long.MAX_VALUE);
+    cache.fill(key, cache.reserve(key), value);
+    return cache.getSizeInBytes();
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map;
+
+import org.junit.Test;
+import org.terracotta.entity.InvokeFuture;
+import org.terracotta.entity.map.common.MapResponse;
+import org.terracotta.entity.map.common.SizeResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ResponseCompleterTest {
+
+  private static final Executor EXECUTOR = ForkJoinPool.commonPool();
+
+  @Test
+  public void testCompletesOutOfOrder() throws Exception {
+    ResponseCompleter completer = new ResponseCompleter("test-completer");
+    TestFuture first = new TestFuture();
+    TestFuture second = new TestFuture();
+    CompletableFuture<MapResponse> firstCompletion = completer.complete(first, EXECUTOR);
+    CompletableFuture<MapResponse> secondCompletion = completer.complete(second, EXECUTOR);
+
+    second.response.complete(new SizeResponse(2L));
+    assertThat(((SizeResponse) secondCompletion.get(10, TimeUnit.SECONDS)).getSize(), is(2L));
+    assertThat(firstCompletion.isDone(), is(false));
+
+    first.response.complete(new SizeResponse(1L));
+    assertThat(((SizeResponse) firstCompletion.get(10, TimeUnit.SECONDS)).getSize(), is(1L));
+    completer.close();
+  }
+
+  @Test
+  public void testCompletesThroughTheExecutor() throws Exception {
+    ResponseCompleter completer = new ResponseCompleter("test-completer");
+    ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "test-executor"));
+    try {
+      TestFuture blocked = new TestFuture();
+      TestFuture other = new TestFuture();
+      CountDownLatch release = new CountDownLatch(1);
+      CompletableFuture<String> blocking = completer.complete(blocked, ForkJoinPool.commonPool()).thenApply(response -> {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        return Thread.currentThread().getName();
+      });
+      CompletableFuture<String> completing = completer.complete(other, executor).thenApply(response -> Thread.currentThread().getName());
+
+      // a blocked dependent stage must not hold the completion of other invocations
+      blocked.response.complete(new SizeResponse(1L));
+      other.response.complete(new SizeResponse(2L));
+      assertThat(completing.get(10, TimeUnit.SECONDS), is("test-executor"));
+
+      release.countDown();
+      assertThat(blocking.get(10, TimeUnit.SECONDS), not("test-completer"));
+    } finally {
+      executor.shutdown();
+      completer.close();
+    }
+  }
+
+  @Test
+  public void testFailedInvocation() throws Exception {
+    ResponseCompleter completer = new ResponseCompleter("test-completer");
+    TestFuture future = new TestFuture();
+    CompletableFuture<MapResponse> completion = completer.complete(future, EXECUTOR);
+
+    future.response.completeExceptionally(new IllegalStateException("expected"));
+    try {
+      completion.get(10, TimeUnit.SECONDS);
+      fail("Expected ExecutionException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+      assertThat(e.getCause().getCause().getMessage(), is("expected"));
+    }
+    completer.close();
+  }
+
+  @Test
+  public void testCloseFailsInFlightInvocations() throws Exception {
+    ResponseCompleter completer = new ResponseCompleter("test-completer");
+    CompletableFuture<MapResponse> inFlight = completer.complete(new TestFuture(), EXECUTOR);
+    completer.close();
+
+    assertClosed(inFlight);
+    assertClosed(completer.complete(new TestFuture(), EXECUTOR));
+  }
+
+  private static void assertClosed(CompletableFuture<MapResponse> completion) throws Exception {
+    try {
+      completion.get(10, TimeUnit.SECONDS);
+      fail("Expected ExecutionException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+    }
+  }
+
+  private static class TestFuture implements InvokeFuture<MapResponse> {
+    private final CompletableFuture<MapResponse> response = new CompletableFuture<MapResponse>();
+
+    @Override
+    public boolean isDone() {
+      return response.isDone();
+    }
+
+    @Override
+    public MapResponse get() throws InterruptedException {
+      try {
+        return response.get();
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+
+    @Override
+    public MapResponse getWithTimeout(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+      try {
+        return response.get(timeout, unit);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+
+    @Override
+    public void interrupt() {
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * An asynchronous view of a {@link ConcurrentClusteredMap}.
+ * <p>
+ * Operations are sent as soon as they are called and return without waiting for the response, so that many of them
+ * can be in flight at once. The returned futures are completed through the executor of the view, so that dependent
+ * stages that are not asynchronous run on the threads of that executor, never on the thread waiting on the responses.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public interface AsyncClusteredMap<K, V> {
+
+  CompletableFuture<V> getAsync(K key);
+
+  CompletableFuture<Boolean> containsKeyAsync(K key);
+
+  CompletableFuture<V> putAsync(K key, V value);
+
+  CompletableFuture<V> putIfAbsentAsync(K key, V value);
+
+  CompletableFuture<V> removeAsync(K key);
+
+  CompletableFuture<Boolean> removeAsync(K key, V value);
+
+  CompletableFuture<V> replaceAsync(K key, V value);
+
+  CompletableFuture<Boolean> replaceAsync(K key, V oldValue, V newValue);
+
+  /**
+   * Gets the value of a key, computing and putting it if the key is not mapped, like
+   * {@link java.util.concurrent.ConcurrentMap#computeIfAbsent(Object, Function)}. The mapping function runs on the
+   * executor of the view, and may run for a key that another client maps concurrently, in which case the value
+   * of that client wins.
+   *
+   * @param key the key
+   * @param mappingFunction the function computing the value
+   * @return the current, or computed, value of the key
+   */
+  CompletableFuture<V> computeIfAbsentAsync(K key, Function<? super K, ? extends V> mappingFunction);
+
+  /**
+   * @see ConcurrentClusteredMap#getAll(Collection)
+   */
+  CompletableFuture<Map<K, V>> getAllAsync(Collection<? extends K> keys);
+
+  CompletableFuture<Integer> sizeAsync();
+}
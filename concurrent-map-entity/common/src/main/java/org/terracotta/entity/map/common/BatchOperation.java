@@ -0,0 +1,78 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Several operations on single keys, executed in order as one message. The response is a {@link BatchResponse}
+ * holding the response of every operation.
+ */
+public class BatchOperation implements MapOperation {
+  private final List<KeyedOperation> operations;
+
+  public BatchOperation(List<KeyedOperation> operations) {
+    this.operations = operations;
+  }
+
+  public List<KeyedOperation> getOperations() {
+    return operations;
+  }
+
+  @Override
+  public Type operationType() {
+    return Type.BATCH;
+  }
+
+  @Override
+  public boolean replicate() {
+    for (KeyedOperation operation : operations) {
+      if (operation.replicate()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeInt(operations.size());
+    for (KeyedOperation operation : operations) {
+      OperationCodec.writeTo(output, operation);
+    }
+  }
+
+  static BatchOperation readFrom(DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size < 0) {
+      throw new StreamCorruptedException("Negative batch size " + size);
+    }
+    List<KeyedOperation> operations = new ArrayList<KeyedOperation>(size);
+    for (int i = 0; i < size; i++) {
+      MapOperation operation = OperationCodec.readFrom(input);
+      if (!(operation instanceof KeyedOperation)) {
+        throw new StreamCorruptedException("Unexpected operation in batch " + operation.operationType());
+      }
+      operations.add((KeyedOperation) operation);
+    }
+    return new BatchOperation(operations);
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class BatchResponse implements MapResponse {
+  private final List<MapResponse> responses;
+
+  public BatchResponse(List<MapResponse> responses) {
+    this.responses = responses;
+  }
+
+  /**
+   * @return the responses of the operations of the batch, in order
+   */
+  public List<MapResponse> getResponses() {
+    return this.responses;
+  }
+
+  @Override
+  public Type responseType() {
+    return Type.BATCH;
+  }
+
+  @Override
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeInt(this.responses.size());
+    for (MapResponse response : this.responses) {
+      ResponseCodec.writeTo(output, response);
+    }
+  }
+
+  static BatchResponse readFrom(DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size < 0) {
+      throw new StreamCorruptedException("Negative batch size " + size);
+    }
+    List<MapResponse> responses = new ArrayList<MapResponse>(size);
+    for (int i = 0; i < size; i++) {
+      responses.add(ResponseCodec.readFrom(input));
+    }
+    return new BatchResponse(responses);
+  }
+}
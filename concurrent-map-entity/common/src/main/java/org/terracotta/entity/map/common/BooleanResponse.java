@@ -38,11 +38,10 @@ public class BooleanResponse implements MapResponse {
 
   @Override
   public void writeTo(DataOutput output) throws IOException {
-    PrimitiveCodec.writeTo(output, this.isTrue);
+    output.writeBoolean(this.isTrue);
   }
 
   static BooleanResponse readFrom(DataInput input) throws IOException {
-    Boolean isTrue = (Boolean) PrimitiveCodec.readFrom(input);
-    return new BooleanResponse(isTrue.booleanValue());
+    return new BooleanResponse(input.readBoolean());
   }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The configuration of a clustered map entity.
+ * <p>
+ * The server executes the operations on different keys of the map concurrently, spreading the keys over a fixed
+ * number of segments : operations on keys of the same segment are executed in order, one at a time.
+ */
+public class ClusteredMapConfiguration {
+
+  public static final int DEFAULT_SEGMENTS = 16;
+
+  private final int segments;
+
+  /**
+   * @param segments the number of segments the keys are spread over
+   * @throws IllegalArgumentException if the number of segments is not positive
+   */
+  public ClusteredMapConfiguration(int segments) throws IllegalArgumentException {
+    if (segments <= 0) {
+      throw new IllegalArgumentException("Segment count must be positive : " + segments);
+    }
+    this.segments = segments;
+  }
+
+  public int getSegments() {
+    return segments;
+  }
+
+  /**
+   * @param key a key of the map, as sent to the server
+   * @return the concurrency key of the segment of that key, between 1 and the number of segments
+   */
+  public int segmentKey(Object key) {
+    int hash = key == null ? 0 : key.hashCode();
+    // spread the high bits, the low ones of boxed numbers and of most hash codes are poorly distributed
+    hash ^= hash >>> 16;
+    return 1 + (hash & Integer.MAX_VALUE) % segments;
+  }
+
+  public byte[] encode() {
+    return ByteBuffer.allocate(Integer.BYTES).putInt(segments).array();
+  }
+
+  /**
+   * Decodes a configuration, an empty one being the default configuration.
+   *
+   * @param bytes the encoded configuration
+   * @return the configuration
+   * @throws IllegalArgumentException if the configuration is invalid
+   */
+  public static ClusteredMapConfiguration decode(byte[] bytes) throws IllegalArgumentException {
+    if (bytes == null || bytes.length == 0) {
+      return new ClusteredMapConfiguration(DEFAULT_SEGMENTS);
+    }
+    if (bytes.length != Integer.BYTES) {
+      throw new IllegalArgumentException("Invalid clustered map configuration of " + bytes.length + " bytes");
+    }
+    return new ClusteredMapConfiguration(ByteBuffer.wrap(bytes).getInt());
+  }
+
+  @Override
+  public String toString() {
+    return "ClusteredMapConfiguration{segments=" + segments + '}';
+  }
+}
@@ -17,10 +17,13 @@ package org.terracotta.entity.map.common;
 
 import org.terracotta.connection.entity.Entity;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 public interface ConcurrentClusteredMap<K, V> extends ConcurrentMap<K, V>, Entity {
-  long VERSION = 1;
+  long VERSION = 2;
 
   /**
    * Records the key and value classes to enable optimizations.
@@ -29,4 +32,74 @@ public interface ConcurrentClusteredMap<K, V> extends ConcurrentMap<K, V>, Entit
    * @param valueClass the value class
    */
   void setTypes(Class<K> keyClass, Class<V> valueClass);
+
+  /**
+   * Records the key and value classes, along with the serializers to use for them. Boxed primitives, {@code String}s
+   * and {@code byte[]}s are always encoded natively, other types default to Java serialization.
+   *
+   * @param keyClass the key class
+   * @param valueClass the value class
+   * @param keySerializer the key serializer, {@code null} for the default one
+   * @param valueSerializer the value serializer, {@code null} for the default one
+   */
+  void setTypes(Class<K> keyClass, Class<V> valueClass, ValueSerializer<K> keySerializer, ValueSerializer<V> valueSerializer);
+
+  /**
+   * Gets the values of several keys, with one message per segment rather than one per key.
+   *
+   * @param keys the keys
+   * @return the values of the keys that are mapped
+   */
+  Map<K, V> getAll(Collection<? extends K> keys);
+
+  /**
+   * Removes several keys, with one message per segment rather than one per key.
+   *
+   * @param keys the keys
+   */
+  void removeAll(Collection<? extends K> keys);
+
+  /**
+   * Puts the entries whose key is not mapped yet, with one message per segment rather than one per key.
+   *
+   * @param entries the entries to put
+   * @return the current values of the keys that were already mapped
+   */
+  Map<K, V> putAllIfAbsent(Map<? extends K, ? extends V> entries);
+
+  /**
+   * @return a new, empty, batch of operations on this map
+   */
+  MapBatch<K, V> batch();
+
+  /**
+   * @return the asynchronous view of this map, completing its futures through the
+   * {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}
+   */
+  AsyncClusteredMap<K, V> async();
+
+  /**
+   * @param executor the executor completing the futures of the view, and running their dependent stages that are
+   *                 not asynchronous
+   * @return an asynchronous view of this map
+   */
+  AsyncClusteredMap<K, V> async(Executor executor);
+
+  /**
+   * Enables a near cache of the values read by this client. The server invalidates the entries of the near cache when
+   * their key is mutated by another client, so that reads never see a value older than the last mutation notified
+   * to this client. Must be called after {@link #setTypes(Class, Class)}, and before the map is used by other threads.
+   * Values read from the near cache are shared between the reads, and must not be mutated.
+   *
+   * @param maxSizeInBytes the maximum estimated size of the near cache, least recently used entries are evicted first
+   * @throws IllegalArgumentException if the size is not positive
+   * @throws IllegalStateException if the near cache is already enabled
+   */
+  void enableNearCache(long maxSizeInBytes) throws IllegalArgumentException, IllegalStateException;
+
+  /**
+   * @return the statistics of the near cache
+   * @throws IllegalStateException if the near cache is not enabled
+   */
+  NearCacheStatistics getNearCacheStatistics() throws IllegalStateException;
 }
@@ -19,7 +19,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
-public class ContainsKeyOperation implements MapOperation {
+public class ContainsKeyOperation implements KeyedOperation {
   private final Object key;
 
   public ContainsKeyOperation(Object key) {
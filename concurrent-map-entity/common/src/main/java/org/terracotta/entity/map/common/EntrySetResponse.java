@@ -18,6 +18,8 @@ package org.terracotta.entity.map.common;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -40,11 +42,20 @@ public class EntrySetResponse implements MapResponse {
 
   @Override
   public void writeTo(DataOutput output) throws IOException {
-    PrimitiveCodec.writeTo(output, this.entrySet);
+    output.writeInt(this.entrySet.size());
+    for (Map.Entry<Object, Object> entry : this.entrySet) {
+      PrimitiveCodec.writeTo(output, entry.getKey());
+      PrimitiveCodec.writeTo(output, entry.getValue());
+    }
   }
 
-  @SuppressWarnings("unchecked")
   static EntrySetResponse readFrom(DataInput input) throws IOException {
-    return new EntrySetResponse((Set<Map.Entry<Object, Object>>) PrimitiveCodec.readFrom(input));
+    int size = input.readInt();
+    Set<Map.Entry<Object, Object>> entrySet = new HashSet<Map.Entry<Object, Object>>();
+    for (int i = 0; i < size; i++) {
+      Object key = PrimitiveCodec.readFrom(input);
+      entrySet.add(new AbstractMap.SimpleEntry<Object, Object>(key, PrimitiveCodec.readFrom(input)));
+    }
+    return new EntrySetResponse(entrySet);
   }
 }
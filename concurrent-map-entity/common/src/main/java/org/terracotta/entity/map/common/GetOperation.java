@@ -19,7 +19,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
-public class GetOperation implements MapOperation {
+public class GetOperation implements KeyedOperation {
   private final Object key;
 
   public GetOperation(Object key) {
@@ -0,0 +1,39 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Sent by the server to the clients holding a near cache, when the map is cleared.
+ */
+public class InvalidateAllResponse implements MapResponse {
+
+  @Override
+  public Type responseType() {
+    return Type.INVALIDATE_ALL;
+  }
+
+  @Override
+  public void writeTo(DataOutput output) throws IOException {
+  }
+
+  static InvalidateAllResponse readFrom(DataInput input) throws IOException {
+    return new InvalidateAllResponse();
+  }
+}
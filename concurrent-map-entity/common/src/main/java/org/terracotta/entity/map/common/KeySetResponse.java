@@ -18,6 +18,7 @@ package org.terracotta.entity.map.common;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.Set;
 
 
@@ -39,11 +40,10 @@ public class KeySetResponse implements MapResponse {
 
   @Override
   public void writeTo(DataOutput output) throws IOException {
-    PrimitiveCodec.writeTo(output, this.keySet);
+    PrimitiveCodec.writeCollection(output, this.keySet);
   }
 
-  @SuppressWarnings("unchecked")
   static KeySetResponse readFrom(DataInput input) throws IOException {
-    return new KeySetResponse((Set<Object>) PrimitiveCodec.readFrom(input));
+    return new KeySetResponse(PrimitiveCodec.readCollection(input, new HashSet<Object>()));
   }
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.util.List;
+
+/**
+ * Operations on a {@link ConcurrentClusteredMap} grouped to be sent together.
+ * <p>
+ * The operations are grouped by the segment of their key : the operations on every segment are sent as a single
+ * message, and all messages are sent before waiting for any response. Operations on the keys of a segment are
+ * executed in the order they were added, while operations on different segments run concurrently. A batch is not
+ * atomic : other clients may observe the effect of some of its operations before the others.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public interface MapBatch<K, V> {
+
+  /**
+   * Adds a {@link ConcurrentClusteredMap#get(Object)}, whose result is the value of the key.
+   */
+  MapBatch<K, V> get(K key);
+
+  /**
+   * Adds a {@link ConcurrentClusteredMap#containsKey(Object)}, whose result is a {@code Boolean}.
+   */
+  MapBatch<K, V> containsKey(K key);
+
+  /**
+   * Adds a {@link ConcurrentClusteredMap#put(Object, Object)}, whose result is the previous value of the key.
+   */
+  MapBatch<K, V> put(K key, V value);
+
+  /**
+   * Adds a {@link ConcurrentClusteredMap#putIfAbsent(Object, Object)}, whose result is the current value of the key.
+   */
+  MapBatch<K, V> putIfAbsent(K key, V value);
+
+  /**
+   * Adds a {@link ConcurrentClusteredMap#replace(Object, Object)}, whose result is the previous value of the key.
+   */
+  MapBatch<K, V> replace(K key, V value);
+
+  /**
+   * Adds a {@link ConcurrentClusteredMap#remove(Object)}, whose result is the previous value of the key.
+   */
+  MapBatch<K, V> remove(K key);
+
+  /**
+   * @return the number of operations in the batch
+   */
+  int size();
+
+  /**
+   * Executes the operations of the batch. The batch can not be used afterwards.
+   *
+   * @return the results of the operations, in the order they were added
+   * @throws IllegalStateException if the batch was already executed
+   */
+  List<Object> execute() throws IllegalStateException;
+}
@@ -62,7 +62,12 @@ public interface MapOperation extends EntityMessage {
     PUT_IF_ABSENT,
     PUT_IF_PRESENT,
     CONDITIONAL_REMOVE,
-    CONDITIONAL_REPLACE;
+    CONDITIONAL_REPLACE,
+    BATCH,
+    REGISTER_NEAR_CACHE {
+      @Override
+      public boolean replicate() { return false; }
+    };
 
     public boolean replicate() {
       return true;
@@ -71,5 +76,12 @@ public interface MapOperation extends EntityMessage {
 
   Type operationType();
 
+  /**
+   * @return whether the operation has to be replicated to the passives
+   */
+  default boolean replicate() {
+    return operationType().replicate();
+  }
+
   void writeTo(DataOutput output) throws IOException;
 }
@@ -32,6 +32,10 @@ public interface MapResponse extends EntityResponse {
     KEY_SET,
     VALUE_COLLECTION,
     ENTRY_SET,
+    BATCH,
+    // Messages pushed to the clients holding a near cache.
+    INVALIDATION,
+    INVALIDATE_ALL,
   }
 
   Type responseType();
@@ -0,0 +1,52 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+/**
+ * The statistics of the near cache of a {@link ConcurrentClusteredMap}.
+ */
+public interface NearCacheStatistics {
+
+  /**
+   * @return the number of reads answered from the near cache
+   */
+  long getHits();
+
+  /**
+   * @return the number of reads that went to the server
+   */
+  long getMisses();
+
+  /**
+   * @return the number of entries dropped because the server invalidated them
+   */
+  long getInvalidations();
+
+  /**
+   * @return the number of entries evicted to keep the near cache within its size
+   */
+  long getEvictions();
+
+  /**
+   * @return the number of entries in the near cache
+   */
+  long getEntryCount();
+
+  /**
+   * @return the estimated size of the entries in the near cache, in bytes
+   */
+  long getSizeInBytes();
+}
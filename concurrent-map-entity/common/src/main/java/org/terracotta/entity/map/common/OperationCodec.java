@@ -17,14 +17,19 @@ package org.terracotta.entity.map.common;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 
 
 class OperationCodec {
   public static MapOperation decode(byte[] bytes) throws IOException {
-    ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+    return readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+  }
+
+  static MapOperation readFrom(DataInput input) throws IOException {
     byte type = input.readByte();
 
     switch (MapOperation.Type.values()[type]) {
@@ -58,6 +63,10 @@ class OperationCodec {
         return ConditionalRemoveOperation.readFrom(input);
       case CONDITIONAL_REPLACE:
         return ConditionalReplaceOperation.readFrom(input);
+      case BATCH:
+        return BatchOperation.readFrom(input);
+      case REGISTER_NEAR_CACHE:
+        return RegisterNearCacheOperation.readFrom(input);
       default:
         throw new IllegalArgumentException("Unknown map operation type " + type);
     }
@@ -65,12 +74,16 @@ class OperationCodec {
 
   public static byte[] encode(MapOperation operation) throws IOException {
     ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-    ObjectOutputStream output = new ObjectOutputStream(byteOut);
+    DataOutputStream output = new DataOutputStream(byteOut);
 
-    output.writeByte(operation.operationType().ordinal());
-    operation.writeTo(output);
+    writeTo(output, operation);
 
     output.close();
     return byteOut.toByteArray();
   }
+
+  static void writeTo(DataOutput output, MapOperation operation) throws IOException {
+    output.writeByte(operation.operationType().ordinal());
+    operation.writeTo(output);
+  }
 }
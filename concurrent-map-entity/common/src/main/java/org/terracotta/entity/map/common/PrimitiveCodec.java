@@ -18,35 +18,212 @@ package org.terracotta.entity.map.common;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
 
+/**
+ * Encodes the keys and values of the map in a compact binary form.
+ * <p>
+ * Every value is written as a one byte tag followed by its content. Boxed primitives, {@code String}s,
+ * {@code byte[]}s and {@link ValueWrapper}s have native encodings, anything else falls back to Java serialization.
+ */
 public class PrimitiveCodec {
 
+  private static final byte NULL = 0;
+  private static final byte BOOLEAN = 1;
+  private static final byte BYTE = 2;
+  private static final byte SHORT = 3;
+  private static final byte CHAR = 4;
+  private static final byte INT = 5;
+  private static final byte LONG = 6;
+  private static final byte FLOAT = 7;
+  private static final byte DOUBLE = 8;
+  private static final byte STRING = 9;
+  private static final byte BYTES = 10;
+  private static final byte WRAPPED = 11;
+  private static final byte SERIALIZED = 12;
+
   public static byte[] encode(Object o) throws IOException {
     ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-    ObjectOutputStream output = new ObjectOutputStream(bytes);
+    DataOutputStream output = new DataOutputStream(bytes);
     writeTo(output, o);
     output.close();
     return bytes.toByteArray();
   }
 
   public static Object decode(byte[] bytes) throws IOException {
-    ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
-    return readFrom(input);
+    return readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+  }
+
+  public static Object readFrom(DataInput input) throws IOException {
+    byte tag = input.readByte();
+    switch (tag) {
+      case NULL:
+        return null;
+      case BOOLEAN:
+        return input.readBoolean();
+      case BYTE:
+        return input.readByte();
+      case SHORT:
+        return input.readShort();
+      case CHAR:
+        return input.readChar();
+      case INT:
+        return input.readInt();
+      case LONG:
+        return input.readLong();
+      case FLOAT:
+        return input.readFloat();
+      case DOUBLE:
+        return input.readDouble();
+      case STRING:
+        return new String(readBytes(input), StandardCharsets.UTF_8);
+      case BYTES:
+        return readBytes(input);
+      case WRAPPED: {
+        int hashCode = input.readInt();
+        return new ValueWrapper(hashCode, readBytes(input));
+      }
+      case SERIALIZED:
+        return deserialize(readBytes(input));
+      default:
+        throw new StreamCorruptedException("Unknown value tag " + tag);
+    }
+  }
+
+  public static void writeTo(DataOutput output, Object o) throws IOException {
+    if (o == null) {
+      output.writeByte(NULL);
+    } else if (o instanceof Boolean) {
+      output.writeByte(BOOLEAN);
+      output.writeBoolean((Boolean) o);
+    } else if (o instanceof Byte) {
+      output.writeByte(BYTE);
+      output.writeByte((Byte) o);
+    } else if (o instanceof Short) {
+      output.writeByte(SHORT);
+      output.writeShort((Short) o);
+    } else if (o instanceof Character) {
+      output.writeByte(CHAR);
+      output.writeChar((Character) o);
+    } else if (o instanceof Integer) {
+      output.writeByte(INT);
+      output.writeInt((Integer) o);
+    } else if (o instanceof Long) {
+      output.writeByte(LONG);
+      output.writeLong((Long) o);
+    } else if (o instanceof Float) {
+      output.writeByte(FLOAT);
+      output.writeFloat((Float) o);
+    } else if (o instanceof Double) {
+      output.writeByte(DOUBLE);
+      output.writeDouble((Double) o);
+    } else if (o instanceof String) {
+      output.writeByte(STRING);
+      writeBytes(output, ((String) o).getBytes(StandardCharsets.UTF_8));
+    } else if (o instanceof byte[]) {
+      output.writeByte(BYTES);
+      writeBytes(output, (byte[]) o);
+    } else if (o instanceof ValueWrapper) {
+      ValueWrapper wrapper = (ValueWrapper) o;
+      output.writeByte(WRAPPED);
+      output.writeInt(wrapper.hashCode());
+      writeBytes(output, wrapper.getValue());
+    } else {
+      output.writeByte(SERIALIZED);
+      writeBytes(output, serialize(o));
+    }
+  }
+
+  /**
+   * Writes the entries of a map, as their count followed by every key and value.
+   */
+  public static void writeMap(DataOutput output, Map<?, ?> map) throws IOException {
+    output.writeInt(map.size());
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      writeTo(output, entry.getKey());
+      writeTo(output, entry.getValue());
+    }
+  }
+
+  /**
+   * Reads entries written by {@link #writeMap(DataOutput, Map)} into a map.
+   *
+   * @return the given map
+   */
+  public static <M extends Map<Object, Object>> M readMap(DataInput input, M map) throws IOException {
+    int size = readCount(input);
+    for (int i = 0; i < size; i++) {
+      Object key = readFrom(input);
+      map.put(key, readFrom(input));
+    }
+    return map;
+  }
+
+  /**
+   * Writes the elements of a collection, as their count followed by every element.
+   */
+  public static void writeCollection(DataOutput output, Collection<?> collection) throws IOException {
+    output.writeInt(collection.size());
+    for (Object element : collection) {
+      writeTo(output, element);
+    }
   }
 
-  public static Object readFrom(DataInput inputStream) throws IOException {
+  /**
+   * Reads elements written by {@link #writeCollection(DataOutput, Collection)} into a collection.
+   *
+   * @return the given collection
+   */
+  public static <C extends Collection<Object>> C readCollection(DataInput input, C collection) throws IOException {
+    int size = readCount(input);
+    for (int i = 0; i < size; i++) {
+      collection.add(readFrom(input));
+    }
+    return collection;
+  }
+
+  private static void writeBytes(DataOutput output, byte[] bytes) throws IOException {
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput input) throws IOException {
+    byte[] bytes = new byte[readCount(input)];
+    input.readFully(bytes);
+    return bytes;
+  }
+
+  private static int readCount(DataInput input) throws IOException {
+    int count = input.readInt();
+    if (count < 0) {
+      throw new StreamCorruptedException("Negative length " + count);
+    }
+    return count;
+  }
+
+  private static byte[] serialize(Object o) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream output = new ObjectOutputStream(bytes);
+    output.writeObject(o);
+    output.close();
+    return bytes.toByteArray();
+  }
+
+  private static Object deserialize(byte[] bytes) throws IOException {
+    ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
     try {
-      return ((ObjectInputStream) inputStream).readObject();
+      return input.readObject();
     } catch (ClassNotFoundException e) {
       throw new RuntimeException(e);
     }
   }
-
-  public static void writeTo(DataOutput os, Object o) throws IOException {
-    ((ObjectOutputStream) os).writeObject(o);
-  }
 }
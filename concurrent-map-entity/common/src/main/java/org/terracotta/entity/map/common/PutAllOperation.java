@@ -18,6 +18,7 @@ package org.terracotta.entity.map.common;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 
 public class PutAllOperation implements MapOperation {
@@ -38,10 +39,10 @@ public class PutAllOperation implements MapOperation {
 
   @Override
   public void writeTo(DataOutput output) throws IOException {
-    PrimitiveCodec.writeTo(output, map);
+    PrimitiveCodec.writeMap(output, map);
   }
 
   static PutAllOperation readFrom(DataInput input) throws IOException {
-    return new PutAllOperation((Map<Object, Object>) PrimitiveCodec.readFrom(input));
+    return new PutAllOperation(PrimitiveCodec.readMap(input, new HashMap<Object, Object>()));
   }
 }
@@ -19,7 +19,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
-public class PutIfAbsentOperation implements MapOperation {
+public class PutIfAbsentOperation implements KeyedOperation {
   private final Object key;
   private final Object value;
 
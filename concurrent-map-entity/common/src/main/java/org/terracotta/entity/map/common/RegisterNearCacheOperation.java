@@ -0,0 +1,82 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Registers the sending client as holding a near cache, so that the server invalidates the keys it reads from then
+ * on. Registrations are not replicated : after a fail-over, clients register again through their reconnect data.
+ * <p>
+ * The server tracks at most {@link #getMaxKeys()} keys for the client, the number of entries its near cache can hold
+ * : past that number, the least recently read keys are invalidated, and stop being tracked.
+ */
+public class RegisterNearCacheOperation implements MapOperation {
+
+  private static final byte NEAR_CACHING = 1;
+
+  private final int maxKeys;
+
+  /**
+   * @param maxKeys the maximum number of keys held in the near cache
+   * @throws IllegalArgumentException if the number of keys is not positive
+   */
+  public RegisterNearCacheOperation(int maxKeys) throws IllegalArgumentException {
+    if (maxKeys <= 0) {
+      throw new IllegalArgumentException("Near cache key count must be positive : " + maxKeys);
+    }
+    this.maxKeys = maxKeys;
+  }
+
+  public int getMaxKeys() {
+    return maxKeys;
+  }
+
+  @Override
+  public Type operationType() {
+    return Type.REGISTER_NEAR_CACHE;
+  }
+
+  @Override
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeInt(maxKeys);
+  }
+
+  static RegisterNearCacheOperation readFrom(DataInput input) throws IOException {
+    return new RegisterNearCacheOperation(input.readInt());
+  }
+
+  /**
+   * @return the reconnect data of a client holding a near cache, registering it again
+   */
+  public byte[] reconnectData() {
+    return ByteBuffer.allocate(1 + Integer.BYTES).put(NEAR_CACHING).putInt(maxKeys).array();
+  }
+
+  /**
+   * @param reconnectData the reconnect data of a client
+   * @return the registration of that client, or {@code null} if it does not hold a near cache
+   */
+  public static RegisterNearCacheOperation fromReconnectData(byte[] reconnectData) {
+    if (reconnectData == null || reconnectData.length != 1 + Integer.BYTES || reconnectData[0] != NEAR_CACHING) {
+      return null;
+    }
+    return new RegisterNearCacheOperation(ByteBuffer.wrap(reconnectData, 1, Integer.BYTES).getInt());
+  }
+}
@@ -17,14 +17,19 @@ package org.terracotta.entity.map.common;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 
 
 class ResponseCodec {
   public static MapResponse decode(byte[] bytes) throws IOException {
-    ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes));
+    return readFrom(new DataInputStream(new ByteArrayInputStream(bytes)));
+  }
+
+  static MapResponse readFrom(DataInput input) throws IOException {
     byte type = input.readByte();
 
     switch (MapResponse.Type.values()[type]) {
@@ -42,6 +47,12 @@ class ResponseCodec {
         return ValueCollectionResponse.readFrom(input);
       case ENTRY_SET:
         return EntrySetResponse.readFrom(input);
+      case BATCH:
+        return BatchResponse.readFrom(input);
+      case INVALIDATION:
+        return InvalidationResponse.readFrom(input);
+      case INVALIDATE_ALL:
+        return InvalidateAllResponse.readFrom(input);
       default:
         throw new IllegalArgumentException("Unknown map response type " + type);
     }
@@ -49,12 +60,16 @@ class ResponseCodec {
 
   public static byte[] encode(MapResponse response) throws IOException {
     ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-    ObjectOutputStream output = new ObjectOutputStream(byteOut);
+    DataOutputStream output = new DataOutputStream(byteOut);
 
-    output.writeByte(response.responseType().ordinal());
-    response.writeTo(output);
+    writeTo(output, response);
 
     output.close();
     return byteOut.toByteArray();
   }
+
+  static void writeTo(DataOutput output, MapResponse response) throws IOException {
+    output.writeByte(response.responseType().ordinal());
+    response.writeTo(output);
+  }
 }
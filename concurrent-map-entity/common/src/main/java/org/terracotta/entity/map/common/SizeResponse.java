@@ -38,11 +38,10 @@ public class SizeResponse implements MapResponse {
 
   @Override
   public void writeTo(DataOutput output) throws IOException {
-    PrimitiveCodec.writeTo(output, this.size);
+    output.writeLong(this.size);
   }
 
   static SizeResponse readFrom(DataInput input) throws IOException {
-    Long size = (Long) PrimitiveCodec.readFrom(input);
-    return new SizeResponse(size.longValue());
+    return new SizeResponse(input.readLong());
   }
 }
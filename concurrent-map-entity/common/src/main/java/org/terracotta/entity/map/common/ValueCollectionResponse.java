@@ -18,6 +18,7 @@ package org.terracotta.entity.map.common;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 
 
@@ -39,11 +40,10 @@ public class ValueCollectionResponse implements MapResponse {
 
   @Override
   public void writeTo(DataOutput output) throws IOException {
-    PrimitiveCodec.writeTo(output, this.values);
+    PrimitiveCodec.writeCollection(output, this.values);
   }
 
-  @SuppressWarnings("unchecked")
   static ValueCollectionResponse readFrom(DataInput input) throws IOException {
-    return new ValueCollectionResponse((Collection<Object>) PrimitiveCodec.readFrom(input));
+    return new ValueCollectionResponse(PrimitiveCodec.readCollection(input, new ArrayList<Object>()));
   }
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+/**
+ * Turns the keys or values of a {@link ConcurrentClusteredMap} into bytes, for the types that have no native
+ * encoding.
+ * <p>
+ * The server compares keys and values by their serialized form : equal objects must serialize to equal bytes.
+ *
+ * @param <T> the type of the serialized objects
+ */
+public interface ValueSerializer<T> {
+
+  byte[] serialize(T object);
+
+  T deserialize(byte[] bytes);
+}
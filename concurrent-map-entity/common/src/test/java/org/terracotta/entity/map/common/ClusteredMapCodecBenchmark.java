@@ -0,0 +1,131 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the binary codec of the map messages with the Java serialization of the same content, which is what the
+ * codec used to do, for the most common messages.
+ * <pre>
+ *   java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main ClusteredMapCodecBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusteredMapCodecBenchmark {
+
+  @Param({"GET", "PUT", "PUT_ALL", "MAP_VALUE_RESPONSE", "KEY_SET_RESPONSE"})
+  public String message;
+
+  private final ClusteredMapCodec codec = new ClusteredMapCodec();
+
+  private MapOperation operation;
+  private MapResponse response;
+  private Object[] fields;
+  private byte[] encoded;
+  private byte[] serialized;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Map<Object, Object> entries = new HashMap<Object, Object>();
+    Set<Object> keys = new HashSet<Object>();
+    for (long i = 0; i < 100; i++) {
+      entries.put(i, "value-" + i);
+      keys.add(i);
+    }
+
+    if ("GET".equals(message)) {
+      operation = new GetOperation(42L);
+      fields = new Object[] {42L};
+    } else if ("PUT".equals(message)) {
+      operation = new PutOperation(42L, "value-42");
+      fields = new Object[] {42L, "value-42"};
+    } else if ("PUT_ALL".equals(message)) {
+      operation = new PutAllOperation(entries);
+      fields = new Object[] {entries};
+    } else if ("MAP_VALUE_RESPONSE".equals(message)) {
+      response = new MapValueResponse("value-42");
+      fields = new Object[] {"value-42"};
+    } else if ("KEY_SET_RESPONSE".equals(message)) {
+      response = new KeySetResponse(keys);
+      fields = new Object[] {keys};
+    } else {
+      throw new IllegalArgumentException(message);
+    }
+    encoded = encodeBinary();
+    serialized = encodeJavaSerialization();
+  }
+
+  @Benchmark
+  public byte[] encodeBinary() throws Exception {
+    return operation != null ? codec.encodeMessage(operation) : codec.encodeResponse(response);
+  }
+
+  @Benchmark
+  public Object decodeBinary() throws Exception {
+    return operation != null ? codec.decodeMessage(encoded) : codec.decodeResponse(encoded);
+  }
+
+  @Benchmark
+  public byte[] encodeJavaSerialization() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream output = new ObjectOutputStream(bytes);
+    output.writeByte(0);
+    for (Object field : fields) {
+      output.writeObject(field);
+    }
+    output.close();
+    return bytes.toByteArray();
+  }
+
+  @Benchmark
+  public Object[] decodeJavaSerialization() throws IOException, ClassNotFoundException {
+    ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(serialized));
+    input.readByte();
+    Object[] read = new Object[fields.length];
+    for (int i = 0; i < read.length; i++) {
+      read[i] = input.readObject();
+    }
+    return read;
+  }
+}
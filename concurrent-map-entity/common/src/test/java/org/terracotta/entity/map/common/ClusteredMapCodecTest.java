@@ -0,0 +1,157 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.common;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ClusteredMapCodecTest {
+
+  private final ClusteredMapCodec codec = new ClusteredMapCodec();
+
+  @Test
+  public void testNativeValues() throws Exception {
+    for (Object value : Arrays.asList(null, true, (byte) 1, (short) 2, 'c', 3, 4L, 5.0f, 6.0, "\u00e9t\u00e9 \ud83d\ude00", "",
+        new ValueWrapper(42, new byte[] {1, 2, 3}))) {
+      assertThat(PrimitiveCodec.decode(PrimitiveCodec.encode(value)), is(value));
+    }
+    assertThat((byte[]) PrimitiveCodec.decode(PrimitiveCodec.encode(new byte[] {4, 5})), is(new byte[] {4, 5}));
+  }
+
+  @Test
+  public void testSerializableFallback() throws Exception {
+    Point point = new Point(1, 2);
+    assertThat(PrimitiveCodec.decode(PrimitiveCodec.encode(point)), is((Object) point));
+  }
+
+  @Test
+  public void testNativeValuesAreCompact() throws Exception {
+    assertThat(PrimitiveCodec.encode(42L).length, is(9));
+    assertThat(PrimitiveCodec.encode("abc").length, is(8));
+  }
+
+  @Test
+  public void testKeyedOperations() throws Exception {
+    PutOperation put = (PutOperation) codec.decodeMessage(codec.encodeMessage(new PutOperation(1L, "one")));
+    assertThat(put.getKey(), is((Object) 1L));
+    assertThat(put.getValue(), is((Object) "one"));
+
+    GetOperation get = (GetOperation) codec.decodeMessage(codec.encodeMessage(new GetOperation("key")));
+    assertThat(get.getKey(), is((Object) "key"));
+
+    ConditionalReplaceOperation replace = (ConditionalReplaceOperation) codec.decodeMessage(codec.encodeMessage(new ConditionalReplaceOperation(1, null, 3)));
+    assertThat(replace.getKey(), is((Object) 1));
+    assertThat(replace.getOldValue(), nullValue());
+    assertThat(replace.getNewValue(), is((Object) 3));
+  }
+
+  @Test
+  public void testPutAll() throws Exception {
+    Map<Object, Object> map = new HashMap<Object, Object>();
+    map.put(1L, "one");
+    map.put(2L, null);
+
+    PutAllOperation putAll = (PutAllOperation) codec.decodeMessage(codec.encodeMessage(new PutAllOperation(map)));
+
+    assertThat(putAll.getMap(), is((Object) map));
+  }
+
+  @Test
+  public void testResponses() throws Exception {
+    assertThat(((MapValueResponse) codec.decodeResponse(codec.encodeResponse(new MapValueResponse("value")))).getValue(), is((Object) "value"));
+    assertThat(((SizeResponse) codec.decodeResponse(codec.encodeResponse(new SizeResponse(12L)))).getSize(), is(12L));
+    assertThat(((BooleanResponse) codec.decodeResponse(codec.encodeResponse(new BooleanResponse(true)))).isTrue(), is(true));
+    assertThat(codec.decodeResponse(codec.encodeResponse(new NullResponse())).responseType(), is(MapResponse.Type.NULL));
+
+    Set<Object> keys = new HashSet<Object>(Arrays.<Object>asList(1L, 2L, 3L));
+    assertThat(((KeySetResponse) codec.decodeResponse(codec.encodeResponse(new KeySetResponse(keys)))).getKeySet(), is(keys));
+
+    ValueCollectionResponse values = (ValueCollectionResponse) codec.decodeResponse(codec.encodeResponse(new ValueCollectionResponse(Arrays.<Object>asList("a", "b", "a"))));
+    assertThat(values.getValues(), is((Object) Arrays.asList("a", "b", "a")));
+
+    Set<Map.Entry<Object, Object>> entries = new HashSet<Map.Entry<Object, Object>>();
+    entries.add(new AbstractMap.SimpleEntry<Object, Object>(1L, "one"));
+    entries.add(new AbstractMap.SimpleEntry<Object, Object>(2L, "two"));
+    assertThat(((EntrySetResponse) codec.decodeResponse(codec.encodeResponse(new EntrySetResponse(entries)))).getEntrySet(), is(entries));
+  }
+
+  @Test
+  public void testBatch() throws Exception {
+    List<KeyedOperation> operations = Arrays.<KeyedOperation>asList(new GetOperation(1L), new PutOperation(2L, "two"), new RemoveOperation(3L));
+
+    BatchOperation batch = (BatchOperation) codec.decodeMessage(codec.encodeMessage(new BatchOperation(operations)));
+
+    assertThat(batch.getOperations().size(), is(3));
+    assertThat(batch.getOperations().get(1).operationType(), is(MapOperation.Type.PUT));
+    assertThat(((PutOperation) batch.getOperations().get(1)).getValue(), is((Object) "two"));
+    assertThat(batch.replicate(), is(true));
+    assertThat(new BatchOperation(Arrays.<KeyedOperation>asList(new GetOperation(1L))).replicate(), is(false));
+
+    BatchResponse response = (BatchResponse) codec.decodeResponse(codec.encodeResponse(
+        new BatchResponse(Arrays.<MapResponse>asList(new MapValueResponse("one"), new BooleanResponse(true)))));
+
+    assertThat(((MapValueResponse) response.getResponses().get(0)).getValue(), is((Object) "one"));
+    assertThat(((BooleanResponse) response.getResponses().get(1)).isTrue(), is(true));
+  }
+
+  @Test
+  public void testNearCacheMessages() throws Exception {
+    MapOperation register = codec.decodeMessage(codec.encodeMessage(new RegisterNearCacheOperation(42)));
+    assertThat(register.operationType(), is(MapOperation.Type.REGISTER_NEAR_CACHE));
+    assertThat(register.replicate(), is(false));
+    assertThat(((RegisterNearCacheOperation) register).getMaxKeys(), is(42));
+    assertThat(RegisterNearCacheOperation.fromReconnectData(new RegisterNearCacheOperation(42).reconnectData()).getMaxKeys(), is(42));
+    assertThat(RegisterNearCacheOperation.fromReconnectData(new byte[0]), nullValue());
+
+    Set<Object> keys = new HashSet<Object>(Arrays.<Object>asList(1L, "two"));
+    assertThat(((InvalidationResponse) codec.decodeResponse(codec.encodeResponse(new InvalidationResponse(keys)))).getKeys(), is(keys));
+    assertThat(codec.decodeResponse(codec.encodeResponse(new InvalidateAllResponse())).responseType(), is(MapResponse.Type.INVALIDATE_ALL));
+  }
+
+  static class Point implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final int x;
+    final int y;
+
+    Point(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Point && ((Point) o).x == x && ((Point) o).y == y;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * x + y;
+    }
+  }
+}
@@ -20,7 +20,11 @@ import org.terracotta.connection.Connection;
 import org.terracotta.connection.ConnectionFactory;
 import org.terracotta.connection.entity.EntityRef;
 import org.terracotta.entity.map.TerracottaClusteredMapClientService;
+import org.terracotta.entity.map.common.AsyncClusteredMap;
+import org.terracotta.entity.map.common.ClusteredMapConfiguration;
 import org.terracotta.entity.map.common.ConcurrentClusteredMap;
+import org.terracotta.entity.map.common.NearCacheStatistics;
+import org.terracotta.entity.map.common.ValueSerializer;
 import org.terracotta.entity.map.server.TerracottaClusteredMapService;
 import org.terracotta.passthrough.PassthroughClusterControl;
 import org.terracotta.passthrough.PassthroughConnection;
@@ -30,12 +34,23 @@ import org.terracotta.passthrough.PassthroughTestHelpers;
 
 import java.io.Serializable;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * ClusteredConcurrentMapPassthroughTest
@@ -144,6 +159,180 @@ public class ClusteredConcurrentMapPassthroughTest {
     map.close();
   }
 
+  @Test
+  public void testSegmentedMap() throws Exception {
+    Connection connection = ConnectionFactory.connect(URI.create(CLUSTER_URI), new Properties());
+    EntityRef<ConcurrentClusteredMap, ClusteredMapConfiguration, Object> entityRef = connection.getEntityRef(ConcurrentClusteredMap.class, ConcurrentClusteredMap.VERSION, "segmented-map");
+    entityRef.create(new ClusteredMapConfiguration(4));
+    ConcurrentClusteredMap<Long, String> map = entityRef.fetchEntity(null);
+    map.setTypes(Long.class, String.class);
+
+    for (long i = 0; i < 100; i++) {
+      map.put(i, Long.toString(i));
+    }
+    assertThat(map.size(), is(100));
+    assertThat(map.get(42L), is("42"));
+    assertThat(map.keySet().size(), is(100));
+
+    map.clear();
+    assertThat(map.isEmpty(), is(true));
+    map.close();
+  }
+
+  @Test
+  public void testByteArrayValues() throws Exception {
+    Connection connection = ConnectionFactory.connect(URI.create(CLUSTER_URI), new Properties());
+    EntityRef<ConcurrentClusteredMap, Object, Object> entityRef = connection.getEntityRef(ConcurrentClusteredMap.class, ConcurrentClusteredMap.VERSION, "bytes-map");
+    entityRef.create(null);
+    ConcurrentClusteredMap<byte[], byte[]> map = entityRef.fetchEntity(null);
+    map.setTypes(byte[].class, byte[].class);
+
+    map.put(new byte[] {1, 2}, new byte[] {3, 4});
+
+    assertThat(map.get(new byte[] {1, 2}), is(new byte[] {3, 4}));
+    assertThat(map.remove(new byte[] {1, 2}, new byte[] {3, 4}), is(true));
+    map.close();
+  }
+
+  @Test
+  public void testWithCustomSerializer() throws Exception {
+    Connection connection = ConnectionFactory.connect(URI.create(CLUSTER_URI), new Properties());
+    EntityRef<ConcurrentClusteredMap, Object, Object> entityRef = connection.getEntityRef(ConcurrentClusteredMap.class, ConcurrentClusteredMap.VERSION, "serializer-map");
+    entityRef.create(null);
+    ConcurrentClusteredMap<Long, Person> map = entityRef.fetchEntity(null);
+    map.setTypes(Long.class, Person.class, null, new PersonSerializer());
+
+    map.put(33L, new Person("Iron Man", 33));
+
+    Person person = map.get(33L);
+    assertThat(person.name, is("Iron Man"));
+    assertThat(person.age, is(33));
+    map.close();
+  }
+
+  @Test
+  public void testBulkOperations() throws Exception {
+    Map<Long, String> entries = new HashMap<Long, String>();
+    for (long i = 0; i < 100; i++) {
+      entries.put(i, Long.toString(i));
+    }
+    clusteredMap.put(0L, "zero");
+
+    Map<Long, String> existing = clusteredMap.putAllIfAbsent(entries);
+    assertThat(existing.size(), is(1));
+    assertThat(existing.get(0L), is("zero"));
+
+    Map<Long, String> values = clusteredMap.getAll(Arrays.asList(0L, 42L, 1000L));
+    assertThat(values.size(), is(2));
+    assertThat(values.get(0L), is("zero"));
+    assertThat(values.get(42L), is("42"));
+
+    clusteredMap.removeAll(entries.keySet());
+    assertThat(clusteredMap.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testBatch() throws Exception {
+    List<Object> results = clusteredMap.batch()
+        .put(1L, "one")
+        .put(2L, "two")
+        .get(1L)
+        .putIfAbsent(2L, "deux")
+        .containsKey(3L)
+        .replace(2L, "deux")
+        .remove(1L)
+        .execute();
+
+    assertThat(results, is(Arrays.<Object>asList(null, null, "one", "two", false, "two", "one")));
+    assertThat(clusteredMap.get(2L), is("deux"));
+    assertThat(clusteredMap.containsKey(1L), is(false));
+  }
+
+  @Test
+  public void testAsyncOperations() throws Exception {
+    AsyncClusteredMap<Long, String> async = clusteredMap.async();
+    List<CompletableFuture<String>> puts = new ArrayList<CompletableFuture<String>>();
+    for (long i = 0; i < 100; i++) {
+      puts.add(async.putAsync(i, "value" + i));
+    }
+    CompletableFuture.allOf(puts.toArray(new CompletableFuture<?>[0])).get();
+
+    assertThat(async.getAsync(42L).get(), is("value42"));
+    assertThat(async.containsKeyAsync(100L).get(), is(false));
+    assertThat(async.sizeAsync().get(), is(100));
+    assertThat(async.putIfAbsentAsync(1L, "one").get(), is("value1"));
+    assertThat(async.replaceAsync(1L, "value1", "one").get(), is(true));
+    assertThat(async.replaceAsync(2L, "two").get(), is("value2"));
+    assertThat(async.removeAsync(2L, "value2").get(), is(false));
+    assertThat(async.removeAsync(2L).get(), is("two"));
+    assertThat(async.getAllAsync(Arrays.asList(1L, 2L, 3L)).get().keySet(), containsInAnyOrder(1L, 3L));
+    assertThat(clusteredMap.get(1L), is("one"));
+  }
+
+  @Test
+  public void testAsyncComputeIfAbsent() throws Exception {
+    clusteredMap.put(1L, "one");
+
+    assertThat(clusteredMap.async().computeIfAbsentAsync(1L, key -> "other").get(), is("one"));
+    assertThat(clusteredMap.async().computeIfAbsentAsync(2L, key -> "two").get(), is("two"));
+    assertThat(clusteredMap.async().computeIfAbsentAsync(3L, key -> null).get(), nullValue());
+    assertThat(clusteredMap.get(2L), is("two"));
+    assertThat(clusteredMap.containsKey(3L), is(false));
+
+    try {
+      clusteredMap.async().computeIfAbsentAsync(4L, key -> {
+        throw new IllegalStateException("expected");
+      }).get();
+      fail("Expected ExecutionException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause() instanceof IllegalStateException, is(true));
+    }
+  }
+
+  @Test
+  public void testNearCacheInvalidation() throws Exception {
+    clusteredMap.put(1L, "one");
+
+    Connection connection = ConnectionFactory.connect(URI.create(CLUSTER_URI), new Properties());
+    EntityRef<ConcurrentClusteredMap, Object, Object> entityRef = connection.getEntityRef(ConcurrentClusteredMap.class, ConcurrentClusteredMap.VERSION, MAP_NAME);
+    ConcurrentClusteredMap<Long, String> nearCachingMap = entityRef.fetchEntity(null);
+    nearCachingMap.setTypes(Long.class, String.class);
+    nearCachingMap.enableNearCache(1024 * 1024);
+    NearCacheStatistics statistics = nearCachingMap.getNearCacheStatistics();
+
+    assertThat(nearCachingMap.get(1L), is("one"));
+    assertThat(nearCachingMap.get(1L), is("one"));
+    assertThat(statistics.getHits(), is(1L));
+    assertThat(statistics.getMisses(), is(1L));
+
+    clusteredMap.put(1L, "uno");
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (statistics.getInvalidations() == 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(statistics.getInvalidations(), is(1L));
+    assertThat(nearCachingMap.get(1L), is("uno"));
+
+    nearCachingMap.put(1L, "eins");
+    assertThat(nearCachingMap.get(1L), is("eins"));
+    assertThat(clusteredMap.get(1L), is("eins"));
+  }
+
+  public static class PersonSerializer implements ValueSerializer<Person> {
+    @Override
+    public byte[] serialize(Person person) {
+      byte[] name = person.name.getBytes(StandardCharsets.UTF_8);
+      return ByteBuffer.allocate(Integer.BYTES + name.length).putInt(person.age).put(name).array();
+    }
+
+    @Override
+    public Person deserialize(byte[] bytes) {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      int age = buffer.getInt();
+      return new Person(new String(bytes, buffer.position(), buffer.remaining(), StandardCharsets.UTF_8), age);
+    }
+  }
+
   public static class Person implements Serializable  {
     final String name;
     final int age;
@@ -0,0 +1,125 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terracotta.connection.Connection;
+import org.terracotta.connection.ConnectionFactory;
+import org.terracotta.connection.entity.EntityRef;
+import org.terracotta.entity.map.common.ClusteredMapConfiguration;
+import org.terracotta.entity.map.common.ConcurrentClusteredMap;
+import org.terracotta.entity.map.server.TerracottaClusteredMapService;
+import org.terracotta.passthrough.PassthroughClusterControl;
+import org.terracotta.passthrough.PassthroughServerRegistry;
+import org.terracotta.passthrough.PassthroughTestHelpers;
+
+import java.net.URI;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of a mix of gets and puts on a clustered map shared by several clients, each benchmark
+ * thread being a client with its own connection, for a range of segment counts.
+ * Run it for a range of thread counts, e.g.:
+ * <pre>
+ *   java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main ClusteredMapThroughputBenchmark -t 1
+ *   java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main ClusteredMapThroughputBenchmark -t 16
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class ClusteredMapThroughputBenchmark {
+
+  private static final String MAP_NAME = "benchmark-map";
+  private static final String SERVER_NAME = "benchmarkServer";
+  private static final String CLUSTER_URI = "passthrough://" + SERVER_NAME;
+  private static final long KEY_COUNT = 10_000L;
+
+  @Param({"1", "4", "16"})
+  public int segments;
+
+  private PassthroughClusterControl clusterControl;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    clusterControl = PassthroughTestHelpers.createActiveOnly("benchmark", server -> {
+      server.setServerName(SERVER_NAME);
+      server.registerClientEntityService(new TerracottaClusteredMapClientService());
+      server.registerServerEntityService(new TerracottaClusteredMapService());
+      PassthroughServerRegistry.getSharedInstance().registerServer(SERVER_NAME, server);
+    });
+    try (Connection connection = ConnectionFactory.connect(URI.create(CLUSTER_URI), new Properties())) {
+      EntityRef<ConcurrentClusteredMap, ClusteredMapConfiguration, Object> entityRef = connection.getEntityRef(ConcurrentClusteredMap.class, ConcurrentClusteredMap.VERSION, MAP_NAME);
+      entityRef.create(new ClusteredMapConfiguration(segments));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    clusterControl.terminateAllServers();
+  }
+
+  @State(Scope.Thread)
+  public static class Client {
+
+    private Connection connection;
+    private ConcurrentClusteredMap<Long, String> map;
+
+    @Setup(Level.Trial)
+    public void connect(ClusteredMapThroughputBenchmark benchmark) throws Exception {
+      connection = ConnectionFactory.connect(URI.create(CLUSTER_URI), new Properties());
+      EntityRef<ConcurrentClusteredMap, ClusteredMapConfiguration, Object> entityRef = connection.getEntityRef(ConcurrentClusteredMap.class, ConcurrentClusteredMap.VERSION, MAP_NAME);
+      map = entityRef.fetchEntity(null);
+      map.setTypes(Long.class, String.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+      map.close();
+      connection.close();
+    }
+  }
+
+  @Benchmark
+  public String get(Client client) {
+    return client.map.get(ThreadLocalRandom.current().nextLong(KEY_COUNT));
+  }
+
+  @Benchmark
+  public String put(Client client) {
+    long key = ThreadLocalRandom.current().nextLong(KEY_COUNT);
+    return client.map.put(key, "value-" + key);
+  }
+}
@@ -17,16 +17,24 @@ package org.terracotta.entity.map.server;
 
 import org.terracotta.entity.ActiveInvokeContext;
 import org.terracotta.entity.ActiveServerEntity;
+import org.terracotta.entity.ClientCommunicator;
 import org.terracotta.entity.ClientDescriptor;
 import org.terracotta.entity.ConcurrencyStrategy;
+import org.terracotta.entity.MessageCodecException;
 import org.terracotta.entity.PassiveSynchronizationChannel;
+import org.terracotta.entity.map.common.BatchOperation;
+import org.terracotta.entity.map.common.BatchResponse;
 import org.terracotta.entity.map.common.BooleanResponse;
+import org.terracotta.entity.map.common.ClusteredMapConfiguration;
 import org.terracotta.entity.map.common.ConditionalRemoveOperation;
 import org.terracotta.entity.map.common.ConditionalReplaceOperation;
 import org.terracotta.entity.map.common.ContainsKeyOperation;
 import org.terracotta.entity.map.common.ContainsValueOperation;
 import org.terracotta.entity.map.common.EntrySetResponse;
 import org.terracotta.entity.map.common.GetOperation;
+import org.terracotta.entity.map.common.InvalidateAllResponse;
+import org.terracotta.entity.map.common.InvalidationResponse;
+import org.terracotta.entity.map.common.KeyedOperation;
 import org.terracotta.entity.map.common.KeySetResponse;
 import org.terracotta.entity.map.common.MapOperation;
 import org.terracotta.entity.map.common.MapResponse;
@@ -36,6 +44,7 @@ import org.terracotta.entity.map.common.PutAllOperation;
 import org.terracotta.entity.map.common.PutIfAbsentOperation;
 import org.terracotta.entity.map.common.PutIfPresentOperation;
 import org.terracotta.entity.map.common.PutOperation;
+import org.terracotta.entity.map.common.RegisterNearCacheOperation;
 import org.terracotta.entity.map.common.RemoveOperation;
 import org.terracotta.entity.map.common.SizeResponse;
 import org.terracotta.entity.map.common.ValueCollectionResponse;
@@ -44,7 +53,11 @@ import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -53,11 +66,25 @@ import java.util.concurrent.ConcurrentMap;
 
 public class ActiveTerracottaClusteredMap implements ActiveServerEntity<MapOperation, MapResponse>  {
 
-  private static final int CONCURRENCY_KEY = 42;
+  // maximum number of entries sent to the passive in a single sync message
+  static final int SYNC_BATCH_SIZE = 1024;
+
+  private final MapConcurrencyStrategy concurrencyStrategy;
+  private final ClientCommunicator clientCommunicator;
 
   // TODO Given the way a passive becomes active - this does not work ...
   private final ConcurrentMap<Object, Object> map = new ConcurrentHashMap<Object, Object>();
-  
+
+  // the clients holding a near cache with the keys each of them read since they were last invalidated, and the
+  // clients that read each key : a client is in the set of a key if and only if that key is tracked for that client
+  private final ConcurrentMap<ClientDescriptor, TrackedKeys> nearCachingClients = new ConcurrentHashMap<ClientDescriptor, TrackedKeys>();
+  private final ConcurrentMap<Object, Set<ClientDescriptor>> nearCachedKeys = new ConcurrentHashMap<Object, Set<ClientDescriptor>>();
+
+  public ActiveTerracottaClusteredMap(MapConcurrencyStrategy concurrencyStrategy, ClientCommunicator clientCommunicator) {
+    this.concurrencyStrategy = concurrencyStrategy;
+    this.clientCommunicator = clientCommunicator;
+  }
+
   @Override
   public void connected(ClientDescriptor clientDescriptor) {
   }
@@ -65,18 +92,40 @@ public class ActiveTerracottaClusteredMap implements ActiveServerEntity<MapOpera
   @Override
   public ActiveServerEntity.ReconnectHandler startReconnect() {
     return (ClientDescriptor clientDescriptor, byte[] extendedReconnectData)->{
-    // Do nothing.
+      // clients empty their near cache on reconnect, they only have to be registered again
+      RegisterNearCacheOperation registration = RegisterNearCacheOperation.fromReconnectData(extendedReconnectData);
+      if (registration != null) {
+        nearCachingClients.putIfAbsent(clientDescriptor, new TrackedKeys(registration.getMaxKeys()));
+      }
     };
   }
 
   @Override
   public void disconnected(ClientDescriptor clientDescriptor) {
+    TrackedKeys tracked = nearCachingClients.remove(clientDescriptor);
+    if (tracked != null) {
+      for (Object key : tracked.clear()) {
+        nearCachedKeys.computeIfPresent(key, (k, clients) -> {
+          clients.remove(clientDescriptor);
+          return clients.isEmpty() ? null : clients;
+        });
+      }
+    }
   }
 
   @Override
   public MapResponse invokeActive(ActiveInvokeContext<MapResponse> context, MapOperation input) {
+    ClientDescriptor client = context == null ? null : context.getClientDescriptor();
+    MapResponse response = execute(client, input);
+    if (input.replicate()) {
+      invalidateNearCaches(client, input);
+    }
+    return response;
+  }
+
+  private MapResponse execute(ClientDescriptor client, MapOperation input) {
     MapResponse response;
-    
+
     switch (input.operationType()) {
       case PUT: {
         PutOperation putOperation = (PutOperation) input;
@@ -88,7 +137,14 @@ public class ActiveTerracottaClusteredMap implements ActiveServerEntity<MapOpera
       }
       case GET: {
         Object key = ((GetOperation) input).getKey();
-        response = new MapValueResponse(map.get(key));
+        // tracked before reading, so that a mutation not seen by this read invalidates its result
+        trackNearCachedKey(client, key);
+        Object value = map.get(key);
+        if (value == null) {
+          // absent keys are not cached
+          untrackNearCachedKey(client, key);
+        }
+        response = new MapValueResponse(value);
         break;
       }
       case REMOVE: {
@@ -164,6 +220,21 @@ public class ActiveTerracottaClusteredMap implements ActiveServerEntity<MapOpera
         response = new BooleanResponse(map.replace(operation.getKey(), operation.getOldValue(), operation.getNewValue()));
         break;
       }
+      case BATCH: {
+        List<MapResponse> responses = new ArrayList<MapResponse>();
+        for (KeyedOperation operation : ((BatchOperation) input).getOperations()) {
+          responses.add(execute(client, operation));
+        }
+        response = new BatchResponse(responses);
+        break;
+      }
+      case REGISTER_NEAR_CACHE: {
+        if (client != null) {
+          nearCachingClients.putIfAbsent(client, new TrackedKeys(((RegisterNearCacheOperation) input).getMaxKeys()));
+        }
+        response = new NullResponse();
+        break;
+      }
       default:
         // Unknown message type.
         throw new AssertionError("Unsupported message type: " + input.operationType());
@@ -171,6 +242,178 @@ public class ActiveTerracottaClusteredMap implements ActiveServerEntity<MapOpera
     return response;
   }
 
+  /**
+   * Tracks a key read by a client, and invalidates the least recently read keys of that client past the number of
+   * keys its near cache can hold.
+   */
+  private void trackNearCachedKey(ClientDescriptor client, Object key) {
+    TrackedKeys tracked = client == null ? null : nearCachingClients.get(client);
+    if (tracked == null) {
+      return;
+    }
+    List<Object> evicted = new ArrayList<Object>();
+    nearCachedKeys.compute(key, (k, clients) -> {
+      Set<ClientDescriptor> readers = clients == null ? new HashSet<ClientDescriptor>() : clients;
+      readers.add(client);
+      evicted.addAll(tracked.track(k));
+      return readers;
+    });
+    if (evicted.isEmpty()) {
+      return;
+    }
+
+    Set<Object> invalidated = new HashSet<Object>();
+    for (Object evictedKey : evicted) {
+      nearCachedKeys.computeIfPresent(evictedKey, (k, clients) -> {
+        // unless read again since it was evicted
+        if (!tracked.contains(k) && clients.remove(client)) {
+          invalidated.add(k);
+        }
+        return clients.isEmpty() ? null : clients;
+      });
+    }
+    if (!invalidated.isEmpty()) {
+      send(client, new InvalidationResponse(invalidated));
+    }
+  }
+
+  private void untrackNearCachedKey(ClientDescriptor client, Object key) {
+    TrackedKeys tracked = client == null ? null : nearCachingClients.get(client);
+    if (tracked == null) {
+      return;
+    }
+    nearCachedKeys.computeIfPresent(key, (k, clients) -> {
+      tracked.untrack(k);
+      clients.remove(client);
+      return clients.isEmpty() ? null : clients;
+    });
+  }
+
+  /**
+   * Notifies the clients that read the keys mutated by an operation, except the client that sent it. Keys are
+   * invalidated whether the mutation happened or not, and stop being tracked until they are read again.
+   */
+  private void invalidateNearCaches(ClientDescriptor originator, MapOperation operation) {
+    if (nearCachingClients.isEmpty()) {
+      return;
+    }
+    if (operation.operationType() == MapOperation.Type.CLEAR) {
+      nearCachedKeys.clear();
+      for (Map.Entry<ClientDescriptor, TrackedKeys> nearCachingClient : nearCachingClients.entrySet()) {
+        ClientDescriptor client = nearCachingClient.getKey();
+        nearCachingClient.getValue().clear();
+        if (!client.equals(originator)) {
+          send(client, new InvalidateAllResponse());
+        }
+      }
+      return;
+    }
+
+    Map<ClientDescriptor, Set<Object>> invalidations = new HashMap<ClientDescriptor, Set<Object>>();
+    for (Object key : mutatedKeys(operation)) {
+      Set<ClientDescriptor> clients = nearCachedKeys.remove(key);
+      if (clients != null) {
+        for (ClientDescriptor client : clients) {
+          TrackedKeys tracked = nearCachingClients.get(client);
+          if (tracked != null) {
+            tracked.untrack(key);
+          }
+          if (!client.equals(originator)) {
+            Set<Object> keys = invalidations.get(client);
+            if (keys == null) {
+              keys = new HashSet<Object>();
+              invalidations.put(client, keys);
+            }
+            keys.add(key);
+          }
+        }
+      }
+    }
+    for (Map.Entry<ClientDescriptor, Set<Object>> invalidation : invalidations.entrySet()) {
+      send(invalidation.getKey(), new InvalidationResponse(invalidation.getValue()));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Collection<Object> mutatedKeys(MapOperation operation) {
+    switch (operation.operationType()) {
+      case PUT_ALL:
+        return ((Map<Object, Object>) ((PutAllOperation) operation).getMap()).keySet();
+      case BATCH: {
+        List<Object> keys = new ArrayList<Object>();
+        for (KeyedOperation keyedOperation : ((BatchOperation) operation).getOperations()) {
+          if (keyedOperation.replicate()) {
+            keys.add(keyedOperation.getKey());
+          }
+        }
+        return keys;
+      }
+      default:
+        if (operation instanceof KeyedOperation) {
+          return Collections.singleton(((KeyedOperation) operation).getKey());
+        }
+        return Collections.emptySet();
+    }
+  }
+
+  private void send(ClientDescriptor client, MapResponse message) {
+    try {
+      clientCommunicator.sendNoResponse(client, message);
+    } catch (MessageCodecException e) {
+      throw new RuntimeException("Failed to encode near cache invalidation to client", e);
+    }
+  }
+
+  /**
+   * The keys tracked for a client holding a near cache, least recently read first. Past the maximum number of keys,
+   * the least recently read are evicted by sixteenth of that maximum, so that their invalidations are sent together.
+   */
+  private static final class TrackedKeys {
+    private final int maxKeys;
+    private final LinkedHashMap<Object, Boolean> keys = new LinkedHashMap<Object, Boolean>(16, 0.75f, true);
+
+    TrackedKeys(int maxKeys) {
+      this.maxKeys = maxKeys;
+    }
+
+    /**
+     * @return the keys evicted to track that one
+     */
+    synchronized List<Object> track(Object key) {
+      keys.put(key, Boolean.TRUE);
+      if (keys.size() <= maxKeys) {
+        return Collections.emptyList();
+      }
+      List<Object> evicted = new ArrayList<Object>();
+      int retained = maxKeys - Math.max(1, maxKeys / 16);
+      for (Iterator<Object> it = keys.keySet().iterator(); keys.size() > retained && it.hasNext(); ) {
+        Object eldest = it.next();
+        if (!eldest.equals(key)) {
+          evicted.add(eldest);
+          it.remove();
+        }
+      }
+      return evicted;
+    }
+
+    synchronized boolean contains(Object key) {
+      return keys.containsKey(key);
+    }
+
+    synchronized void untrack(Object key) {
+      keys.remove(key);
+    }
+
+    /**
+     * @return the keys tracked until then
+     */
+    synchronized List<Object> clear() {
+      List<Object> tracked = new ArrayList<Object>(keys.keySet());
+      keys.clear();
+      return tracked;
+    }
+  }
+
   @Override
   public void createNew() {
   }
@@ -184,25 +427,93 @@ public class ActiveTerracottaClusteredMap implements ActiveServerEntity<MapOpera
     map.clear();
   }
 
+  @Override
+  public void synchronizeKeyToPassive(PassiveSynchronizationChannel<MapOperation> syncChannel, int concurrencyKey) {
+    if (!concurrencyStrategy.getKeysForSynchronization().contains(concurrencyKey)) {
+      throw new IllegalArgumentException("Not a segment concurrency key : " + concurrencyKey);
+    }
+
+    Map<Object, Object> batch = new HashMap<Object, Object>();
+    for (Map.Entry<Object, Object> entry : map.entrySet()) {
+      if (concurrencyStrategy.segmentKey(entry.getKey()) == concurrencyKey) {
+        batch.put(entry.getKey(), entry.getValue());
+        if (batch.size() == SYNC_BATCH_SIZE) {
+          syncChannel.synchronizeToPassive(new SyncOperation(batch));
+          batch = new HashMap<Object, Object>();
+        }
+      }
+    }
+    if (!batch.isEmpty()) {
+      syncChannel.synchronizeToPassive(new SyncOperation(batch));
+    }
+  }
+
+  /**
+   * Executes the operations on a single key on the concurrency key of the segment of that key, so that operations on
+   * keys of different segments run concurrently.
+   * <p>
+   * Operations reading the whole map run on the universal key : like the iterators of the underlying
+   * {@link ConcurrentHashMap}, they see a weakly consistent view of the map. Operations mutating several keys run on
+   * the management key, so that they are ordered with respect to every other mutation, on the active as on the
+   * passives.
+   */
   public static class MapConcurrencyStrategy implements ConcurrencyStrategy<MapOperation> {
 
+    private final ClusteredMapConfiguration configuration;
+    private final Set<Integer> segmentKeys;
+
+    public MapConcurrencyStrategy(int segments) {
+      this.configuration = new ClusteredMapConfiguration(segments);
+      Set<Integer> keys = new HashSet<Integer>();
+      for (int i = 1; i <= segments; i++) {
+        keys.add(i);
+      }
+      this.segmentKeys = Collections.unmodifiableSet(keys);
+    }
+
     @Override
     public int concurrencyKey(MapOperation operation) {
-      return CONCURRENCY_KEY;
+      if (operation instanceof KeyedOperation) {
+        return segmentKey(((KeyedOperation) operation).getKey());
+      }
+      switch (operation.operationType()) {
+        case BATCH:
+          return batchKey((BatchOperation) operation);
+        case SIZE:
+        case CONTAINS_VALUE:
+        case KEY_SET:
+        case VALUES:
+        case ENTRY_SET:
+          return UNIVERSAL_KEY;
+        default:
+          return MANAGEMENT_KEY;
+      }
     }
 
     @Override
     public Set<Integer> getKeysForSynchronization() {
-      return Collections.singleton(CONCURRENCY_KEY);
+      return segmentKeys;
     }
-  }
 
-  @Override
-  public void synchronizeKeyToPassive(PassiveSynchronizationChannel<MapOperation> syncChannel, int concurrencyKey) {
-    if (concurrencyKey != CONCURRENCY_KEY) {
-      throw new IllegalArgumentException("concurrencyKey should only be " + CONCURRENCY_KEY);
+    /**
+     * @param key a key of the map
+     * @return the concurrency key of the segment of that key, between 1 and the number of segments
+     */
+    int segmentKey(Object key) {
+      return configuration.segmentKey(key);
     }
 
-    syncChannel.synchronizeToPassive(new SyncOperation(map));
+    // clients send a batch per segment, a batch spanning several ones is ordered with every other mutation
+    private int batchKey(BatchOperation batch) {
+      int key = MANAGEMENT_KEY;
+      for (KeyedOperation operation : batch.getOperations()) {
+        int segmentKey = segmentKey(operation.getKey());
+        if (key != MANAGEMENT_KEY && key != segmentKey) {
+          return MANAGEMENT_KEY;
+        }
+        key = segmentKey;
+      }
+      return key;
+    }
   }
 }
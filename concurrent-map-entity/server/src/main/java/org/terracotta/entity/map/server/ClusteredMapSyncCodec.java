@@ -19,16 +19,14 @@ package org.terracotta.entity.map.server;
 import org.terracotta.entity.MessageCodecException;
 import org.terracotta.entity.SyncMessageCodec;
 import org.terracotta.entity.map.common.MapOperation;
+import org.terracotta.entity.map.common.PrimitiveCodec;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.EOFException;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.HashMap;
-import java.util.Map;
 
 
 class ClusteredMapSyncCodec implements SyncMessageCodec<MapOperation> {
@@ -42,15 +40,10 @@ class ClusteredMapSyncCodec implements SyncMessageCodec<MapOperation> {
         SyncOperation operation = (SyncOperation)message;
         try {
             ByteArrayOutputStream raw = new ByteArrayOutputStream();
-            ObjectOutputStream out = new ObjectOutputStream(raw);
-            Map<Object, Object> elements = operation.getObjectMap();
-            for (Map.Entry<Object, Object> next : elements.entrySet()) {
-                out.writeObject(next.getKey());
-                out.writeObject(next.getValue());
-            }
+            DataOutputStream out = new DataOutputStream(raw);
+            PrimitiveCodec.writeMap(out, operation.getObjectMap());
             out.close();
-            byte[] bytes = raw.toByteArray();
-            return bytes;
+            return raw.toByteArray();
         } catch (IOException ioe) {
             throw new MessageCodecException("io error", ioe);
         }
@@ -59,30 +52,10 @@ class ClusteredMapSyncCodec implements SyncMessageCodec<MapOperation> {
     @Override
     public MapOperation decode(int concurrencyKey, byte[] payload) throws MessageCodecException {
         try {
-            InputStream is = new ByteArrayInputStream(payload);
-            ObjectInputStream dis = new ObjectInputStream(is);
-            Map<Object, Object> map = new HashMap<Object, Object>();
-            Object key = readKey(dis);
-            while (null != key) {
-              Object value = dis.readObject();
-              map.put(key, value);
-              key = readKey(dis);
-            }
-            return new SyncOperation(map);
+            DataInputStream dis = new DataInputStream(new ByteArrayInputStream(payload));
+            return new SyncOperation(PrimitiveCodec.readMap(dis, new HashMap<Object, Object>()));
         } catch (IOException ioe) {
-            throw new RuntimeException(ioe);
-        } catch (ClassNotFoundException e) {
-          throw new RuntimeException(e);
-        }
-    }
-    
-    private Object readKey(ObjectInputStream objectInputStream) throws ClassNotFoundException, IOException {
-        Object key = null;
-        try {
-            key = objectInputStream.readObject();
-        } catch (EOFException e) {
-            // This means that we have reached the last key-value pair.
+            throw new MessageCodecException("io error", ioe);
         }
-        return key;
     }
 }
@@ -15,55 +15,111 @@
  */
 package org.terracotta.entity.map.server;
 
-import org.omg.CORBA.Object;
 import org.terracotta.entity.InvokeContext;
 import org.terracotta.entity.PassiveServerEntity;
+import org.terracotta.entity.map.common.BatchOperation;
+import org.terracotta.entity.map.common.ConditionalRemoveOperation;
+import org.terracotta.entity.map.common.ConditionalReplaceOperation;
+import org.terracotta.entity.map.common.KeyedOperation;
 import org.terracotta.entity.map.common.MapOperation;
 import org.terracotta.entity.map.common.MapResponse;
+import org.terracotta.entity.map.common.PutAllOperation;
+import org.terracotta.entity.map.common.PutIfAbsentOperation;
+import org.terracotta.entity.map.common.PutIfPresentOperation;
+import org.terracotta.entity.map.common.PutOperation;
+import org.terracotta.entity.map.common.RemoveOperation;
 
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
-/**
- * PassiveTerracottaClusteredMap
- */
 class PassiveTerracottaClusteredMap implements PassiveServerEntity<MapOperation, MapResponse> {
 
   private final ConcurrentMap<Object, Object> map = new ConcurrentHashMap<Object, Object>();
 
   @Override
   public void invokePassive(InvokeContext context, MapOperation message) {
-    // do assign received map to instance map
-    // or append content if message is an operation
+    switch (message.operationType()) {
+      case SYNC_OP: {
+        // segments are synchronized independently, in one or more batches each
+        map.putAll(((SyncOperation) message).getObjectMap());
+        break;
+      }
+      case PUT: {
+        PutOperation operation = (PutOperation) message;
+        map.put(operation.getKey(), operation.getValue());
+        break;
+      }
+      case REMOVE: {
+        map.remove(((RemoveOperation) message).getKey());
+        break;
+      }
+      case CLEAR: {
+        map.clear();
+        break;
+      }
+      case PUT_ALL: {
+        @SuppressWarnings("unchecked")
+        Map<Object, Object> newValues = (Map<Object, Object>) ((PutAllOperation) message).getMap();
+        map.putAll(newValues);
+        break;
+      }
+      case PUT_IF_ABSENT: {
+        PutIfAbsentOperation operation = (PutIfAbsentOperation) message;
+        map.putIfAbsent(operation.getKey(), operation.getValue());
+        break;
+      }
+      case PUT_IF_PRESENT: {
+        PutIfPresentOperation operation = (PutIfPresentOperation) message;
+        map.replace(operation.getKey(), operation.getValue());
+        break;
+      }
+      case CONDITIONAL_REMOVE: {
+        ConditionalRemoveOperation operation = (ConditionalRemoveOperation) message;
+        map.remove(operation.getKey(), operation.getValue());
+        break;
+      }
+      case CONDITIONAL_REPLACE: {
+        ConditionalReplaceOperation operation = (ConditionalReplaceOperation) message;
+        map.replace(operation.getKey(), operation.getOldValue(), operation.getNewValue());
+        break;
+      }
+      case BATCH: {
+        for (KeyedOperation operation : ((BatchOperation) message).getOperations()) {
+          if (operation.replicate()) {
+            invokePassive(context, operation);
+          }
+        }
+        break;
+      }
+      default:
+        // Only mutations are replicated.
+        throw new AssertionError("Unsupported message type: " + message.operationType());
+    }
   }
 
   @Override
   public void startSyncEntity() {
-    throw new UnsupportedOperationException("TODO Implement me!");
   }
 
   @Override
   public void endSyncEntity() {
-    throw new UnsupportedOperationException("TODO Implement me!");
   }
 
   @Override
   public void startSyncConcurrencyKey(int concurrencyKey) {
-    throw new UnsupportedOperationException("TODO Implement me!");
   }
 
   @Override
   public void endSyncConcurrencyKey(int concurrencyKey) {
-    throw new UnsupportedOperationException("TODO Implement me!");
   }
 
   @Override
   public void createNew() {
-    throw new UnsupportedOperationException("TODO Implement me!");
   }
 
   @Override
   public void destroy() {
-    throw new UnsupportedOperationException("TODO Implement me!");
+    map.clear();
   }
 }
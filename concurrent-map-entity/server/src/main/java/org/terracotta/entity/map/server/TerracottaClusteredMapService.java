@@ -16,13 +16,17 @@
 package org.terracotta.entity.map.server;
 
 import org.terracotta.entity.ActiveServerEntity;
-import org.terracotta.entity.ConcurrencyStrategy;
+import org.terracotta.entity.BasicServiceConfiguration;
+import org.terracotta.entity.ClientCommunicator;
+import org.terracotta.entity.ConfigurationException;
 import org.terracotta.entity.EntityServerService;
 import org.terracotta.entity.MessageCodec;
 import org.terracotta.entity.PassiveServerEntity;
+import org.terracotta.entity.ServiceException;
 import org.terracotta.entity.ServiceRegistry;
 import org.terracotta.entity.SyncMessageCodec;
 import org.terracotta.entity.map.common.ClusteredMapCodec;
+import org.terracotta.entity.map.common.ClusteredMapConfiguration;
 import org.terracotta.entity.map.common.ConcurrentClusteredMap;
 import org.terracotta.entity.map.common.MapOperation;
 import org.terracotta.entity.map.common.MapResponse;
@@ -42,8 +46,17 @@ public class TerracottaClusteredMapService implements EntityServerService<MapOpe
   }
 
   @Override
-  public ActiveServerEntity<MapOperation, MapResponse> createActiveEntity(ServiceRegistry registry, byte[] configuration) {
-    return new ActiveTerracottaClusteredMap();
+  public ActiveServerEntity<MapOperation, MapResponse> createActiveEntity(ServiceRegistry registry, byte[] configuration) throws ConfigurationException {
+    ClientCommunicator clientCommunicator;
+    try {
+      clientCommunicator = registry.getService(new BasicServiceConfiguration<ClientCommunicator>(ClientCommunicator.class));
+    } catch (ServiceException e) {
+      throw new ConfigurationException("Too many services of type: " + ClientCommunicator.class + ", expected 1", e);
+    }
+    if (clientCommunicator == null) {
+      throw new ConfigurationException("Missing service: " + ClientCommunicator.class);
+    }
+    return new ActiveTerracottaClusteredMap(getConcurrencyStrategy(configuration), clientCommunicator);
   }
 
   @Override
@@ -52,8 +65,8 @@ public class TerracottaClusteredMapService implements EntityServerService<MapOpe
   }
 
   @Override
-  public ConcurrencyStrategy<MapOperation> getConcurrencyStrategy(byte[] configuration) {
-    return new ActiveTerracottaClusteredMap.MapConcurrencyStrategy();
+  public ActiveTerracottaClusteredMap.MapConcurrencyStrategy getConcurrencyStrategy(byte[] configuration) {
+    return new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(ClusteredMapConfiguration.decode(configuration).getSegments());
   }
 
   @Override
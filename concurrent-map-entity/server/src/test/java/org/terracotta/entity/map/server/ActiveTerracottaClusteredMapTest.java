@@ -0,0 +1,295 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.entity.map.server;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.terracotta.entity.ActiveInvokeContext;
+import org.terracotta.entity.ClientCommunicator;
+import org.terracotta.entity.ClientDescriptor;
+import org.terracotta.entity.ConcurrencyStrategy;
+import org.terracotta.entity.map.common.BatchOperation;
+import org.terracotta.entity.map.common.BatchResponse;
+import org.terracotta.entity.map.common.BooleanResponse;
+import org.terracotta.entity.map.common.ClearOperation;
+import org.terracotta.entity.map.common.ContainsKeyOperation;
+import org.terracotta.entity.map.common.GetOperation;
+import org.terracotta.entity.map.common.InvalidateAllResponse;
+import org.terracotta.entity.map.common.InvalidationResponse;
+import org.terracotta.entity.map.common.KeyedOperation;
+import org.terracotta.entity.map.common.MapOperation;
+import org.terracotta.entity.map.common.MapResponse;
+import org.terracotta.entity.map.common.MapValueResponse;
+import org.terracotta.entity.map.common.PutAllOperation;
+import org.terracotta.entity.map.common.PutIfAbsentOperation;
+import org.terracotta.entity.map.common.PutOperation;
+import org.terracotta.entity.map.common.RegisterNearCacheOperation;
+import org.terracotta.entity.map.common.RemoveOperation;
+import org.terracotta.entity.map.common.SizeOperation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class ActiveTerracottaClusteredMapTest {
+
+  @Test
+  public void testKeyedOperationsAreRoutedBySegment() {
+    ActiveTerracottaClusteredMap.MapConcurrencyStrategy strategy = new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(8);
+
+    Set<Integer> keys = new HashSet<Integer>();
+    for (long i = 0; i < 1000; i++) {
+      int key = strategy.concurrencyKey(new PutOperation(i, "value"));
+      assertThat(strategy.concurrencyKey(new GetOperation(i)), is(key));
+      assertThat(strategy.concurrencyKey(new RemoveOperation(i)), is(key));
+      keys.add(key);
+    }
+
+    assertThat(keys, is(strategy.getKeysForSynchronization()));
+    assertThat(keys, everyItem(greaterThan(0)));
+    assertThat(keys, everyItem(lessThanOrEqualTo(8)));
+  }
+
+  @Test
+  public void testWholeMapOperations() {
+    ActiveTerracottaClusteredMap.MapConcurrencyStrategy strategy = new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(8);
+
+    assertThat(strategy.concurrencyKey(new SizeOperation()), is(ConcurrencyStrategy.UNIVERSAL_KEY));
+    assertThat(strategy.concurrencyKey(new ClearOperation()), is(ConcurrencyStrategy.MANAGEMENT_KEY));
+    assertThat(strategy.concurrencyKey(new PutAllOperation(new HashMap<Object, Object>())), is(ConcurrencyStrategy.MANAGEMENT_KEY));
+  }
+
+  @Test
+  public void testBatchesRunOnTheirSegment() {
+    ActiveTerracottaClusteredMap.MapConcurrencyStrategy strategy = new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(8);
+    List<KeyedOperation> sameSegment = new ArrayList<KeyedOperation>();
+    List<KeyedOperation> allSegments = new ArrayList<KeyedOperation>();
+    int segment = strategy.segmentKey(0L);
+    for (long i = 0; i < 100; i++) {
+      if (strategy.segmentKey(i) == segment) {
+        sameSegment.add(new GetOperation(i));
+      }
+      allSegments.add(new GetOperation(i));
+    }
+
+    assertThat(strategy.concurrencyKey(new BatchOperation(sameSegment)), is(segment));
+    assertThat(strategy.concurrencyKey(new BatchOperation(allSegments)), is(ConcurrencyStrategy.MANAGEMENT_KEY));
+  }
+
+  @Test
+  public void testBatchExecution() {
+    ActiveTerracottaClusteredMap activeMap = new ActiveTerracottaClusteredMap(new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(1), mock(ClientCommunicator.class));
+    List<KeyedOperation> operations = Arrays.<KeyedOperation>asList(new PutOperation(1L, "one"), new GetOperation(1L),
+        new PutIfAbsentOperation(1L, "uno"), new ContainsKeyOperation(2L), new RemoveOperation(1L));
+
+    BatchResponse response = (BatchResponse) activeMap.invokeActive(null, new BatchOperation(operations));
+
+    List<MapResponse> responses = response.getResponses();
+    assertThat(((MapValueResponse) responses.get(0)).getValue(), nullValue());
+    assertThat(((MapValueResponse) responses.get(1)).getValue(), is((Object) "one"));
+    assertThat(((MapValueResponse) responses.get(2)).getValue(), is((Object) "one"));
+    assertThat(((BooleanResponse) responses.get(3)).isTrue(), is(false));
+    assertThat(((MapValueResponse) responses.get(4)).getValue(), is((Object) "one"));
+  }
+
+  @Test
+  public void testInvalidSegmentCount() {
+    try {
+      new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(0);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void testSynchronizationPerSegment() {
+    ActiveTerracottaClusteredMap.MapConcurrencyStrategy strategy = new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(4);
+    ActiveTerracottaClusteredMap activeMap = new ActiveTerracottaClusteredMap(strategy, mock(ClientCommunicator.class));
+    int entries = 4 * ActiveTerracottaClusteredMap.SYNC_BATCH_SIZE + 10;
+    for (long i = 0; i < entries; i++) {
+      activeMap.invokeActive(null, new PutOperation(i, i));
+    }
+
+    Map<Object, Object> synced = new HashMap<Object, Object>();
+    for (int key : strategy.getKeysForSynchronization()) {
+      List<MapOperation> messages = new ArrayList<MapOperation>();
+      activeMap.synchronizeKeyToPassive(messages::add, key);
+      for (MapOperation message : messages) {
+        Map<Object, Object> batch = ((SyncOperation) message).getObjectMap();
+        assertThat(batch.size(), lessThanOrEqualTo(ActiveTerracottaClusteredMap.SYNC_BATCH_SIZE));
+        for (Object syncedKey : batch.keySet()) {
+          assertThat(strategy.segmentKey(syncedKey), is(key));
+        }
+        synced.putAll(batch);
+      }
+    }
+
+    assertThat(synced.size(), is(entries));
+  }
+
+  @Test
+  public void testNearCachedKeysAreInvalidated() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    ActiveTerracottaClusteredMap activeMap = new ActiveTerracottaClusteredMap(new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(4), communicator);
+    ActiveInvokeContext<MapResponse> reader = context();
+    ActiveInvokeContext<MapResponse> writer = context();
+    activeMap.invokeActive(reader, new RegisterNearCacheOperation(1024));
+    activeMap.invokeActive(writer, new RegisterNearCacheOperation(1024));
+    activeMap.invokeActive(writer, new PutOperation(1L, "one"));
+    activeMap.invokeActive(writer, new PutOperation(2L, "two"));
+    verifyZeroInteractions(communicator);
+
+    activeMap.invokeActive(reader, new GetOperation(1L));
+    activeMap.invokeActive(reader, new GetOperation(2L));
+    activeMap.invokeActive(writer, new PutOperation(1L, "uno"));
+
+    ArgumentCaptor<MapResponse> invalidation = ArgumentCaptor.forClass(MapResponse.class);
+    verify(communicator).sendNoResponse(eq(reader.getClientDescriptor()), invalidation.capture());
+    assertThat(((InvalidationResponse) invalidation.getValue()).getKeys(), is(Collections.<Object>singleton(1L)));
+    verify(communicator, never()).sendNoResponse(eq(writer.getClientDescriptor()), any(MapResponse.class));
+
+    // the key is no longer tracked until it is read again
+    activeMap.invokeActive(writer, new PutOperation(1L, "eins"));
+    verify(communicator).sendNoResponse(eq(reader.getClientDescriptor()), any(MapResponse.class));
+  }
+
+  @Test
+  public void testAbsentKeysAreNotTracked() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    ActiveTerracottaClusteredMap activeMap = new ActiveTerracottaClusteredMap(new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(4), communicator);
+    ActiveInvokeContext<MapResponse> reader = context();
+    activeMap.invokeActive(reader, new RegisterNearCacheOperation(1024));
+
+    activeMap.invokeActive(reader, new GetOperation(1L));
+    activeMap.invokeActive(reader, new BatchOperation(Arrays.<KeyedOperation>asList(new GetOperation(2L))));
+    activeMap.invokeActive(context(), new PutOperation(1L, "one"));
+    activeMap.invokeActive(context(), new PutOperation(2L, "two"));
+
+    verifyZeroInteractions(communicator);
+  }
+
+  @Test
+  public void testTrackedKeysAreBoundedByTheNearCacheSize() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    ActiveTerracottaClusteredMap activeMap = new ActiveTerracottaClusteredMap(new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(4), communicator);
+    ActiveInvokeContext<MapResponse> reader = context();
+    ActiveInvokeContext<MapResponse> writer = context();
+    activeMap.invokeActive(reader, new RegisterNearCacheOperation(16));
+    for (long i = 0; i <= 16; i++) {
+      activeMap.invokeActive(writer, new PutOperation(i, "value"));
+    }
+
+    for (long i = 0; i < 16; i++) {
+      activeMap.invokeActive(reader, new GetOperation(i));
+    }
+    // key 0 is read again, keys 1 and 2 are the least recently read
+    activeMap.invokeActive(reader, new GetOperation(0L));
+    verifyZeroInteractions(communicator);
+    activeMap.invokeActive(reader, new GetOperation(16L));
+
+    ArgumentCaptor<MapResponse> invalidation = ArgumentCaptor.forClass(MapResponse.class);
+    verify(communicator).sendNoResponse(eq(reader.getClientDescriptor()), invalidation.capture());
+    assertThat(((InvalidationResponse) invalidation.getValue()).getKeys(), is(new HashSet<Object>(Arrays.<Object>asList(1L, 2L))));
+
+    // evicted keys are no longer tracked
+    activeMap.invokeActive(writer, new PutOperation(1L, "uno"));
+    activeMap.invokeActive(writer, new PutOperation(2L, "dos"));
+    verify(communicator).sendNoResponse(eq(reader.getClientDescriptor()), any(MapResponse.class));
+    activeMap.invokeActive(writer, new PutOperation(0L, "cero"));
+    verify(communicator, times(2)).sendNoResponse(eq(reader.getClientDescriptor()), any(MapResponse.class));
+  }
+
+  @Test
+  public void testMutationsOfTheReaderAreNotNotified() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    ActiveTerracottaClusteredMap activeMap = new ActiveTerracottaClusteredMap(new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(4), communicator);
+    ActiveInvokeContext<MapResponse> client = context();
+    activeMap.invokeActive(client, new RegisterNearCacheOperation(1024));
+
+    activeMap.invokeActive(client, new GetOperation(1L));
+    activeMap.invokeActive(client, new BatchOperation(Arrays.<KeyedOperation>asList(new PutOperation(1L, "one"), new GetOperation(2L))));
+    activeMap.invokeActive(client, new ClearOperation());
+
+    verifyZeroInteractions(communicator);
+  }
+
+  @Test
+  public void testClearInvalidatesEveryNearCache() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    ActiveTerracottaClusteredMap activeMap = new ActiveTerracottaClusteredMap(new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(4), communicator);
+    ActiveInvokeContext<MapResponse> nearCaching = context();
+    ActiveInvokeContext<MapResponse> notNearCaching = context();
+    activeMap.invokeActive(nearCaching, new RegisterNearCacheOperation(1024));
+
+    activeMap.invokeActive(notNearCaching, new GetOperation(1L));
+    activeMap.invokeActive(notNearCaching, new ClearOperation());
+
+    ArgumentCaptor<MapResponse> invalidation = ArgumentCaptor.forClass(MapResponse.class);
+    verify(communicator).sendNoResponse(eq(nearCaching.getClientDescriptor()), invalidation.capture());
+    assertThat(invalidation.getValue(), instanceOf(InvalidateAllResponse.class));
+    verify(communicator, never()).sendNoResponse(eq(notNearCaching.getClientDescriptor()), any(MapResponse.class));
+  }
+
+  @Test
+  public void testNearCachingClientsDisconnectAndReconnect() throws Exception {
+    ClientCommunicator communicator = mock(ClientCommunicator.class);
+    ActiveTerracottaClusteredMap activeMap = new ActiveTerracottaClusteredMap(new ActiveTerracottaClusteredMap.MapConcurrencyStrategy(4), communicator);
+    ActiveInvokeContext<MapResponse> reader = context();
+    ActiveInvokeContext<MapResponse> writer = context();
+    activeMap.invokeActive(reader, new RegisterNearCacheOperation(1024));
+    activeMap.invokeActive(reader, new GetOperation(1L));
+
+    activeMap.disconnected(reader.getClientDescriptor());
+    activeMap.invokeActive(writer, new PutOperation(1L, "one"));
+    verifyZeroInteractions(communicator);
+
+    activeMap.startReconnect().handleReconnect(reader.getClientDescriptor(), new RegisterNearCacheOperation(1024).reconnectData());
+    activeMap.invokeActive(reader, new GetOperation(1L));
+    activeMap.invokeActive(writer, new PutOperation(1L, "uno"));
+    verify(communicator).sendNoResponse(eq(reader.getClientDescriptor()), any(InvalidationResponse.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ActiveInvokeContext<MapResponse> context() {
+    ActiveInvokeContext<MapResponse> context = mock(ActiveInvokeContext.class);
+    ClientDescriptor clientDescriptor = mock(ClientDescriptor.class);
+    when(context.getClientDescriptor()).thenReturn(clientDescriptor);
+    return context;
+  }
+}
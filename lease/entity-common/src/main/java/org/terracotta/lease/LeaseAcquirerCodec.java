@@ -32,10 +32,12 @@ import java.nio.ByteBuffer;
 public class LeaseAcquirerCodec implements MessageCodec<LeaseMessage, LeaseResponse> {
   private static Struct messageStruct = createMessageStruct();
   private static Struct responseStruct = createResponseStruct();
+  private static final ThreadLocal<StructEncoder<Void>> MESSAGE_ENCODER = ThreadLocal.withInitial(() -> messageStruct.reusableEncoder());
+  private static final ThreadLocal<StructEncoder<Void>> RESPONSE_ENCODER = ThreadLocal.withInitial(() -> responseStruct.reusableEncoder());
 
   @Override
   public byte[] encodeMessage(LeaseMessage leaseMessage) throws MessageCodecException {
-    StructEncoder<Void> encoder = messageStruct.encoder();
+    StructEncoder<Void> encoder = MESSAGE_ENCODER.get().reset();
     encoder.enm("messageType", leaseMessage.getType());
     leaseMessage.encode(encoder);
     return encoder.encode().array();
@@ -50,7 +52,7 @@ public class LeaseAcquirerCodec implements MessageCodec<LeaseMessage, LeaseRespo
 
   @Override
   public byte[] encodeResponse(LeaseResponse leaseResponse) throws MessageCodecException {
-    StructEncoder<Void> encoder = responseStruct.encoder();
+    StructEncoder<Void> encoder = RESPONSE_ENCODER.get().reset();
     encoder.enm("responseType", leaseResponse.getType());
     leaseResponse.encode(encoder);
     return encoder.encode().array();
@@ -61,8 +61,8 @@ public class LeaseReconnectFinished implements LeaseMessage {
 
   public static LeaseMessage decode(StructDecoder<Void> parentDecoder) {
     StructDecoder<StructDecoder<Void>> decoder = parentDecoder.struct("leaseReconnectFinished");
-    long uuidMSB = decoder.int64("uuidMSB");
-    long uuidLSB = decoder.int64("uuidLSB");
+    long uuidMSB = MandatoryFields.int64(decoder, "uuidMSB");
+    long uuidLSB = MandatoryFields.int64(decoder, "uuidLSB");
 
     UUID uuid = new UUID(uuidMSB, uuidLSB);
     return new LeaseReconnectFinished(uuid);
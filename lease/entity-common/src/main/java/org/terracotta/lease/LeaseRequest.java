@@ -56,7 +56,7 @@ public class LeaseRequest implements LeaseMessage {
 
   public static LeaseMessage decode(StructDecoder<Void> parentDecoder) {
     StructDecoder<StructDecoder<Void>> decoder = parentDecoder.struct("leaseRequest");
-    long connectionSequenceNumber = decoder.int64("connectionSequenceNumber");
+    long connectionSequenceNumber = MandatoryFields.int64(decoder, "connectionSequenceNumber");
     return new LeaseRequest(connectionSequenceNumber);
   }
 }
@@ -90,9 +90,9 @@ public class LeaseRequestResult implements LeaseResponse {
 
   public static LeaseResponse decode(StructDecoder<Void> parentDecoder) {
     StructDecoder<StructDecoder<Void>> decoder = parentDecoder.struct("leaseRequestResult");
-    boolean connectionGood = decoder.bool("connectionGood");
-    boolean leaseGranted = decoder.bool("leaseGranted");
-    long leaseLength = decoder.int64("leaseLength");
+    boolean connectionGood = MandatoryFields.bool(decoder, "connectionGood");
+    boolean leaseGranted = MandatoryFields.bool(decoder, "leaseGranted");
+    long leaseLength = MandatoryFields.int64(decoder, "leaseLength");
     return new LeaseRequestResult(connectionGood, leaseGranted, leaseLength);
   }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.lease;
+
+import org.terracotta.runnel.decoding.StructDecoder;
+
+/**
+ * Decodes the fields every lease message carries, failing on corrupt or partial messages rather than decoding them
+ * with made-up values.
+ */
+final class MandatoryFields {
+
+  private MandatoryFields() {
+  }
+
+  static boolean bool(StructDecoder<?> decoder, String name) {
+    require(decoder, name);
+    return decoder.boolOrDefault(name, false);
+  }
+
+  static long int64(StructDecoder<?> decoder, String name) {
+    require(decoder, name);
+    return decoder.int64OrDefault(name, 0L);
+  }
+
+  private static void require(StructDecoder<?> decoder, String name) {
+    if (!decoder.has(name)) {
+      throw new IllegalArgumentException("Missing mandatory field " + name);
+    }
+  }
+}
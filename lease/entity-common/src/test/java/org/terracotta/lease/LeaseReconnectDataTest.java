@@ -16,6 +16,7 @@
 package org.terracotta.lease;
 
 import org.junit.Test;
+import org.terracotta.runnel.StructBuilder;
 
 import static org.junit.Assert.assertEquals;
 
@@ -27,4 +28,12 @@ public class LeaseReconnectDataTest {
     LeaseReconnectData roundtrippedData = LeaseReconnectData.decode(bytes);
     assertEquals(7, roundtrippedData.getConnectionSequenceNumber());
   }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void missingConnectionSequenceNumber() throws Exception {
+    StructBuilder builder = StructBuilder.newStructBuilder();
+    builder.int64("connectionSequenceNumber", 10);
+    byte[] bytes = builder.build().encoder().encode().array();
+    LeaseReconnectData.decode(bytes);
+  }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * The single daemon thread running the deferred tasks of the offheap resources, e.g.: reservation timeouts.
+ * Tasks must be short and must not block.
+ */
+final class BackgroundScheduler {
+
+  private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, r -> {
+    Thread thread = new Thread(r, "offheap-resource-scheduler");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  static {
+    SCHEDULER.setRemoveOnCancelPolicy(true);
+  }
+
+  private BackgroundScheduler() {
+  }
+
+  static ScheduledExecutorService get() {
+    return SCHEDULER;
+  }
+}
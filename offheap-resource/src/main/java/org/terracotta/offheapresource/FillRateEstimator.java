@@ -0,0 +1,99 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Estimates how fast a resource is filling up, as an exponentially weighted moving average of the variation of its
+ * usage over time.
+ * <p>
+ * The estimator is sampled off the reservation path, so it costs nothing to reservations : by a periodic task of its
+ * owner and whenever it is read. The weight of a sample depends on the time elapsed since the previous one, which
+ * makes the average independent of how often it is sampled, as long as samples are taken well within the time
+ * constant. Samples are published with a compare-and-set on an immutable snapshot, so concurrent readers
+ * never block each other.
+ */
+class FillRateEstimator {
+
+  static final long DEFAULT_TIME_CONSTANT_NANOS = TimeUnit.SECONDS.toNanos(30);
+  private static final long MIN_SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private final long timeConstantNanos;
+  private final AtomicReference<Sample> last;
+
+  /**
+   * @param timeConstantNanos the time after which a variation of the rate weighs for about two thirds of the average
+   * @param nowNanos the current time
+   * @param used the current usage
+   */
+  FillRateEstimator(long timeConstantNanos, long nowNanos, long used) {
+    this.timeConstantNanos = timeConstantNanos;
+    this.last = new AtomicReference<>(new Sample(nowNanos, used, 0.0));
+  }
+
+  /**
+   * Records the current usage, unless the previous sample is too recent, and returns the estimated rate.
+   *
+   * @param nowNanos the current time
+   * @param used the current usage
+   * @return the estimated fill rate, in bytes per second, negative when the resource is being emptied
+   */
+  double sample(long nowNanos, long used) {
+    while (true) {
+      Sample previous = last.get();
+      long elapsed = nowNanos - previous.timeNanos;
+      if (elapsed < MIN_SAMPLE_INTERVAL_NANOS) {
+        return previous.rate;
+      }
+      double instantRate = (used - previous.used) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+      double weight = 1.0 - Math.exp(-(double) elapsed / timeConstantNanos);
+      Sample next = new Sample(nowNanos, used, previous.rate + weight * (instantRate - previous.rate));
+      if (last.compareAndSet(previous, next)) {
+        return next.rate;
+      }
+    }
+  }
+
+  /**
+   * Projects when the resource will be full if it keeps filling up at the estimated rate.
+   *
+   * @param nowNanos the current time
+   * @param used the current usage
+   * @param capacity the capacity
+   * @return the projected time to full in milliseconds, or -1 if the resource is not filling up
+   */
+  long timeToFullMillis(long nowNanos, long used, long capacity) {
+    double rate = sample(nowNanos, used);
+    if (rate < 1.0) {
+      return -1L;
+    }
+    return (long) (Math.max(0L, capacity - used) * 1000.0 / rate);
+  }
+
+  private static final class Sample {
+    private final long timeNanos;
+    private final long used;
+    private final double rate;
+
+    Sample(long timeNanos, long used, double rate) {
+      this.timeNanos = timeNanos;
+      this.used = used;
+      this.rate = rate;
+    }
+  }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.offheapresource.management.MappedOffHeapResourceBinding;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * An {@link OffHeapResource} whose pages are backed by memory-mapped files rather than by direct memory.
+ * <p>
+ * Reservations are accounted exactly like for an in-memory resource. The pages handed out by the resource's
+ * {@link OffHeapAllocator} are slices of segments mapped from files created in the configured directory, which lets
+ * the operating system page the data out to disk when the resource is larger than the available memory. Segment
+ * files are unlinked as soon as they are mapped, so that nothing is left behind once the server stops.
+ * <p>
+ * Pages of any size are carved first-fit from the free ranges of the segments, and freed ranges are coalesced with
+ * their free neighbours, so that the space of a segment is reused whatever the sizes of the pages. Pages larger than
+ * a segment get a segment of their own, unmapped when they are freed, as are the segments left empty but one. The
+ * total size of the segments never exceeds the capacity of the resource.
+ */
+class MappedOffHeapResource extends OffHeapResourceImpl implements PageSource {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MappedOffHeapResource.class);
+
+  static final long DEFAULT_SEGMENT_SIZE = 256L * 1024 * 1024;
+  private static final long MIN_SEGMENT_SIZE = 1024L * 1024;
+  private static final String SEGMENT_SUFFIX = ".seg";
+  private static final Path SMAPS = Paths.get("/proc/self/smaps");
+
+  private final Path directory;
+  private final String segmentPrefix;
+  private final int segmentSize;
+  private final MappedOffHeapResourceBinding managementBinding;
+
+  private final List<Segment> segments = new ArrayList<>();
+  private final Map<ByteBuffer, Slice> slices = new IdentityHashMap<>();
+  private volatile long mappedSize;
+  private boolean exceedsPhysicalMemory;
+  private boolean closed;
+
+  /**
+   * Creates a mapped resource of the given initial size.
+   *
+   * @param identifier
+   * @param size size of the resource
+   * @param directory directory in which the segment files are created, created if missing
+   * @param segmentSize size of the mapped segments, pages larger than a segment get a segment of their own
+   * @param thresholds the usage thresholds for which events are sent
+   * @param onReservationThresholdReached event consumer - will receive events regarding usage thresholds
+   * @param onCapacityChanged event consumer - will receive an event when the capacity changes
+   * @param onSubPoolChanged event consumer - will receive an event when a sub-pool is created or removed
+   * @throws IllegalArgumentException if the size is negative, if the segment size is not a positive int or if the
+   * directory cannot be created
+   */
+  MappedOffHeapResource(String identifier, long size, Path directory, long segmentSize, UsageThresholds thresholds, BiConsumer<OffHeapResourceImpl, ThresholdChange> onReservationThresholdReached, CapacityChangeHandler onCapacityChanged, SubPoolChangeHandler onSubPoolChanged) throws IllegalArgumentException {
+    super(identifier, size, DEFAULT_STRIPES, thresholds, onReservationThresholdReached, onCapacityChanged, onSubPoolChanged);
+    if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid segment size " + segmentSize);
+    }
+    try {
+      this.directory = Files.createDirectories(directory).toAbsolutePath();
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to create the directory of offheap resource \"" + identifier + "\": " + directory, e);
+    }
+    this.segmentPrefix = identifier.replaceAll("[^A-Za-z0-9_.-]", "_") + "-";
+    this.segmentSize = (int) segmentSize;
+    this.managementBinding = new MappedOffHeapResourceBinding(identifier, this.directory.toString(), this);
+  }
+
+  /**
+   * Creates a mapped resource of the given initial size, with the default segment size.
+   *
+   * @param identifier
+   * @param size size of the resource
+   * @param directory directory in which the segment files are created, created if missing
+   * @throws IllegalArgumentException if the size is negative or if the directory cannot be created
+   */
+  MappedOffHeapResource(String identifier, long size, Path directory) throws IllegalArgumentException {
+    this(identifier, size, directory, defaultSegmentSize(size), UsageThresholds.DEFAULT, (r, p) -> {}, (r, o, n) -> {}, new SubPoolChangeHandler() {
+      @Override
+      public void onSubPoolCreated(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+        // no-op
+      }
+
+      @Override
+      public void onSubPoolRemoved(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+        // no-op
+      }
+    });
+  }
+
+  @Override
+  public MappedOffHeapResourceBinding getManagementBinding() {
+    return managementBinding;
+  }
+
+  @Override
+  PageSource pageSource() {
+    return this;
+  }
+
+  Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Returns {@code null} once the resource is closed, or when mapping another segment would make the mapped size
+   * exceed the capacity of the resource.
+   */
+  @Override
+  public synchronized ByteBuffer allocate(int capacity) {
+    if (closed) {
+      return null;
+    }
+    Segment segment = null;
+    if (capacity <= segmentSize) {
+      for (Segment candidate : segments) {
+        if (!candidate.dedicated && candidate.largestFree() >= capacity) {
+          segment = candidate;
+          break;
+        }
+      }
+    }
+    if (segment == null) {
+      // segments are cut short rather than mapped beyond the capacity
+      long size = capacity > segmentSize ? capacity : Math.max(capacity, Math.min(segmentSize, capacity() - mappedSize));
+      segment = mapSegment((int) size, capacity > segmentSize);
+      if (segment == null) {
+        return null;
+      }
+    }
+    int offset = segment.allocate(capacity);
+    ByteBuffer slice = segment.buffer.duplicate();
+    slice.limit(offset + capacity).position(offset);
+    ByteBuffer buffer = slice.slice();
+    if (offset < segment.highWater) {
+      // freshly mapped space is zeroed, reused space is not
+      OffHeapAllocatorImpl.zero(buffer);
+    }
+    segment.highWater = Math.max(segment.highWater, offset + capacity);
+    slices.put(buffer, new Slice(segment, offset));
+    return buffer;
+  }
+
+  @Override
+  public synchronized void free(ByteBuffer buffer) {
+    Slice slice = slices.remove(buffer);
+    if (slice == null) {
+      return;
+    }
+    Segment segment = slice.segment;
+    segment.free(slice.offset, buffer.capacity());
+    if (segment.isEmpty() && (closed || segment.dedicated || hasOtherEmptySegment(segment))) {
+      unmapSegment(segment);
+    }
+  }
+
+  /**
+   * Unmaps the segments no page is sliced from, and makes allocations fail from then on. The other segments are
+   * unmapped as their last page is freed, or by the garbage collector once their pages are no longer referenced :
+   * unmapping memory a page still points to would crash the process on the next access to the page.
+   */
+  @Override
+  synchronized void close() {
+    super.close();
+    closed = true;
+    for (Segment segment : new ArrayList<>(segments)) {
+      if (segment.isEmpty()) {
+        unmapSegment(segment);
+      }
+    }
+  }
+
+  private boolean hasOtherEmptySegment(Segment segment) {
+    for (Segment other : segments) {
+      if (other != segment && !other.dedicated && other.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the total size of the mapped segments
+   */
+  long mappedSize() {
+    return mappedSize;
+  }
+
+  /**
+   * Returns the part of the mapped segments that is currently resident in memory. This is read from
+   * {@code /proc/self/smaps} when available, otherwise only fully loaded segments are counted.
+   *
+   * @return the resident size of the mapped segments
+   */
+  long residentSize() {
+    Long resident = residentSizeFromSmaps();
+    if (resident != null) {
+      return resident;
+    }
+    long loaded = 0L;
+    synchronized (this) {
+      for (Segment segment : segments) {
+        if (segment.buffer.isLoaded()) {
+          loaded += segment.buffer.capacity();
+        }
+      }
+    }
+    return loaded;
+  }
+
+  private Segment mapSegment(int size, boolean dedicated) {
+    if (mappedSize + size > capacity()) {
+      LOGGER.debug("Not mapping a segment of {} bytes in {}, {} bytes already mapped", size, directory, mappedSize);
+      return null;
+    }
+    MappedByteBuffer buffer;
+    try {
+      Path file = Files.createTempFile(directory, segmentPrefix, SEGMENT_SUFFIX);
+      try (FileChannel channel = FileChannel.open(file, READ, WRITE)) {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      } finally {
+        try {
+          Files.delete(file);
+        } catch (IOException e) {
+          LOGGER.debug("Unable to delete mapped segment {}", file, e);
+          file.toFile().deleteOnExit();
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Unable to map a segment of {} bytes in {}", size, directory, e);
+      return null;
+    }
+    Segment segment = new Segment(buffer, dedicated);
+    segments.add(segment);
+    mappedSize += size;
+
+    Long physicalMemory = PhysicalMemory.totalPhysicalMemory();
+    if (!exceedsPhysicalMemory && physicalMemory != null && mappedSize > physicalMemory) {
+      exceedsPhysicalMemory = true;
+      LOGGER.warn("More offheap mapped in {} than there is physical memory [{} > {}], accesses will incur disk I/O", directory, mappedSize, physicalMemory);
+    }
+    return segment;
+  }
+
+  private void unmapSegment(Segment segment) {
+    segments.remove(segment);
+    mappedSize -= segment.buffer.capacity();
+    unmap(segment.buffer);
+  }
+
+  /**
+   * Unmaps a buffer right away rather than when it is garbage collected, through its cleaner.
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      try {
+        // Java 9+
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+      } catch (NoSuchMethodException e) {
+        // Java 8
+        Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(buffer);
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOGGER.debug("Unable to unmap a segment, it will be unmapped once garbage collected", e);
+    }
+  }
+
+  private Long residentSizeFromSmaps() {
+    if (!Files.isReadable(SMAPS)) {
+      return null;
+    }
+    String segmentPath = directory.resolve(segmentPrefix).toString();
+    long residentKb = 0L;
+    boolean inSegment = false;
+    try (BufferedReader reader = Files.newBufferedReader(SMAPS)) {
+      for (String line; (line = reader.readLine()) != null; ) {
+        int space = line.indexOf(' ');
+        String key = space < 0 ? line : line.substring(0, space);
+        if (!key.endsWith(":")) {
+          // mapping header : address range, permissions, offset, device, inode and path
+          inSegment = line.contains(segmentPath);
+        } else if (inSegment && key.equals("Rss:")) {
+          residentKb += Long.parseLong(line.substring(space).trim().split("\\s+")[0]);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      LOGGER.debug("Unable to read {}", SMAPS, e);
+      return null;
+    }
+    return residentKb * 1024;
+  }
+
+  static long defaultSegmentSize(long size) {
+    return Math.min(DEFAULT_SEGMENT_SIZE, Math.max(MIN_SEGMENT_SIZE, size));
+  }
+
+  /**
+   * A mapped segment and its free ranges, by offset.
+   */
+  private static final class Segment {
+    private final MappedByteBuffer buffer;
+    private final boolean dedicated;
+    private final TreeMap<Integer, Integer> free = new TreeMap<>();
+    private int used;
+    private int highWater; // the end of the space used so far
+
+    Segment(MappedByteBuffer buffer, boolean dedicated) {
+      this.buffer = buffer;
+      this.dedicated = dedicated;
+      free.put(0, buffer.capacity());
+    }
+
+    int largestFree() {
+      int largest = 0;
+      for (int length : free.values()) {
+        largest = Math.max(largest, length);
+      }
+      return largest;
+    }
+
+    /**
+     * @return the offset of the first free range large enough
+     */
+    int allocate(int size) {
+      for (Map.Entry<Integer, Integer> range : free.entrySet()) {
+        int offset = range.getKey();
+        int length = range.getValue();
+        if (length >= size) {
+          // the entry must not be read once removed : the tree may reuse its node for the next range
+          free.remove(offset);
+          if (length > size) {
+            free.put(offset + size, length - size);
+          }
+          used += size;
+          return offset;
+        }
+      }
+      throw new AssertionError("No free range of " + size + " bytes");
+    }
+
+    void free(int offset, int size) {
+      used -= size;
+      int start = offset;
+      int length = size;
+      Map.Entry<Integer, Integer> previous = free.floorEntry(offset);
+      if (previous != null && previous.getKey() + previous.getValue() == offset) {
+        start = previous.getKey();
+        length += previous.getValue();
+      }
+      Integer next = free.remove(offset + size);
+      if (next != null) {
+        length += next;
+      }
+      free.put(start, length);
+    }
+
+    boolean isEmpty() {
+      return used == 0;
+    }
+  }
+
+  private static final class Slice {
+    private final Segment segment;
+    private final int offset;
+
+    Slice(Segment segment, int offset) {
+      this.segment = segment;
+      this.offset = offset;
+    }
+  }
+}
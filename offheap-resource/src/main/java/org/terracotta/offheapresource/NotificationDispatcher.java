@@ -0,0 +1,100 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes notifications from a bounded queue drained by a single background thread, so that the threads raising
+ * them never wait on their delivery.
+ * <p>
+ * Notifications are delivered in the order they were dispatched. When the queue is full, new notifications are
+ * dropped and counted rather than blocking the dispatching thread. The thread is only started when there is something
+ * to deliver, and stops after a while without notifications.
+ */
+class NotificationDispatcher {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+  private static final long KEEP_ALIVE_SECONDS = 60L;
+
+  private final BlockingQueue<Runnable> queue;
+  private final ThreadPoolExecutor executor;
+  private final LongAdder dropped = new LongAdder();
+
+  /**
+   * @param name the name of the delivering thread
+   * @param capacity the maximum number of notifications waiting for delivery
+   * @throws IllegalArgumentException if the capacity is not positive
+   */
+  NotificationDispatcher(String name, int capacity) throws IllegalArgumentException {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Notification queue capacity must be positive : " + capacity);
+    }
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, r -> {
+      Thread thread = new Thread(r, name);
+      thread.setDaemon(true);
+      return thread;
+    }, (r, e) -> onDropped());
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Queues a notification for delivery, or drops it if the queue is full.
+   *
+   * @param notification the delivery of the notification
+   */
+  void dispatch(Runnable notification) {
+    executor.execute(() -> {
+      try {
+        notification.run();
+      } catch (RuntimeException e) {
+        LOGGER.warn("Failed to deliver a notification", e);
+      }
+    });
+  }
+
+  /**
+   * @return the number of notifications waiting for delivery
+   */
+  long queueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * @return the number of notifications dropped because the queue was full
+   */
+  long droppedCount() {
+    return dropped.sum();
+  }
+
+  private void onDropped() {
+    dropped.increment();
+    long count = dropped.sum();
+    // log the first drop and then at every power of two, not to make a full queue worse by flooding the logs
+    if (Long.bitCount(count) == 1) {
+      LOGGER.warn("Notification queue full [{} pending], {} notification(s) dropped so far", queue.size(), count);
+    }
+  }
+}
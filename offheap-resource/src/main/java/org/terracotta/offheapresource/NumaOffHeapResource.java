@@ -0,0 +1,185 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.terracotta.offheapresource.management.NumaOffHeapResourceBinding;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * An {@link OffHeapResource} whose capacity is partitioned over the NUMA nodes of the machine.
+ * <p>
+ * The resource as a whole accounts reservations exactly like an unpartitioned one : a reservation only fails when the
+ * whole resource is full. The partitions account the pages of the {@link #pageSource() page source} : each page is
+ * charged to the node local to the thread allocating it, which is the thread that first touches its memory and so
+ * the node the operating system places it on, and is credited back to that same node when it is freed. Plain
+ * reservations, which are not backed by any page of this resource, are not attributed to a node.
+ * <p>
+ * Partitions only report where the memory lives : they never refuse nor steer an allocation, a page allocated on a
+ * full partition is charged to it regardless and counted as spilled.
+ */
+class NumaOffHeapResource extends OffHeapResourceImpl {
+
+  private static final int PARTITION_PADDING = 8; // 8 longs, to keep every partition on its own cache line
+
+  private final NumaTopology topology;
+  private final IntSupplier localNode;
+  private final AtomicLongArray used;
+  private final LongAdder spilled = new LongAdder();
+  private final PageSource pageSource = new PartitionedPageSource();
+  private final NumaOffHeapResourceBinding managementBinding;
+  private volatile long[] capacities;
+
+  /**
+   * Creates a partitioned resource of the given initial size.
+   *
+   * @param identifier
+   * @param size size of the resource
+   * @param topology the NUMA nodes to partition the resource over
+   * @param localNode the index of the node local to the thread allocating a page
+   * @param thresholds the usage thresholds for which events are sent
+   * @param onReservationThresholdReached event consumer - will receive events regarding usage thresholds
+   * @param onCapacityChanged event consumer - will receive an event when the capacity changes
+   * @param onSubPoolChanged event consumer - will receive an event when a sub-pool is created or removed
+   * @throws IllegalArgumentException if the size is negative
+   */
+  NumaOffHeapResource(String identifier, long size, NumaTopology topology, IntSupplier localNode, UsageThresholds thresholds, BiConsumer<OffHeapResourceImpl, ThresholdChange> onReservationThresholdReached, CapacityChangeHandler onCapacityChanged, SubPoolChangeHandler onSubPoolChanged) throws IllegalArgumentException {
+    super(identifier, size, DEFAULT_STRIPES, thresholds, onReservationThresholdReached, onCapacityChanged, onSubPoolChanged);
+    this.topology = topology;
+    this.localNode = localNode;
+    this.used = new AtomicLongArray(topology.nodeCount() * PARTITION_PADDING);
+    this.capacities = topology.split(size);
+    this.managementBinding = new NumaOffHeapResourceBinding(identifier, topology.nodes(), this::partitionCapacity, this::partitionUsed, this);
+  }
+
+  /**
+   * Creates a partitioned resource of the given initial size, charging pages to the node of the CPU the allocating
+   * thread runs on.
+   *
+   * @param identifier
+   * @param size size of the resource
+   * @param topology the NUMA nodes to partition the resource over
+   * @param thresholds the usage thresholds for which events are sent
+   * @param onReservationThresholdReached event consumer - will receive events regarding usage thresholds
+   * @param onCapacityChanged event consumer - will receive an event when the capacity changes
+   * @param onSubPoolChanged event consumer - will receive an event when a sub-pool is created or removed
+   * @throws IllegalArgumentException if the size is negative
+   */
+  NumaOffHeapResource(String identifier, long size, NumaTopology topology, UsageThresholds thresholds, BiConsumer<OffHeapResourceImpl, ThresholdChange> onReservationThresholdReached, CapacityChangeHandler onCapacityChanged, SubPoolChangeHandler onSubPoolChanged) throws IllegalArgumentException {
+    this(identifier, size, topology, topology::localNode, thresholds, onReservationThresholdReached, onCapacityChanged, onSubPoolChanged);
+  }
+
+  @Override
+  public NumaOffHeapResourceBinding getManagementBinding() {
+    return managementBinding;
+  }
+
+  @Override
+  PageSource pageSource() {
+    return pageSource;
+  }
+
+  @Override
+  long changeCapacity(long size) throws IllegalArgumentException {
+    long oldCapacity = super.changeCapacity(size);
+    if (oldCapacity >= 0L) {
+      capacities = topology.split(size);
+    }
+    return oldCapacity;
+  }
+
+  /**
+   * @return the ids of the nodes the resource is partitioned over
+   */
+  int[] nodes() {
+    return topology.nodes();
+  }
+
+  /**
+   * @param index the index of a node
+   * @return the capacity of the partition of that node
+   */
+  long partitionCapacity(int index) {
+    return capacities[index];
+  }
+
+  /**
+   * @param index the index of a node
+   * @return the size of the pages allocated on that node
+   */
+  long partitionUsed(int index) {
+    return used.get(index * PARTITION_PADDING);
+  }
+
+  /**
+   * @return the number of pages allocated on a node whose partition was already full
+   */
+  long spilledReservations() {
+    return spilled.sum();
+  }
+
+  private void charge(int partition, int size) {
+    if (used.addAndGet(partition * PARTITION_PADDING, size) > capacities[partition]) {
+      spilled.increment();
+    }
+  }
+
+  private void credit(int partition, int size) {
+    used.addAndGet(partition * PARTITION_PADDING, -size);
+  }
+
+  /**
+   * Allocates direct pages, recording the partition each page was charged to.
+   */
+  private final class PartitionedPageSource implements PageSource {
+
+    private final Map<ByteBuffer, Integer> partitions = new IdentityHashMap<>();
+
+    @Override
+    public ByteBuffer allocate(int capacity) {
+      // read on the allocating thread, which zeroes and so first touches the memory of the page
+      int partition = localNode.getAsInt();
+      ByteBuffer buffer = PageSource.DIRECT.allocate(capacity);
+      if (buffer == null) {
+        return null;
+      }
+      synchronized (this) {
+        partitions.put(buffer, partition);
+      }
+      charge(partition, capacity);
+      return buffer;
+    }
+
+    @Override
+    public void free(ByteBuffer buffer) {
+      Integer partition;
+      synchronized (this) {
+        partition = partitions.remove(buffer);
+      }
+      if (partition == null) {
+        throw new IllegalArgumentException("Page was not allocated from this resource");
+      }
+      credit(partition, buffer.capacity());
+      PageSource.DIRECT.free(buffer);
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * The NUMA nodes of the machine, as described by {@code /sys/devices/system/node} on Linux.
+ * <p>
+ * Without that description, the machine is considered to be a single node. Nodes are referenced by their index in
+ * {@link #nodes()}, which is not necessarily their id.
+ */
+final class NumaTopology {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(NumaTopology.class);
+
+  static final Path SYSFS_NODES = Paths.get("/sys/devices/system/node");
+  private static final Path THREAD_STAT = Paths.get("/proc/thread-self/stat");
+  private static final Pattern NODE_DIRECTORY = Pattern.compile("node(\\d+)");
+  private static final Pattern MEM_TOTAL = Pattern.compile("MemTotal:\\s*(\\d+)\\s*kB");
+  private static final long CPU_REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  /**
+   * A machine made of a single node.
+   */
+  static final NumaTopology SINGLE_NODE = new NumaTopology(new int[] {0}, new long[] {0L}, new HashMap<>());
+
+  private final int[] nodes;
+  private final long[] memory;
+  private final Map<Integer, Integer> cpuToIndex;
+  private final ThreadLocal<LocalNode> localNode = ThreadLocal.withInitial(LocalNode::new);
+
+  NumaTopology(int[] nodes, long[] memory, Map<Integer, Integer> cpuToIndex) {
+    this.nodes = nodes;
+    this.memory = memory;
+    this.cpuToIndex = cpuToIndex;
+  }
+
+  /**
+   * @return the topology of this machine
+   */
+  static NumaTopology discover() {
+    return discover(SYSFS_NODES);
+  }
+
+  /**
+   * Reads the topology from a sysfs node directory.
+   *
+   * @param root the node directory
+   * @return the topology, or a single node if the directory cannot be read
+   */
+  static NumaTopology discover(Path root) {
+    if (!Files.isDirectory(root)) {
+      return SINGLE_NODE;
+    }
+    Map<Integer, Path> nodeDirectories = new TreeMap<>();
+    try (DirectoryStream<Path> children = Files.newDirectoryStream(root)) {
+      for (Path child : children) {
+        Matcher matcher = NODE_DIRECTORY.matcher(child.getFileName().toString());
+        if (matcher.matches() && Files.isDirectory(child)) {
+          nodeDirectories.put(Integer.parseInt(matcher.group(1)), child);
+        }
+      }
+
+      int[] nodes = new int[nodeDirectories.size()];
+      long[] memory = new long[nodeDirectories.size()];
+      Map<Integer, Integer> cpuToIndex = new HashMap<>();
+      int index = 0;
+      for (Map.Entry<Integer, Path> node : nodeDirectories.entrySet()) {
+        nodes[index] = node.getKey();
+        memory[index] = memTotal(node.getValue().resolve("meminfo"));
+        for (int cpu : cpuList(node.getValue().resolve("cpulist"))) {
+          cpuToIndex.put(cpu, index);
+        }
+        index++;
+      }
+      return nodes.length == 0 ? SINGLE_NODE : new NumaTopology(nodes, memory, cpuToIndex);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.info("Unable to read the NUMA topology from {}, considering a single node", root, e);
+      return SINGLE_NODE;
+    }
+  }
+
+  /**
+   * @return the ids of the nodes
+   */
+  int[] nodes() {
+    return nodes.clone();
+  }
+
+  int nodeCount() {
+    return nodes.length;
+  }
+
+  /**
+   * Splits a capacity between the nodes, in proportion of their memory, or evenly if it is unknown.
+   *
+   * @param capacity the capacity to split
+   * @return the share of every node
+   */
+  long[] split(long capacity) {
+    long totalMemory = 0L;
+    for (long m : memory) {
+      totalMemory += m;
+    }
+    long[] shares = new long[nodes.length];
+    long assigned = 0L;
+    for (int i = 0; i < nodes.length - 1; i++) {
+      double weight = totalMemory == 0L ? 1.0 / nodes.length : (double) memory[i] / totalMemory;
+      shares[i] = (long) (capacity * weight);
+      assigned += shares[i];
+    }
+    shares[nodes.length - 1] = capacity - assigned;
+    return shares;
+  }
+
+  /**
+   * Returns the node of the CPU the calling thread last ran on, as read at most once a second per thread. Threads
+   * whose CPU cannot be read are spread over the nodes.
+   *
+   * @return the index of the node local to the calling thread
+   */
+  int localNode() {
+    if (nodes.length == 1) {
+      return 0;
+    }
+    LocalNode local = localNode.get();
+    long now = System.nanoTime();
+    if (now - local.readNanos > CPU_REFRESH_INTERVAL_NANOS || local.index < 0) {
+      Integer index = cpuToIndex.get(currentCpu());
+      local.index = index == null ? (int) (Thread.currentThread().getId() % nodes.length) : index;
+      local.readNanos = now;
+    }
+    return local.index;
+  }
+
+  @Override
+  public String toString() {
+    return "nodes=" + Arrays.toString(nodes);
+  }
+
+  /**
+   * @return the CPU the calling thread last ran on, or -1 if it cannot be read
+   */
+  static int currentCpu() {
+    try {
+      return processorField(new String(Files.readAllBytes(THREAD_STAT), StandardCharsets.US_ASCII));
+    } catch (IOException | RuntimeException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Extracts the processor, the 39th field, of a {@code /proc/[pid]/stat} line. The second field is the command
+   * name between parentheses, which may contain spaces.
+   */
+  static int processorField(String stat) {
+    String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+    return Integer.parseInt(fields[39 - 3]);
+  }
+
+  /**
+   * Parses a CPU list such as {@code 0-3,8-11}.
+   */
+  static int[] parseCpuList(String list) {
+    return Arrays.stream(list.trim().split(","))
+        .filter(range -> !range.isEmpty())
+        .flatMapToInt(range -> {
+          int dash = range.indexOf('-');
+          if (dash < 0) {
+            return IntStream.of(Integer.parseInt(range));
+          }
+          int first = Integer.parseInt(range.substring(0, dash));
+          int last = Integer.parseInt(range.substring(dash + 1));
+          return IntStream.rangeClosed(first, last);
+        })
+        .toArray();
+  }
+
+  private static int[] cpuList(Path file) throws IOException {
+    if (!Files.isReadable(file)) {
+      return new int[0];
+    }
+    return parseCpuList(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII));
+  }
+
+  private static long memTotal(Path file) throws IOException {
+    if (!Files.isReadable(file)) {
+      return 0L;
+    }
+    Matcher matcher = MEM_TOTAL.matcher(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII));
+    return matcher.find() ? Long.parseLong(matcher.group(1)) * 1024 : 0L;
+  }
+
+  private static final class LocalNode {
+    private int index = -1;
+    private long readNanos;
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import com.tc.classloader.CommonComponent;
+
+/**
+ * Allocates direct memory pages charged against an {@link OffHeapResource}, so that consumers of the resource do
+ * not have to manage direct memory themselves.
+ * <p>
+ * Pages are rounded up to power of two size classes and freed pages are pooled, keeping their reservation, so that
+ * they can be handed out again without going through {@link java.nio.ByteBuffer#allocateDirect(int)}. Pooled pages
+ * are given back to the resource before it refuses a reservation.
+ */
+@CommonComponent
+public interface OffHeapAllocator {
+
+  /**
+   * Allocates a page of at least the given size, charged against the resource.
+   * <p>
+   * The page is filled with zeros, even when it was used by another consumer before.
+   *
+   * @param consumerId identifier of the consumer the page is allocated for
+   * @param size size of the page
+   * @return the page, or {@code null} if the resource does not have enough space left
+   * @throws IllegalArgumentException if the size is not positive
+   */
+  OffHeapPage allocate(String consumerId, int size) throws IllegalArgumentException;
+
+  /**
+   * Frees a page. The page must not be used anymore.
+   *
+   * @param page the page to free
+   * @throws IllegalArgumentException if the page was not allocated by this allocator or was already freed
+   */
+  void free(OffHeapPage page) throws IllegalArgumentException;
+
+  /**
+   * Frees all the pages of a consumer, e.g.: when the consuming entity is destroyed.
+   *
+   * @param consumerId identifier of the consumer
+   * @return the number of freed pages
+   */
+  int freeAll(String consumerId);
+
+  /**
+   * @return the total capacity of the allocated pages
+   */
+  long allocatedSize();
+
+  /**
+   * @return the total size requested for the allocated pages, the difference with {@link #allocatedSize()} being
+   * lost to size class rounding
+   */
+  long requestedSize();
+
+  /**
+   * @return the total capacity of the freed pages kept for reuse, which are still reserved from the resource
+   */
+  long pooledSize();
+}
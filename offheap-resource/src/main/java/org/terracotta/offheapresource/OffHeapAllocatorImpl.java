@@ -0,0 +1,284 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * An implementation of {@link OffHeapAllocator}.
+ */
+class OffHeapAllocatorImpl implements OffHeapAllocator {
+
+  static final int DEFAULT_MIN_PAGE_SIZE = 4 * 1024;
+  static final int DEFAULT_MAX_PAGE_SIZE = 8 * 1024 * 1024;
+  static final int DEFAULT_POOLED_FRACTION = 16;
+
+  private final OffHeapResource resource;
+  private final PageSource pageSource;
+  private final int minPageShift;
+  private final int maxPageShift;
+  private final LongSupplier maxPooledSize;
+  private final Queue<ByteBuffer>[] pools;
+  private final ConcurrentMap<String, Set<OffHeapPage>> pages = new ConcurrentHashMap<>();
+
+  private final AtomicLong pooledSize = new AtomicLong();
+  private final LongAdder allocatedSize = new LongAdder();
+  private final LongAdder requestedSize = new LongAdder();
+  private final LongAdder allocations = new LongAdder();
+  private final LongAdder reuses = new LongAdder();
+
+  /**
+   * Creates an allocator with the default size classes, pooling up to a sixteenth of the resource's current capacity.
+   *
+   * @param resource the resource the pages are charged against
+   */
+  OffHeapAllocatorImpl(OffHeapResource resource) {
+    this(resource, PageSource.DIRECT);
+  }
+
+  /**
+   * Creates an allocator with the default size classes, pooling up to a sixteenth of the resource's current capacity.
+   *
+   * @param resource the resource the pages are charged against
+   * @param pageSource the storage of the pages
+   */
+  OffHeapAllocatorImpl(OffHeapResource resource, PageSource pageSource) {
+    this(resource, pageSource, DEFAULT_MIN_PAGE_SIZE, DEFAULT_MAX_PAGE_SIZE, () -> resource.capacity() / DEFAULT_POOLED_FRACTION);
+  }
+
+  /**
+   * Creates an allocator.
+   *
+   * @param resource the resource the pages are charged against
+   * @param pageSource the storage of the pages
+   * @param minPageSize size of the smallest size class, rounded up to a power of two
+   * @param maxPageSize size of the largest size class, rounded up to a power of two, larger pages are not pooled
+   * @param maxPooledSize maximum total capacity of the pooled pages
+   * @throws IllegalArgumentException if the sizes are not consistent
+   */
+  OffHeapAllocatorImpl(OffHeapResource resource, PageSource pageSource, int minPageSize, int maxPageSize, long maxPooledSize) throws IllegalArgumentException {
+    this(resource, pageSource, minPageSize, maxPageSize, fixedSize(maxPooledSize));
+  }
+
+  @SuppressWarnings("unchecked")
+  private OffHeapAllocatorImpl(OffHeapResource resource, PageSource pageSource, int minPageSize, int maxPageSize, LongSupplier maxPooledSize) throws IllegalArgumentException {
+    if (minPageSize <= 0 || maxPageSize < minPageSize || maxPageSize > (1 << 30)) {
+      throw new IllegalArgumentException("Invalid page size range [" + minPageSize + ", " + maxPageSize + "]");
+    }
+    this.resource = resource;
+    this.pageSource = pageSource;
+    this.minPageShift = shift(minPageSize);
+    this.maxPageShift = shift(maxPageSize);
+    this.maxPooledSize = maxPooledSize;
+    this.pools = new Queue[maxPageShift - minPageShift + 1];
+    for (int i = 0; i < pools.length; i++) {
+      pools[i] = new ConcurrentLinkedQueue<>();
+    }
+    if (resource instanceof OffHeapResourceImpl) {
+      // pooled pages are given back before the resource refuses any reservation, not only those of this allocator
+      ((OffHeapResourceImpl) resource).addReclaimer(this::trim);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException {@inheritDoc}
+   */
+  @Override
+  public OffHeapPage allocate(String consumerId, int size) throws IllegalArgumentException {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Page size must be positive");
+    }
+
+    int shift = Math.max(minPageShift, shift(size));
+    int capacity = shift > maxPageShift ? size : 1 << shift;
+    ByteBuffer buffer = shift > maxPageShift ? null : pools[shift - minPageShift].poll();
+    if (buffer == null) {
+      if (!reserve(capacity)) {
+        return null;
+      }
+      buffer = pageSource.allocate(capacity);
+      if (buffer == null) {
+        resource.release(capacity);
+        return null;
+      }
+      allocations.increment();
+    } else {
+      pooledSize.addAndGet(-capacity);
+      reuses.increment();
+    }
+
+    OffHeapPage page = new OffHeapPage(this, consumerId, buffer, size);
+    // added under the lock of the consumer's entry, so that a concurrent freeAll either frees the page or misses it
+    pages.compute(consumerId, (id, consumerPages) -> {
+      Set<OffHeapPage> added = consumerPages == null ? ConcurrentHashMap.newKeySet() : consumerPages;
+      added.add(page);
+      return added;
+    });
+    allocatedSize.add(capacity);
+    requestedSize.add(size);
+    return page;
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException {@inheritDoc}
+   */
+  @Override
+  public void free(OffHeapPage page) throws IllegalArgumentException {
+    Set<OffHeapPage> consumerPages = page.getAllocator() == this ? pages.get(page.getConsumerId()) : null;
+    if (consumerPages == null || !consumerPages.remove(page)) {
+      throw new IllegalArgumentException("Page was not allocated by this allocator or was already freed");
+    }
+    pages.computeIfPresent(page.getConsumerId(), (id, remaining) -> remaining.isEmpty() ? null : remaining);
+    recycle(page);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int freeAll(String consumerId) {
+    Set<OffHeapPage> consumerPages = pages.remove(consumerId);
+    if (consumerPages == null) {
+      return 0;
+    }
+    int freed = 0;
+    for (OffHeapPage page : consumerPages) {
+      if (consumerPages.remove(page)) {
+        recycle(page);
+        freed++;
+      }
+    }
+    return freed;
+  }
+
+  @Override
+  public long allocatedSize() {
+    return allocatedSize.sum();
+  }
+
+  @Override
+  public long requestedSize() {
+    return requestedSize.sum();
+  }
+
+  @Override
+  public long pooledSize() {
+    return pooledSize.get();
+  }
+
+  /**
+   * @return the number of pages that had to be allocated from the system
+   */
+  long allocationCount() {
+    return allocations.sum();
+  }
+
+  /**
+   * @return the number of pages that were served from the pool
+   */
+  long reuseCount() {
+    return reuses.sum();
+  }
+
+  /**
+   * Gives all the pooled pages back to the resource.
+   *
+   * @return the released size
+   */
+  long trim() {
+    long released = 0L;
+    for (Queue<ByteBuffer> pool : pools) {
+      for (ByteBuffer buffer; (buffer = pool.poll()) != null; ) {
+        pooledSize.addAndGet(-buffer.capacity());
+        released += buffer.capacity();
+        pageSource.free(buffer);
+      }
+    }
+    if (released > 0L) {
+      resource.release(released);
+    }
+    return released;
+  }
+
+  private boolean reserve(int capacity) {
+    return resource.reserve(capacity) || (trim() > 0L && resource.reserve(capacity));
+  }
+
+  private void recycle(OffHeapPage page) {
+    ByteBuffer buffer = page.getBuffer();
+    int capacity = buffer.capacity();
+    allocatedSize.add(-capacity);
+    requestedSize.add(-page.size());
+
+    int shift = Integer.numberOfTrailingZeros(capacity);
+    if (Integer.bitCount(capacity) == 1 && shift >= minPageShift && shift <= maxPageShift && addToPooled(capacity)) {
+      // the next consumer of the page must not see the data of this one
+      zero(buffer);
+      pools[shift - minPageShift].offer(buffer);
+    } else {
+      pageSource.free(buffer);
+      resource.release(capacity);
+    }
+  }
+
+  private boolean addToPooled(int capacity) {
+    long max = maxPooledSize.getAsLong();
+    while (true) {
+      long current = pooledSize.get();
+      if (current + capacity > max) {
+        return false;
+      }
+      if (pooledSize.compareAndSet(current, current + capacity)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Fills a buffer with zeros, whatever its position and limit.
+   */
+  static void zero(ByteBuffer buffer) {
+    ByteBuffer zeroed = buffer.duplicate();
+    zeroed.clear();
+    while (zeroed.remaining() >= Long.BYTES) {
+      zeroed.putLong(0L);
+    }
+    while (zeroed.hasRemaining()) {
+      zeroed.put((byte) 0);
+    }
+  }
+
+  private static LongSupplier fixedSize(long maxPooledSize) throws IllegalArgumentException {
+    if (maxPooledSize < 0) {
+      throw new IllegalArgumentException("Pooled size cannot be negative");
+    }
+    return () -> maxPooledSize;
+  }
+
+  private static int shift(int size) {
+    return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+  }
+}
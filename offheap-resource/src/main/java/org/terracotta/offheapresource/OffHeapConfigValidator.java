@@ -17,6 +17,7 @@ package org.terracotta.offheapresource;
 
 import org.terracotta.config.service.ConfigValidator;
 import org.terracotta.config.service.ValidationException;
+import org.terracotta.offheapresource.config.MappedResourceType;
 import org.terracotta.offheapresource.config.OffheapResourcesType;
 import org.terracotta.offheapresource.config.ResourceType;
 import org.w3c.dom.Element;
@@ -25,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.terracotta.offheapresource.OffHeapResourcesProvider.convert;
 import static org.terracotta.offheapresource.OffHeapResourcesProvider.longValueExact;
@@ -41,7 +43,8 @@ public class OffHeapConfigValidator implements ConfigValidator {
     OffheapResourcesType oneOffHeapObj = createObject(oneFragment);
     OffheapResourcesType otherOffHeapObj = createObject(otherFragment);
 
-    if (oneOffHeapObj.getResource().size() != otherOffHeapObj.getResource().size()) {
+    if (oneOffHeapObj.getResource().size() != otherOffHeapObj.getResource().size()
+        || oneOffHeapObj.getMappedResource().size() != otherOffHeapObj.getMappedResource().size()) {
       throw new ValidationException("Number of Off Heap definitions are not matching."
           , ValidationFailureId.DIFFERENT_NUMBER_OF_OFFHEAP_DEFINITIONS.getFailureId());
     }
@@ -58,8 +61,8 @@ public class OffHeapConfigValidator implements ConfigValidator {
   }
 
   protected Map<String, ResourceType> createOffHeapResourceMap(OffheapResourcesType offheapResourcesType) {
-    return offheapResourcesType.getResource().stream().collect(Collectors.toMap(
-        ResourceType::getName, Function.identity()));
+    return Stream.concat(offheapResourcesType.getResource().stream(), offheapResourcesType.getMappedResource().stream())
+        .collect(Collectors.toMap(ResourceType::getName, Function.identity()));
   }
 
   protected boolean compareOffHeapResources(Map<String, ResourceType> oneMap, Map<String, ResourceType> otherMap) {
@@ -69,7 +72,12 @@ public class OffHeapConfigValidator implements ConfigValidator {
       return false;
     }
     for (ResourceType one : oneMap.values()) {
-      if (!(compareOffHeapResourceSizes(one, otherMap.get(one.getName())))) {
+      ResourceType other = otherMap.get(one.getName());
+      // a resource must be mapped on every server or on none, the directories may differ
+      if ((one instanceof MappedResourceType) != (other instanceof MappedResourceType)) {
+        return false;
+      }
+      if (!(compareOffHeapResourceSizes(one, other))) {
         return false;
       }
     }
@@ -0,0 +1,74 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import com.tc.classloader.CommonComponent;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A direct memory page allocated by an {@link OffHeapAllocator}.
+ */
+@CommonComponent
+public final class OffHeapPage {
+
+  private final OffHeapAllocator allocator;
+  private final String consumerId;
+  private final ByteBuffer buffer;
+  private final ByteBuffer view;
+
+  OffHeapPage(OffHeapAllocator allocator, String consumerId, ByteBuffer buffer, int size) {
+    this.allocator = allocator;
+    this.consumerId = consumerId;
+    this.buffer = buffer;
+    ByteBuffer view = buffer.duplicate();
+    view.clear().limit(size);
+    this.view = view.slice();
+  }
+
+  /**
+   * @return the page content, which capacity is the requested size
+   */
+  public ByteBuffer asByteBuffer() {
+    return view;
+  }
+
+  /**
+   * @return the requested size
+   */
+  public int size() {
+    return view.capacity();
+  }
+
+  /**
+   * @return the size actually allocated, i.e.: the requested size rounded up to its size class
+   */
+  public int capacity() {
+    return buffer.capacity();
+  }
+
+  public String getConsumerId() {
+    return consumerId;
+  }
+
+  OffHeapAllocator getAllocator() {
+    return allocator;
+  }
+
+  ByteBuffer getBuffer() {
+    return buffer;
+  }
+}
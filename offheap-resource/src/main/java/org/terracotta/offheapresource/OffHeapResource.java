@@ -17,6 +17,9 @@ package org.terracotta.offheapresource;
 
 import com.tc.classloader.CommonComponent;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Represents an offheap resource, providing a reservation system that can be
  * used to control the combined memory usage of participating consumers.
@@ -40,6 +43,32 @@ public interface OffHeapResource {
    */
   boolean reserve(long size) throws IllegalArgumentException;
 
+  /**
+   * Reserves the given amount of this resource, waiting for it to become available rather than failing straight
+   * away when this resource is full.
+   * <p>
+   * Waiting reservations are queued and granted in FIFO order as {@link #release(long)} or
+   * {@link #setCapacity(long)} free enough space, and {@link #reserve(long)} fails when it would not leave enough
+   * space for the first waiting reservation, so that it cannot take the space freed for it. A reservation larger
+   * than the {@link #capacity()} does not wait. Like {@link #reserve(long)}, this method <em>performs no
+   * allocation</em>. Cancelling the returned future withdraws the reservation request.
+   * <p>
+   * The default implementation does not wait : it completes the future with the outcome of {@link #reserve(long)}.
+   *
+   * @param size reservation size
+   * @param timeout how long to wait for the reservation, 0 to not wait at all
+   * @param unit the unit of the timeout
+   * @return a future completed with {@code true} once the reservation succeeded, or with {@code false} if it did
+   * not succeed within the timeout
+   * @throws IllegalArgumentException if the reservation size or the timeout is negative
+   */
+  default CompletableFuture<Boolean> reserveAsync(long size, long timeout, TimeUnit unit) throws IllegalArgumentException {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("Timeout cannot be negative");
+    }
+    return CompletableFuture.completedFuture(reserve(size));
+  }
+
   /**
    * Releases the given amount of resource back to this pool.
    *
@@ -69,4 +98,40 @@ public interface OffHeapResource {
    * @throws IllegalArgumentException if the new capacity is negative
    */
   boolean setCapacity(long size) throws IllegalArgumentException;
+
+  /**
+   * Creates a sub-pool of this resource dedicated to a consumer, so that consumers sharing this resource cannot
+   * starve each other.
+   * <p>
+   * The guaranteed minimum is reserved from this resource straight away and stays reserved until the sub-pool is
+   * removed. Reservations made through the sub-pool beyond that minimum are taken from this resource, and never
+   * exceed the sub-pool's maximum, which is reported as its {@link #capacity()}.
+   * <p>
+   * The default implementation does not support sub-pools.
+   *
+   * @param consumerId identifier of the consumer the sub-pool is dedicated to
+   * @param min guaranteed minimum size of the sub-pool
+   * @param max maximum size of the sub-pool
+   * @return the sub-pool
+   * @throws IllegalArgumentException if the minimum is negative or greater than the maximum, or if the consumer
+   * already has a sub-pool
+   * @throws IllegalStateException if this resource does not have the minimum available
+   * @throws UnsupportedOperationException if this resource does not support sub-pools
+   */
+  default OffHeapResource createSubPool(String consumerId, long min, long max) throws IllegalArgumentException, IllegalStateException {
+    throw new UnsupportedOperationException("Sub-pools are not supported by " + getClass().getName());
+  }
+
+  /**
+   * Removes the sub-pool of a consumer and gives everything it holds back to this resource. Reservations made
+   * through a removed sub-pool fail and releases are ignored.
+   * <p>
+   * The default implementation, which does not support sub-pools, returns {@code false}.
+   *
+   * @param consumerId identifier of the consumer
+   * @return {@code true} if the consumer had a sub-pool
+   */
+  default boolean removeSubPool(String consumerId) {
+    return false;
+  }
 }
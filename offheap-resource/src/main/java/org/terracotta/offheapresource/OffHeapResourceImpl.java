@@ -21,10 +21,21 @@ import org.terracotta.offheapresource.management.OffHeapResourceBinding;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
 
 /**
  * An implementation of {@link OffHeapResource}.
@@ -61,32 +72,140 @@ class OffHeapResourceImpl implements OffHeapResource {
     }
   }
 
-  private final AtomicReference<OffHeapResourceState> state;
+  /**
+   * Number of reservation stripes, 0 disables striping so that every call updates the shared counter.
+   */
+  static final int DEFAULT_STRIPES = Integer.getInteger("terracotta.offheap.stripes", defaultStripes());
+
+  private static final int CHUNKS_PER_STRIPE = 64;
+  private static final int STRIPE_PADDING = 8; // 8 longs, to keep every stripe on its own cache line
+  private static final int RESERVE_COUNT = 0;
+  private static final int RELEASE_COUNT = 1;
+  private static final int FAILED_RESERVE_COUNT = 2;
+
   private final String identifier;
   private final BiConsumer<OffHeapResourceImpl, ThresholdChange> onReservationThresholdReached;
   private final CapacityChangeHandler onCapacityChanged;
+  private final SubPoolChangeHandler onSubPoolChanged;
   private final OffHeapResourceBinding managementBinding;
+  private final ConcurrentMap<String, OffHeapSubPool> subPools = new ConcurrentHashMap<>();
+  private final ReservationWaiters waiters = new ReservationWaiters(this, this::reserveNow);
+  private final Collection<LongSupplier> reclaimers = new CopyOnWriteArrayList<>();
+  private final UsageThresholds thresholds;
   private final AtomicInteger threshold = new AtomicInteger();
+  private final AtomicBoolean notificationScheduled = new AtomicBoolean();
+  private final Object notificationLock = new Object();
+  private int notifiedThreshold; // guarded by notificationLock
+  private final AtomicInteger peakThreshold = new AtomicInteger(); // highest threshold reached since the last notification
+  private volatile long lastNotificationNanos;
+  private final FillRateEstimator fillRate;
+
+  /*
+   * The capacity is split between what is left in the shared counter and the local budgets of the stripes, which
+   * are reserved from the shared counter in chunks so that most reservations and releases only touch the stripe of
+   * the calling thread. The capacity invariant is enforced by never letting the shared counter go negative.
+   *
+   * Budgets are only handed out while the resource stays below the lowest threshold, so any usage that could
+   * cross a threshold goes through the shared counter. Budgets are taken back before a threshold is evaluated and
+   * before a reservation or a capacity shrink is refused, which keeps both exact.
+   */
+  private final AtomicLong remaining;
+  private final AtomicLongArray budgets;
+  private final int stripeCount;
+  private final int stripeMask;
+  private volatile long capacity;
+  private volatile long chunkSize;
+  private volatile int capacityVersion; // odd while the capacity is being changed
+
+  private final AtomicLongArray operationCounts; // the operation counts of every stripe, laid out like the budgets
+  private volatile UsageHistory history;
+  private ScheduledFuture<?> historyTask;
 
   /**
    * Creates a resource of the given initial size.
    *
    * @param identifier
    * @param size size of the resource
+   * @param stripes number of reservation stripes, rounded up to a power of two, 0 to disable striping
+   * @param thresholds the usage thresholds for which events are sent
    * @param onReservationThresholdReached event consumer - will receive events regarding usage thresholds
    * @param onCapacityChanged event consumer - will receive an event when the capacity changes
-   * @throws IllegalArgumentException if the size is negative
+   * @param onSubPoolChanged event consumer - will receive an event when a sub-pool is created or removed
+   * @throws IllegalArgumentException if the size or the number of stripes is negative
    */
-  OffHeapResourceImpl(String identifier, long size, BiConsumer<OffHeapResourceImpl, ThresholdChange> onReservationThresholdReached, CapacityChangeHandler onCapacityChanged) throws IllegalArgumentException {
+  OffHeapResourceImpl(String identifier, long size, int stripes, UsageThresholds thresholds, BiConsumer<OffHeapResourceImpl, ThresholdChange> onReservationThresholdReached, CapacityChangeHandler onCapacityChanged, SubPoolChangeHandler onSubPoolChanged) throws IllegalArgumentException {
+    this.thresholds = thresholds;
     this.onReservationThresholdReached = onReservationThresholdReached;
     this.onCapacityChanged = onCapacityChanged;
+    this.onSubPoolChanged = onSubPoolChanged;
     this.managementBinding = new OffHeapResourceBinding(identifier, this);
     if (size < 0) {
       throw new IllegalArgumentException("Resource size cannot be negative");
     }
+    if (stripes < 0) {
+      throw new IllegalArgumentException("Stripe count cannot be negative");
+    }
 
-    this.state = new AtomicReference<>(new OffHeapResourceState(size));
+    this.stripeCount = stripes <= 1 ? stripes : Integer.highestOneBit(stripes - 1) << 1;
+    this.stripeMask = Math.max(0, stripeCount - 1);
+    this.budgets = new AtomicLongArray(Math.max(1, stripeCount) * STRIPE_PADDING);
+    this.operationCounts = new AtomicLongArray(Math.max(1, stripeCount) * STRIPE_PADDING);
+    this.remaining = new AtomicLong(size);
+    this.capacity = size;
+    this.chunkSize = chunkSize(size, stripeCount);
     this.identifier = identifier;
+    this.lastNotificationNanos = System.nanoTime() - thresholds.notificationIntervalNanos();
+    this.fillRate = new FillRateEstimator(FillRateEstimator.DEFAULT_TIME_CONSTANT_NANOS, System.nanoTime(), 0L);
+  }
+
+  /**
+   * Creates a resource of the given initial size.
+   *
+   * @param identifier
+   * @param size size of the resource
+   * @param stripes number of reservation stripes, rounded up to a power of two, 0 to disable striping
+   * @param onReservationThresholdReached event consumer - will receive events regarding usage thresholds
+   * @param onCapacityChanged event consumer - will receive an event when the capacity changes
+   * @param onSubPoolChanged event consumer - will receive an event when a sub-pool is created or removed
+   * @throws IllegalArgumentException if the size or the number of stripes is negative
+   */
+  OffHeapResourceImpl(String identifier, long size, int stripes, BiConsumer<OffHeapResourceImpl, ThresholdChange> onReservationThresholdReached, CapacityChangeHandler onCapacityChanged, SubPoolChangeHandler onSubPoolChanged) throws IllegalArgumentException {
+    this(identifier, size, stripes, UsageThresholds.DEFAULT, onReservationThresholdReached, onCapacityChanged, onSubPoolChanged);
+  }
+
+  /**
+   * Creates a resource of the given initial size.
+   *
+   * @param identifier
+   * @param size size of the resource
+   * @param stripes number of reservation stripes, rounded up to a power of two, 0 to disable striping
+   * @param onReservationThresholdReached event consumer - will receive events regarding usage thresholds
+   * @param onCapacityChanged event consumer - will receive an event when the capacity changes
+   * @throws IllegalArgumentException if the size or the number of stripes is negative
+   */
+  OffHeapResourceImpl(String identifier, long size, int stripes, BiConsumer<OffHeapResourceImpl, ThresholdChange> onReservationThresholdReached, CapacityChangeHandler onCapacityChanged) throws IllegalArgumentException {
+    this(identifier, size, stripes, onReservationThresholdReached, onCapacityChanged, new SubPoolChangeHandler() {
+      @Override
+      public void onSubPoolCreated(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+      }
+
+      @Override
+      public void onSubPoolRemoved(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+      }
+    });
+  }
+
+  /**
+   * Creates a resource of the given initial size.
+   *
+   * @param identifier
+   * @param size size of the resource
+   * @param onReservationThresholdReached event consumer - will receive events regarding usage thresholds
+   * @param onCapacityChanged event consumer - will receive an event when the capacity changes
+   * @throws IllegalArgumentException if the size is negative
+   */
+  OffHeapResourceImpl(String identifier, long size, BiConsumer<OffHeapResourceImpl, ThresholdChange> onReservationThresholdReached, CapacityChangeHandler onCapacityChanged) throws IllegalArgumentException {
+    this(identifier, size, DEFAULT_STRIPES, onReservationThresholdReached, onCapacityChanged);
   }
 
   /**
@@ -117,6 +236,13 @@ class OffHeapResourceImpl implements OffHeapResource {
     return managementBinding;
   }
 
+  /**
+   * @return the storage of the pages allocated against this resource
+   */
+  PageSource pageSource() {
+    return PageSource.DIRECT;
+  }
+
   /**
    * {@inheritDoc}
    * @throws IllegalArgumentException {@inheritDoc}
@@ -126,52 +252,312 @@ class OffHeapResourceImpl implements OffHeapResource {
     if (size < 0) {
       throw new IllegalArgumentException("Reservation size cannot be negative");
     }
+    if (!waiters.admits(size)) {
+      // the space being freed is promised to the waiting reservations
+      operationCounts.incrementAndGet(stripe() + FAILED_RESERVE_COUNT);
+      return false;
+    }
+    return reserveNow(size);
+  }
+
+  /**
+   * Reserves the given amount of this resource, regardless of the waiting reservations.
+   */
+  private boolean reserveNow(long size) {
+    int stripe = stripe();
+    if (threshold.get() == 0) {
+      if (takeFromBudget(stripe, size) || refillBudget(stripe, size)) {
+        operationCounts.incrementAndGet(stripe + RESERVE_COUNT);
+        return true;
+      }
+    }
 
     while (true) {
-      OffHeapResourceState currentState = state.get();
-      OffHeapResourceState newState = currentState.reserve(size);
+      if (takeFromShared(size)) {
+        operationCounts.incrementAndGet(stripe + RESERVE_COUNT);
+        stateUpdated();
+        return true;
+      }
+      if (flushBudgets() == 0L && reclaim() == 0L) {
+        operationCounts.incrementAndGet(stripe + FAILED_RESERVE_COUNT);
+        return false;
+      }
+    }
+  }
 
-      if (newState.isOverflowed()) {
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException {@inheritDoc}
+   */
+  @Override
+  public CompletableFuture<Boolean> reserveAsync(long size, long timeout, TimeUnit unit) throws IllegalArgumentException {
+    return waiters.reserve(size, timeout, unit);
+  }
+
+  private boolean takeFromBudget(int stripe, long size) {
+    while (true) {
+      long budget = budgets.get(stripe);
+      if (budget < size || budget == 0L) {
         return false;
       }
+      if (budgets.compareAndSet(stripe, budget, budget - size)) {
+        return true;
+      }
+    }
+  }
 
-      if (state.compareAndSet(currentState, newState)) {
-        stateUpdated(newState);
+  /**
+   * Take the reservation plus a chunk for the stripe's budget from the shared counter, if that keeps the resource
+   * under the lowest threshold.
+   */
+  private boolean refillBudget(int stripe, long size) {
+    long chunk = chunkSize;
+    if (chunk == 0L) {
+      return false;
+    }
+    long capacity = this.capacity;
+    long wanted = size + chunk;
+    while (true) {
+      long current = remaining.get();
+      if (current < wanted || !belowLowestThreshold(capacity - (current - wanted), capacity)) {
+        return false;
+      }
+      if (remaining.compareAndSet(current, current - wanted)) {
+        budgets.addAndGet(stripe, chunk);
         return true;
       }
     }
   }
 
-  private void stateUpdated(OffHeapResourceState newState) {
-    long capacity = newState.getCapacity();
-    long used = newState.getUsed();
+  private boolean takeFromShared(long size) {
+    while (true) {
+      long current = remaining.get();
+      if (current < size) {
+        return false;
+      }
+      if (remaining.compareAndSet(current, current - size)) {
+        return true;
+      }
+    }
+  }
 
-    long percentOccupied = (used * 100L) / capacity;
-    int newT, curT = threshold.get();
-    if (percentOccupied >= 90L) {
-      newT = 90;
-    } else if (percentOccupied >= 75L) {
-      newT = 75;
-    } else {
-      newT = 0;
+  /**
+   * Registers space reserved from this resource that is idle, e.g.: pooled pages, so that it is given back before a
+   * reservation or a capacity shrink is refused.
+   *
+   * @param reclaimer releases the idle space to this resource, returning the released size
+   */
+  void addReclaimer(LongSupplier reclaimer) {
+    reclaimers.add(reclaimer);
+  }
+
+  /**
+   * @return the size released by the reclaimers
+   */
+  private long reclaim() {
+    long reclaimed = 0L;
+    for (LongSupplier reclaimer : reclaimers) {
+      reclaimed += reclaimer.getAsLong();
     }
-    if (threshold.compareAndSet(curT, newT)) {
-      if (newT > curT) {
-        // increase from 0->75 or 75->90
-        if (newT == 90) {
-          LOGGER.warn(MESSAGE_PROPERTIES.getProperty(OFFHEAP_WARN_KEY), identifier, percentOccupied);
-        } else {
-          LOGGER.info(MESSAGE_PROPERTIES.getProperty(OFFHEAP_INFO_KEY), identifier, percentOccupied);
-        }
-        onReservationThresholdReached.accept(this, new ThresholdChange(curT, newT));
-      } else if (newT < curT) {
-        // decrease from 90->75 or 75->0
-        if (newT == 75) {
-          LOGGER.info(MESSAGE_PROPERTIES.getProperty(OFFHEAP_INFO_KEY), identifier, percentOccupied);
-        }
-        onReservationThresholdReached.accept(this, new ThresholdChange(curT, newT));
+    return reclaimed;
+  }
+
+  /**
+   * Give every budget back to the shared counter.
+   *
+   * @return the amount that was given back
+   */
+  private long flushBudgets() {
+    long flushed = 0L;
+    for (int i = 0; i < budgets.length(); i += STRIPE_PADDING) {
+      if (budgets.get(i) != 0L) {
+        flushed += budgets.getAndSet(i, 0L);
       }
     }
+    if (flushed != 0L) {
+      remaining.addAndGet(flushed);
+    }
+    return flushed;
+  }
+
+  private void stateUpdated() {
+    long capacity;
+    long used;
+    while (true) {
+      int version = capacityVersion;
+      capacity = this.capacity;
+      used = capacity - remaining.get();
+      if (!belowLowestThreshold(used, capacity)) {
+        // budgets count as used in the shared counter, take them back to evaluate the threshold on the real usage
+        flushBudgets();
+        used = capacity - remaining.get();
+      }
+      if ((version & 1) == 0 && version == capacityVersion) {
+        break;
+      }
+      Thread.yield();
+    }
+
+    long percentOccupied = capacity == 0L ? 0L : (used * 100L) / capacity;
+    int newT, curT;
+    do {
+      curT = threshold.get();
+      newT = thresholds.next(curT, percentOccupied);
+      if (newT == curT) {
+        return;
+      }
+    } while (!threshold.compareAndSet(curT, newT));
+
+    if (newT > curT) {
+      peakThreshold.accumulateAndGet(newT, Math::max);
+      if (newT == thresholds.highest()) {
+        LOGGER.warn(MESSAGE_PROPERTIES.getProperty(OFFHEAP_WARN_KEY), identifier, percentOccupied);
+      } else {
+        LOGGER.info(MESSAGE_PROPERTIES.getProperty(OFFHEAP_INFO_KEY), identifier, percentOccupied);
+      }
+    } else if (newT != 0) {
+      LOGGER.info(MESSAGE_PROPERTIES.getProperty(OFFHEAP_INFO_KEY), identifier, percentOccupied);
+    }
+    thresholdChanged();
+  }
+
+  /**
+   * Notify the threshold change, unless a notification was sent less than the notification interval ago, in which
+   * case the notification is deferred to the end of the interval. A deferred notification goes from the last notified
+   * threshold to the one reached by then, through the highest threshold reached in between if the usage went back
+   * down from it, so that no threshold crossed upwards goes unnoticed.
+   */
+  private void thresholdChanged() {
+    long interval = thresholds.notificationIntervalNanos();
+    if (interval == 0L) {
+      notifyThreshold();
+      return;
+    }
+    if (notificationScheduled.compareAndSet(false, true)) {
+      long delay = lastNotificationNanos + interval - System.nanoTime();
+      if (delay <= 0L) {
+        notificationScheduled.set(false);
+        notifyThreshold();
+      } else {
+        BackgroundScheduler.get().schedule(() -> {
+          notificationScheduled.set(false);
+          notifyThreshold();
+        }, delay, TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  private void notifyThreshold() {
+    synchronized (notificationLock) {
+      // the peak is taken before the threshold, so that a rise racing with this notification is not lost
+      int peak = peakThreshold.getAndSet(0);
+      int now = threshold.get();
+      int old = notifiedThreshold;
+      if (peak > old && peak > now) {
+        notifiedThreshold = peak;
+        lastNotificationNanos = System.nanoTime();
+        onReservationThresholdReached.accept(this, new ThresholdChange(old, peak));
+        old = peak;
+      }
+      if (now != old) {
+        notifiedThreshold = now;
+        lastNotificationNanos = System.nanoTime();
+        onReservationThresholdReached.accept(this, new ThresholdChange(old, now));
+      }
+    }
+  }
+
+  /**
+   * @return the estimated rate at which this resource is filling up, in bytes per second, negative when it is being
+   * emptied
+   */
+  long fillRate() {
+    return (long) fillRate.sample(System.nanoTime(), capacity - available());
+  }
+
+  /**
+   * @return the projected time until this resource is full at the current fill rate in milliseconds, or -1 if it is
+   * not filling up
+   */
+  long timeToFull() {
+    long capacity = this.capacity;
+    return fillRate.timeToFullMillis(System.nanoTime(), capacity - available(), capacity);
+  }
+
+  /**
+   * @return the number of successful reservations so far
+   */
+  long reserveCount() {
+    return operationCount(RESERVE_COUNT);
+  }
+
+  /**
+   * @return the number of releases so far
+   */
+  long releaseCount() {
+    return operationCount(RELEASE_COUNT);
+  }
+
+  /**
+   * @return the number of reservations refused so far, including the attempts made for the waiting reservations
+   */
+  long failedReserveCount() {
+    return operationCount(FAILED_RESERVE_COUNT);
+  }
+
+  private long operationCount(int offset) {
+    long count = 0L;
+    for (int i = offset; i < operationCounts.length(); i += STRIPE_PADDING) {
+      count += operationCounts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Starts sampling the usage and the operation counts of this resource at a fixed rate into a history. The same task
+   * samples the fill rate estimate, which is otherwise only sampled when it is read.
+   *
+   * @param size the number of samples kept
+   * @param interval the sampling interval
+   * @param unit the unit of the interval
+   * @return the history
+   * @throws IllegalArgumentException if the size or the interval is not positive
+   * @throws IllegalStateException if the history is already being recorded
+   */
+  synchronized UsageHistory recordHistory(int size, long interval, TimeUnit unit) throws IllegalArgumentException, IllegalStateException {
+    if (history != null) {
+      throw new IllegalStateException("The history of offheap resource \"" + identifier + "\" is already being recorded");
+    }
+    if (interval <= 0L) {
+      throw new IllegalArgumentException("Sampling interval must be positive : " + interval);
+    }
+    UsageHistory history = new UsageHistory(size);
+    // a periodic task never overlaps with itself, which makes it the only writer of the history
+    this.historyTask = BackgroundScheduler.get().scheduleAtFixedRate(() -> {
+      long used = capacity - available();
+      history.record(System.currentTimeMillis(), used, reserveCount(), releaseCount(), failedReserveCount());
+      fillRate.sample(System.nanoTime(), used);
+    }, 0L, interval, unit);
+    this.history = history;
+    return history;
+  }
+
+  /**
+   * @return the usage history, or {@code null} if it is not recorded
+   */
+  UsageHistory history() {
+    return history;
+  }
+
+  /**
+   * Stops the background tasks of this resource : its usage history, if recorded, is no longer sampled. The resource
+   * itself remains usable.
+   */
+  synchronized void close() {
+    if (historyTask != null) {
+      historyTask.cancel(false);
+      historyTask = null;
+    }
   }
 
   /**
@@ -184,13 +570,31 @@ class OffHeapResourceImpl implements OffHeapResource {
       throw new IllegalArgumentException("Released size cannot be negative");
     }
 
-    while (true) {
-      OffHeapResourceState currentState = state.get();
-      OffHeapResourceState newState = currentState.release(size);
+    int stripe = stripe();
+    operationCounts.incrementAndGet(stripe + RELEASE_COUNT);
+    long chunk = chunkSize;
+    if (chunk != 0L && threshold.get() == 0) {
+      // below the thresholds, keep up to two chunks in the stripe's budget and give the rest back
+      long budget = budgets.addAndGet(stripe, size);
+      long excess = budget - 2 * chunk;
+      if (excess > 0L && takeFromBudget(stripe, excess)) {
+        remaining.addAndGet(excess);
+      }
+    } else {
+      remaining.addAndGet(size);
+      stateUpdated();
+    }
+    spaceFreed();
+  }
 
-      if (state.compareAndSet(currentState, newState)) {
-        stateUpdated(newState);
-        return;
+  /**
+   * Hand the freed space to the waiting reservations, those of this resource first and then those of its sub-pools.
+   */
+  private void spaceFreed() {
+    waiters.signal();
+    if (!subPools.isEmpty()) {
+      for (OffHeapSubPool subPool : subPools.values()) {
+        subPool.spaceFreed();
       }
     }
   }
@@ -200,86 +604,155 @@ class OffHeapResourceImpl implements OffHeapResource {
    */
   @Override
   public long available() {
-    return state.get().getRemaining();
+    long available = remaining.get();
+    for (int i = 0; i < budgets.length(); i += STRIPE_PADDING) {
+      available += budgets.get(i);
+    }
+    return available;
   }
 
   @Override
   public long capacity() {
-    return state.get().getCapacity();
+    return capacity;
   }
 
   @Override
   public boolean setCapacity(long size) throws IllegalArgumentException {
-    if (size < 0) {
-      throw new IllegalArgumentException("New capacity size cannot be negative");
+    long oldCapacity = changeCapacity(size);
+    if (oldCapacity < 0L) {
+      return false;
     }
 
-    while (true) {
-      OffHeapResourceState currentState = state.get();
-      OffHeapResourceState newState = currentState.withCapacity(size);
+    onCapacityChanged.onCapacityChanged(this, oldCapacity, size);
+    capacityChanged(oldCapacity, size);
+    return true;
+  }
 
-      if (newState.isOverflowed()) {
-        return false;
-      }
+  /**
+   * Changes the capacity of this resource, without notifying the change.
+   *
+   * @param size new capacity for the offheap resource
+   * @return the previous capacity, or -1 if the capacity could not be reduced below what is reserved
+   * @throws IllegalArgumentException if the new capacity is negative
+   */
+  long changeCapacity(long size) throws IllegalArgumentException {
+    if (size < 0) {
+      throw new IllegalArgumentException("New capacity size cannot be negative");
+    }
+    if (capacity - available() > size) {
+      // reclaimed before the capacity change : releasing the reclaimed pages may evaluate the thresholds, which
+      // spins until any capacity change in progress, this one included, is over
+      reclaim();
+    }
 
-      if (state.compareAndSet(currentState, newState)) {
-        onCapacityChanged.onCapacityChanged(this, currentState.getCapacity(), newState.getCapacity());
-        stateUpdated(newState);
-        return true;
+    synchronized (this) {
+      long oldCapacity = capacity;
+      long delta = size - oldCapacity;
+      capacityVersion++;
+      try {
+        if (delta < 0L) {
+          while (!takeFromShared(-delta)) {
+            if (flushBudgets() == 0L) {
+              return -1L;
+            }
+          }
+        } else {
+          remaining.addAndGet(delta);
+        }
+        capacity = size;
+        chunkSize = chunkSize(size, stripeCount);
+      } finally {
+        capacityVersion++;
       }
+      return oldCapacity;
     }
   }
-  
-  static class ThresholdChange {
-    final int old;
-    final int now;
 
-    ThresholdChange(int old, int now) {
-      this.old = old;
-      this.now = now;
+  /**
+   * Updates the usage thresholds and serves the waiting reservations after a {@link #changeCapacity(long)}.
+   *
+   * @param oldCapacity the previous capacity
+   * @param newCapacity the new capacity
+   */
+  void capacityChanged(long oldCapacity, long newCapacity) {
+    stateUpdated();
+    if (newCapacity > oldCapacity) {
+      spaceFreed();
     }
   }
 
-  private static class OffHeapResourceState {
-    private final long capacity;
-    private final long used;
-
-    public OffHeapResourceState(long capacity) {
-      this.capacity = capacity;
-      this.used = 0;
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException {@inheritDoc}
+   * @throws IllegalStateException {@inheritDoc}
+   */
+  @Override
+  public OffHeapResource createSubPool(String consumerId, long min, long max) throws IllegalArgumentException, IllegalStateException {
+    if (subPools.containsKey(consumerId)) {
+      throw new IllegalArgumentException("Consumer " + consumerId + " already has a sub-pool of offheap resource \"" + identifier + "\"");
     }
-
-    private OffHeapResourceState(long capacity, long used) {
-      this.capacity = capacity;
-      this.used = used;
+    OffHeapSubPool subPool = new OffHeapSubPool(identifier, this, consumerId, min, max);
+    if (subPools.putIfAbsent(consumerId, subPool) != null) {
+      subPool.remove();
+      throw new IllegalArgumentException("Consumer " + consumerId + " already has a sub-pool of offheap resource \"" + identifier + "\"");
     }
+    onSubPoolChanged.onSubPoolCreated(this, subPool);
+    return subPool;
+  }
 
-    public long getCapacity() {
-      return capacity;
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean removeSubPool(String consumerId) {
+    OffHeapSubPool subPool = subPools.remove(consumerId);
+    if (subPool == null) {
+      return false;
     }
+    subPool.remove();
+    onSubPoolChanged.onSubPoolRemoved(this, subPool);
+    return true;
+  }
 
-    public long getUsed() {
-      return used;
-    }
+  /**
+   * @return the number of reservations waiting for space
+   */
+  int waitingReservations() {
+    return waiters.size();
+  }
 
-    public long getRemaining() {
-      return capacity - used;
-    }
+  Collection<OffHeapSubPool> getSubPools() {
+    return Collections.unmodifiableCollection(subPools.values());
+  }
 
-    public boolean isOverflowed() {
-      return used > capacity;
+  private int stripe() {
+    if (stripeMask == 0) {
+      return 0;
     }
+    long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+    return ((int) (hash >>> 32) & stripeMask) * STRIPE_PADDING;
+  }
 
-    public OffHeapResourceState reserve(long size) {
-      return new OffHeapResourceState(capacity, used + size);
-    }
+  private boolean belowLowestThreshold(long used, long capacity) {
+    return used * 100L < capacity * thresholds.lowest();
+  }
 
-    public OffHeapResourceState release(long size) {
-      return new OffHeapResourceState(capacity, used - size);
-    }
+  private static long chunkSize(long capacity, int stripes) {
+    return stripes == 0 ? 0L : capacity / ((long) stripes * CHUNKS_PER_STRIPE);
+  }
+
+  private static int defaultStripes() {
+    int processors = Runtime.getRuntime().availableProcessors();
+    return processors == 1 ? 0 : Math.min(64, processors);
+  }
 
-    public OffHeapResourceState withCapacity(long newCapacity) {
-      return new OffHeapResourceState(newCapacity, used);
+  static class ThresholdChange {
+    final int old;
+    final int now;
+
+    ThresholdChange(int old, int now) {
+      this.old = old;
+      this.now = now;
     }
   }
 }
@@ -17,6 +17,7 @@ package org.terracotta.offheapresource;
 
 import com.tc.classloader.CommonComponent;
 
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -28,4 +29,38 @@ public interface OffHeapResources {
   Set<OffHeapResourceIdentifier> getAllIdentifiers();
 
   OffHeapResource getOffHeapResource(OffHeapResourceIdentifier identifier);
+
+  /**
+   * Returns the allocator of direct memory pages charged against a resource, which is created on first use.
+   * <p>
+   * The default implementation does not provide allocators.
+   *
+   * @param identifier the resource identifier
+   * @return the allocator, or {@code null} if there is no such resource
+   * @throws UnsupportedOperationException if these resources do not provide allocators
+   */
+  default OffHeapAllocator getAllocator(OffHeapResourceIdentifier identifier) {
+    throw new UnsupportedOperationException("Allocators are not supported by " + getClass().getName());
+  }
+
+  /**
+   * Changes the capacities of several resources at once, e.g.: to move capacity from one resource to another, or to
+   * follow a change of the memory available to the server.
+   * <p>
+   * The change is all or nothing : if a resource cannot be shrunk because too much of it is reserved, the resources
+   * already changed are restored and no capacity is changed. Shrinks are applied before growths, so that the total
+   * capacity never exceeds the larger of the initial and the requested one. A single notification reports all the
+   * capacities that changed.
+   * <p>
+   * The default implementation does not support changing several capacities at once.
+   *
+   * @param capacities the new capacity of each resource to change, the others are left as they are
+   * @return {@code true} if the capacities were changed, {@code false} if a resource could not be shrunk
+   * @throws IllegalArgumentException if a resource does not exist, if a capacity is negative, or if the change
+   * increases the total capacity of the in-memory resources beyond the physical memory
+   * @throws UnsupportedOperationException if these resources do not support rebalancing
+   */
+  default boolean rebalance(Map<OffHeapResourceIdentifier, Long> capacities) throws IllegalArgumentException {
+    throw new UnsupportedOperationException("Rebalancing is not supported by " + getClass().getName());
+  }
 }
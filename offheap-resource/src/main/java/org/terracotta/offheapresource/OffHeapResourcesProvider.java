@@ -21,24 +21,39 @@ import org.terracotta.entity.StateDumpCollector;
 import org.terracotta.entity.StateDumpable;
 import org.terracotta.management.service.monitoring.EntityManagementRegistry;
 import org.terracotta.management.service.monitoring.ManageableServerComponent;
+import org.terracotta.offheapresource.config.MappedResourceType;
 import org.terracotta.offheapresource.config.MemoryUnit;
 import org.terracotta.offheapresource.config.OffheapResourcesType;
 import org.terracotta.offheapresource.config.ResourceType;
-import org.terracotta.offheapresource.management.OffHeapResourceBinding;
 import org.terracotta.offheapresource.management.OffHeapResourceSettingsManagementProvider;
 import org.terracotta.offheapresource.management.OffHeapResourceStatisticsManagementProvider;
+import org.terracotta.offheapresource.management.OffHeapResourcesBinding;
+import org.terracotta.offheapresource.management.OffHeapResourcesCallManagementProvider;
 import org.terracotta.statistics.StatisticsManager;
 import org.terracotta.statistics.StatisticType;
 
+import java.io.Closeable;
 import java.math.BigInteger;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 /**
  * A provider of {@link OffHeapResource} instances.
@@ -48,55 +63,221 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * allows for the partitioning and control of memory usage by entities
  * consuming this service.
  */
-public class OffHeapResourcesProvider implements OffHeapResources, ManageableServerComponent, StateDumpable {
+public class OffHeapResourcesProvider implements OffHeapResources, ManageableServerComponent, StateDumpable, Closeable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapResourcesProvider.class);
 
+  /**
+   * Minimum interval between two threshold notifications of a resource, changes in between are coalesced.
+   */
+  private static final long THRESHOLD_NOTIFICATION_INTERVAL = Long.getLong("terracotta.offheap.threshold.notification.interval", 1000L);
+
+  /**
+   * Maximum number of management notifications waiting to be pushed to the registries, further ones are dropped.
+   */
+  private static final int NOTIFICATION_QUEUE_SIZE = Integer.getInteger("terracotta.offheap.notification.queue.size", 1024);
+
+  /**
+   * Interval in milliseconds at which the usage history of the resources is sampled, 0 to not record any history.
+   */
+  private static final long HISTORY_INTERVAL = Long.getLong("terracotta.offheap.history.interval", 100L);
+
+  /**
+   * Number of samples kept in the usage history of every resource.
+   */
+  private static final int HISTORY_SIZE = Integer.getInteger("terracotta.offheap.history.size", 600);
+
   private final Map<OffHeapResourceIdentifier, OffHeapResourceImpl> resources = new HashMap<>();
+  private final ConcurrentMap<OffHeapResourceIdentifier, OffHeapAllocatorImpl> allocators = new ConcurrentHashMap<>();
   private final Collection<EntityManagementRegistry> registries = new CopyOnWriteArrayList<>();
+  private final NotificationDispatcher notifications = new NotificationDispatcher("offheap-resource-notifier", NOTIFICATION_QUEUE_SIZE);
+  private final OffHeapResourcesBinding managementBinding = new OffHeapResourcesBinding(this);
 
   public OffHeapResourcesProvider(OffheapResourcesType configuration) {
+    NumaTopology topology = null;
+    Map<String, Object> notificationProperties = new HashMap<>();
+    notificationProperties.put("discriminator", "OffHeapResources");
+    StatisticsManager.createPassThroughStatistic(
+        notifications,
+        "notificationQueueDepth",
+        new HashSet<>(Arrays.asList("OffHeapResources", "tier")),
+        notificationProperties,
+        StatisticType.GAUGE,
+        notifications::queueDepth);
+    StatisticsManager.createPassThroughStatistic(
+        notifications,
+        "droppedNotifications",
+        new HashSet<>(Arrays.asList("OffHeapResources", "tier")),
+        notificationProperties,
+        StatisticType.COUNTER,
+        notifications::droppedCount);
+
     long totalSize = 0;
     for (ResourceType r : configuration.getResource()) {
       long size = longValueExact(convert(r.getValue(), r.getUnit()));
       totalSize += size;
       OffHeapResourceIdentifier identifier = OffHeapResourceIdentifier.identifier(r.getName());
-      OffHeapResourceImpl offHeapResource = new OffHeapResourceImpl(identifier.getName(), size,
-          (res, update) -> {
-            for (EntityManagementRegistry registry : registries) {
-              Map<String, String> attrs = new HashMap<>();
-              attrs.put("oldThreshold", String.valueOf(update.old));
-              attrs.put("threshold", String.valueOf(update.now));
-              attrs.put("capacity", String.valueOf(res.capacity()));
-              attrs.put("available", String.valueOf(res.available()));
-              registry.pushServerEntityNotification(res.getManagementBinding(), "OFFHEAP_RESOURCE_THRESHOLD_REACHED", attrs);
-            }
-          },
-          (res, oldCapacity, newCapacity) -> {
-            for (EntityManagementRegistry registry : registries) {
-              Map<String, String> attrs = new HashMap<>();
-              attrs.put("oldCapacity", Long.toString(oldCapacity));
-              attrs.put("newCapacity", Long.toString(newCapacity));
-              registry.pushServerEntityNotification(res.getManagementBinding(), "OFFHEAP_RESOURCE_CAPACITY_CHANGED", attrs);
-            }
-          });
-      resources.put(identifier, offHeapResource);
-
-      Map<String, Object> properties = new HashMap<>();
-      properties.put("discriminator", "OffHeapResource");
-      properties.put("offHeapResourceIdentifier", identifier.getName());
-      StatisticsManager.createPassThroughStatistic(
-          offHeapResource,
-          "allocatedMemory",
-          new HashSet<>(Arrays.asList("OffHeapResource", "tier")),
-          properties,
-          StatisticType.GAUGE,
-          () -> offHeapResource.capacity() - offHeapResource.available());
+      if (r.isNumaPartitioned()) {
+        if (topology == null) {
+          topology = NumaTopology.discover();
+          LOGGER.info("NUMA topology: {}", topology);
+        }
+        if (topology.nodeCount() > 1) {
+          NumaOffHeapResource offHeapResource = new NumaOffHeapResource(identifier.getName(), size, topology,
+              thresholds(r), this::onThresholdReached, this::onCapacityChanged, subPoolChangeHandler(identifier));
+          Map<String, Object> properties = addResource(identifier, offHeapResource);
+          int[] nodes = offHeapResource.nodes();
+          for (int i = 0; i < nodes.length; i++) {
+            int index = i;
+            createNumaStatistic(offHeapResource, properties, "numaNode" + nodes[i] + "Capacity", StatisticType.GAUGE, () -> offHeapResource.partitionCapacity(index));
+            createNumaStatistic(offHeapResource, properties, "numaNode" + nodes[i] + "AllocatedMemory", StatisticType.GAUGE, () -> offHeapResource.partitionUsed(index));
+          }
+          createNumaStatistic(offHeapResource, properties, "spilledReservations", StatisticType.COUNTER, offHeapResource::spilledReservations);
+          continue;
+        }
+        LOGGER.info("Offheap resource {} is not partitioned, the machine has a single NUMA node", identifier.getName());
+      }
+      OffHeapResourceImpl offHeapResource = new OffHeapResourceImpl(identifier.getName(), size, OffHeapResourceImpl.DEFAULT_STRIPES,
+          thresholds(r), this::onThresholdReached, this::onCapacityChanged, subPoolChangeHandler(identifier));
+      addResource(identifier, offHeapResource);
+    }
+    long totalMappedSize = 0;
+    for (MappedResourceType r : configuration.getMappedResource()) {
+      long size = longValueExact(convert(r.getValue(), r.getUnit()));
+      totalMappedSize += size;
+      OffHeapResourceIdentifier identifier = OffHeapResourceIdentifier.identifier(r.getName());
+      if (resources.containsKey(identifier)) {
+        throw new IllegalArgumentException("Duplicate offheap resource " + identifier.getName());
+      }
+      if (r.isNumaPartitioned()) {
+        throw new IllegalArgumentException("Mapped offheap resource " + identifier.getName() + " cannot be NUMA partitioned");
+      }
+      MappedOffHeapResource offHeapResource = new MappedOffHeapResource(identifier.getName(), size, Paths.get(r.getDirectory()),
+          MappedOffHeapResource.defaultSegmentSize(size), thresholds(r), this::onThresholdReached, this::onCapacityChanged, subPoolChangeHandler(identifier));
+      Map<String, Object> properties = addResource(identifier, offHeapResource);
+      createMappedStatistic(offHeapResource, properties, "mappedMemory", offHeapResource::mappedSize);
+      createMappedStatistic(offHeapResource, properties, "residentMemory", offHeapResource::residentSize);
     }
     Long physicalMemory = PhysicalMemory.totalPhysicalMemory();
     if (physicalMemory != null && totalSize > physicalMemory) {
       LOGGER.warn("More offheap configured than there is physical memory [{} > {}]", totalSize, physicalMemory);
     }
+    if (physicalMemory != null && totalMappedSize > 0 && totalSize + totalMappedSize > physicalMemory) {
+      LOGGER.warn("More offheap configured, including mapped resources, than there is physical memory [{} > {}], mapped resources will be paged to disk", totalSize + totalMappedSize, physicalMemory);
+    }
+  }
+
+  private static UsageThresholds thresholds(ResourceType r) {
+    return UsageThresholds.of(r.getThresholds(), r.getHysteresis(), THRESHOLD_NOTIFICATION_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+  private Map<String, Object> addResource(OffHeapResourceIdentifier identifier, OffHeapResourceImpl offHeapResource) {
+    resources.put(identifier, offHeapResource);
+
+    Map<String, Object> properties = new HashMap<>();
+    properties.put("discriminator", "OffHeapResource");
+    properties.put("offHeapResourceIdentifier", identifier.getName());
+    StatisticsManager.createPassThroughStatistic(
+        offHeapResource,
+        "allocatedMemory",
+        new HashSet<>(Arrays.asList("OffHeapResource", "tier")),
+        properties,
+        StatisticType.GAUGE,
+        () -> offHeapResource.capacity() - offHeapResource.available());
+    StatisticsManager.createPassThroughStatistic(
+        offHeapResource,
+        "fillRate",
+        new HashSet<>(Arrays.asList("OffHeapResource", "tier")),
+        properties,
+        StatisticType.GAUGE,
+        offHeapResource::fillRate);
+    StatisticsManager.createPassThroughStatistic(
+        offHeapResource,
+        "timeToFull",
+        new HashSet<>(Arrays.asList("OffHeapResource", "tier")),
+        properties,
+        StatisticType.GAUGE,
+        offHeapResource::timeToFull);
+    UsageHistory history = HISTORY_INTERVAL > 0L ? offHeapResource.recordHistory(HISTORY_SIZE, HISTORY_INTERVAL, TimeUnit.MILLISECONDS) : null;
+    createHistoryStatistic(offHeapResource, history, properties, "usageHistory", UsageHistory.Series.USED,
+        () -> offHeapResource.capacity() - offHeapResource.available());
+    createHistoryStatistic(offHeapResource, history, properties, "reserveCount", UsageHistory.Series.RESERVES, offHeapResource::reserveCount);
+    createHistoryStatistic(offHeapResource, history, properties, "releaseCount", UsageHistory.Series.RELEASES, offHeapResource::releaseCount);
+    createHistoryStatistic(offHeapResource, history, properties, "failedReserveCount", UsageHistory.Series.FAILED_RESERVES,
+        offHeapResource::failedReserveCount);
+    createAllocatorStatistic(offHeapResource, identifier, properties, "pooledMemory", OffHeapAllocator::pooledSize);
+    createAllocatorStatistic(offHeapResource, identifier, properties, "fragmentedMemory", a -> a.allocatedSize() - a.requestedSize());
+    return properties;
+  }
+
+  private void onThresholdReached(OffHeapResourceImpl res, OffHeapResourceImpl.ThresholdChange update) {
+    if (registries.isEmpty()) {
+      return;
+    }
+    // called from the reserving thread : capture the state now, and leave building and pushing the notification to the dispatcher
+    long capacity = res.capacity();
+    long available = res.available();
+    notifications.dispatch(() -> {
+      for (EntityManagementRegistry registry : registries) {
+        Map<String, String> attrs = new HashMap<>();
+        attrs.put("oldThreshold", String.valueOf(update.old));
+        attrs.put("threshold", String.valueOf(update.now));
+        attrs.put("capacity", String.valueOf(capacity));
+        attrs.put("available", String.valueOf(available));
+        registry.pushServerEntityNotification(res.getManagementBinding(), "OFFHEAP_RESOURCE_THRESHOLD_REACHED", attrs);
+      }
+    });
+  }
+
+  private void onCapacityChanged(OffHeapResourceImpl res, long oldCapacity, long newCapacity) {
+    if (registries.isEmpty()) {
+      return;
+    }
+    notifications.dispatch(() -> {
+      for (EntityManagementRegistry registry : registries) {
+        Map<String, String> attrs = new HashMap<>();
+        attrs.put("oldCapacity", Long.toString(oldCapacity));
+        attrs.put("newCapacity", Long.toString(newCapacity));
+        registry.pushServerEntityNotification(res.getManagementBinding(), "OFFHEAP_RESOURCE_CAPACITY_CHANGED", attrs);
+      }
+    });
+  }
+
+  private SubPoolChangeHandler subPoolChangeHandler(OffHeapResourceIdentifier identifier) {
+    return new SubPoolChangeHandler() {
+      @Override
+      public void onSubPoolCreated(OffHeapResourceImpl res, OffHeapSubPool subPool) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("discriminator", "OffHeapSubPool");
+        properties.put("offHeapResourceIdentifier", identifier.getName());
+        properties.put("consumerId", subPool.getConsumerId());
+        StatisticsManager.createPassThroughStatistic(
+            subPool,
+            "allocatedMemory",
+            new HashSet<>(Arrays.asList("OffHeapResource", "tier")),
+            properties,
+            StatisticType.GAUGE,
+            () -> subPool.capacity() - subPool.available());
+        StatisticsManager.createPassThroughStatistic(
+            subPool,
+            "heldMemory",
+            new HashSet<>(Arrays.asList("OffHeapSubPool", "tier")),
+            properties,
+            StatisticType.GAUGE,
+            subPool::held);
+        for (EntityManagementRegistry registry : registries) {
+          registry.registerAndRefresh(subPool.getManagementBinding());
+        }
+      }
+
+      @Override
+      public void onSubPoolRemoved(OffHeapResourceImpl res, OffHeapSubPool subPool) {
+        for (EntityManagementRegistry registry : registries) {
+          registry.unregisterAndRefresh(subPool.getManagementBinding());
+        }
+        StatisticsManager.removePassThroughStatistics(subPool);
+      }
+    };
   }
 
   @Override
@@ -109,6 +290,146 @@ public class OffHeapResourcesProvider implements OffHeapResources, ManageableSer
     return resources.get(identifier);
   }
 
+  @Override
+  public OffHeapAllocator getAllocator(OffHeapResourceIdentifier identifier) {
+    OffHeapResourceImpl offHeapResource = resources.get(identifier);
+    if (offHeapResource == null) {
+      return null;
+    }
+    return allocators.computeIfAbsent(identifier, id -> new OffHeapAllocatorImpl(offHeapResource, offHeapResource.pageSource()));
+  }
+
+  /**
+   * Stops the background tasks of every resource, e.g.: the sampling of their usage history.
+   */
+  @Override
+  public void close() {
+    for (OffHeapResourceImpl offHeapResource : resources.values()) {
+      offHeapResource.close();
+    }
+  }
+
+  @Override
+  public synchronized boolean rebalance(Map<OffHeapResourceIdentifier, Long> capacities) throws IllegalArgumentException {
+    for (Map.Entry<OffHeapResourceIdentifier, Long> entry : capacities.entrySet()) {
+      if (!resources.containsKey(entry.getKey())) {
+        throw new IllegalArgumentException("No offheap resource " + entry.getKey().getName());
+      }
+      if (entry.getValue() < 0) {
+        throw new IllegalArgumentException("New capacity of offheap resource " + entry.getKey().getName() + " cannot be negative");
+      }
+    }
+
+    // mapped resources are backed by files, only the in-memory ones are bounded by the physical memory
+    long currentTotal = 0L;
+    long newTotal = 0L;
+    for (Map.Entry<OffHeapResourceIdentifier, OffHeapResourceImpl> entry : resources.entrySet()) {
+      if (!(entry.getValue() instanceof MappedOffHeapResource)) {
+        long capacity = entry.getValue().capacity();
+        currentTotal += capacity;
+        newTotal += capacities.getOrDefault(entry.getKey(), capacity);
+      }
+    }
+    Long physicalMemory = PhysicalMemory.totalPhysicalMemory();
+    if (physicalMemory != null && newTotal > physicalMemory && newTotal > currentTotal) {
+      throw new IllegalArgumentException("Cannot grow the offheap resources beyond the physical memory [" + newTotal + " > " + physicalMemory + "]");
+    }
+
+    // shrink first : a growth cannot fail, so only the shrinks already applied may have to be undone
+    List<Map.Entry<OffHeapResourceIdentifier, Long>> changes = new ArrayList<>(capacities.entrySet());
+    changes.sort(Comparator.comparingLong(e -> e.getValue() - resources.get(e.getKey()).capacity()));
+    Map<OffHeapResourceIdentifier, Long> oldCapacities = new LinkedHashMap<>();
+    for (Map.Entry<OffHeapResourceIdentifier, Long> change : changes) {
+      long oldCapacity = resources.get(change.getKey()).changeCapacity(change.getValue());
+      if (oldCapacity < 0L) {
+        for (Map.Entry<OffHeapResourceIdentifier, Long> applied : oldCapacities.entrySet()) {
+          resources.get(applied.getKey()).changeCapacity(applied.getValue());
+        }
+        LOGGER.info("Could not rebalance the offheap resources: {} is reserved beyond its requested capacity", change.getKey().getName());
+        return false;
+      }
+      oldCapacities.put(change.getKey(), oldCapacity);
+    }
+
+    Map<OffHeapResourceIdentifier, Long> changed = new LinkedHashMap<>();
+    for (Map.Entry<OffHeapResourceIdentifier, Long> applied : oldCapacities.entrySet()) {
+      long newCapacity = capacities.get(applied.getKey());
+      resources.get(applied.getKey()).capacityChanged(applied.getValue(), newCapacity);
+      if (newCapacity != applied.getValue()) {
+        changed.put(applied.getKey(), applied.getValue());
+      }
+    }
+    if (!changed.isEmpty()) {
+      onCapacitiesChanged(changed, capacities);
+    }
+    return true;
+  }
+
+  private void onCapacitiesChanged(Map<OffHeapResourceIdentifier, Long> oldCapacities, Map<OffHeapResourceIdentifier, Long> newCapacities) {
+    if (registries.isEmpty()) {
+      return;
+    }
+    Map<String, String> attrs = new HashMap<>();
+    Set<String> names = new TreeSet<>();
+    for (Map.Entry<OffHeapResourceIdentifier, Long> entry : oldCapacities.entrySet()) {
+      String name = entry.getKey().getName();
+      names.add(name);
+      attrs.put(name + ".oldCapacity", Long.toString(entry.getValue()));
+      attrs.put(name + ".newCapacity", Long.toString(newCapacities.get(entry.getKey())));
+    }
+    attrs.put("resources", String.join(",", names));
+    notifications.dispatch(() -> {
+      for (EntityManagementRegistry registry : registries) {
+        registry.pushServerEntityNotification(managementBinding, "OFFHEAP_RESOURCE_CAPACITY_CHANGED", attrs);
+      }
+    });
+  }
+
+  private void createAllocatorStatistic(OffHeapResourceImpl offHeapResource, OffHeapResourceIdentifier identifier, Map<String, Object> properties,
+                                        String name, ToLongFunction<OffHeapAllocator> value) {
+    StatisticsManager.createPassThroughStatistic(
+        offHeapResource,
+        name,
+        new HashSet<>(Arrays.asList("OffHeapAllocator", "tier")),
+        properties,
+        StatisticType.GAUGE,
+        () -> {
+          OffHeapAllocator allocator = allocators.get(identifier);
+          return allocator == null ? 0L : value.applyAsLong(allocator);
+        });
+  }
+
+  private static void createHistoryStatistic(OffHeapResourceImpl offHeapResource, UsageHistory history, Map<String, Object> properties,
+                                             String name, UsageHistory.Series series, LongSupplier value) {
+    Set<String> tags = new HashSet<>(Arrays.asList("OffHeapResource", "tier"));
+    if (history == null) {
+      StatisticsManager.createPassThroughStatistic(offHeapResource, name, tags, properties, series.type(), value::getAsLong);
+    } else {
+      StatisticsManager.createPassThroughStatistic(offHeapResource, name, tags, properties, history.statistic(series, value));
+    }
+  }
+
+  private static void createNumaStatistic(NumaOffHeapResource offHeapResource, Map<String, Object> properties, String name,
+                                          StatisticType type, Supplier<Long> value) {
+    StatisticsManager.createPassThroughStatistic(
+        offHeapResource,
+        name,
+        new HashSet<>(Arrays.asList("NumaOffHeapResource", "tier")),
+        properties,
+        type,
+        value);
+  }
+
+  private static void createMappedStatistic(MappedOffHeapResource offHeapResource, Map<String, Object> properties, String name, Supplier<Long> value) {
+    StatisticsManager.createPassThroughStatistic(
+        offHeapResource,
+        name,
+        new HashSet<>(Arrays.asList("MappedOffHeapResource", "tier")),
+        properties,
+        StatisticType.GAUGE,
+        value);
+  }
+
   @Override
   public void onManagementRegistryCreated(EntityManagementRegistry registry) {
     LOGGER.trace("[{}] onManagementRegistryCreated()", registry.getMonitoringService().getConsumerId());
@@ -117,16 +438,18 @@ public class OffHeapResourcesProvider implements OffHeapResources, ManageableSer
 
     registry.addManagementProvider(new OffHeapResourceSettingsManagementProvider());
     registry.addManagementProvider(new OffHeapResourceStatisticsManagementProvider());
+    registry.addManagementProvider(new OffHeapResourcesCallManagementProvider());
+    registry.register(managementBinding);
 
-    Set<OffHeapResourceIdentifier> identifiers = getAllIdentifiers();
-    if(!identifiers.isEmpty()) {
-      for (OffHeapResourceIdentifier identifier : identifiers) {
-        LOGGER.trace("[{}] onManagementRegistryCreated() - Exposing OffHeapResource:{}", registry.getMonitoringService().getConsumerId(), identifier.getName());
-        OffHeapResourceBinding managementBinding = getOffHeapResource(identifier).getManagementBinding();
-        registry.register(managementBinding);
+    for (OffHeapResourceIdentifier identifier : getAllIdentifiers()) {
+      LOGGER.trace("[{}] onManagementRegistryCreated() - Exposing OffHeapResource:{}", registry.getMonitoringService().getConsumerId(), identifier.getName());
+      OffHeapResourceImpl offHeapResource = getOffHeapResource(identifier);
+      registry.register(offHeapResource.getManagementBinding());
+      for (OffHeapSubPool subPool : offHeapResource.getSubPools()) {
+        registry.register(subPool.getManagementBinding());
       }
-      registry.refresh(); 
     }
+    registry.refresh();
   }
 
   @Override
@@ -135,14 +458,57 @@ public class OffHeapResourcesProvider implements OffHeapResources, ManageableSer
     registries.remove(registry);
   }
 
+  long notificationQueueDepth() {
+    return notifications.queueDepth();
+  }
+
+  long droppedNotifications() {
+    return notifications.droppedCount();
+  }
+
   @Override
   public void addStateTo(StateDumpCollector dump) {
+    StateDumpCollector notificationDump = dump.subStateDumpCollector("notifications");
+    notificationDump.addState("queued", String.valueOf(notifications.queueDepth()));
+    notificationDump.addState("dropped", String.valueOf(notifications.droppedCount()));
     for (Map.Entry<OffHeapResourceIdentifier, OffHeapResourceImpl> entry : resources.entrySet()) {
       OffHeapResourceIdentifier identifier = entry.getKey();
       OffHeapResource resource = entry.getValue();
       StateDumpCollector offHeapDump = dump.subStateDumpCollector(identifier.getName());
       offHeapDump.addState("capacity", String.valueOf(resource.capacity()));
       offHeapDump.addState("available", String.valueOf(resource.available()));
+      if (resource instanceof MappedOffHeapResource) {
+        MappedOffHeapResource mappedResource = (MappedOffHeapResource) resource;
+        offHeapDump.addState("directory", mappedResource.getDirectory().toString());
+        offHeapDump.addState("mapped", String.valueOf(mappedResource.mappedSize()));
+        offHeapDump.addState("resident", String.valueOf(mappedResource.residentSize()));
+      }
+      if (resource instanceof NumaOffHeapResource) {
+        NumaOffHeapResource numaResource = (NumaOffHeapResource) resource;
+        int[] nodes = numaResource.nodes();
+        for (int i = 0; i < nodes.length; i++) {
+          StateDumpCollector partitionDump = offHeapDump.subStateDumpCollector("numa-node-" + nodes[i]);
+          partitionDump.addState("capacity", String.valueOf(numaResource.partitionCapacity(i)));
+          partitionDump.addState("used", String.valueOf(numaResource.partitionUsed(i)));
+        }
+        offHeapDump.addState("spilledReservations", String.valueOf(numaResource.spilledReservations()));
+      }
+      OffHeapAllocatorImpl allocator = allocators.get(identifier);
+      if (allocator != null) {
+        StateDumpCollector allocatorDump = offHeapDump.subStateDumpCollector("allocator");
+        allocatorDump.addState("allocated", String.valueOf(allocator.allocatedSize()));
+        allocatorDump.addState("requested", String.valueOf(allocator.requestedSize()));
+        allocatorDump.addState("pooled", String.valueOf(allocator.pooledSize()));
+        allocatorDump.addState("allocations", String.valueOf(allocator.allocationCount()));
+        allocatorDump.addState("reuses", String.valueOf(allocator.reuseCount()));
+      }
+      for (OffHeapSubPool subPool : entry.getValue().getSubPools()) {
+        StateDumpCollector subPoolDump = offHeapDump.subStateDumpCollector(subPool.getConsumerId());
+        subPoolDump.addState("guaranteed", String.valueOf(subPool.guaranteed()));
+        subPoolDump.addState("capacity", String.valueOf(subPool.capacity()));
+        subPoolDump.addState("held", String.valueOf(subPool.held()));
+        subPoolDump.addState("available", String.valueOf(subPool.available()));
+      }
     }
   }
 
@@ -0,0 +1,255 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.terracotta.offheapresource.management.OffHeapSubPoolBinding;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A sub-pool of an {@link OffHeapResource}, dedicated to a single consumer.
+ * <p>
+ * The guaranteed minimum is reserved from the parent resource when the sub-pool is created, so reservations within
+ * it can never fail because of other consumers. Reservations beyond it are taken from the parent resource, up to
+ * the sub-pool's capacity, and given back as soon as they are released.
+ */
+class OffHeapSubPool implements OffHeapResource {
+
+  private static final long REMOVED = -1L;
+
+  private final OffHeapResource parent;
+  private final String consumerId;
+  private final long min;
+  private final AtomicLong used = new AtomicLong();
+  private final ReservationWaiters waiters = new ReservationWaiters(this, this::reserveNow);
+  private final OffHeapSubPoolBinding managementBinding;
+  private volatile long max;
+
+  /**
+   * Creates a sub-pool and reserves its guaranteed minimum from the parent resource.
+   *
+   * @param parentIdentifier identifier of the parent resource
+   * @param parent the parent resource
+   * @param consumerId identifier of the consumer the sub-pool is dedicated to
+   * @param min guaranteed minimum size of the sub-pool
+   * @param max maximum size of the sub-pool
+   * @throws IllegalArgumentException if the minimum is negative or greater than the maximum
+   * @throws IllegalStateException if the parent resource cannot guarantee the minimum
+   */
+  OffHeapSubPool(String parentIdentifier, OffHeapResource parent, String consumerId, long min, long max) throws IllegalArgumentException, IllegalStateException {
+    if (min < 0) {
+      throw new IllegalArgumentException("Sub-pool minimum cannot be negative");
+    }
+    if (max < min) {
+      throw new IllegalArgumentException("Sub-pool maximum cannot be less than its minimum");
+    }
+    if (!parent.reserve(min)) {
+      throw new IllegalStateException("Offheap resource \"" + parentIdentifier + "\" cannot guarantee " + min + " bytes to " + consumerId);
+    }
+    this.parent = parent;
+    this.consumerId = consumerId;
+    this.min = min;
+    this.max = max;
+    this.managementBinding = new OffHeapSubPoolBinding(parentIdentifier, consumerId, min, this);
+  }
+
+  public OffHeapSubPoolBinding getManagementBinding() {
+    return managementBinding;
+  }
+
+  String getConsumerId() {
+    return consumerId;
+  }
+
+  long guaranteed() {
+    return min;
+  }
+
+  /**
+   * @return the amount of the parent resource held by this sub-pool, i.e.: its usage or its guaranteed minimum
+   */
+  long held() {
+    long used = this.used.get();
+    return used == REMOVED ? 0L : Math.max(used, min);
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException {@inheritDoc}
+   */
+  @Override
+  public boolean reserve(long size) throws IllegalArgumentException {
+    if (size < 0) {
+      throw new IllegalArgumentException("Reservation size cannot be negative");
+    }
+    // the space being freed is promised to the waiting reservations
+    return waiters.admits(size) && reserveNow(size);
+  }
+
+  /**
+   * Reserves the given amount of this sub-pool, regardless of its waiting reservations.
+   */
+  private boolean reserveNow(long size) {
+    while (true) {
+      long current = used.get();
+      if (current == REMOVED || current + size > max) {
+        return false;
+      }
+      long fromParent = Math.max(current + size, min) - Math.max(current, min);
+      if (fromParent > 0 && !parent.reserve(fromParent)) {
+        return false;
+      }
+      if (used.compareAndSet(current, current + size)) {
+        if (current + size > max) {
+          // raced with a capacity shrink
+          release(size);
+          return false;
+        }
+        return true;
+      }
+      if (fromParent > 0) {
+        parent.release(fromParent);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException {@inheritDoc}
+   */
+  @Override
+  public CompletableFuture<Boolean> reserveAsync(long size, long timeout, TimeUnit unit) throws IllegalArgumentException {
+    return waiters.reserve(size, timeout, unit);
+  }
+
+  /**
+   * {@inheritDoc}
+   * @throws IllegalArgumentException {@inheritDoc}
+   */
+  @Override
+  public void release(long size) throws IllegalArgumentException {
+    if (size < 0) {
+      throw new IllegalArgumentException("Released size cannot be negative");
+    }
+
+    while (true) {
+      long current = used.get();
+      if (current == REMOVED) {
+        return;
+      }
+      long next = Math.max(0L, current - size);
+      if (used.compareAndSet(current, next)) {
+        long toParent = Math.max(current, min) - Math.max(next, min);
+        if (toParent > 0) {
+          parent.release(toParent);
+        }
+        spaceFreed();
+        return;
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long available() {
+    long used = this.used.get();
+    if (used == REMOVED) {
+      return 0L;
+    }
+    return Math.min(max - used, Math.max(0L, min - used) + parent.available());
+  }
+
+  /**
+   * @return the maximum size of this sub-pool
+   */
+  @Override
+  public long capacity() {
+    return max;
+  }
+
+  /**
+   * Set the maximum size of this sub-pool. The new value must be at least as much as is currently reserved and as
+   * the guaranteed minimum.
+   *
+   * @param size new maximum size of the sub-pool
+   * @return {code true} if the maximum size was changed
+   * @throws IllegalArgumentException if the new maximum size is negative
+   */
+  @Override
+  public synchronized boolean setCapacity(long size) throws IllegalArgumentException {
+    if (size < 0) {
+      throw new IllegalArgumentException("New capacity size cannot be negative");
+    }
+    long oldMax = max;
+    if (size < min) {
+      return false;
+    }
+    max = size;
+    long current = used.get();
+    if (current != REMOVED && current > size) {
+      max = oldMax;
+      return false;
+    }
+    if (size > oldMax) {
+      spaceFreed();
+    }
+    return true;
+  }
+
+  /**
+   * Sub-pools cannot be nested.
+   *
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public OffHeapResource createSubPool(String consumerId, long min, long max) {
+    throw new UnsupportedOperationException("Sub-pools cannot be nested");
+  }
+
+  /**
+   * Sub-pools cannot be nested.
+   *
+   * @return {@code false}
+   */
+  @Override
+  public boolean removeSubPool(String consumerId) {
+    return false;
+  }
+
+  /**
+   * Gives everything this sub-pool holds back to the parent resource. Further reservations fail and further
+   * releases are ignored.
+   */
+  void remove() {
+    long current = used.getAndSet(REMOVED);
+    waiters.failAll();
+    if (current != REMOVED) {
+      parent.release(Math.max(current, min));
+    }
+  }
+
+  /**
+   * Hand freed space, of this sub-pool or of its parent, to the waiting reservations.
+   */
+  void spaceFreed() {
+    waiters.signal();
+  }
+
+}
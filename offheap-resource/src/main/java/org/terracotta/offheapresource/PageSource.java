@@ -0,0 +1,61 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The storage backing the pages of an {@link OffHeapAllocator}.
+ * <p>
+ * A page source only provides the memory, reservations are charged against the resource by the allocator.
+ */
+interface PageSource {
+
+  /**
+   * A page source allocating direct byte buffers.
+   */
+  PageSource DIRECT = new PageSource() {
+    @Override
+    public ByteBuffer allocate(int capacity) {
+      try {
+        return ByteBuffer.allocateDirect(capacity);
+      } catch (OutOfMemoryError e) {
+        // direct memory exhausted, e.g.: beyond -XX:MaxDirectMemorySize
+        return null;
+      }
+    }
+
+    @Override
+    public void free(ByteBuffer buffer) {
+      // left to the garbage collector
+    }
+  };
+
+  /**
+   * Allocates a buffer.
+   *
+   * @param capacity the capacity of the buffer
+   * @return the buffer, filled with zeros, or {@code null} if the storage could not be allocated
+   */
+  ByteBuffer allocate(int capacity);
+
+  /**
+   * Gives a buffer returned by {@link #allocate(int)} back to this source.
+   *
+   * @param buffer the buffer, which must not be used anymore
+   */
+  void free(ByteBuffer buffer);
+}
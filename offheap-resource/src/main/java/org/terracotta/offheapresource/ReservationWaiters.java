@@ -0,0 +1,224 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongPredicate;
+
+/**
+ * The asynchronous reservations of a resource waiting for space to be freed.
+ * <p>
+ * Waiters are served in FIFO order: a waiter is only granted its reservation once every waiter queued before it has
+ * been granted, has timed out or was cancelled. The owning resource must refuse the plain reservations that
+ * {@link #admits(long) would not leave enough} for the head of the queue, so that they cannot take the space freed
+ * for it, and must call {@link #signal()} whenever space may have been freed.
+ * <p>
+ * The futures of the waiters are completed on an executor, so that the callbacks of the consumers never run on the
+ * thread releasing space, nor on the shared background scheduler.
+ */
+class ReservationWaiters {
+
+  private final OffHeapResource resource;
+  private final LongPredicate reserve;
+  private final Executor executor;
+  private final Queue<Waiter> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger signals = new AtomicInteger(); // pending signals, non zero while a thread is granting
+
+  /**
+   * @param resource the resource the reservations are made from
+   * @param reserve reserves from the resource, regardless of the waiters
+   */
+  ReservationWaiters(OffHeapResource resource, LongPredicate reserve) {
+    this(resource, reserve, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param resource the resource the reservations are made from
+   * @param reserve reserves from the resource, regardless of the waiters
+   * @param executor the executor completing the futures of the waiters
+   */
+  ReservationWaiters(OffHeapResource resource, LongPredicate reserve, Executor executor) {
+    this.resource = resource;
+    this.reserve = reserve;
+    this.executor = executor;
+  }
+
+  /**
+   * Reserves the given amount of the resource, waiting for it to be available for up to the given timeout.
+   *
+   * @param size reservation size
+   * @param timeout how long to wait for the reservation, 0 to not wait at all
+   * @param unit the unit of the timeout
+   * @return a future completed with {@code true} once the reservation succeeded, or {@code false} on timeout or
+   * straight away if the reservation is larger than the capacity of the resource
+   * @throws IllegalArgumentException if the reservation size or the timeout is negative
+   */
+  CompletableFuture<Boolean> reserve(long size, long timeout, TimeUnit unit) throws IllegalArgumentException {
+    if (size < 0) {
+      throw new IllegalArgumentException("Reservation size cannot be negative");
+    }
+    if (timeout < 0) {
+      throw new IllegalArgumentException("Timeout cannot be negative");
+    }
+    if (size > resource.capacity()) {
+      // would hold back every reservation queued or made after it, for nothing
+      return CompletableFuture.completedFuture(false);
+    }
+    if (queue.isEmpty() && reserve.test(size)) {
+      return CompletableFuture.completedFuture(true);
+    }
+    if (timeout == 0) {
+      return CompletableFuture.completedFuture(false);
+    }
+
+    Waiter waiter = new Waiter(size);
+    waiter.timeout = BackgroundScheduler.get().schedule(() -> {
+      if (waiter.settle()) {
+        queue.remove(waiter);
+        complete(waiter, false);
+        // the waiter may have been holding back the ones queued behind it
+        signal();
+      }
+    }, timeout, unit);
+    waiter.future.whenComplete((granted, failure) -> {
+      if (waiter.future.isCancelled() && queue.remove(waiter)) {
+        waiter.timeout.cancel(false);
+        signal();
+      }
+    });
+    queue.add(waiter);
+    // space may have been freed before the waiter was queued
+    signal();
+    return waiter.future;
+  }
+
+  /**
+   * Grants the reservations of the waiters at the head of the queue, for as long as the resource can satisfy them.
+   * <p>
+   * A single thread grants at a time : a signal arriving meanwhile, from another thread or from the granting thread
+   * itself when a reservation frees space (e.g.: by reclaiming pooled pages), makes it go over the queue once more.
+   */
+  void signal() {
+    if (queue.isEmpty() || signals.getAndIncrement() != 0) {
+      return;
+    }
+
+    int missed = 1;
+    do {
+      grantHeads();
+      missed = signals.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private void grantHeads() {
+    List<Waiter> granted = new ArrayList<>();
+    for (Waiter head; (head = queue.peek()) != null; ) {
+      if (head.future.isDone()) {
+        // cancelled
+        queue.remove(head);
+      } else if (reserve.test(head.size)) {
+        // by identity : the head may have timed out and been removed meanwhile
+        queue.remove(head);
+        if (head.settle()) {
+          granted.add(head);
+        } else {
+          // raced with the timeout
+          resource.release(head.size);
+        }
+      } else {
+        break;
+      }
+    }
+
+    for (Waiter waiter : granted) {
+      waiter.timeout.cancel(false);
+      complete(waiter, true);
+    }
+  }
+
+  /**
+   * Fails every queued waiter, e.g.: because the resource is going away.
+   */
+  void failAll() {
+    for (Waiter waiter; (waiter = queue.poll()) != null; ) {
+      if (waiter.settle()) {
+        waiter.timeout.cancel(false);
+        complete(waiter, false);
+      }
+    }
+  }
+
+  /**
+   * Whether a plain reservation may go ahead of the waiters.
+   *
+   * @param size the size of the plain reservation
+   * @return {@code true} if no waiter is queued, or if the reservation leaves enough for the head of the queue
+   */
+  boolean admits(long size) {
+    Waiter head = queue.peek();
+    return head == null || resource.available() - size >= head.size;
+  }
+
+  /**
+   * @return the number of waiters currently queued
+   */
+  int size() {
+    return queue.size();
+  }
+
+  private void complete(Waiter waiter, boolean granted) {
+    Runnable completion = () -> {
+      if (!waiter.future.complete(granted) && granted) {
+        // cancelled in the meantime
+        resource.release(waiter.size);
+      }
+    };
+    try {
+      executor.execute(completion);
+    } catch (RejectedExecutionException e) {
+      completion.run();
+    }
+  }
+
+  private static class Waiter {
+    private final long size;
+    private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+    private final AtomicBoolean settled = new AtomicBoolean();
+    private volatile ScheduledFuture<?> timeout;
+
+    Waiter(long size) {
+      this.size = size;
+    }
+
+    /**
+     * @return {@code true} if the caller is the one granting or timing out this waiter
+     */
+    boolean settle() {
+      return settled.compareAndSet(false, true);
+    }
+  }
+}
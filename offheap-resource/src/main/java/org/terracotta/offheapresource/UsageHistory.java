@@ -0,0 +1,173 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.terracotta.statistics.Sample;
+import org.terracotta.statistics.SampledStatistic;
+import org.terracotta.statistics.StatisticType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * A fixed-size ring buffer of the usage samples of a resource.
+ * <p>
+ * Samples are recorded by a single thread and read concurrently without locking : every sample is stored as a few
+ * longs of a single array, the number of samples started is published before a sample is written and the number of
+ * samples recorded once it is complete. Readers only read complete samples, and check the number of samples started
+ * after reading to discard those that may have been overwritten in the meantime.
+ */
+final class UsageHistory {
+
+  /**
+   * The values recorded for every sample.
+   */
+  enum Series {
+    USED(StatisticType.GAUGE),
+    RESERVES(StatisticType.COUNTER),
+    RELEASES(StatisticType.COUNTER),
+    FAILED_RESERVES(StatisticType.COUNTER);
+
+    private final StatisticType type;
+
+    Series(StatisticType type) {
+      this.type = type;
+    }
+
+    StatisticType type() {
+      return type;
+    }
+  }
+
+  private static final int TIMESTAMP = 0;
+  private static final int STRIDE = Series.values().length + 1;
+
+  private final int size;
+  private final AtomicLongArray samples;
+  private volatile long started; // written by the recording thread only
+  private volatile long count; // written by the recording thread only
+
+  /**
+   * @param size the number of samples kept
+   * @throws IllegalArgumentException if the size is not positive
+   */
+  UsageHistory(int size) throws IllegalArgumentException {
+    if (size <= 0) {
+      throw new IllegalArgumentException("History size must be positive : " + size);
+    }
+    this.size = size;
+    this.samples = new AtomicLongArray(size * STRIDE);
+  }
+
+  /**
+   * Records a sample, overwriting the oldest one once the history is full. Must only be called by a single thread.
+   *
+   * @param timestamp the time of the sample, in milliseconds
+   * @param used the usage of the resource
+   * @param reserves the number of reservations so far
+   * @param releases the number of releases so far
+   * @param failedReserves the number of failed reservations so far
+   */
+  void record(long timestamp, long used, long reserves, long releases, long failedReserves) {
+    long index = count;
+    int base = base(index);
+    started = index + 1;
+    samples.set(base + TIMESTAMP, timestamp);
+    samples.set(base + offset(Series.USED), used);
+    samples.set(base + offset(Series.RESERVES), reserves);
+    samples.set(base + offset(Series.RELEASES), releases);
+    samples.set(base + offset(Series.FAILED_RESERVES), failedReserves);
+    count = index + 1;
+  }
+
+  /**
+   * @return the number of samples recorded so far, including the overwritten ones
+   */
+  long recorded() {
+    return count;
+  }
+
+  /**
+   * Returns the samples of a series taken at or after the given time, oldest first.
+   *
+   * @param series the series
+   * @param since the time of the oldest sample to return, in milliseconds
+   * @return the samples
+   */
+  List<Sample<Long>> history(Series series, long since) {
+    long end = count;
+    long start = Math.max(0L, end - size);
+    int read = (int) (end - start);
+    long[] timestamps = new long[read];
+    long[] values = new long[read];
+    for (int i = 0; i < read; i++) {
+      int base = base(start + i);
+      timestamps[i] = samples.get(base + TIMESTAMP);
+      values[i] = samples.get(base + offset(series));
+    }
+
+    // the samples read from a slot the recording thread started to overwrite since may be torn
+    long firstValid = started - size;
+    List<Sample<Long>> history = new ArrayList<>(read);
+    for (int i = (int) Math.max(0L, firstValid - start); i < read; i++) {
+      if (timestamps[i] >= since) {
+        history.add(new Sample<>(timestamps[i], values[i]));
+      }
+    }
+    return history;
+  }
+
+  /**
+   * Returns a view of a series as a statistic, whose value is read live and whose history is the recorded one.
+   *
+   * @param series the series
+   * @param value the live value of the series
+   * @return the statistic
+   */
+  SampledStatistic<Long> statistic(Series series, LongSupplier value) {
+    return new SampledStatistic<Long>() {
+      @Override
+      public List<Sample<Long>> history() {
+        return UsageHistory.this.history(series, Long.MIN_VALUE);
+      }
+
+      @Override
+      public List<Sample<Long>> history(long since) {
+        return UsageHistory.this.history(series, since);
+      }
+
+      @Override
+      public StatisticType type() {
+        return series.type();
+      }
+
+      @Override
+      public Long value() {
+        return value.getAsLong();
+      }
+    };
+  }
+
+  private int base(long index) {
+    return (int) (index % size) * STRIDE;
+  }
+
+  private static int offset(Series series) {
+    return series.ordinal() + 1;
+  }
+}
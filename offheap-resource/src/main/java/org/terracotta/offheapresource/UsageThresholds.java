@@ -0,0 +1,124 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The usage thresholds of a resource, expressed as percentages of its capacity.
+ * <p>
+ * A threshold is reached as soon as the usage gets to it, and is only left once the usage drops below it by more
+ * than the hysteresis, so that a usage oscillating around a threshold does not keep crossing it. Threshold changes
+ * happening within the notification interval of the previous notification are coalesced, keeping the highest
+ * threshold reached in between.
+ */
+final class UsageThresholds {
+
+  /**
+   * The historical thresholds : 75% and 90%, without hysteresis nor coalescing.
+   */
+  static final UsageThresholds DEFAULT = new UsageThresholds(new int[] {75, 90}, 0, 0L, TimeUnit.MILLISECONDS);
+
+  private final int[] levels;
+  private final int hysteresis;
+  private final long notificationIntervalNanos;
+
+  /**
+   * @param levels the thresholds, as percentages of the capacity
+   * @param hysteresis how far below a threshold, as a percentage of the capacity, the usage must drop to leave it
+   * @param notificationInterval minimum interval between two notifications, 0 to notify every change
+   * @param unit the unit of the notification interval
+   * @throws IllegalArgumentException if a threshold is not in ]0, 100], if the hysteresis is not in [0, 100[ or if
+   * the notification interval is negative
+   */
+  UsageThresholds(int[] levels, int hysteresis, long notificationInterval, TimeUnit unit) throws IllegalArgumentException {
+    int[] sorted = Arrays.stream(levels).sorted().distinct().toArray();
+    if (sorted.length > 0 && (sorted[0] <= 0 || sorted[sorted.length - 1] > 100)) {
+      throw new IllegalArgumentException("Thresholds must be percentages in ]0, 100] : " + Arrays.toString(levels));
+    }
+    if (hysteresis < 0 || hysteresis >= 100) {
+      throw new IllegalArgumentException("Hysteresis must be a percentage in [0, 100[ : " + hysteresis);
+    }
+    if (notificationInterval < 0) {
+      throw new IllegalArgumentException("Notification interval cannot be negative");
+    }
+    this.levels = sorted;
+    this.hysteresis = hysteresis;
+    this.notificationIntervalNanos = unit.toNanos(notificationInterval);
+  }
+
+  /**
+   * @param levels the thresholds, as percentages of the capacity, the default ones if empty
+   * @param hysteresis how far below a threshold, as a percentage of the capacity, the usage must drop to leave it
+   * @param notificationInterval minimum interval between two notifications, 0 to notify every change
+   * @param unit the unit of the notification interval
+   * @return the thresholds
+   * @throws IllegalArgumentException if a threshold is not in ]0, 100], if the hysteresis is not in [0, 100[ or if
+   * the notification interval is negative
+   */
+  static UsageThresholds of(Collection<Integer> levels, int hysteresis, long notificationInterval, TimeUnit unit) throws IllegalArgumentException {
+    int[] values = levels.isEmpty() ? DEFAULT.levels : levels.stream().mapToInt(Integer::intValue).toArray();
+    return new UsageThresholds(values, hysteresis, notificationInterval, unit);
+  }
+
+  /**
+   * @return the lowest threshold, or 100 if there are none
+   */
+  int lowest() {
+    return levels.length == 0 ? 100 : levels[0];
+  }
+
+  /**
+   * @return the highest threshold, or 100 if there are none
+   */
+  int highest() {
+    return levels.length == 0 ? 100 : levels[levels.length - 1];
+  }
+
+  int hysteresis() {
+    return hysteresis;
+  }
+
+  long notificationIntervalNanos() {
+    return notificationIntervalNanos;
+  }
+
+  /**
+   * Computes the threshold the resource is at, given the one it was at and its current usage.
+   *
+   * @param current the threshold the resource was at, 0 if none
+   * @param percentOccupied the current usage, as a percentage of the capacity
+   * @return the threshold the resource is now at, 0 if none
+   */
+  int next(int current, long percentOccupied) {
+    int next = 0;
+    for (int level : levels) {
+      // a threshold that is already reached is only left past the hysteresis
+      long leaveBelow = level <= current ? level - hysteresis : level;
+      if (percentOccupied >= leaveBelow) {
+        next = level;
+      }
+    }
+    return next;
+  }
+
+  @Override
+  public String toString() {
+    return "thresholds=" + Arrays.toString(levels) + ", hysteresis=" + hysteresis + "%";
+  }
+}
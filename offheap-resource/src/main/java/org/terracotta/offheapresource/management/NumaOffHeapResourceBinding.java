@@ -0,0 +1,54 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource.management;
+
+import org.terracotta.offheapresource.OffHeapResource;
+
+import java.util.function.IntToLongFunction;
+
+public class NumaOffHeapResourceBinding extends OffHeapResourceBinding {
+
+  private final int[] nodes;
+  private final IntToLongFunction capacity;
+  private final IntToLongFunction used;
+
+  /**
+   * @param identifier the resource identifier
+   * @param nodes the ids of the NUMA nodes the resource is partitioned over
+   * @param capacity the capacity of a partition, given the index of its node
+   * @param used the usage of a partition, given the index of its node
+   * @param offHeapResource the resource
+   */
+  public NumaOffHeapResourceBinding(String identifier, int[] nodes, IntToLongFunction capacity, IntToLongFunction used, OffHeapResource offHeapResource) {
+    super(identifier, offHeapResource);
+    this.nodes = nodes.clone();
+    this.capacity = capacity;
+    this.used = used;
+  }
+
+  public int[] getNodes() {
+    return nodes.clone();
+  }
+
+  public long getPartitionCapacity(int index) {
+    return capacity.applyAsLong(index);
+  }
+
+  public long getPartitionUsed(int index) {
+    return used.applyAsLong(index);
+  }
+
+}
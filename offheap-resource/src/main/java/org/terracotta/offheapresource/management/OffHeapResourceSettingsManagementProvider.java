@@ -23,8 +23,10 @@ import org.terracotta.management.registry.RequiredContext;
 import org.terracotta.management.service.monitoring.registry.provider.AliasBindingManagementProvider;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.stream.Collectors;
 
 @Named("OffHeapResourceSettings")
 @RequiredContext({@Named("consumerId"), @Named("type"), @Named("alias")})
@@ -51,15 +53,35 @@ public class OffHeapResourceSettingsManagementProvider extends AliasBindingManag
   private static class ExposedOffHeapResourceBinding extends ExposedAliasBinding<OffHeapResourceBinding> {
 
     ExposedOffHeapResourceBinding(Context context, OffHeapResourceBinding binding) {
-      super(context.with("type", "OffHeapResource"), binding);
+      super(context.with("type", binding instanceof OffHeapSubPoolBinding ? "OffHeapSubPool" : "OffHeapResource"), binding);
     }
 
     @Override
     public Collection<? extends Settings> getDescriptors() {
-      return Collections.singleton(new Settings(getContext())
+      Settings settings = new Settings(getContext())
         .set("capacity", getBinding().getValue().capacity())
-        .set("availableAtTime", getBinding().getValue().available())
-      );
+        .set("availableAtTime", getBinding().getValue().available());
+      if (getBinding() instanceof OffHeapSubPoolBinding) {
+        OffHeapSubPoolBinding subPoolBinding = (OffHeapSubPoolBinding) getBinding();
+        settings
+          .set("offHeapResource", subPoolBinding.getParentIdentifier())
+          .set("subPoolConsumerId", subPoolBinding.getConsumerId())
+          .set("guaranteed", subPoolBinding.getGuaranteed());
+      }
+      if (getBinding() instanceof MappedOffHeapResourceBinding) {
+        settings.set("directory", ((MappedOffHeapResourceBinding) getBinding()).getDirectory());
+      }
+      if (getBinding() instanceof NumaOffHeapResourceBinding) {
+        NumaOffHeapResourceBinding numaBinding = (NumaOffHeapResourceBinding) getBinding();
+        int[] nodes = numaBinding.getNodes();
+        settings.set("numaNodes", Arrays.stream(nodes).mapToObj(String::valueOf).collect(Collectors.joining(",")));
+        for (int i = 0; i < nodes.length; i++) {
+          settings
+            .set("numaNode" + nodes[i] + "Capacity", numaBinding.getPartitionCapacity(i))
+            .set("numaNode" + nodes[i] + "AvailableAtTime", numaBinding.getPartitionCapacity(i) - numaBinding.getPartitionUsed(i));
+        }
+      }
+      return Collections.singleton(settings);
     }
   }
 
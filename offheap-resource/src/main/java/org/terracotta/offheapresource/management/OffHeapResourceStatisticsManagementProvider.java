@@ -41,9 +41,32 @@ public class OffHeapResourceStatisticsManagementProvider extends AbstractStatist
 
   private static class OffHeapResourceBindingExposedStatistics extends AbstractExposedStatistics<OffHeapResourceBinding> {
     OffHeapResourceBindingExposedStatistics(Context context, OffHeapResourceBinding binding, StatisticRegistry statisticRegistry) {
-      super(context.with("type", "OffHeapResource"), binding, statisticRegistry);
+      super(context.with("type", binding instanceof OffHeapSubPoolBinding ? "OffHeapSubPool" : "OffHeapResource"), binding, statisticRegistry);
 
       getStatisticRegistry().registerStatistic("AllocatedMemory", descriptor("allocatedMemory", "tier", "OffHeapResource"));
+      if (binding instanceof OffHeapSubPoolBinding) {
+        getStatisticRegistry().registerStatistic("HeldMemory", descriptor("heldMemory", "tier", "OffHeapSubPool"));
+      } else {
+        getStatisticRegistry().registerStatistic("FillRate", descriptor("fillRate", "tier", "OffHeapResource"));
+        getStatisticRegistry().registerStatistic("TimeToFull", descriptor("timeToFull", "tier", "OffHeapResource"));
+        getStatisticRegistry().registerStatistic("UsageHistory", descriptor("usageHistory", "tier", "OffHeapResource"));
+        getStatisticRegistry().registerStatistic("ReserveCount", descriptor("reserveCount", "tier", "OffHeapResource"));
+        getStatisticRegistry().registerStatistic("ReleaseCount", descriptor("releaseCount", "tier", "OffHeapResource"));
+        getStatisticRegistry().registerStatistic("FailedReserveCount", descriptor("failedReserveCount", "tier", "OffHeapResource"));
+        getStatisticRegistry().registerStatistic("AllocatorPooledMemory", descriptor("pooledMemory", "tier", "OffHeapAllocator"));
+        getStatisticRegistry().registerStatistic("AllocatorFragmentedMemory", descriptor("fragmentedMemory", "tier", "OffHeapAllocator"));
+      }
+      if (binding instanceof MappedOffHeapResourceBinding) {
+        getStatisticRegistry().registerStatistic("MappedMemory", descriptor("mappedMemory", "tier", "MappedOffHeapResource"));
+        getStatisticRegistry().registerStatistic("ResidentMemory", descriptor("residentMemory", "tier", "MappedOffHeapResource"));
+      }
+      if (binding instanceof NumaOffHeapResourceBinding) {
+        for (int node : ((NumaOffHeapResourceBinding) binding).getNodes()) {
+          getStatisticRegistry().registerStatistic("NumaNode" + node + "Capacity", descriptor("numaNode" + node + "Capacity", "tier", "NumaOffHeapResource"));
+          getStatisticRegistry().registerStatistic("NumaNode" + node + "AllocatedMemory", descriptor("numaNode" + node + "AllocatedMemory", "tier", "NumaOffHeapResource"));
+        }
+        getStatisticRegistry().registerStatistic("SpilledReservations", descriptor("spilledReservations", "tier", "NumaOffHeapResource"));
+      }
     }
   }
 
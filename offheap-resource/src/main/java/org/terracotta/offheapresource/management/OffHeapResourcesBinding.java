@@ -0,0 +1,37 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource.management;
+
+import org.terracotta.management.service.monitoring.registry.provider.AliasBinding;
+import org.terracotta.offheapresource.OffHeapResources;
+
+/**
+ * Binds all the offheap resources of the server, as a whole.
+ */
+public class OffHeapResourcesBinding extends AliasBinding {
+
+  public static final String ALIAS = "offheap-resources";
+
+  public OffHeapResourcesBinding(OffHeapResources offHeapResources) {
+    super(ALIAS, offHeapResources);
+  }
+
+  @Override
+  public OffHeapResources getValue() {
+    return (OffHeapResources) super.getValue();
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource.management;
+
+import org.terracotta.management.model.capabilities.descriptors.Descriptor;
+import org.terracotta.management.model.context.Context;
+import org.terracotta.management.registry.ExposedObject;
+import org.terracotta.management.registry.Named;
+import org.terracotta.management.registry.RequiredContext;
+import org.terracotta.management.registry.action.AbstractActionManagementProvider;
+import org.terracotta.management.registry.action.Exposed;
+import org.terracotta.management.service.monitoring.EntityMonitoringService;
+import org.terracotta.management.service.monitoring.registry.provider.MonitoringServiceAware;
+import org.terracotta.offheapresource.OffHeapResourceIdentifier;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+@Named("OffHeapResourcesCalls")
+@RequiredContext({@Named("consumerId"), @Named("alias")})
+public class OffHeapResourcesCallManagementProvider extends AbstractActionManagementProvider<OffHeapResourcesBinding> implements MonitoringServiceAware {
+
+  private EntityMonitoringService monitoringService;
+
+  public OffHeapResourcesCallManagementProvider() {
+    super(OffHeapResourcesBinding.class);
+  }
+
+  @Override
+  public void setMonitoringService(EntityMonitoringService monitoringService) {
+    this.monitoringService = monitoringService;
+  }
+
+  @Override
+  protected ExposedObject<OffHeapResourcesBinding> wrap(OffHeapResourcesBinding managedObject) {
+    Context context = Context.create("consumerId", String.valueOf(monitoringService.getConsumerId()))
+        .with("alias", managedObject.getAlias());
+    return new ExposedOffHeapResources(managedObject, context);
+  }
+
+  public static class ExposedOffHeapResources implements ExposedObject<OffHeapResourcesBinding> {
+
+    private final OffHeapResourcesBinding binding;
+    private final Context context;
+
+    ExposedOffHeapResources(OffHeapResourcesBinding binding, Context context) {
+      this.binding = binding;
+      this.context = context;
+    }
+
+    /**
+     * @param capacities the new capacity in bytes of each resource to change, by resource name
+     * @return {@code true} if the capacities were changed, {@code false} if a resource could not be shrunk
+     */
+    @Exposed
+    public boolean rebalance(@Named("capacities") Map<String, Long> capacities) {
+      Map<OffHeapResourceIdentifier, Long> byIdentifier = new HashMap<>();
+      for (Map.Entry<String, Long> entry : capacities.entrySet()) {
+        byIdentifier.put(OffHeapResourceIdentifier.identifier(entry.getKey()), entry.getValue());
+      }
+      return binding.getValue().rebalance(byIdentifier);
+    }
+
+    @Override
+    public OffHeapResourcesBinding getTarget() {
+      return binding;
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+      return binding.getValue().getClass().getClassLoader();
+    }
+
+    @Override
+    public Context getContext() {
+      return context;
+    }
+
+    @Override
+    public Collection<? extends Descriptor> getDescriptors() {
+      return Collections.emptyList();
+    }
+  }
+}
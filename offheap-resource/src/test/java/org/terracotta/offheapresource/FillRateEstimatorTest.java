@@ -0,0 +1,71 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class FillRateEstimatorTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void testSteadyFillRate() {
+    FillRateEstimator estimator = new FillRateEstimator(5 * SECOND, 0L, 0L);
+    double rate = 0.0;
+    for (int i = 1; i <= 60; i++) {
+      rate = estimator.sample(i * SECOND, i * 1000L);
+    }
+    assertThat(Math.abs(rate - 1000.0) < 1.0, is(true));
+    // 60kB used out of 100kB, filling up at 1kB/s
+    assertThat(Math.abs(estimator.timeToFullMillis(61 * SECOND, 61_000L, 100_000L) - 39_000L) < 100L, is(true));
+  }
+
+  @Test
+  public void testEmptyingResourceIsNeverFull() {
+    FillRateEstimator estimator = new FillRateEstimator(5 * SECOND, 0L, 100_000L);
+    for (int i = 1; i <= 10; i++) {
+      estimator.sample(i * SECOND, 100_000L - i * 1000L);
+    }
+    assertThat(estimator.sample(11 * SECOND, 89_000L) < 0.0, is(true));
+    assertThat(estimator.timeToFullMillis(12 * SECOND, 88_000L, 100_000L), is(-1L));
+  }
+
+  @Test
+  public void testWeightDependsOnElapsedTime() {
+    FillRateEstimator frequent = new FillRateEstimator(5 * SECOND, 0L, 0L);
+    for (int i = 1; i <= 10; i++) {
+      frequent.sample(i * SECOND, i * 1000L);
+    }
+    FillRateEstimator rare = new FillRateEstimator(5 * SECOND, 0L, 0L);
+    rare.sample(10 * SECOND, 10_000L);
+
+    double frequentRate = frequent.sample(10 * SECOND, 10_000L);
+    double rareRate = rare.sample(10 * SECOND, 10_000L);
+    assertThat(Math.abs(frequentRate - rareRate) < 100.0, is(true));
+  }
+
+  @Test
+  public void testSamplesTooCloseAreIgnored() {
+    FillRateEstimator estimator = new FillRateEstimator(5 * SECOND, 0L, 0L);
+    double rate = estimator.sample(SECOND, 1000L);
+    assertThat(estimator.sample(SECOND + 1, 1_000_000L), is(rate));
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MappedOffHeapResourceTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testReservationsAreAccountedLikeInMemory() throws Exception {
+    MappedOffHeapResource resource = new MappedOffHeapResource("id", 1024 * 1024, folder.getRoot().toPath());
+
+    assertThat(resource.reserve(512 * 1024), is(true));
+    assertThat(resource.reserve(768 * 1024), is(false));
+    assertThat(resource.available(), is(512L * 1024));
+    resource.release(512 * 1024);
+    assertThat(resource.available(), is(1024L * 1024));
+    assertThat(resource.mappedSize(), is(0L));
+  }
+
+  @Test
+  public void testPagesAreSlicedFromMappedSegments() throws Exception {
+    MappedOffHeapResource resource = new MappedOffHeapResource("id", 1024 * 1024, folder.getRoot().toPath());
+    OffHeapAllocatorImpl allocator = new OffHeapAllocatorImpl(resource, resource.pageSource(), 4096, 64 * 1024, 0);
+
+    OffHeapPage first = allocator.allocate("cache", 4096);
+    OffHeapPage second = allocator.allocate("cache", 8192);
+    assertThat(resource.mappedSize(), is(1024L * 1024));
+    assertThat(resource.available(), is(1024L * 1024 - 12 * 1024));
+
+    ByteBuffer buffer = first.asByteBuffer();
+    buffer.putLong(0, 42L);
+    second.asByteBuffer().putLong(0, 43L);
+    assertThat(first.asByteBuffer().getLong(0), is(42L));
+    assertThat(second.asByteBuffer().getLong(0), is(43L));
+
+    // segment files are unlinked once mapped
+    File[] files = folder.getRoot().listFiles();
+    assertThat(files.length, is(0));
+  }
+
+  @Test
+  public void testFreedSpaceIsReusedAcrossSizes() throws Exception {
+    MappedOffHeapResource resource = segmented(8 * 1024 * 1024, 64 * 1024);
+
+    ByteBuffer first = resource.allocate(16 * 1024);
+    ByteBuffer second = resource.allocate(16 * 1024);
+    ByteBuffer third = resource.allocate(32 * 1024);
+    assertThat(resource.mappedSize(), is(64L * 1024));
+
+    // freed neighbours coalesce into a range fitting a larger page
+    resource.free(first);
+    resource.free(second);
+    ByteBuffer merged = resource.allocate(32 * 1024);
+    merged.putLong(0, 42L);
+    assertThat(resource.mappedSize(), is(64L * 1024));
+    assertThat(third.getLong(0), is(0L));
+
+    // and split again for smaller ones, zeroed
+    resource.free(merged);
+    for (int i = 0; i < 4; i++) {
+      ByteBuffer split = resource.allocate(8 * 1024);
+      assertThat(split.capacity(), is(8 * 1024));
+      assertThat(split.getLong(0), is(0L));
+    }
+    assertThat(resource.mappedSize(), is(64L * 1024));
+  }
+
+  @Test
+  public void testPagesCarvedFromAFragmentedSegmentDoNotOverlap() throws Exception {
+    MappedOffHeapResource resource = segmented(8 * 1024 * 1024, 64 * 1024);
+    List<ByteBuffer> pages = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      pages.add(resource.allocate(4 * 1024));
+    }
+    assertThat(resource.mappedSize(), is(64L * 1024));
+
+    // leaves free ranges of 4K, 8K, 20K and 4K
+    for (int i : new int[] {0, 2, 3, 6, 7, 8, 9, 10, 14}) {
+      resource.free(pages.set(i, null));
+    }
+    pages.removeIf(Objects::isNull);
+    for (int size : new int[] {8, 4, 8, 8}) {
+      pages.add(resource.allocate(size * 1024));
+    }
+    assertThat(resource.mappedSize(), is(64L * 1024));
+
+    for (int i = 0; i < pages.size(); i++) {
+      ByteBuffer page = pages.get(i);
+      for (int j = 0; j < page.capacity(); j++) {
+        page.put(j, (byte) i);
+      }
+    }
+    for (int i = 0; i < pages.size(); i++) {
+      ByteBuffer page = pages.get(i);
+      for (int j = 0; j < page.capacity(); j++) {
+        assertThat(page.get(j), is((byte) i));
+      }
+    }
+  }
+
+  @Test
+  public void testSegmentsAreUnmappedWhenFreed() throws Exception {
+    MappedOffHeapResource resource = segmented(8 * 1024 * 1024, 64 * 1024);
+
+    ByteBuffer large = resource.allocate(128 * 1024);
+    assertThat(large.capacity(), is(128 * 1024));
+    assertThat(resource.mappedSize(), is(128L * 1024));
+    resource.free(large);
+    assertThat(resource.mappedSize(), is(0L));
+
+    ByteBuffer first = resource.allocate(64 * 1024);
+    ByteBuffer second = resource.allocate(64 * 1024);
+    assertThat(resource.mappedSize(), is(128L * 1024));
+    // a single empty segment is kept
+    resource.free(first);
+    assertThat(resource.mappedSize(), is(128L * 1024));
+    resource.free(second);
+    assertThat(resource.mappedSize(), is(64L * 1024));
+  }
+
+  @Test
+  public void testMappedSizeIsCappedByTheCapacity() throws Exception {
+    MappedOffHeapResource resource = segmented(160 * 1024, 64 * 1024);
+
+    assertThat(resource.allocate(64 * 1024), notNullValue());
+    assertThat(resource.allocate(64 * 1024), notNullValue());
+    // the last segment is cut to the capacity
+    assertThat(resource.allocate(16 * 1024), notNullValue());
+    assertThat(resource.mappedSize(), is(160L * 1024));
+    assertThat(resource.allocate(16 * 1024), notNullValue());
+    assertThat(resource.allocate(32 * 1024), nullValue());
+    assertThat(resource.allocate(256 * 1024), nullValue());
+    assertThat(resource.mappedSize(), is(160L * 1024));
+  }
+
+  @Test
+  public void testCloseOnlyUnmapsSegmentsWithoutPages() throws Exception {
+    MappedOffHeapResource resource = segmented(8 * 1024 * 1024, 64 * 1024);
+    ByteBuffer small = resource.allocate(16 * 1024);
+    ByteBuffer large = resource.allocate(128 * 1024);
+    resource.free(resource.allocate(64 * 1024));
+    assertThat(resource.mappedSize(), is(256L * 1024));
+
+    resource.close();
+    assertThat(resource.mappedSize(), is(192L * 1024));
+    assertThat(resource.allocate(16 * 1024), nullValue());
+
+    // pages still held remain usable until they are freed
+    small.putLong(0, 42L);
+    assertThat(small.getLong(0), is(42L));
+    resource.free(small);
+    assertThat(resource.mappedSize(), is(128L * 1024));
+    resource.free(large);
+    assertThat(resource.mappedSize(), is(0L));
+  }
+
+  @Test
+  public void testResidentSize() throws Exception {
+    MappedOffHeapResource resource = new MappedOffHeapResource("id", 1024 * 1024, folder.getRoot().toPath());
+    assertThat(resource.residentSize(), is(0L));
+
+    ByteBuffer buffer = resource.allocate(256 * 1024);
+    for (int i = 0; i < buffer.capacity(); i += 4096) {
+      buffer.put(i, (byte) 1);
+    }
+    assertThat(resource.residentSize(), greaterThan(0L));
+    assertThat(resource.residentSize(), lessThanOrEqualTo(resource.mappedSize()));
+  }
+
+  @Test
+  public void testMissingDirectoryIsCreated() throws Exception {
+    Path directory = folder.getRoot().toPath().resolve("nested").resolve("offheap");
+    MappedOffHeapResource resource = new MappedOffHeapResource("some/id", 1024 * 1024, directory);
+
+    assertThat(resource.allocate(4096).capacity(), is(4096));
+    assertThat(resource.getDirectory().toFile().isDirectory(), is(true));
+    assertThat(resource.getManagementBinding().getDirectory(), is(directory.toAbsolutePath().toString()));
+  }
+
+  @Test
+  public void testUnusableDirectory() throws Exception {
+    File file = folder.newFile();
+    try {
+      new MappedOffHeapResource("id", 1024 * 1024, file.toPath());
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void testMappingFailureFailsAllocation() throws Exception {
+    Path directory = folder.newFolder().toPath();
+    MappedOffHeapResource resource = new MappedOffHeapResource("id", 1024 * 1024, directory);
+    OffHeapAllocatorImpl allocator = new OffHeapAllocatorImpl(resource, resource.pageSource(), 4096, 64 * 1024, 0);
+    directory.toFile().delete();
+
+    assertThat(allocator.allocate("cache", 4096), nullValue());
+    assertThat(resource.available(), is(1024L * 1024));
+  }
+
+  private MappedOffHeapResource segmented(long size, long segmentSize) {
+    return new MappedOffHeapResource("id", size, folder.getRoot().toPath(), segmentSize,
+        UsageThresholds.DEFAULT, (r, p) -> {}, (r, o, n) -> {}, new SubPoolChangeHandler() {
+          @Override
+          public void onSubPoolCreated(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+          }
+
+          @Override
+          public void onSubPoolRemoved(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+          }
+        });
+  }
+}
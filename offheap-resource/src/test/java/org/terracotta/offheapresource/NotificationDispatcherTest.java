@@ -0,0 +1,100 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class NotificationDispatcherTest {
+
+  @Test
+  public void testNotificationsAreDeliveredInOrder() throws Exception {
+    NotificationDispatcher dispatcher = new NotificationDispatcher("test-notifier", 16);
+    List<Integer> delivered = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch done = new CountDownLatch(1);
+
+    for (int i = 0; i < 10; i++) {
+      int notification = i;
+      dispatcher.dispatch(() -> delivered.add(notification));
+    }
+    dispatcher.dispatch(done::countDown);
+
+    assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(delivered, is(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9)));
+    assertThat(dispatcher.droppedCount(), is(0L));
+  }
+
+  @Test
+  public void testNotificationsAreDroppedWhenTheQueueIsFull() throws Exception {
+    NotificationDispatcher dispatcher = new NotificationDispatcher("test-notifier", 2);
+    CountDownLatch delivering = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch delivered = new CountDownLatch(2);
+
+    dispatcher.dispatch(() -> {
+      delivering.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    assertThat(delivering.await(10, TimeUnit.SECONDS), is(true));
+
+    dispatcher.dispatch(delivered::countDown);
+    dispatcher.dispatch(delivered::countDown);
+    dispatcher.dispatch(() -> fail("Should have been dropped"));
+    assertThat(dispatcher.queueDepth(), is(2L));
+    assertThat(dispatcher.droppedCount(), is(1L));
+
+    release.countDown();
+    assertThat(delivered.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(dispatcher.droppedCount(), is(1L));
+  }
+
+  @Test
+  public void testFailingNotificationDoesNotStopDelivery() throws Exception {
+    NotificationDispatcher dispatcher = new NotificationDispatcher("test-notifier", 16);
+    CountDownLatch done = new CountDownLatch(1);
+
+    dispatcher.dispatch(() -> {
+      throw new IllegalStateException("expected");
+    });
+    dispatcher.dispatch(done::countDown);
+
+    assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+  }
+
+  @Test
+  public void testInvalidCapacity() {
+    try {
+      new NotificationDispatcher("test-notifier", 0);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+  }
+}
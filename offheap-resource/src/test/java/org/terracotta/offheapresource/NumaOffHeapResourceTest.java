@@ -0,0 +1,132 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.junit.Assert.assertThat;
+
+public class NumaOffHeapResourceTest {
+
+  private final NumaTopology topology = new NumaTopology(new int[] {0, 1}, new long[] {1L, 1L}, new HashMap<>());
+  private final AtomicInteger localNode = new AtomicInteger();
+
+  @Test
+  public void testPagesAreChargedToTheLocalNode() {
+    NumaOffHeapResource resource = resource(1024L);
+    OffHeapAllocatorImpl allocator = allocator(resource);
+
+    assertThat(allocator.allocate("a", 128), notNullValue());
+    localNode.set(1);
+    assertThat(allocator.allocate("a", 256), notNullValue());
+
+    assertThat(resource.partitionCapacity(0), is(512L));
+    assertThat(resource.partitionCapacity(1), is(512L));
+    assertThat(resource.partitionUsed(0), is(128L));
+    assertThat(resource.partitionUsed(1), is(256L));
+    assertThat(resource.spilledReservations(), is(0L));
+  }
+
+  @Test
+  public void testPagesAreCreditedToTheNodeTheyWereChargedTo() {
+    NumaOffHeapResource resource = resource(1024L);
+    OffHeapAllocatorImpl allocator = allocator(resource);
+    OffHeapPage local = allocator.allocate("a", 128);
+    localNode.set(1);
+    OffHeapPage remote = allocator.allocate("a", 256);
+
+    localNode.set(0);
+    allocator.free(remote);
+
+    assertThat(resource.partitionUsed(0), is(128L));
+    assertThat(resource.partitionUsed(1), is(0L));
+
+    localNode.set(1);
+    allocator.free(local);
+
+    assertThat(resource.partitionUsed(0), is(0L));
+    assertThat(resource.partitionUsed(1), is(0L));
+    assertThat(resource.available(), is(1024L));
+  }
+
+  @Test
+  public void testPagesOnAFullNodeAreCountedAsSpilled() {
+    NumaOffHeapResource resource = resource(1024L);
+    OffHeapAllocatorImpl allocator = allocator(resource);
+
+    assertThat(allocator.allocate("a", 512), notNullValue());
+    assertThat(resource.spilledReservations(), is(0L));
+    assertThat(allocator.allocate("a", 128), notNullValue());
+
+    assertThat(resource.partitionUsed(0), is(640L));
+    assertThat(resource.partitionUsed(1), is(0L));
+    assertThat(resource.spilledReservations(), is(1L));
+  }
+
+  @Test
+  public void testReservationsAreNotChargedToANode() {
+    NumaOffHeapResource resource = resource(100L);
+
+    assertThat(resource.reserve(70L), is(true));
+    resource.release(20L);
+
+    assertThat(resource.partitionUsed(0), is(0L));
+    assertThat(resource.partitionUsed(1), is(0L));
+    assertThat(resource.available(), is(50L));
+  }
+
+  @Test
+  public void testPartitionsFollowTheCapacity() {
+    NumaOffHeapResource resource = resource(100L);
+
+    assertThat(resource.setCapacity(200L), is(true));
+
+    assertThat(resource.partitionCapacity(0), is(100L));
+    assertThat(resource.partitionCapacity(1), is(100L));
+  }
+
+  @Test
+  public void testManagementBinding() {
+    NumaOffHeapResource resource = resource(100L);
+    assertThat(allocator(resource).allocate("a", 16), notNullValue());
+
+    assertThat(resource.getManagementBinding().getNodes(), is(new int[] {0, 1}));
+    assertThat(resource.getManagementBinding().getPartitionCapacity(1), is(50L));
+    assertThat(resource.getManagementBinding().getPartitionUsed(0), is(16L));
+  }
+
+  private static OffHeapAllocatorImpl allocator(NumaOffHeapResource resource) {
+    return new OffHeapAllocatorImpl(resource, resource.pageSource(), 16, 1024, 0L);
+  }
+
+  private NumaOffHeapResource resource(long size) {
+    return new NumaOffHeapResource("numa", size, topology, localNode::get, UsageThresholds.DEFAULT, (r, p) -> { }, (r, o, n) -> { },
+        new SubPoolChangeHandler() {
+          @Override
+          public void onSubPoolCreated(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+          }
+
+          @Override
+          public void onSubPoolRemoved(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+          }
+        });
+  }
+}
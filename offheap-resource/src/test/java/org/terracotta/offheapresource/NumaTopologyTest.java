@@ -0,0 +1,97 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertSame;
+
+public class NumaTopologyTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testParseCpuList() {
+    assertThat(NumaTopology.parseCpuList("0-3,8-11\n"), is(new int[] {0, 1, 2, 3, 8, 9, 10, 11}));
+    assertThat(NumaTopology.parseCpuList("5"), is(new int[] {5}));
+    assertThat(NumaTopology.parseCpuList("\n"), is(new int[0]));
+  }
+
+  @Test
+  public void testProcessorField() {
+    String stat = "1234 (java thread (1)) S 1 1234 1234 0 -1 4194560 1000 0 0 0 10 5 0 0 20 0 30 0 100 4096000 2000 "
+        + "18446744073709551615 1 1 0 0 0 0 0 0 0 0 0 0 17 13 0 0 0 0 0 0 0 0 0 0 0 0 0\n";
+    assertThat(NumaTopology.processorField(stat), is(13));
+  }
+
+  @Test
+  public void testDiscover() throws IOException {
+    Path root = folder.newFolder("node").toPath();
+    node(root, 0, "0-1,4-5", 3072);
+    node(root, 1, "2-3,6-7", 1024);
+    Files.createDirectory(root.resolve("power"));
+
+    NumaTopology topology = NumaTopology.discover(root);
+
+    assertThat(topology.nodes(), is(new int[] {0, 1}));
+    assertThat(topology.split(4096L), is(new long[] {3072L, 1024L}));
+  }
+
+  @Test
+  public void testDiscoverWithoutNodes() throws IOException {
+    assertSame(NumaTopology.SINGLE_NODE, NumaTopology.discover(folder.newFolder("empty").toPath()));
+    assertSame(NumaTopology.SINGLE_NODE, NumaTopology.discover(folder.getRoot().toPath().resolve("missing")));
+  }
+
+  @Test
+  public void testSplitEvenlyWhenMemoryIsUnknown() {
+    NumaTopology topology = new NumaTopology(new int[] {0, 1, 2}, new long[3], new HashMap<>());
+    assertThat(topology.split(10L), is(new long[] {3L, 3L, 4L}));
+  }
+
+  @Test
+  public void testLocalNodeOfSingleNode() {
+    assertThat(NumaTopology.SINGLE_NODE.localNode(), is(0));
+    assertThat(NumaTopology.SINGLE_NODE.split(10L), is(new long[] {10L}));
+  }
+
+  @Test
+  public void testLocalNodeIsAValidIndex() {
+    Map<Integer, Integer> cpuToIndex = new HashMap<>();
+    NumaTopology topology = new NumaTopology(new int[] {0, 1}, new long[2], cpuToIndex);
+    int local = topology.localNode();
+    assertThat(local == 0 || local == 1, is(true));
+  }
+
+  private static void node(Path root, int id, String cpus, long memoryKb) throws IOException {
+    Path node = Files.createDirectory(root.resolve("node" + id));
+    Files.write(node.resolve("cpulist"), (cpus + "\n").getBytes(StandardCharsets.US_ASCII));
+    Files.write(node.resolve("meminfo"), ("Node " + id + " MemTotal:       " + memoryKb + " kB\n"
+        + "Node " + id + " MemFree:        " + memoryKb / 2 + " kB\n").getBytes(StandardCharsets.US_ASCII));
+  }
+}
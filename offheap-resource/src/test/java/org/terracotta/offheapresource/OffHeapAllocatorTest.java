@@ -0,0 +1,230 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class OffHeapAllocatorTest {
+
+  @Test
+  public void testPagesAreChargedAgainstTheResource() {
+    OffHeapResourceImpl resource = new OffHeapResourceImpl("id", 64 * 1024);
+    OffHeapAllocatorImpl allocator = new OffHeapAllocatorImpl(resource, PageSource.DIRECT, 1024, 16 * 1024, 16 * 1024);
+
+    OffHeapPage page = allocator.allocate("cache", 3000);
+    assertThat(page.size(), is(3000));
+    assertThat(page.capacity(), is(4096));
+    assertThat(page.getConsumerId(), is("cache"));
+    ByteBuffer buffer = page.asByteBuffer();
+    assertThat(buffer.isDirect(), is(true));
+    assertThat(buffer.remaining(), is(3000));
+
+    assertThat(resource.available(), is(60L * 1024));
+    assertThat(allocator.allocatedSize(), is(4096L));
+    assertThat(allocator.requestedSize(), is(3000L));
+  }
+
+  @Test
+  public void testFreedPagesAreReused() {
+    OffHeapResourceImpl resource = new OffHeapResourceImpl("id", 64 * 1024);
+    OffHeapAllocatorImpl allocator = new OffHeapAllocatorImpl(resource, PageSource.DIRECT, 1024, 16 * 1024, 16 * 1024);
+
+    OffHeapPage page = allocator.allocate("cache", 3000);
+    allocator.free(page);
+    assertThat(allocator.pooledSize(), is(4096L));
+    assertThat(allocator.allocatedSize(), is(0L));
+    assertThat(resource.available(), is(60L * 1024));
+
+    OffHeapPage reused = allocator.allocate("store", 4000);
+    assertThat(allocator.reuseCount(), is(1L));
+    assertThat(allocator.allocationCount(), is(1L));
+    assertThat(allocator.pooledSize(), is(0L));
+    assertThat(reused.asByteBuffer().remaining(), is(4000));
+  }
+
+  @Test
+  public void testPoolIsBounded() {
+    OffHeapResourceImpl resource = new OffHeapResourceImpl("id", 64 * 1024);
+    OffHeapAllocatorImpl allocator = new OffHeapAllocatorImpl(resource, PageSource.DIRECT, 1024, 16 * 1024, 4096);
+
+    OffHeapPage first = allocator.allocate("cache", 4096);
+    OffHeapPage second = allocator.allocate("cache", 4096);
+    OffHeapPage large = allocator.allocate("cache", 20 * 1024);
+    assertThat(large.capacity(), is(20 * 1024));
+    assertThat(resource.available(), is(36L * 1024));
+
+    allocator.free(first);
+    allocator.free(second);
+    allocator.free(large);
+    assertThat(allocator.pooledSize(), is(4096L));
+    assertThat(resource.available(), is(60L * 1024));
+  }
+
+  @Test
+  public void testPoolIsTrimmedWhenResourceIsExhausted() {
+    OffHeapResourceImpl resource = new OffHeapResourceImpl("id", 16 * 1024);
+    OffHeapAllocatorImpl allocator = new OffHeapAllocatorImpl(resource, PageSource.DIRECT, 1024, 16 * 1024, 16 * 1024);
+
+    for (int i = 0; i < 4; i++) {
+      allocator.free(allocator.allocate("cache", 2048));
+    }
+    allocator.free(allocator.allocate("cache", 8192));
+    assertThat(allocator.pooledSize(), is(10L * 1024));
+
+    OffHeapPage page = allocator.allocate("store", 16 * 1024);
+    assertThat(page.capacity(), is(16 * 1024));
+    assertThat(allocator.pooledSize(), is(0L));
+    assertThat(allocator.allocate("store", 1), is(nullValue()));
+  }
+
+  @Test
+  public void testReusedPagesAreZeroed() {
+    OffHeapResourceImpl resource = new OffHeapResourceImpl("id", 64 * 1024);
+    OffHeapAllocatorImpl allocator = new OffHeapAllocatorImpl(resource, PageSource.DIRECT, 1024, 16 * 1024, 16 * 1024);
+
+    OffHeapPage page = allocator.allocate("cache", 4096);
+    for (int i = 0; i < 4096; i++) {
+      page.asByteBuffer().put(i, (byte) 0xff);
+    }
+    allocator.free(page);
+
+    OffHeapPage reused = allocator.allocate("store", 4096);
+    assertThat(allocator.reuseCount(), is(1L));
+    for (int i = 0; i < 4096; i++) {
+      assertThat(reused.asByteBuffer().get(i), is((byte) 0));
+    }
+  }
+
+  @Test
+  public void testPoolIsReleasedBeforeAReservationIsRefused() {
+    OffHeapResourceImpl resource = new OffHeapResourceImpl("id", 16 * 1024);
+    OffHeapAllocatorImpl allocator = new OffHeapAllocatorImpl(resource, PageSource.DIRECT, 1024, 16 * 1024, 16 * 1024);
+    allocator.free(allocator.allocate("cache", 8192));
+    allocator.free(allocator.allocate("cache", 4096));
+    assertThat(allocator.pooledSize(), is(12L * 1024));
+    assertThat(resource.available(), is(4L * 1024));
+
+    assertThat(resource.reserve(8 * 1024), is(true));
+    assertThat(allocator.pooledSize(), is(0L));
+    assertThat(resource.setCapacity(8 * 1024), is(true));
+  }
+
+  @Test
+  public void testWaitersSurviveThePoolBeingReclaimedWhileGranting() throws Exception {
+    OffHeapResourceImpl resource = new OffHeapResourceImpl("id", 16 * 1024);
+    OffHeapAllocatorImpl allocator = new OffHeapAllocatorImpl(resource, PageSource.DIRECT, 1024, 16 * 1024, 16 * 1024);
+    OffHeapPage large = allocator.allocate("cache", 8192);
+    OffHeapPage small = allocator.allocate("cache", 4096);
+    assertThat(resource.reserve(4 * 1024), is(true));
+
+    CompletableFuture<Boolean> first = resource.reserveAsync(8 * 1024, 1, TimeUnit.MINUTES);
+    CompletableFuture<Boolean> second = resource.reserveAsync(12 * 1024, 1, TimeUnit.MINUTES);
+    allocator.free(large);
+    allocator.free(small);
+    assertThat(allocator.pooledSize(), is(12L * 1024));
+
+    // granting the first waiter reclaims the pool, which signals the waiters again from within the grant
+    resource.release(4 * 1024);
+    assertThat(first.get(1, TimeUnit.MINUTES), is(true));
+    assertThat(second.isDone(), is(false));
+    assertThat(resource.waitingReservations(), is(1));
+
+    resource.release(8 * 1024);
+    assertThat(second.get(1, TimeUnit.MINUTES), is(true));
+    assertThat(resource.available(), is(4L * 1024));
+  }
+
+  @Test
+  public void testPooledSizeFollowsTheCapacity() {
+    OffHeapResourceImpl resource = new OffHeapResourceImpl("id", 64 * 1024);
+    OffHeapAllocatorImpl allocator = new OffHeapAllocatorImpl(resource, PageSource.DIRECT);
+    OffHeapPage first = allocator.allocate("cache", 4096);
+    OffHeapPage second = allocator.allocate("cache", 4096);
+
+    assertThat(resource.setCapacity(128 * 1024), is(true));
+    allocator.free(first);
+    allocator.free(second);
+    assertThat(allocator.pooledSize(), is(8L * 1024));
+  }
+
+  @Test
+  public void testFreeAllRacingAllocationsLeavesNoPage() throws Exception {
+    OffHeapResourceImpl resource = new OffHeapResourceImpl("id", 64 * 1024 * 1024);
+    OffHeapAllocatorImpl allocator = new OffHeapAllocatorImpl(resource, PageSource.DIRECT, 1024, 16 * 1024, 0);
+    AtomicBoolean done = new AtomicBoolean();
+    Thread freeing = new Thread(() -> {
+      while (!done.get()) {
+        allocator.freeAll("cache");
+      }
+    });
+    freeing.start();
+    try {
+      for (int i = 0; i < 100_000; i++) {
+        allocator.allocate("cache", 1024);
+      }
+    } finally {
+      done.set(true);
+      freeing.join();
+    }
+
+    allocator.freeAll("cache");
+    assertThat(allocator.allocatedSize(), is(0L));
+    assertThat(resource.available(), is(64L * 1024 * 1024));
+  }
+
+  @Test
+  public void testFreeAll() {
+    OffHeapResourceImpl resource = new OffHeapResourceImpl("id", 64 * 1024);
+    OffHeapAllocatorImpl allocator = new OffHeapAllocatorImpl(resource, PageSource.DIRECT, 1024, 16 * 1024, 0);
+
+    allocator.allocate("cache", 1024);
+    allocator.allocate("cache", 1024);
+    allocator.allocate("store", 1024);
+
+    assertThat(allocator.freeAll("cache"), is(2));
+    assertThat(allocator.freeAll("cache"), is(0));
+    assertThat(resource.available(), is(63L * 1024));
+    assertThat(allocator.allocatedSize(), is(1024L));
+  }
+
+  @Test
+  public void testDoubleFree() {
+    OffHeapAllocatorImpl allocator = new OffHeapAllocatorImpl(new OffHeapResourceImpl("id", 64 * 1024));
+    OffHeapPage page = allocator.allocate("cache", 1024);
+    allocator.free(page);
+    try {
+      allocator.free(page);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testZeroSizePage() {
+    new OffHeapAllocatorImpl(new OffHeapResourceImpl("id", 64 * 1024)).allocate("cache", 0);
+  }
+}
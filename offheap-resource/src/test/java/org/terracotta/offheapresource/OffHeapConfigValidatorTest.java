@@ -17,6 +17,7 @@ package org.terracotta.offheapresource;
 
 import org.junit.Test;
 import org.terracotta.config.service.ValidationException;
+import org.terracotta.offheapresource.config.MappedResourceType;
 import org.terracotta.offheapresource.config.MemoryUnit;
 import org.terracotta.offheapresource.config.OffheapResourcesType;
 import org.terracotta.offheapresource.config.ResourceType;
@@ -366,6 +367,73 @@ public class OffHeapConfigValidatorTest {
     spyValidator.validateAgainst(offHeapNode1, offHeapNode2);
   }
 
+  @Test
+  public void testValidateWithMismatchedMappedOffHeapResources() {
+    Function<Element, OffheapResourcesType> OffheapResourcesType = mock(Function.class);
+    OffHeapConfigValidator validator = new OffHeapConfigValidator(OffheapResourcesType);
+    OffHeapConfigValidator spyValidator = spy(validator);
+
+    Element offHeapNode1 = mock(Element.class);
+    Element offHeapNode2 = mock(Element.class);
+
+    ResourceType node11 = new ResourceType();
+    node11.setName("offHeap1");
+    node11.setValue(BigInteger.valueOf(1024L));
+    node11.setUnit(MemoryUnit.MB);
+
+    MappedResourceType node12 = new MappedResourceType();
+    node12.setName("offHeap2");
+    node12.setValue(BigInteger.valueOf(512L));
+    node12.setUnit(MemoryUnit.GB);
+    node12.setDirectory("/data/server1");
+
+    MappedResourceType node21 = new MappedResourceType();
+    node21.setName("offHeap1");
+    node21.setValue(BigInteger.valueOf(1024L));
+    node21.setUnit(MemoryUnit.MB);
+    node21.setDirectory("/data/server2");
+
+    ResourceType node22 = new ResourceType();
+    node22.setName("offHeap2");
+    node22.setValue(BigInteger.valueOf(512L));
+    node22.setUnit(MemoryUnit.GB);
+
+    OffheapResourcesType offHeapResource1 = new OffheapResourcesType();
+    offHeapResource1.getResource().add(node11);
+    offHeapResource1.getMappedResource().add(node12);
+
+    OffheapResourcesType offHeapResource2 = new OffheapResourcesType();
+    offHeapResource2.getResource().add(node22);
+    offHeapResource2.getMappedResource().add(node21);
+
+    doReturn(offHeapResource1).when(spyValidator).createObject(offHeapNode1);
+    doReturn(offHeapResource2).when(spyValidator).createObject(offHeapNode2);
+
+    try {
+      spyValidator.validateAgainst(offHeapNode1, offHeapNode2);
+      fail("Expected ValidationException");
+    } catch (ValidationException e) {
+      assertThat(e.getErrorId(), is(ValidationFailureId.MISMATCHED_OFFHEAPS.getFailureId()));
+    }
+
+    // the directories are local to each server
+    offHeapResource2.getResource().clear();
+    offHeapResource2.getMappedResource().clear();
+    MappedResourceType node23 = new MappedResourceType();
+    node23.setName("offHeap2");
+    node23.setValue(BigInteger.valueOf(512L));
+    node23.setUnit(MemoryUnit.GB);
+    node23.setDirectory("/data/server2");
+    ResourceType node24 = new ResourceType();
+    node24.setName("offHeap1");
+    node24.setValue(BigInteger.valueOf(1024L));
+    node24.setUnit(MemoryUnit.MB);
+    offHeapResource2.getResource().add(node24);
+    offHeapResource2.getMappedResource().add(node23);
+
+    spyValidator.validateAgainst(offHeapNode1, offHeapNode2);
+  }
+
   @Test
   public void testCompareOffHeapResourceSizes() {
     ResourceType node11 = new ResourceType();
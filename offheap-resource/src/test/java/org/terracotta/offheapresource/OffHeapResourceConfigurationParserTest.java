@@ -17,6 +17,7 @@ package org.terracotta.offheapresource;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.nio.file.Paths;
 import java.util.Collection;
 
 import javax.xml.XMLConstants;
@@ -31,6 +32,7 @@ import org.terracotta.offheapresource.config.MemoryUnit;
 import org.w3c.dom.Document;
 
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
 import org.junit.Assert;
 import static org.junit.Assert.assertThat;
 import static org.terracotta.offheapresource.OffHeapResourceIdentifier.identifier;
@@ -69,6 +71,19 @@ public class OffHeapResourceConfigurationParserTest {
     assertThat(config.getOffHeapResource(identifier("secondary")).available(), is(longValueExact(convert(BigInteger.valueOf(1024L), MemoryUnit.MB))));
   }
 
+  @Test
+  public void testValidParseWithMappedResource() throws Exception {
+    Document dom = domBuilderFactory.newDocumentBuilder().parse(getClass().getResourceAsStream("/configs/valid-mapped.xml"));
+
+    OffHeapResourcesProvider config = parser.parse(dom.getDocumentElement(), "what is this thing?");
+
+    assertThat(config.getOffHeapResource(identifier("primary")).available(), is(longValueExact(convert(BigInteger.valueOf(128L), MemoryUnit.GB))));
+    OffHeapResourceImpl mapped = config.getOffHeapResource(identifier("secondary"));
+    assertThat(mapped, instanceOf(MappedOffHeapResource.class));
+    assertThat(mapped.available(), is(longValueExact(convert(BigInteger.valueOf(16L), MemoryUnit.GB))));
+    assertThat(((MappedOffHeapResource) mapped).getDirectory().endsWith(Paths.get("target", "mapped-offheap")), is(true));
+  }
+
   @Test
   public void testNoResources() throws Exception {
     Document dom = domBuilderFactory.newDocumentBuilder().parse(getClass().getResourceAsStream("/configs/no-resources.xml"));
@@ -0,0 +1,70 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reserve/release pairs on a shared resource, with and without striping.
+ * Run it for a range of thread counts, e.g.:
+ * <pre>
+ *   java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main OffHeapResourceContentionBenchmark -t 1
+ *   java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main OffHeapResourceContentionBenchmark -t 64
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OffHeapResourceContentionBenchmark {
+
+  private static final long PAGE_SIZE = 4096L;
+
+  @Param({"0", "64"})
+  public int stripes;
+
+  private OffHeapResourceImpl resource;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    resource = new OffHeapResourceImpl("benchmark", 1024L * 1024L * 1024L, stripes, (r, t) -> {}, (r, o, n) -> {});
+  }
+
+  @Benchmark
+  public boolean reserveRelease() {
+    boolean reserved = resource.reserve(PAGE_SIZE);
+    if (reserved) {
+      resource.release(PAGE_SIZE);
+    }
+    return reserved;
+  }
+
+}
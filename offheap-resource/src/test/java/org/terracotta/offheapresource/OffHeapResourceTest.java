@@ -16,8 +16,11 @@
 package org.terracotta.offheapresource;
 
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -25,7 +28,16 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.terracotta.statistics.Sample;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -160,4 +172,379 @@ public class OffHeapResourceTest {
     assertThat(ohr.available(), is(6L));
     verifyNoMoreInteractions(onCapacityChange);
   }
+
+  @Test
+  public void testStripedThresholdsAreExact() {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10_000L, 4, onThresholdChange, onCapacityChange);
+    for (int i = 0; i < 74; i++) {
+      assertThat(ohr.reserve(100L), is(true));
+    }
+    assertThat(ohr.available(), is(2_600L));
+    verifyNoMoreInteractions(onThresholdChange);
+
+    assertThat(ohr.reserve(100L), is(true));
+    verify(onThresholdChange).accept(eq(ohr), any(OffHeapResourceImpl.ThresholdChange.class));
+    assertThat(ohr.available(), is(2_500L));
+  }
+
+  @Test
+  public void testStripedReservationUsesOtherStripesBudgets() throws Exception {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10_000L, 4, onThresholdChange, onCapacityChange);
+    Thread thread = new Thread(() -> ohr.reserve(1L));
+    thread.start();
+    thread.join();
+
+    assertThat(ohr.available(), is(9_999L));
+    assertThat(ohr.reserve(9_999L), is(true));
+    assertThat(ohr.available(), is(0L));
+    assertThat(ohr.reserve(1L), is(false));
+  }
+
+  @Test
+  public void testStripedSetCapacityUsesOtherStripesBudgets() throws Exception {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10_000L, 4, onThresholdChange, onCapacityChange);
+    Thread thread = new Thread(() -> ohr.reserve(1L));
+    thread.start();
+    thread.join();
+
+    assertThat(ohr.setCapacity(1L), is(true));
+    assertThat(ohr.available(), is(0L));
+    assertThat(ohr.setCapacity(0L), is(false));
+    verify(onCapacityChange).onCapacityChanged(ohr, 10_000L, 1L);
+  }
+
+  @Test
+  public void testStripedConcurrentReservations() throws Exception {
+    long capacity = 1_000_000L;
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, capacity, 8, onThresholdChange, onCapacityChange);
+    AtomicLong maxReserved = new AtomicLong();
+    AtomicLong reserved = new AtomicLong();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        long held = 0L;
+        for (int i = 0; i < 100_000; i++) {
+          long size = ThreadLocalRandom.current().nextLong(1_000L);
+          if (ThreadLocalRandom.current().nextBoolean() && ohr.reserve(size)) {
+            held += size;
+            maxReserved.accumulateAndGet(reserved.addAndGet(size), Math::max);
+          } else if (held >= size) {
+            reserved.addAndGet(-size);
+            ohr.release(size);
+            held -= size;
+          }
+        }
+        reserved.addAndGet(-held);
+        ohr.release(held);
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(maxReserved.get() <= capacity, is(true));
+    assertThat(ohr.available(), is(capacity));
+    assertThat(ohr.capacity(), is(capacity));
+  }
+  @Test
+  public void testConfiguredThresholdsWithHysteresis() {
+    List<String> changes = new ArrayList<>();
+    UsageThresholds thresholds = new UsageThresholds(new int[] {90, 50}, 5, 0L, TimeUnit.MILLISECONDS);
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 100L, 0, thresholds,
+        (r, c) -> changes.add(c.old + "->" + c.now), onCapacityChange, new SubPoolChangeHandler() {
+          @Override
+          public void onSubPoolCreated(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+          }
+
+          @Override
+          public void onSubPoolRemoved(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+          }
+        });
+
+    ohr.reserve(50L);
+    ohr.release(2L);
+    ohr.reserve(2L);
+    ohr.release(5L);
+    ohr.reserve(5L);
+    assertThat(changes.toString(), is("[0->50]"));
+
+    ohr.release(6L);
+    assertThat(changes.toString(), is("[0->50, 50->0]"));
+
+    ohr.reserve(46L);
+    ohr.release(1L);
+    assertThat(changes.toString(), is("[0->50, 50->0, 0->90]"));
+    ohr.release(5L);
+    assertThat(changes.toString(), is("[0->50, 50->0, 0->90, 90->50]"));
+  }
+
+  @Test
+  public void testThresholdNotificationsAreCoalesced() throws Exception {
+    List<String> changes = new CopyOnWriteArrayList<>();
+    UsageThresholds thresholds = new UsageThresholds(new int[] {75, 90}, 0, 200L, TimeUnit.MILLISECONDS);
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 100L, 0, thresholds,
+        (r, c) -> changes.add(c.old + "->" + c.now), onCapacityChange, new SubPoolChangeHandler() {
+          @Override
+          public void onSubPoolCreated(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+          }
+
+          @Override
+          public void onSubPoolRemoved(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+          }
+        });
+
+    ohr.reserve(75L);
+    assertThat(changes.toString(), is("[0->75]"));
+
+    // a burst around the boundaries within the interval ends up in a single notification
+    for (int i = 0; i < 10; i++) {
+      ohr.reserve(20L);
+      ohr.release(20L);
+    }
+    ohr.reserve(20L);
+    assertThat(changes.toString(), is("[0->75]"));
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (changes.size() < 2 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(changes.toString(), is("[0->75, 75->90]"));
+  }
+
+  @Test
+  public void testThresholdLeftWithinTheIntervalIsStillNotified() throws Exception {
+    List<String> changes = new CopyOnWriteArrayList<>();
+    UsageThresholds thresholds = new UsageThresholds(new int[] {75, 90}, 0, 200L, TimeUnit.MILLISECONDS);
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 100L, 0, thresholds,
+        (r, c) -> changes.add(c.old + "->" + c.now), onCapacityChange, new SubPoolChangeHandler() {
+          @Override
+          public void onSubPoolCreated(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+          }
+
+          @Override
+          public void onSubPoolRemoved(OffHeapResourceImpl offHeapResource, OffHeapSubPool subPool) {
+          }
+        });
+
+    ohr.reserve(75L);
+    // crosses 90% and goes back under it before the deferred notification
+    ohr.reserve(20L);
+    ohr.release(20L);
+    assertThat(changes.toString(), is("[0->75]"));
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (changes.size() < 3 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(changes.toString(), is("[0->75, 75->90, 90->75]"));
+  }
+
+  @Test
+  public void testReserveAsyncCompletesImmediatelyWhenAvailable() throws Exception {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10);
+    assertThat(ohr.reserveAsync(4L, 1, TimeUnit.MINUTES).get(), is(true));
+    assertThat(ohr.reserveAsync(8L, 0, TimeUnit.MINUTES).get(), is(false));
+    assertThat(ohr.available(), is(6L));
+  }
+
+  @Test
+  public void testReserveAsyncWaitsForRelease() throws Exception {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10);
+    assertThat(ohr.reserve(8L), is(true));
+
+    CompletableFuture<Boolean> future = ohr.reserveAsync(5L, 1, TimeUnit.MINUTES);
+    assertThat(future.isDone(), is(false));
+    assertThat(ohr.waitingReservations(), is(1));
+
+    ohr.release(2L);
+    assertThat(future.isDone(), is(false));
+    ohr.release(1L);
+    assertThat(future.get(), is(true));
+    assertThat(ohr.available(), is(0L));
+    assertThat(ohr.waitingReservations(), is(0));
+  }
+
+  @Test
+  public void testReserveAsyncIsFifo() throws Exception {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10);
+    assertThat(ohr.reserve(10L), is(true));
+
+    CompletableFuture<Boolean> large = ohr.reserveAsync(6L, 1, TimeUnit.MINUTES);
+    CompletableFuture<Boolean> small = ohr.reserveAsync(2L, 1, TimeUnit.MINUTES);
+
+    ohr.release(4L);
+    // the small reservation would fit but waits behind the large one
+    assertThat(small.isDone(), is(false));
+    assertThat(large.isDone(), is(false));
+
+    ohr.release(4L);
+    assertThat(large.get(), is(true));
+    assertThat(small.get(), is(true));
+    assertThat(ohr.available(), is(0L));
+  }
+
+  @Test
+  public void testReserveAsyncTimeout() throws Exception {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10);
+    assertThat(ohr.reserve(10L), is(true));
+
+    CompletableFuture<Boolean> large = ohr.reserveAsync(6L, 50, TimeUnit.MILLISECONDS);
+    CompletableFuture<Boolean> small = ohr.reserveAsync(2L, 1, TimeUnit.MINUTES);
+    ohr.release(4L);
+
+    assertThat(large.get(1, TimeUnit.MINUTES), is(false));
+    // once the large reservation timed out, the small one goes through
+    assertThat(small.get(1, TimeUnit.MINUTES), is(true));
+    assertThat(ohr.available(), is(2L));
+    assertThat(ohr.waitingReservations(), is(0));
+  }
+
+  @Test
+  public void testReserveAsyncCancellation() throws Exception {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10);
+    assertThat(ohr.reserve(10L), is(true));
+
+    CompletableFuture<Boolean> future = ohr.reserveAsync(6L, 1, TimeUnit.MINUTES);
+    future.cancel(false);
+    ohr.release(10L);
+
+    assertThat(ohr.available(), is(10L));
+    assertThat(ohr.waitingReservations(), is(0));
+  }
+
+  @Test
+  public void testReserveDoesNotOvertakeWaitingReservations() throws Exception {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10);
+    assertThat(ohr.reserve(10L), is(true));
+
+    CompletableFuture<Boolean> future = ohr.reserveAsync(6L, 1, TimeUnit.MINUTES);
+    ohr.release(4L);
+
+    // the freed space would fit but is kept for the waiting reservation
+    assertThat(ohr.reserve(2L), is(false));
+    assertThat(ohr.available(), is(4L));
+
+    ohr.release(2L);
+    assertThat(future.get(), is(true));
+    ohr.release(2L);
+    assertThat(ohr.reserve(2L), is(true));
+  }
+
+  @Test
+  public void testPlainReservationsLeavingEnoughForTheHeadWaiterAreAdmitted() {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10);
+    // a waiter that is never granted, whatever the space available
+    ReservationWaiters waiters = new ReservationWaiters(ohr, size -> false);
+    assertThat(waiters.admits(10L), is(true));
+
+    CompletableFuture<Boolean> future = waiters.reserve(6L, 1, TimeUnit.MINUTES);
+    assertThat(waiters.admits(4L), is(true));
+    assertThat(waiters.admits(5L), is(false));
+    future.cancel(false);
+    assertThat(waiters.admits(10L), is(true));
+  }
+
+  @Test
+  public void testReserveAsyncLargerThanTheCapacityDoesNotWait() throws Exception {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10);
+
+    CompletableFuture<Boolean> future = ohr.reserveAsync(11L, 1, TimeUnit.MINUTES);
+    assertThat(future.isDone(), is(true));
+    assertThat(future.get(), is(false));
+    assertThat(ohr.waitingReservations(), is(0));
+    assertThat(ohr.reserve(10L), is(true));
+  }
+
+  @Test
+  public void testReserveAsyncCompletesOffTheReleasingThread() throws Exception {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10);
+    assertThat(ohr.reserve(10L), is(true));
+
+    CompletableFuture<Thread> completingThread = ohr.reserveAsync(6L, 1, TimeUnit.MINUTES).thenApply(granted -> Thread.currentThread());
+    ohr.release(10L);
+
+    assertThat(completingThread.get(1, TimeUnit.MINUTES), not(Thread.currentThread()));
+  }
+
+  @Test
+  public void testReserveAsyncCompletedByCapacityIncrease() throws Exception {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10);
+    assertThat(ohr.reserve(10L), is(true));
+
+    CompletableFuture<Boolean> future = ohr.reserveAsync(6L, 1, TimeUnit.MINUTES);
+    assertThat(ohr.setCapacity(20L), is(true));
+    assertThat(future.get(), is(true));
+    assertThat(ohr.available(), is(4L));
+  }
+
+  @Test
+  public void testReserveAsyncNegativeTimeout() {
+    try {
+      new OffHeapResourceImpl(identifier, 10).reserveAsync(1L, -1, TimeUnit.SECONDS);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void testOperationCounts() {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10, 4, (r, p) -> {}, (r, o, n) -> {});
+    assertThat(ohr.reserve(4L), is(true));
+    assertThat(ohr.reserve(4L), is(true));
+    assertThat(ohr.reserve(4L), is(false));
+    ohr.release(4L);
+
+    assertThat(ohr.reserveCount(), is(2L));
+    assertThat(ohr.failedReserveCount(), is(1L));
+    assertThat(ohr.releaseCount(), is(1L));
+  }
+
+  @Test
+  public void testRecordHistory() throws Exception {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10);
+    assertThat(ohr.reserve(6L), is(true));
+    UsageHistory history = ohr.recordHistory(16, 10, TimeUnit.MILLISECONDS);
+
+    while (history.recorded() == 0L) {
+      Thread.sleep(10);
+    }
+    List<Sample<Long>> used = history.history(UsageHistory.Series.USED, 0L);
+    assertThat(used.get(0).getSample(), is(6L));
+    assertThat(history.history(UsageHistory.Series.RESERVES, 0L).get(0).getSample(), is(1L));
+
+    try {
+      ohr.recordHistory(16, 10, TimeUnit.MILLISECONDS);
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      //expected
+    }
+    ohr.close();
+  }
+
+  @Test
+  public void testCloseStopsRecordingHistory() throws Exception {
+    OffHeapResourceImpl ohr = new OffHeapResourceImpl(identifier, 10);
+    UsageHistory history = ohr.recordHistory(16, 1, TimeUnit.MILLISECONDS);
+    while (history.recorded() == 0L) {
+      Thread.sleep(10);
+    }
+
+    ohr.close();
+    // a sample being recorded when closing completes
+    Thread.sleep(10);
+    long recorded = history.recorded();
+    Thread.sleep(50);
+    assertThat(history.recorded(), is(recorded));
+    assertThat(ohr.reserve(6L), is(true));
+  }
 }
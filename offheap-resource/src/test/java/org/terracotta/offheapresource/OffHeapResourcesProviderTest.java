@@ -16,6 +16,10 @@
 package org.terracotta.offheapresource;
 
 import org.junit.Test;
+import org.terracotta.context.TreeNode;
+import org.terracotta.management.service.monitoring.EntityManagementRegistry;
+import org.terracotta.offheapresource.management.OffHeapResourceBinding;
+import org.terracotta.offheapresource.management.OffHeapResourcesBinding;
 import org.terracotta.offheapresource.config.MemoryUnit;
 import org.terracotta.offheapresource.config.OffheapResourcesType;
 import org.terracotta.offheapresource.config.ResourceType;
@@ -23,6 +27,9 @@ import org.terracotta.statistics.StatisticsManager;
 import org.terracotta.statistics.ValueStatistic;
 
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import static java.util.Collections.singletonList;
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -31,7 +38,17 @@ import static org.hamcrest.core.IsNull.notNullValue;
 import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class OffHeapResourcesProviderTest {
@@ -51,9 +68,14 @@ public class OffHeapResourcesProviderTest {
     OffHeapResource offHeapResource = provider.getOffHeapResource(OffHeapResourceIdentifier.identifier("foo"));
     assertThat(offHeapResource.available(), equalTo(2L * 1024 * 1024));
 
-    assertThat(StatisticsManager.nodeFor(offHeapResource).getChildren().size(), equalTo(1));
-    ValueStatistic<Long> valueStatistic = (ValueStatistic<Long>) StatisticsManager.nodeFor(offHeapResource).getChildren().iterator().next().getContext().attributes().get("this");
-    assertThat(valueStatistic.value(), equalTo(0L));
+    // allocatedMemory, fillRate, timeToFull, usageHistory and the three operation counts, plus the pooledMemory and
+    // fragmentedMemory statistics of the resource's allocator
+    assertThat(StatisticsManager.nodeFor(offHeapResource).getChildren().size(), equalTo(9));
+    for (TreeNode child : StatisticsManager.nodeFor(offHeapResource).getChildren()) {
+      ValueStatistic<Long> valueStatistic = (ValueStatistic<Long>) child.getContext().attributes().get("this");
+      Object name = child.getContext().attributes().get("name");
+      assertThat(valueStatistic.value(), equalTo("timeToFull".equals(name) ? -1L : 0L));
+    }
   }
 
   @Test
@@ -118,4 +140,149 @@ public class OffHeapResourcesProviderTest {
 
     OffHeapResourcesProvider provider = new OffHeapResourcesProvider(configuration);
   }
+
+  @Test
+  public void testNotificationsArePushedByTheDispatcher() {
+    ResourceType resourceConfig = mock(ResourceType.class);
+    when(resourceConfig.getName()).thenReturn("foo");
+    when(resourceConfig.getUnit()).thenReturn(MemoryUnit.MB);
+    when(resourceConfig.getValue()).thenReturn(BigInteger.valueOf(2));
+
+    OffheapResourcesType configuration = mock(OffheapResourcesType.class);
+    when(configuration.getResource()).thenReturn(singletonList(resourceConfig));
+
+    OffHeapResourcesProvider provider = new OffHeapResourcesProvider(configuration);
+    EntityManagementRegistry registry = mock(EntityManagementRegistry.class, RETURNS_DEEP_STUBS);
+    provider.onManagementRegistryCreated(registry);
+
+    OffHeapResourceImpl offHeapResource = provider.getOffHeapResource(OffHeapResourceIdentifier.identifier("foo"));
+    assertThat(offHeapResource.reserve(1800L * 1024), is(true));
+    offHeapResource.setCapacity(4L * 1024 * 1024);
+
+    verify(registry, timeout(10000)).pushServerEntityNotification(any(), eq("OFFHEAP_RESOURCE_THRESHOLD_REACHED"), anyMap());
+    verify(registry, timeout(10000)).pushServerEntityNotification(any(), eq("OFFHEAP_RESOURCE_CAPACITY_CHANGED"), anyMap());
+    assertThat(provider.droppedNotifications(), is(0L));
+  }
+
+  @Test
+  public void testRebalanceMovesCapacityBetweenResources() {
+    OffHeapResourcesProvider provider = new OffHeapResourcesProvider(configuration(resource("foo", 2), resource("bar", 2)));
+    OffHeapResourceImpl foo = provider.getOffHeapResource(OffHeapResourceIdentifier.identifier("foo"));
+    OffHeapResourceImpl bar = provider.getOffHeapResource(OffHeapResourceIdentifier.identifier("bar"));
+    assertThat(foo.reserve(1024L * 1024), is(true));
+
+    assertThat(provider.rebalance(capacities("foo", 1024L * 1024, "bar", 3L * 1024 * 1024)), is(true));
+
+    assertThat(foo.capacity(), is(1024L * 1024));
+    assertThat(foo.available(), is(0L));
+    assertThat(bar.capacity(), is(3L * 1024 * 1024));
+    assertThat(bar.available(), is(3L * 1024 * 1024));
+  }
+
+  @Test
+  public void testRebalanceIsAllOrNothing() {
+    OffHeapResourcesProvider provider = new OffHeapResourcesProvider(configuration(resource("foo", 2), resource("bar", 2), resource("baz", 2)));
+    OffHeapResourceImpl foo = provider.getOffHeapResource(OffHeapResourceIdentifier.identifier("foo"));
+    OffHeapResourceImpl bar = provider.getOffHeapResource(OffHeapResourceIdentifier.identifier("bar"));
+    OffHeapResourceImpl baz = provider.getOffHeapResource(OffHeapResourceIdentifier.identifier("baz"));
+    assertThat(bar.reserve(1536L * 1024), is(true));
+
+    Map<OffHeapResourceIdentifier, Long> capacities = capacities("foo", 1024L * 1024, "bar", 1024L * 1024);
+    capacities.put(OffHeapResourceIdentifier.identifier("baz"), 4L * 1024 * 1024);
+    assertThat(provider.rebalance(capacities), is(false));
+
+    assertThat(foo.capacity(), is(2L * 1024 * 1024));
+    assertThat(foo.available(), is(2L * 1024 * 1024));
+    assertThat(bar.capacity(), is(2L * 1024 * 1024));
+    assertThat(bar.available(), is(512L * 1024));
+    assertThat(baz.capacity(), is(2L * 1024 * 1024));
+  }
+
+  @Test
+  public void testCloseStopsRecordingHistory() throws Exception {
+    OffHeapResourcesProvider provider = new OffHeapResourcesProvider(configuration(resource("foo", 2)));
+    UsageHistory history = provider.getOffHeapResource(OffHeapResourceIdentifier.identifier("foo")).history();
+    while (history.recorded() == 0L) {
+      Thread.sleep(10);
+    }
+
+    provider.close();
+    // a sample being recorded when closing completes
+    Thread.sleep(10);
+    long recorded = history.recorded();
+    Thread.sleep(250);
+    assertThat(history.recorded(), is(recorded));
+  }
+
+  @Test
+  public void testRebalanceRejectsInvalidCapacities() {
+    OffHeapResourcesProvider provider = new OffHeapResourcesProvider(configuration(resource("foo", 2)));
+
+    try {
+      provider.rebalance(capacities("foo", 1024L, "bar", 1024L));
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+    try {
+      provider.rebalance(capacities("foo", -1L));
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+    assertThat(provider.getOffHeapResource(OffHeapResourceIdentifier.identifier("foo")).capacity(), is(2L * 1024 * 1024));
+  }
+
+  @Test
+  public void testRebalanceBeyondPhysicalMemory() {
+    Long physicalMemory = PhysicalMemory.totalPhysicalMemory();
+    assumeThat(physicalMemory, notNullValue());
+    OffHeapResourcesProvider provider = new OffHeapResourcesProvider(configuration(resource("foo", 2)));
+
+    try {
+      provider.rebalance(capacities("foo", physicalMemory + 1));
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+    assertThat(provider.getOffHeapResource(OffHeapResourceIdentifier.identifier("foo")).capacity(), is(2L * 1024 * 1024));
+  }
+
+  @Test
+  public void testRebalanceSendsASingleNotification() {
+    OffHeapResourcesProvider provider = new OffHeapResourcesProvider(configuration(resource("foo", 2), resource("bar", 2)));
+    EntityManagementRegistry registry = mock(EntityManagementRegistry.class, RETURNS_DEEP_STUBS);
+    provider.onManagementRegistryCreated(registry);
+
+    assertThat(provider.rebalance(capacities("foo", 1024L * 1024, "bar", 3L * 1024 * 1024)), is(true));
+
+    verify(registry, timeout(10000)).pushServerEntityNotification(any(OffHeapResourcesBinding.class), eq("OFFHEAP_RESOURCE_CAPACITY_CHANGED"),
+        argThat(attrs -> "bar,foo".equals(attrs.get("resources"))
+                         && String.valueOf(2L * 1024 * 1024).equals(attrs.get("foo.oldCapacity"))
+                         && String.valueOf(1024L * 1024).equals(attrs.get("foo.newCapacity"))
+                         && String.valueOf(3L * 1024 * 1024).equals(attrs.get("bar.newCapacity"))));
+    verify(registry, after(200).never()).pushServerEntityNotification(any(OffHeapResourceBinding.class), eq("OFFHEAP_RESOURCE_CAPACITY_CHANGED"), anyMap());
+  }
+
+  private static ResourceType resource(String name, long sizeInMb) {
+    ResourceType resourceConfig = mock(ResourceType.class);
+    when(resourceConfig.getName()).thenReturn(name);
+    when(resourceConfig.getUnit()).thenReturn(MemoryUnit.MB);
+    when(resourceConfig.getValue()).thenReturn(BigInteger.valueOf(sizeInMb));
+    return resourceConfig;
+  }
+
+  private static OffheapResourcesType configuration(ResourceType... resources) {
+    OffheapResourcesType configuration = mock(OffheapResourcesType.class);
+    when(configuration.getResource()).thenReturn(Arrays.asList(resources));
+    return configuration;
+  }
+
+  private static Map<OffHeapResourceIdentifier, Long> capacities(Object... namesAndCapacities) {
+    Map<OffHeapResourceIdentifier, Long> capacities = new HashMap<>();
+    for (int i = 0; i < namesAndCapacities.length; i += 2) {
+      capacities.put(OffHeapResourceIdentifier.identifier((String) namesAndCapacities[i]), (Long) namesAndCapacities[i + 1]);
+    }
+    return capacities;
+  }
 }
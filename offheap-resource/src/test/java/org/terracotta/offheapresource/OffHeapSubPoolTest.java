@@ -0,0 +1,176 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class OffHeapSubPoolTest {
+
+  @Test
+  public void testMinimumIsReservedUpfront() {
+    OffHeapResourceImpl parent = new OffHeapResourceImpl("id", 100L);
+    OffHeapResource subPool = parent.createSubPool("cache", 30L, 50L);
+
+    assertThat(parent.available(), is(70L));
+    assertThat(subPool.capacity(), is(50L));
+    assertThat(subPool.available(), is(50L));
+
+    assertThat(subPool.reserve(20L), is(true));
+    assertThat(parent.available(), is(70L));
+    assertThat(subPool.available(), is(30L));
+  }
+
+  @Test
+  public void testMinimumIsGuaranteed() {
+    OffHeapResourceImpl parent = new OffHeapResourceImpl("id", 100L);
+    OffHeapResource cache = parent.createSubPool("cache", 30L, 100L);
+    OffHeapResource store = parent.createSubPool("store", 0L, 100L);
+
+    assertThat(store.reserve(70L), is(true));
+    assertThat(store.reserve(1L), is(false));
+    assertThat(parent.reserve(1L), is(false));
+    assertThat(cache.reserve(30L), is(true));
+    assertThat(cache.reserve(1L), is(false));
+
+    store.release(10L);
+    assertThat(cache.reserve(10L), is(true));
+    assertThat(cache.available(), is(0L));
+  }
+
+  @Test
+  public void testMaximumIsEnforced() {
+    OffHeapResourceImpl parent = new OffHeapResourceImpl("id", 100L);
+    OffHeapResource subPool = parent.createSubPool("cache", 10L, 40L);
+
+    assertThat(subPool.reserve(40L), is(true));
+    assertThat(subPool.reserve(1L), is(false));
+    assertThat(parent.available(), is(60L));
+
+    subPool.release(35L);
+    assertThat(parent.available(), is(90L));
+    assertThat(subPool.available(), is(35L));
+  }
+
+  @Test
+  public void testSetCapacity() {
+    OffHeapResourceImpl parent = new OffHeapResourceImpl("id", 100L);
+    OffHeapResource subPool = parent.createSubPool("cache", 10L, 40L);
+    subPool.reserve(20L);
+
+    assertThat(subPool.setCapacity(19L), is(false));
+    assertThat(subPool.setCapacity(5L), is(false));
+    assertThat(subPool.setCapacity(20L), is(true));
+    assertThat(subPool.reserve(1L), is(false));
+    assertThat(subPool.setCapacity(80L), is(true));
+    assertThat(subPool.reserve(60L), is(true));
+    assertThat(parent.available(), is(20L));
+  }
+
+  @Test
+  public void testRemoveGivesEverythingBack() {
+    OffHeapResourceImpl parent = new OffHeapResourceImpl("id", 100L);
+    OffHeapResource subPool = parent.createSubPool("cache", 10L, 40L);
+    subPool.reserve(25L);
+
+    assertThat(parent.getSubPools().size(), is(1));
+    assertThat(parent.removeSubPool("cache"), is(true));
+    assertThat(parent.removeSubPool("cache"), is(false));
+    assertThat(parent.getSubPools().isEmpty(), is(true));
+    assertThat(parent.available(), is(100L));
+
+    assertThat(subPool.reserve(1L), is(false));
+    subPool.release(25L);
+    assertThat(parent.available(), is(100L));
+  }
+
+  @Test
+  public void testDuplicateConsumer() {
+    OffHeapResourceImpl parent = new OffHeapResourceImpl("id", 100L);
+    parent.createSubPool("cache", 10L, 40L);
+    try {
+      parent.createSubPool("cache", 10L, 40L);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+    assertThat(parent.available(), is(90L));
+  }
+
+  @Test
+  public void testMinimumNotAvailable() {
+    OffHeapResourceImpl parent = new OffHeapResourceImpl("id", 100L);
+    parent.reserve(80L);
+    try {
+      parent.createSubPool("cache", 30L, 40L);
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      //expected
+    }
+    assertThat(parent.available(), is(20L));
+    assertThat(parent.getSubPools().isEmpty(), is(true));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMaximumLessThanMinimum() {
+    new OffHeapResourceImpl("id", 100L).createSubPool("cache", 30L, 20L);
+  }
+  @Test
+  public void testReserveAsyncWaitsForTheParent() throws Exception {
+    OffHeapResourceImpl parent = new OffHeapResourceImpl("id", 100L);
+    OffHeapResource subPool = parent.createSubPool("cache", 10L, 50L);
+    assertThat(parent.reserve(90L), is(true));
+
+    CompletableFuture<Boolean> future = subPool.reserveAsync(30L, 1, TimeUnit.MINUTES);
+    assertThat(future.isDone(), is(false));
+    parent.release(20L);
+    assertThat(future.get(), is(true));
+    assertThat(subPool.available(), is(0L));
+  }
+
+  @Test
+  public void testReserveDoesNotOvertakeWaitingReservations() throws Exception {
+    OffHeapResourceImpl parent = new OffHeapResourceImpl("id", 100L);
+    OffHeapResource subPool = parent.createSubPool("cache", 10L, 20L);
+    assertThat(subPool.reserve(20L), is(true));
+
+    CompletableFuture<Boolean> future = subPool.reserveAsync(8L, 1, TimeUnit.MINUTES);
+    subPool.release(5L);
+    assertThat(subPool.reserve(5L), is(false));
+
+    subPool.release(5L);
+    assertThat(future.get(), is(true));
+    assertThat(subPool.available(), is(2L));
+  }
+
+  @Test
+  public void testReserveAsyncFailsOnRemoval() throws Exception {
+    OffHeapResourceImpl parent = new OffHeapResourceImpl("id", 100L);
+    OffHeapResource subPool = parent.createSubPool("cache", 10L, 20L);
+    assertThat(subPool.reserve(20L), is(true));
+
+    CompletableFuture<Boolean> future = subPool.reserveAsync(5L, 1, TimeUnit.MINUTES);
+    parent.removeSubPool("cache");
+    assertThat(future.get(), is(false));
+    assertThat(parent.available(), is(100L));
+  }
+}
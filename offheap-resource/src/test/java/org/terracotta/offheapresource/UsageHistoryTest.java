@@ -0,0 +1,113 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.offheapresource;
+
+import org.junit.Test;
+import org.terracotta.statistics.Sample;
+import org.terracotta.statistics.SampledStatistic;
+import org.terracotta.statistics.StatisticType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class UsageHistoryTest {
+
+  @Test
+  public void testHistorySince() {
+    UsageHistory history = new UsageHistory(8);
+    history.record(100L, 10L, 1L, 0L, 0L);
+    history.record(200L, 20L, 2L, 0L, 1L);
+    history.record(300L, 5L, 2L, 1L, 1L);
+
+    assertThat(timestamps(history.history(UsageHistory.Series.USED, 0L)), is(Arrays.asList(100L, 200L, 300L)));
+    assertThat(values(history.history(UsageHistory.Series.USED, 200L)), is(Arrays.asList(20L, 5L)));
+    assertThat(values(history.history(UsageHistory.Series.RELEASES, 300L)), is(Arrays.asList(1L)));
+    assertThat(history.history(UsageHistory.Series.FAILED_RESERVES, 301L).isEmpty(), is(true));
+  }
+
+  @Test
+  public void testOldestSamplesAreOverwritten() {
+    UsageHistory history = new UsageHistory(3);
+    for (long i = 1; i <= 5; i++) {
+      history.record(i, i * 10, i, 0L, 0L);
+    }
+
+    assertThat(history.recorded(), is(5L));
+    assertThat(values(history.history(UsageHistory.Series.USED, 0L)), is(Arrays.asList(30L, 40L, 50L)));
+    assertThat(values(history.history(UsageHistory.Series.RESERVES, 0L)), is(Arrays.asList(3L, 4L, 5L)));
+  }
+
+  @Test
+  public void testConcurrentReadersNeverSeeTornSamples() throws Exception {
+    UsageHistory history = new UsageHistory(4);
+    AtomicBoolean stop = new AtomicBoolean();
+    Thread recorder = new Thread(() -> {
+      for (long i = 1; !stop.get(); i++) {
+        history.record(i, i, i, i, i);
+      }
+    });
+    recorder.start();
+    try {
+      for (int i = 0; i < 10000; i++) {
+        List<Sample<Long>> samples = history.history(UsageHistory.Series.FAILED_RESERVES, 0L);
+        for (Sample<Long> sample : samples) {
+          assertThat(sample.getSample(), is(sample.getTimestamp()));
+        }
+      }
+    } finally {
+      stop.set(true);
+      recorder.join();
+    }
+  }
+
+  @Test
+  public void testStatistic() {
+    UsageHistory history = new UsageHistory(8);
+    history.record(100L, 10L, 1L, 0L, 0L);
+    SampledStatistic<Long> used = history.statistic(UsageHistory.Series.USED, () -> 42L);
+    SampledStatistic<Long> reserves = history.statistic(UsageHistory.Series.RESERVES, () -> 3L);
+
+    assertThat(used.type(), is(StatisticType.GAUGE));
+    assertThat(used.value(), is(42L));
+    assertThat(values(used.history()), is(Arrays.asList(10L)));
+    assertThat(reserves.type(), is(StatisticType.COUNTER));
+    assertThat(values(reserves.history(100L)), is(Arrays.asList(1L)));
+  }
+
+  @Test
+  public void testInvalidSize() {
+    try {
+      new UsageHistory(0);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+  }
+
+  private static List<Long> timestamps(List<Sample<Long>> samples) {
+    return samples.stream().map(Sample::getTimestamp).collect(toList());
+  }
+
+  private static List<Long> values(List<Sample<Long>> samples) {
+    return samples.stream().map(Sample::getSample).collect(toList());
+  }
+}
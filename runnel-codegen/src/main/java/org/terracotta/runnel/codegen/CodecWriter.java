@@ -0,0 +1,194 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.codegen;
+
+import org.terracotta.runnel.codegen.RunnelCodecProcessor.FieldModel;
+import org.terracotta.runnel.codegen.RunnelCodecProcessor.FieldType;
+import org.terracotta.runnel.codegen.RunnelCodecProcessor.StructModel;
+
+/**
+ * Writes the source of a codec. Type names are always fully qualified to avoid clashes with the user's types.
+ */
+class CodecWriter {
+
+  private static final String STRUCT = "org.terracotta.runnel.Struct";
+  private static final String STRUCT_BUILDER = "org.terracotta.runnel.StructBuilder";
+  private static final String STRUCT_ENCODER = "org.terracotta.runnel.encoding.StructEncoder";
+  private static final String STRUCT_WRITER = "org.terracotta.runnel.encoding.StructWriter";
+  private static final String STRUCT_DECODER = "org.terracotta.runnel.decoding.StructDecoder";
+  private static final String BYTE_BUFFER = "java.nio.ByteBuffer";
+
+  private final String packageName;
+  private final StructModel model;
+  private final String typeName;
+  private final String generatedAnnotation;
+  private final StringBuilder sb = new StringBuilder();
+
+  /**
+   * @param generatedAnnotation the {@code Generated} annotation to mark the codec with, {@code null} for none
+   */
+  CodecWriter(String packageName, StructModel model, String generatedAnnotation) {
+    this.packageName = packageName;
+    this.model = model;
+    this.typeName = model.type.getQualifiedName().toString();
+    this.generatedAnnotation = generatedAnnotation;
+  }
+
+  String write() {
+    if (!packageName.isEmpty()) {
+      line("package " + packageName + ";");
+      line("");
+    }
+    line("/**");
+    line(" * Runnel codec of {@link " + typeName + "}.");
+    line(" */");
+    if (generatedAnnotation != null) {
+      line("@" + generatedAnnotation + "(\"" + RunnelCodecProcessor.class.getName() + "\")");
+    }
+    line("public final class " + model.codecName + " {");
+    line("");
+    writeStruct();
+    writeHandles();
+    line("  private " + model.codecName + "() {");
+    line("  }");
+    line("");
+    writeEncodeMethods();
+    writeEncoder(STRUCT_ENCODER, "encode", "encoder");
+    writeEncoder(STRUCT_WRITER, "write", "writer");
+    writeDecodeMethods();
+    line("}");
+    return sb.toString();
+  }
+
+  private void writeStruct() {
+    line("  public static final " + STRUCT + " STRUCT = " + STRUCT_BUILDER + ".newStructBuilder()");
+    for (FieldModel field : model.fieldsByIndex) {
+      if (field.type == FieldType.STRUCT) {
+        line("      .struct(\"" + field.name + "\", " + field.index + ", " + field.structCodec + ".STRUCT)");
+      } else {
+        line("      ." + field.type.method + "(\"" + field.name + "\", " + field.index + ")");
+      }
+    }
+    line("      .build();");
+    line("");
+  }
+
+  private void writeHandles() {
+    for (FieldModel field : model.fieldsByIndex) {
+      line("  private static final " + field.type.handleClass + " " + RunnelCodecProcessor.constantName(field.javaName) + " = STRUCT." + field.type.handleFactory + "(\"" + field.name + "\");");
+    }
+    if (!model.fieldsByIndex.isEmpty()) {
+      line("");
+    }
+  }
+
+  private void writeEncodeMethods() {
+    line("  /**");
+    line("   * Encode a value in a new heap byte buffer of the exact size.");
+    line("   * @param value the value to encode.");
+    line("   * @return the byte buffer, ready to be flipped.");
+    line("   */");
+    line("  public static " + BYTE_BUFFER + " encode(" + typeName + " value) {");
+    line("    return encode(value, STRUCT.encoder()).encode();");
+    line("  }");
+    line("");
+    line("  /**");
+    line("   * Write a value in a single pass in the passed byte buffer.");
+    line("   * @param value the value to write.");
+    line("   * @param buffer the byte buffer to write to, from its current position.");
+    line("   * @return the byte buffer, positioned right after the written value.");
+    line("   */");
+    line("  public static " + BYTE_BUFFER + " write(" + typeName + " value, " + BYTE_BUFFER + " buffer) {");
+    line("    return write(value, STRUCT.writer(buffer)).finish();");
+    line("  }");
+    line("");
+  }
+
+  private void writeEncoder(String encoderType, String methodName, String encoderName) {
+    line("  public static <P> " + encoderType + "<P> " + methodName + "(" + typeName + " value, " + encoderType + "<P> " + encoderName + ") {");
+    for (FieldModel field : model.fieldsByIndex) {
+      String constant = RunnelCodecProcessor.constantName(field.javaName);
+      if (field.type == FieldType.STRUCT) {
+        line("    " + field.javaType + " _" + field.javaName + " = " + field.readExpression + ";");
+        line("    if (_" + field.javaName + " != null) {");
+        line("      " + field.structCodec + "." + methodName + "(_" + field.javaName + ", " + encoderName + ".struct(" + constant + ")).end();");
+        line("    }");
+      } else if (field.primitive || field.type == FieldType.STRING) {
+        line("    " + encoderName + "." + field.type.method + "(" + constant + ", " + field.readExpression + ");");
+      } else {
+        line("    " + field.javaType + " _" + field.javaName + " = " + field.readExpression + ";");
+        line("    if (_" + field.javaName + " != null) {");
+        line("      " + encoderName + "." + field.type.method + "(" + constant + ", _" + field.javaName + ");");
+        line("    }");
+      }
+    }
+    line("    return " + encoderName + ";");
+    line("  }");
+    line("");
+  }
+
+  private void writeDecodeMethods() {
+    line("  /**");
+    line("   * Decode a value.");
+    line("   * @param buffer the byte buffer to decode, from its current position.");
+    line("   * @return the decoded value.");
+    line("   */");
+    line("  public static " + typeName + " decode(" + BYTE_BUFFER + " buffer) {");
+    line("    return decode(STRUCT.decoder(buffer));");
+    line("  }");
+    line("");
+    line("  public static " + typeName + " decode(" + STRUCT_DECODER + "<?> decoder) {");
+    for (FieldModel field : model.fieldsByIndex) {
+      String constant = RunnelCodecProcessor.constantName(field.javaName);
+      String local = "_" + field.javaName;
+      if (field.type == FieldType.STRUCT) {
+        line("    " + field.javaType + " " + local + " = null;");
+        line("    " + STRUCT_DECODER + "<?> " + local + "Decoder = decoder.struct(" + constant + ");");
+        line("    if (" + local + "Decoder != null) {");
+        line("      " + local + " = " + field.structCodec + ".decode(" + local + "Decoder);");
+        line("      " + local + "Decoder.end();");
+        line("    }");
+      } else if (field.primitive) {
+        line("    " + field.javaType + " " + local + " = decoder." + field.type.primitiveDecodeMethod + "(" + constant + ", " + field.type.primitiveDefault + ");");
+      } else {
+        line("    " + field.javaType + " " + local + " = decoder." + field.type.method + "(" + constant + ");");
+      }
+    }
+    if (model.viaConstructor) {
+      StringBuilder arguments = new StringBuilder();
+      for (FieldModel field : model.fieldsInDeclarationOrder) {
+        if (arguments.length() > 0) {
+          arguments.append(", ");
+        }
+        arguments.append('_').append(field.javaName);
+      }
+      line("    return new " + typeName + "(" + arguments + ");");
+    } else {
+      line("    " + typeName + " value = new " + typeName + "();");
+      for (FieldModel field : model.fieldsInDeclarationOrder) {
+        line("    value." + field.javaName + " = _" + field.javaName + ";");
+      }
+      line("    return value;");
+    }
+    line("  }");
+    line("");
+  }
+
+  private void line(String line) {
+    sb.append(line).append('\n');
+  }
+
+}
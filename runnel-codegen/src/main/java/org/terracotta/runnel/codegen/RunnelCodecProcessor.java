@@ -0,0 +1,406 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.codegen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Annotation processor generating a runnel codec for every class annotated with {@link RunnelStruct}.
+ * <p>
+ * The generated codec declares the runnel {@code Struct} of the class and resolves a field handle for each
+ * {@link RunnelField} once, in static final fields, so that encoding and decoding go straight to the runnel primitives
+ * without any name lookup, reflection or intermediate map.
+ * <p>
+ * Annotated fields are read directly when they are not private, or through a {@code getX()}, {@code isX()} or
+ * {@code x()} accessor otherwise. Decoded instances are built with a non-private constructor taking all the annotated
+ * fields in declaration order when there is one, or else with a non-private no-arg constructor followed by direct
+ * field assignments.
+ */
+@SupportedAnnotationTypes("org.terracotta.runnel.codegen.RunnelStruct")
+public class RunnelCodecProcessor extends AbstractProcessor {
+
+  private static final String CODEC_SUFFIX = "Codec";
+  // the Generated annotation moved to javax.annotation.processing in Java 9, the old one is gone without java.xml.ws.annotation
+  private static final String[] GENERATED_ANNOTATIONS = {"javax.annotation.processing.Generated", "javax.annotation.Generated"};
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (Element element : roundEnv.getElementsAnnotatedWith(RunnelStruct.class)) {
+      if (element.getKind() != ElementKind.CLASS) {
+        error(element, "@RunnelStruct can only be put on classes");
+        continue;
+      }
+      TypeElement type = (TypeElement) element;
+      StructModel model = buildModel(type);
+      if (model != null) {
+        generate(model);
+      }
+    }
+    return true;
+  }
+
+  private StructModel buildModel(TypeElement type) {
+    boolean valid = true;
+    if (type.getModifiers().contains(Modifier.PRIVATE) || type.getModifiers().contains(Modifier.ABSTRACT)) {
+      error(type, "@RunnelStruct classes cannot be private nor abstract");
+      valid = false;
+    }
+    if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+      error(type, "Nested @RunnelStruct classes must be static");
+      valid = false;
+    }
+
+    List<FieldModel> fields = new ArrayList<FieldModel>();
+    for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+      RunnelField annotation = field.getAnnotation(RunnelField.class);
+      if (annotation == null) {
+        continue;
+      }
+      FieldModel fieldModel = buildField(type, field, annotation);
+      if (fieldModel == null) {
+        valid = false;
+      } else {
+        fields.add(fieldModel);
+      }
+    }
+    if (!valid) {
+      return null;
+    }
+
+    List<FieldModel> byIndex = new ArrayList<FieldModel>(fields);
+    Collections.sort(byIndex, new Comparator<FieldModel>() {
+      @Override
+      public int compare(FieldModel o1, FieldModel o2) {
+        return Integer.compare(o1.index, o2.index);
+      }
+    });
+    for (int i = 1; i < byIndex.size(); i++) {
+      FieldModel previous = byIndex.get(i - 1);
+      FieldModel current = byIndex.get(i);
+      if (previous.index == current.index) {
+        error(current.element, "Duplicate index " + current.index + ", also used by field '" + previous.javaName + "'");
+        valid = false;
+      }
+      if (previous.name.equals(current.name)) {
+        error(current.element, "Duplicate name '" + current.name + "'");
+        valid = false;
+      }
+    }
+
+    boolean viaConstructor = hasAllFieldsConstructor(type, fields);
+    if (!viaConstructor && !hasNoArgConstructor(type)) {
+      error(type, "@RunnelStruct classes need a non-private constructor taking all the @RunnelField fields in declaration order, or a non-private no-arg constructor");
+      valid = false;
+    }
+    if (!viaConstructor) {
+      for (FieldModel field : fields) {
+        Set<Modifier> modifiers = field.element.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+          error(field.element, "Field cannot be assigned, make it non-private and non-final or add a constructor taking all the @RunnelField fields in declaration order");
+          valid = false;
+        }
+      }
+    }
+    return valid ? new StructModel(type, codecSimpleName(type), fields, byIndex, viaConstructor) : null;
+  }
+
+  private FieldModel buildField(TypeElement owner, VariableElement field, RunnelField annotation) {
+    if (field.getModifiers().contains(Modifier.STATIC)) {
+      error(field, "@RunnelField cannot be put on static fields");
+      return null;
+    }
+    if (annotation.index() <= 0) {
+      error(field, "Index must be greater than zero : " + annotation.index());
+      return null;
+    }
+    TypeMirror typeMirror = field.asType();
+    FieldType fieldType = FieldType.of(typeMirror);
+    String structCodec = null;
+    if (fieldType == null && typeMirror.getKind() == TypeKind.DECLARED) {
+      TypeElement fieldTypeElement = (TypeElement) ((DeclaredType) typeMirror).asElement();
+      if (fieldTypeElement.getAnnotation(RunnelStruct.class) != null) {
+        if (fieldTypeElement.equals(owner)) {
+          error(field, "Recursive structures are not supported");
+          return null;
+        }
+        fieldType = FieldType.STRUCT;
+        structCodec = codecQualifiedName(fieldTypeElement);
+      }
+    }
+    if (fieldType == null) {
+      error(field, "Unsupported type for @RunnelField : " + typeMirror);
+      return null;
+    }
+
+    String javaName = field.getSimpleName().toString();
+    String readExpression;
+    if (!field.getModifiers().contains(Modifier.PRIVATE)) {
+      readExpression = "value." + javaName;
+    } else {
+      ExecutableElement accessor = findAccessor(owner, field);
+      if (accessor == null) {
+        error(field, "Private field must have a non-private accessor : get" + capitalize(javaName) + "(), is" + capitalize(javaName) + "() or " + javaName + "()");
+        return null;
+      }
+      readExpression = "value." + accessor.getSimpleName() + "()";
+    }
+
+    String name = annotation.name().isEmpty() ? javaName : annotation.name();
+    return new FieldModel(field, javaName, name, annotation.index(), fieldType, typeMirror.getKind().isPrimitive(), typeMirror.toString(), readExpression, structCodec);
+  }
+
+  private ExecutableElement findAccessor(TypeElement owner, VariableElement field) {
+    String javaName = field.getSimpleName().toString();
+    String capitalized = capitalize(javaName);
+    for (ExecutableElement method : ElementFilter.methodsIn(owner.getEnclosedElements())) {
+      if (method.getModifiers().contains(Modifier.PRIVATE) || method.getModifiers().contains(Modifier.STATIC) || !method.getParameters().isEmpty()) {
+        continue;
+      }
+      if (!processingEnv.getTypeUtils().isSameType(method.getReturnType(), field.asType())) {
+        continue;
+      }
+      String methodName = method.getSimpleName().toString();
+      if (methodName.equals("get" + capitalized) || methodName.equals("is" + capitalized) || methodName.equals(javaName)) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  private boolean hasAllFieldsConstructor(TypeElement type, List<FieldModel> fields) {
+    for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      if (constructor.getModifiers().contains(Modifier.PRIVATE) || constructor.getParameters().size() != fields.size()) {
+        continue;
+      }
+      boolean matching = true;
+      for (int i = 0; i < fields.size(); i++) {
+        if (!processingEnv.getTypeUtils().isSameType(constructor.getParameters().get(i).asType(), fields.get(i).element.asType())) {
+          matching = false;
+          break;
+        }
+      }
+      if (matching) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the {@code Generated} annotation available to the compiled sources, or {@code null} if there is none
+   */
+  private String generatedAnnotation() {
+    for (String annotation : GENERATED_ANNOTATIONS) {
+      if (processingEnv.getElementUtils().getTypeElement(annotation) != null) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+
+  private static boolean hasNoArgConstructor(TypeElement type) {
+    for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      if (!constructor.getModifiers().contains(Modifier.PRIVATE) && constructor.getParameters().isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void generate(StructModel model) {
+    String packageName = packageOf(model.type).getQualifiedName().toString();
+    String qualifiedName = packageName.isEmpty() ? model.codecName : packageName + "." + model.codecName;
+    try {
+      JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(qualifiedName, model.type);
+      Writer writer = sourceFile.openWriter();
+      try {
+        writer.write(new CodecWriter(packageName, model, generatedAnnotation()).write());
+      } finally {
+        writer.close();
+      }
+    } catch (IOException ioe) {
+      error(model.type, "Cannot generate codec " + qualifiedName + " : " + ioe);
+    }
+  }
+
+  private void error(Element element, String message) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+  }
+
+  private static PackageElement packageOf(Element element) {
+    Element current = element;
+    while (current.getKind() != ElementKind.PACKAGE) {
+      current = current.getEnclosingElement();
+    }
+    return (PackageElement) current;
+  }
+
+  private static String codecSimpleName(TypeElement type) {
+    StringBuilder sb = new StringBuilder(type.getSimpleName());
+    Element enclosing = type.getEnclosingElement();
+    while (enclosing.getKind() != ElementKind.PACKAGE) {
+      sb.insert(0, '_').insert(0, enclosing.getSimpleName());
+      enclosing = enclosing.getEnclosingElement();
+    }
+    return sb.append(CODEC_SUFFIX).toString();
+  }
+
+  private static String codecQualifiedName(TypeElement type) {
+    String packageName = packageOf(type).getQualifiedName().toString();
+    return packageName.isEmpty() ? codecSimpleName(type) : packageName + "." + codecSimpleName(type);
+  }
+
+  private static String capitalize(String name) {
+    return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  static String constantName(String javaName) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < javaName.length(); i++) {
+      char c = javaName.charAt(i);
+      if (Character.isUpperCase(c) && i > 0) {
+        sb.append('_');
+      }
+      sb.append(Character.toUpperCase(c));
+    }
+    return sb.append("_FIELD").toString();
+  }
+
+  /**
+   * The supported field types, with the runnel methods used to handle them.
+   */
+  enum FieldType {
+    BOOL("bool", "BoolHandle", "boolHandle", "boolOrDefault", "false", "java.lang.Boolean"),
+    CHR("chr", "CharHandle", "chrHandle", "chrOrDefault", "(char) 0", "java.lang.Character"),
+    INT32("int32", "Int32Handle", "int32Handle", "int32OrDefault", "0", "java.lang.Integer"),
+    INT64("int64", "Int64Handle", "int64Handle", "int64OrDefault", "0L", "java.lang.Long"),
+    FP64("fp64", "FloatingPoint64Handle", "fp64Handle", "fp64OrDefault", "0.0", "java.lang.Double"),
+    STRING("string", "StringHandle", "stringHandle", null, null, "java.lang.String"),
+    BYTE_BUFFER("byteBuffer", "ByteBufferHandle", "byteBufferHandle", null, null, "java.nio.ByteBuffer"),
+    STRUCT("struct", "StructHandle", "structHandle", null, null, null),
+    ;
+
+    final String method;
+    final String handleClass;
+    final String handleFactory;
+    final String primitiveDecodeMethod;
+    final String primitiveDefault;
+    final String boxedType;
+
+    FieldType(String method, String handleClass, String handleFactory, String primitiveDecodeMethod, String primitiveDefault, String boxedType) {
+      this.method = method;
+      this.handleClass = "org.terracotta.runnel.handles." + handleClass;
+      this.handleFactory = handleFactory;
+      this.primitiveDecodeMethod = primitiveDecodeMethod;
+      this.primitiveDefault = primitiveDefault;
+      this.boxedType = boxedType;
+    }
+
+    static FieldType of(TypeMirror typeMirror) {
+      switch (typeMirror.getKind()) {
+        case BOOLEAN:
+          return BOOL;
+        case CHAR:
+          return CHR;
+        case INT:
+          return INT32;
+        case LONG:
+          return INT64;
+        case DOUBLE:
+          return FP64;
+        case DECLARED:
+          String name = ((TypeElement) ((DeclaredType) typeMirror).asElement()).getQualifiedName().toString();
+          for (FieldType fieldType : values()) {
+            if (name.equals(fieldType.boxedType)) {
+              return fieldType;
+            }
+          }
+          return null;
+        default:
+          return null;
+      }
+    }
+  }
+
+  static final class StructModel {
+    final TypeElement type;
+    final String codecName;
+    final List<FieldModel> fieldsInDeclarationOrder;
+    final List<FieldModel> fieldsByIndex;
+    final boolean viaConstructor;
+
+    StructModel(TypeElement type, String codecName, List<FieldModel> fieldsInDeclarationOrder, List<FieldModel> fieldsByIndex, boolean viaConstructor) {
+      this.type = type;
+      this.codecName = codecName;
+      this.fieldsInDeclarationOrder = fieldsInDeclarationOrder;
+      this.fieldsByIndex = fieldsByIndex;
+      this.viaConstructor = viaConstructor;
+    }
+  }
+
+  static final class FieldModel {
+    final VariableElement element;
+    final String javaName;
+    final String name;
+    final int index;
+    final FieldType type;
+    final boolean primitive;
+    final String javaType;
+    final String readExpression;
+    final String structCodec;
+
+    FieldModel(VariableElement element, String javaName, String name, int index, FieldType type, boolean primitive, String javaType, String readExpression, String structCodec) {
+      this.element = element;
+      this.javaName = javaName;
+      this.name = name;
+      this.index = index;
+      this.type = type;
+      this.primitive = primitive;
+      this.javaType = javaType;
+      this.readExpression = readExpression;
+      this.structCodec = structCodec;
+    }
+  }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field of a {@link RunnelStruct} class to be part of the encoded structure.
+ * <p>
+ * Supported types are the {@code boolean}, {@code char}, {@code int}, {@code long} and {@code double} primitives and
+ * their boxed counterparts, {@link String}, {@link java.nio.ByteBuffer} and other {@link RunnelStruct} classes.
+ * A null field is not encoded, and an absent primitive field decodes to its Java default value.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface RunnelField {
+
+  /**
+   * @return the index of the field in the structure, which must be greater than zero and never change.
+   */
+  int index();
+
+  /**
+   * @return the name of the field in the structure, defaults to the Java field name.
+   */
+  String name() default "";
+
+}
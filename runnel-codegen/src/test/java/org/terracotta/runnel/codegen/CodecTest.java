@@ -0,0 +1,122 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.codegen;
+
+import org.junit.Test;
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.decoding.StructDecoder;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CodecTest {
+
+  @Test
+  public void testConstructorBasedRoundTrip() throws Exception {
+    ByteBuffer encoded = LeaseResultCodec.encode(new LeaseResult(true, true, 150L));
+    encoded.flip();
+
+    LeaseResult decoded = LeaseResultCodec.decode(encoded);
+    assertThat(decoded.isConnectionGood(), is(true));
+    assertThat(decoded.isLeaseGranted(), is(true));
+    assertThat(decoded.getLeaseLength(), is(150L));
+  }
+
+  @Test
+  public void testSameBytesAsHandWrittenCodec() throws Exception {
+    Struct struct = StructBuilder.newStructBuilder()
+        .bool("connectionGood", 10)
+        .bool("leaseGranted", 20)
+        .int64("leaseLength", 30)
+        .build();
+
+    ByteBuffer handWritten = struct.encoder()
+        .bool("connectionGood", true)
+        .bool("leaseGranted", false)
+        .int64("leaseLength", -1L)
+        .encode();
+
+    assertThat(LeaseResultCodec.encode(new LeaseResult(true, false, -1L)), is(handWritten));
+  }
+
+  @Test
+  public void testFieldAssignmentBasedRoundTrip() throws Exception {
+    Envelope envelope = new Envelope();
+    envelope.header = new Envelope.Header();
+    envelope.header.id = 42L;
+    envelope.header.from = "me";
+    envelope.type = 'x';
+    envelope.priority = 3;
+    envelope.ratio = 0.25;
+    envelope.target = "you";
+    envelope.payload = ByteBuffer.wrap(new byte[] {1, 2, 3});
+    envelope.result = new LeaseResult(false, true, 10L);
+    envelope.notEncoded = "lost";
+
+    ByteBuffer encoded = EnvelopeCodec.write(envelope, ByteBuffer.allocate(256));
+    encoded.flip();
+
+    Envelope decoded = EnvelopeCodec.decode(encoded);
+    assertThat(decoded.header.id, is(42L));
+    assertThat(decoded.header.from, is("me"));
+    assertThat(decoded.type, is('x'));
+    assertThat(decoded.priority, is(3));
+    assertThat(decoded.ratio, is(0.25));
+    assertThat(decoded.target, is("you"));
+    assertThat(decoded.payload.remaining(), is(3));
+    assertThat(decoded.result.isLeaseGranted(), is(true));
+    assertThat(decoded.result.getLeaseLength(), is(10L));
+    assertThat(decoded.notEncoded, is(nullValue()));
+  }
+
+  @Test
+  public void testNullFieldsAreNotEncoded() throws Exception {
+    Envelope envelope = new Envelope();
+    envelope.ratio = 1.0;
+
+    ByteBuffer encoded = EnvelopeCodec.encode(envelope);
+    encoded.flip();
+
+    StructDecoder<Void> decoder = EnvelopeCodec.STRUCT.decoder(encoded);
+    assertThat(decoder.has("header"), is(false));
+    assertThat(decoder.chr("kind"), is('\u0000'));
+    assertThat(decoder.has("priority"), is(false));
+    assertThat(decoder.fp64("ratio"), is(1.0));
+    assertThat(decoder.has("target"), is(false));
+    assertThat(decoder.has("payload"), is(false));
+    assertThat(decoder.has("result"), is(false));
+
+    encoded.rewind();
+    Envelope decoded = EnvelopeCodec.decode(encoded);
+    assertThat(decoded.header, is(nullValue()));
+    assertThat(decoded.priority, is(nullValue()));
+    assertThat(decoded.result, is(nullValue()));
+  }
+
+  @Test
+  public void testNestedClassCodec() throws Exception {
+    Envelope.Header header = new Envelope.Header();
+    header.id = 1L;
+    ByteBuffer encoded = Envelope_HeaderCodec.encode(header);
+    encoded.flip();
+    assertThat(Envelope_HeaderCodec.decode(encoded).id, is(1L));
+  }
+
+}
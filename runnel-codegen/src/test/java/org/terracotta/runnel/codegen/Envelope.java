@@ -0,0 +1,52 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.codegen;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A mutable message, decoded through its no-arg constructor and field assignments.
+ */
+@RunnelStruct
+public class Envelope {
+
+  @RunnelField(index = 1)
+  Header header;
+  @RunnelField(index = 2, name = "kind")
+  char type;
+  @RunnelField(index = 3)
+  Integer priority;
+  @RunnelField(index = 4)
+  double ratio;
+  @RunnelField(index = 6)
+  ByteBuffer payload;
+  // declared after payload but encoded before it
+  @RunnelField(index = 5)
+  String target;
+  @RunnelField(index = 7)
+  LeaseResult result;
+
+  String notEncoded;
+
+  @RunnelStruct
+  public static class Header {
+    @RunnelField(index = 1)
+    long id;
+    @RunnelField(index = 2)
+    String from;
+  }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.codegen;
+
+/**
+ * An immutable message, decoded through its constructor and encoded through its accessors.
+ */
+@RunnelStruct
+public class LeaseResult {
+
+  @RunnelField(index = 10)
+  private final boolean connectionGood;
+  @RunnelField(index = 20)
+  private final boolean leaseGranted;
+  @RunnelField(index = 30)
+  private final long leaseLength;
+
+  public LeaseResult(boolean connectionGood, boolean leaseGranted, long leaseLength) {
+    this.connectionGood = connectionGood;
+    this.leaseGranted = leaseGranted;
+    this.leaseLength = leaseLength;
+  }
+
+  public boolean isConnectionGood() {
+    return connectionGood;
+  }
+
+  public boolean isLeaseGranted() {
+    return leaseGranted;
+  }
+
+  public long getLeaseLength() {
+    return leaseLength;
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.codegen;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class RunnelCodecProcessorTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testValidStructCompiles() throws Exception {
+    List<String> errors = compile("Valid",
+        "@org.terracotta.runnel.codegen.RunnelStruct\n" +
+        "public class Valid {\n" +
+        "  @org.terracotta.runnel.codegen.RunnelField(index = 1) int a;\n" +
+        "}\n");
+    assertThat(errors.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testUnsupportedType() throws Exception {
+    List<String> errors = compile("Unsupported",
+        "@org.terracotta.runnel.codegen.RunnelStruct\n" +
+        "public class Unsupported {\n" +
+        "  @org.terracotta.runnel.codegen.RunnelField(index = 1) java.util.Date a;\n" +
+        "}\n");
+    assertThat(errors, hasItem("Unsupported type for @RunnelField : java.util.Date"));
+  }
+
+  @Test
+  public void testDuplicateIndex() throws Exception {
+    List<String> errors = compile("Duplicate",
+        "@org.terracotta.runnel.codegen.RunnelStruct\n" +
+        "public class Duplicate {\n" +
+        "  @org.terracotta.runnel.codegen.RunnelField(index = 1) int a;\n" +
+        "  @org.terracotta.runnel.codegen.RunnelField(index = 1) int b;\n" +
+        "}\n");
+    assertThat(errors, hasItem("Duplicate index 1, also used by field 'a'"));
+  }
+
+  @Test
+  public void testPrivateFieldWithoutAccessor() throws Exception {
+    List<String> errors = compile("NoAccessor",
+        "@org.terracotta.runnel.codegen.RunnelStruct\n" +
+        "public class NoAccessor {\n" +
+        "  @org.terracotta.runnel.codegen.RunnelField(index = 1) private final int a;\n" +
+        "  NoAccessor(int a) { this.a = a; }\n" +
+        "}\n");
+    assertThat(errors, hasItem("Private field must have a non-private accessor : getA(), isA() or a()"));
+  }
+
+  @Test
+  public void testNoUsableConstructor() throws Exception {
+    List<String> errors = compile("NoConstructor",
+        "@org.terracotta.runnel.codegen.RunnelStruct\n" +
+        "public class NoConstructor {\n" +
+        "  @org.terracotta.runnel.codegen.RunnelField(index = 1) int a;\n" +
+        "  NoConstructor(long a) { }\n" +
+        "}\n");
+    assertThat(errors, hasItem("@RunnelStruct classes need a non-private constructor taking all the @RunnelField fields in declaration order, or a non-private no-arg constructor"));
+  }
+
+  private List<String> compile(String className, String source) throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    JavaFileObject sourceFile = new SimpleJavaFileObject(URI.create("string:///" + className + ".java"), JavaFileObject.Kind.SOURCE) {
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return source;
+      }
+    };
+    String output = temporaryFolder.newFolder().getAbsolutePath();
+    List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d", output, "-s", output,
+        "-processor", RunnelCodecProcessor.class.getName());
+    compiler.getTask(null, null, diagnostics, options, null, Collections.singletonList(sourceFile)).call();
+
+    List<String> errors = new ArrayList<String>();
+    for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+        errors.add(diagnostic.getMessage(null));
+      }
+    }
+    return errors;
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.codegen.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.codegen.LeaseResult;
+import org.terracotta.runnel.codegen.LeaseResultCodec;
+import org.terracotta.runnel.decoding.StructDecoder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a hand-written codec, written the way the lease messages are, with the generated one.
+ * <pre>
+ *   java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main CodecBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .bool("connectionGood", 10)
+      .bool("leaseGranted", 20)
+      .int64("leaseLength", 30)
+      .build();
+
+  private final LeaseResult leaseResult = new LeaseResult(true, true, 150_000L);
+  private ByteBuffer encoded;
+
+  @Setup
+  public void setUp() {
+    encoded = LeaseResultCodec.encode(leaseResult);
+  }
+
+  @Benchmark
+  public ByteBuffer handWrittenEncode() {
+    return STRUCT.encoder()
+        .bool("connectionGood", leaseResult.isConnectionGood())
+        .bool("leaseGranted", leaseResult.isLeaseGranted())
+        .int64("leaseLength", leaseResult.getLeaseLength())
+        .encode();
+  }
+
+  @Benchmark
+  public ByteBuffer generatedEncode() {
+    return LeaseResultCodec.encode(leaseResult);
+  }
+
+  @Benchmark
+  public LeaseResult handWrittenDecode() {
+    encoded.rewind();
+    StructDecoder<Void> decoder = STRUCT.decoder(encoded);
+    boolean connectionGood = decoder.boolOrDefault("connectionGood", false);
+    boolean leaseGranted = decoder.boolOrDefault("leaseGranted", false);
+    long leaseLength = decoder.int64OrDefault("leaseLength", -1L);
+    return new LeaseResult(connectionGood, leaseGranted, leaseLength);
+  }
+
+  @Benchmark
+  public LeaseResult generatedDecode() {
+    encoded.rewind();
+    return LeaseResultCodec.decode(encoded);
+  }
+
+}
@@ -15,10 +15,24 @@
  */
 package org.terracotta.runnel;
 
+import org.terracotta.runnel.decoding.IndexedStructDecoder;
 import org.terracotta.runnel.decoding.StructDecoder;
 import org.terracotta.runnel.decoding.fields.Field;
 import org.terracotta.runnel.decoding.fields.StructField;
 import org.terracotta.runnel.encoding.StructEncoder;
+import org.terracotta.runnel.encoding.StructWriter;
+import org.terracotta.runnel.encoding.dataholders.DataHolderPool;
+import org.terracotta.runnel.handles.BoolHandle;
+import org.terracotta.runnel.handles.ByteBufferHandle;
+import org.terracotta.runnel.handles.CharHandle;
+import org.terracotta.runnel.handles.EnumHandle;
+import org.terracotta.runnel.handles.FloatingPoint64Handle;
+import org.terracotta.runnel.handles.Int32Handle;
+import org.terracotta.runnel.handles.Int64Handle;
+import org.terracotta.runnel.handles.StringHandle;
+import org.terracotta.runnel.handles.StructHandle;
+import org.terracotta.runnel.utils.BufferPool;
+import org.terracotta.runnel.utils.EncodedSizeHistogram;
 import org.terracotta.runnel.utils.ReadBuffer;
 
 import java.io.PrintStream;
@@ -54,6 +68,31 @@ public class Struct {
     return new StructEncoder<Void>(root);
   }
 
+  /**
+   * Create a non-thread safe encoder allowing encoding according to the present structure, which recycles
+   * its internal state when {@link StructEncoder#reset()} is called. Such encoder is meant to be kept around,
+   * e.g.: in a thread local, and reused for every message to encode so that, paired with
+   * {@link StructEncoder#encode(ByteBuffer)}, encoding stops allocating once warmed up.
+   * Note: this method is thread-safe.
+   * @return the encoder.
+   */
+  public StructEncoder<Void> reusableEncoder() {
+    root.checkFullyInitialized();
+    return new StructEncoder<Void>(root, DataHolderPool.recycling());
+  }
+
+  /**
+   * Create a non-thread safe writer encoding according to the present structure in a single pass, straight into
+   * the passed byte buffer, starting at its current position.
+   * Note: this method is thread-safe.
+   * @param byteBuffer the byte buffer to write to.
+   * @return the writer.
+   */
+  public StructWriter<Void> writer(ByteBuffer byteBuffer) {
+    root.checkFullyInitialized();
+    return new StructWriter<Void>(root, byteBuffer);
+  }
+
   /**
    * Create a non-thread safe decoder allowing decoding according to the present structure.
    * Note: this method is thread-safe.
@@ -65,6 +104,130 @@ public class Struct {
     return new StructDecoder<Void>(root, new ReadBuffer(byteBuffer));
   }
 
+  /**
+   * Create a non-thread safe decoder allowing decoding according to the present structure, with fields read in any
+   * order and any number of times. The data is scanned once when the decoder is created to locate the fields.
+   * Note: this method is thread-safe.
+   * @param byteBuffer the byte buffer containing the data to be decoded.
+   * @return the decoder.
+   */
+  public IndexedStructDecoder indexedDecoder(ByteBuffer byteBuffer) {
+    root.checkFullyInitialized();
+    return new IndexedStructDecoder(root, byteBuffer);
+  }
+
+  /**
+   * Get the running histogram of the sizes this structure got encoded to by its encoders and writers, e.g.: to size
+   * the buffer passed to {@link #writer(ByteBuffer)} or acquired from a {@link BufferPool} on the first try.
+   * Note: this method is thread-safe.
+   * @return the histogram.
+   */
+  public EncodedSizeHistogram sizeHistogram() {
+    return root.getMetadata().sizeHistogram();
+  }
+
+  /**
+   * Resolve a boolean field once and for all, so that encoders and decoders of this structure can access it
+   * through the returned handle without looking it up by name.
+   * Note: this method is thread-safe.
+   * @param name the field name.
+   * @return the field handle.
+   */
+  public BoolHandle boolHandle(String name) {
+    root.checkFullyInitialized();
+    return new BoolHandle(root.getMetadata(), name);
+  }
+
+  /**
+   * Resolve a character field once and for all.
+   * @param name the field name.
+   * @return the field handle.
+   * @see #boolHandle(String)
+   */
+  public CharHandle chrHandle(String name) {
+    root.checkFullyInitialized();
+    return new CharHandle(root.getMetadata(), name);
+  }
+
+  /**
+   * Resolve an enumeration field once and for all.
+   * @param name the field name.
+   * @param <E> the enumeration's actual type.
+   * @return the field handle.
+   * @see #boolHandle(String)
+   */
+  public <E> EnumHandle<E> enmHandle(String name) {
+    root.checkFullyInitialized();
+    return new EnumHandle<E>(root.getMetadata(), name);
+  }
+
+  /**
+   * Resolve a 32-bit integer field once and for all.
+   * @param name the field name.
+   * @return the field handle.
+   * @see #boolHandle(String)
+   */
+  public Int32Handle int32Handle(String name) {
+    root.checkFullyInitialized();
+    return new Int32Handle(root.getMetadata(), name);
+  }
+
+  /**
+   * Resolve a 64-bit integer field once and for all.
+   * @param name the field name.
+   * @return the field handle.
+   * @see #boolHandle(String)
+   */
+  public Int64Handle int64Handle(String name) {
+    root.checkFullyInitialized();
+    return new Int64Handle(root.getMetadata(), name);
+  }
+
+  /**
+   * Resolve a 64-bit, double-precision floating point number field once and for all.
+   * @param name the field name.
+   * @return the field handle.
+   * @see #boolHandle(String)
+   */
+  public FloatingPoint64Handle fp64Handle(String name) {
+    root.checkFullyInitialized();
+    return new FloatingPoint64Handle(root.getMetadata(), name);
+  }
+
+  /**
+   * Resolve a character string field once and for all.
+   * @param name the field name.
+   * @return the field handle.
+   * @see #boolHandle(String)
+   */
+  public StringHandle stringHandle(String name) {
+    root.checkFullyInitialized();
+    return new StringHandle(root.getMetadata(), name);
+  }
+
+  /**
+   * Resolve a byte buffer field once and for all.
+   * @param name the field name.
+   * @return the field handle.
+   * @see #boolHandle(String)
+   */
+  public ByteBufferHandle byteBufferHandle(String name) {
+    root.checkFullyInitialized();
+    return new ByteBufferHandle(root.getMetadata(), name);
+  }
+
+  /**
+   * Resolve a struct field once and for all. Handles of the sub-structure's own fields are obtained from
+   * the struct the sub-structure was built with.
+   * @param name the field name.
+   * @return the field handle.
+   * @see #boolHandle(String)
+   */
+  public StructHandle structHandle(String name) {
+    root.checkFullyInitialized();
+    return new StructHandle(root.getMetadata(), name);
+  }
+
   /**
    * Recursively decode a byte buffer according to the present structure and print the decoded outcome to a print stream.
    * Note: this method is thread-safe.
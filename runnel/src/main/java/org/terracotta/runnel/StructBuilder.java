@@ -19,12 +19,15 @@ import org.terracotta.runnel.decoding.fields.ArrayField;
 import org.terracotta.runnel.decoding.fields.BoolField;
 import org.terracotta.runnel.decoding.fields.ByteBufferField;
 import org.terracotta.runnel.decoding.fields.CharField;
+import org.terracotta.runnel.decoding.fields.DeltaInt64ArrayField;
 import org.terracotta.runnel.decoding.fields.EnumField;
 import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
 import org.terracotta.runnel.decoding.fields.Int32Field;
 import org.terracotta.runnel.decoding.fields.Int64Field;
 import org.terracotta.runnel.decoding.fields.StringField;
 import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.decoding.fields.VarInt32Field;
+import org.terracotta.runnel.decoding.fields.VarInt64Field;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -83,6 +86,26 @@ public class StructBuilder {
     return this;
   }
 
+  /**
+   * Add a 32-bit integer encoded as a zigzag VLQ, which takes less space than {@link #int32(String, int)} for
+   * values whose magnitude is below 2^20.
+   */
+  public StructBuilder vint32(String name, int index) {
+    checkParams(name, index);
+    structField.addField(new VarInt32Field(name, index));
+    return this;
+  }
+
+  /**
+   * Add a 64-bit integer encoded as a zigzag VLQ, which takes less space than {@link #int64(String, int)} for
+   * values whose magnitude is below 2^55.
+   */
+  public StructBuilder vint64(String name, int index) {
+    checkParams(name, index);
+    structField.addField(new VarInt64Field(name, index));
+    return this;
+  }
+
   public StructBuilder fp64(String name, int index) {
     checkParams(name, index);
     structField.addField(new FloatingPoint64Field(name, index));
@@ -131,6 +154,16 @@ public class StructBuilder {
     return this;
   }
 
+  /**
+   * Add an array of 64-bit integers encoded as zigzag VLQ deltas, for mostly monotonic values like identifiers
+   * or timestamps. It is not compatible with {@link #int64s(String, int)}.
+   */
+  public StructBuilder deltaInt64s(String name, int index) {
+    checkParams(name, index);
+    structField.addField(new DeltaInt64ArrayField(name, index));
+    return this;
+  }
+
   public StructBuilder fp64s(String name, int index) {
     checkParams(name, index);
     structField.addField(new ArrayField(name, index, new FloatingPoint64Field(name, index)));
@@ -15,9 +15,16 @@
  */
 package org.terracotta.runnel.decoding;
 
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
 import org.terracotta.runnel.decoding.fields.ValueField;
 import org.terracotta.runnel.utils.ReadBuffer;
 
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
 /**
  * @author Ludovic Orban
  */
@@ -27,6 +34,7 @@ public class ArrayDecoder<T, P> {
   private final ReadBuffer readBuffer;
   private final P parent;
   private final int length;
+  private int position = 0;
 
   public ArrayDecoder(ValueField<T> arrayedField, ReadBuffer readBuffer, P parent) {
     this.arrayedField = arrayedField;
@@ -42,9 +50,95 @@ public class ArrayDecoder<T, P> {
   }
 
   public T value() {
+    position++;
     return arrayedField.decode(readBuffer);
   }
 
+  /**
+   * Decode the next values of a 32-bit integer array without boxing them.
+   * @param values the array to fill, starting at index 0.
+   * @return the number of decoded values, which is the smallest of the array's length and the count of values left.
+   */
+  public int fill(int[] values) {
+    subField(Int32Field.class);
+    int count = Math.min(values.length, length - position);
+    readBuffer.getInts(values, 0, count);
+    position += count;
+    return count;
+  }
+
+  /**
+   * Decode the next values of a 32-bit integer array without boxing them.
+   * @param values the buffer to fill, starting at its position which is advanced by the number of decoded values.
+   * @return the number of decoded values, which is the smallest of the buffer's remaining space and the count of values left.
+   */
+  public int fill(IntBuffer values) {
+    subField(Int32Field.class);
+    int count = Math.min(values.remaining(), length - position);
+    readBuffer.getInts(values, count);
+    position += count;
+    return count;
+  }
+
+  /**
+   * Decode the next values of a 64-bit integer array without boxing them.
+   * @param values the array to fill, starting at index 0.
+   * @return the number of decoded values, which is the smallest of the array's length and the count of values left.
+   */
+  public int fill(long[] values) {
+    subField(Int64Field.class);
+    int count = Math.min(values.length, length - position);
+    readBuffer.getLongs(values, 0, count);
+    position += count;
+    return count;
+  }
+
+  /**
+   * Decode the next values of a 64-bit integer array without boxing them.
+   * @param values the buffer to fill, starting at its position which is advanced by the number of decoded values.
+   * @return the number of decoded values, which is the smallest of the buffer's remaining space and the count of values left.
+   */
+  public int fill(LongBuffer values) {
+    subField(Int64Field.class);
+    int count = Math.min(values.remaining(), length - position);
+    readBuffer.getLongs(values, count);
+    position += count;
+    return count;
+  }
+
+  /**
+   * Decode the next values of a 64-bit floating point array without boxing them.
+   * @param values the array to fill, starting at index 0.
+   * @return the number of decoded values, which is the smallest of the array's length and the count of values left.
+   */
+  public int fill(double[] values) {
+    subField(FloatingPoint64Field.class);
+    int count = Math.min(values.length, length - position);
+    readBuffer.getDoubles(values, 0, count);
+    position += count;
+    return count;
+  }
+
+  /**
+   * Decode the next values of a 64-bit floating point array without boxing them.
+   * @param values the buffer to fill, starting at its position which is advanced by the number of decoded values.
+   * @return the number of decoded values, which is the smallest of the buffer's remaining space and the count of values left.
+   */
+  public int fill(DoubleBuffer values) {
+    subField(FloatingPoint64Field.class);
+    int count = Math.min(values.remaining(), length - position);
+    readBuffer.getDoubles(values, count);
+    position += count;
+    return count;
+  }
+
+  private <F extends ValueField<?>> F subField(Class<F> fieldClazz) {
+    if (arrayedField.getClass() != fieldClazz) {
+      throw new IllegalArgumentException("Invalid type for array '" + arrayedField.name() + "', expected : '" + fieldClazz.getSimpleName() + "' but was '" + arrayedField.getClass().getSimpleName() + "'");
+    }
+    return (F) arrayedField;
+  }
+
   public P end() {
     readBuffer.skipAll();
 
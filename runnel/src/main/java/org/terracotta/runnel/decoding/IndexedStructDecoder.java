@@ -0,0 +1,408 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding;
+
+import org.terracotta.runnel.decoding.fields.ArrayField;
+import org.terracotta.runnel.decoding.fields.BoolField;
+import org.terracotta.runnel.decoding.fields.ByteBufferField;
+import org.terracotta.runnel.decoding.fields.CharField;
+import org.terracotta.runnel.decoding.fields.DeltaInt64ArrayField;
+import org.terracotta.runnel.decoding.fields.EnumField;
+import org.terracotta.runnel.decoding.fields.Field;
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.decoding.fields.StringField;
+import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.decoding.fields.VarInt32Field;
+import org.terracotta.runnel.decoding.fields.VarInt64Field;
+import org.terracotta.runnel.decoding.fields.ValueField;
+import org.terracotta.runnel.handles.BoolHandle;
+import org.terracotta.runnel.handles.ByteBufferHandle;
+import org.terracotta.runnel.handles.CharHandle;
+import org.terracotta.runnel.handles.EnumHandle;
+import org.terracotta.runnel.handles.FieldHandle;
+import org.terracotta.runnel.handles.FloatingPoint64Handle;
+import org.terracotta.runnel.handles.Int32Handle;
+import org.terracotta.runnel.handles.Int64Handle;
+import org.terracotta.runnel.handles.StringHandle;
+import org.terracotta.runnel.handles.StructHandle;
+import org.terracotta.runnel.metadata.Metadata;
+import org.terracotta.runnel.utils.ReadBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A decoder allowing random access to the fields of structured data described by a {@link org.terracotta.runnel.Struct}.
+ * <p>
+ * The whole structure is scanned once when the decoder is created, recording where each known field starts.
+ * Fields can then be read in any order and any number of times, each read directly seeking to the field.
+ * Reading a single field located at the end of a large structure, e.g.: a message type used for routing, only costs
+ * that scan instead of decoding all the fields before it.
+ * <p>
+ * The passed byte buffer is positioned right after the structure once the decoder is created, reads do not move it.
+ * Array decoders obtained from this decoder are independent of each other and of the field reads.
+ * Note: Instances of this class are not thread-safe.
+ */
+public class IndexedStructDecoder implements PrimitiveDecodingSupport {
+
+  private final Metadata metadata;
+  private final ByteBuffer data;
+  private final ReadBuffer readBuffer;
+  private final int[] offsets;
+
+  public IndexedStructDecoder(StructField structField, ByteBuffer byteBuffer) {
+    this.metadata = structField.getMetadata();
+    this.data = byteBuffer.duplicate();
+    ReadBuffer structBuffer = new ReadBuffer(data);
+    int size = structBuffer.getVlqInt();
+    this.readBuffer = structBuffer.limit(size);
+    int end = data.position() + size;
+    this.offsets = buildOffsets(metadata, data, readBuffer);
+    byteBuffer.position(end);
+  }
+
+  /**
+   * Scan the fields, merging their indices with the ones of the metadata as both are sorted.
+   * Fields unknown to the metadata, e.g.: written by a newer version, are skipped.
+   */
+  private static int[] buildOffsets(Metadata metadata, ByteBuffer data, ReadBuffer readBuffer) {
+    int fieldCount = metadata.fieldCount();
+    int[] offsets = new int[fieldCount];
+    Arrays.fill(offsets, -1);
+
+    int ordinal = 0;
+    while (!readBuffer.limitReached()) {
+      int index = readBuffer.getVlqInt();
+      int offset = data.position();
+      int fieldSize = readBuffer.getVlqInt();
+      readBuffer.skip(fieldSize);
+
+      while (ordinal < fieldCount && metadata.fieldIndexAt(ordinal) < index) {
+        ordinal++;
+      }
+      if (ordinal < fieldCount && metadata.fieldIndexAt(ordinal) == index) {
+        offsets[ordinal] = offset;
+      }
+    }
+    return offsets;
+  }
+
+  @Override
+  public Boolean bool(String name) {
+    return decodeValue(name, BoolField.class);
+  }
+
+  @Override
+  public Character chr(String name) {
+    return decodeValue(name, CharField.class);
+  }
+
+  @Override
+  public Integer int32(String name) {
+    return decodeValue(name, Int32Field.class);
+  }
+
+  @Override
+  public <E> Enm<E> enm(String name) {
+    Enm<E> enm = (Enm<E>) decodeValue(name, (Class) EnumField.class);
+    if (enm == null) {
+      return new Enm<E>(name);
+    }
+    return enm;
+  }
+
+  @Override
+  public Long int64(String name) {
+    return decodeValue(name, Int64Field.class);
+  }
+
+  @Override
+  public Integer vint32(String name) {
+    return decodeValue(name, VarInt32Field.class);
+  }
+
+  @Override
+  public Long vint64(String name) {
+    return decodeValue(name, VarInt64Field.class);
+  }
+
+  @Override
+  public Double fp64(String name) {
+    return decodeValue(name, FloatingPoint64Field.class);
+  }
+
+  @Override
+  public String string(String name) {
+    return decodeValue(name, StringField.class);
+  }
+
+  @Override
+  public Utf8View utf8(String name) {
+    StringField field = metadata.getField(name, StringField.class);
+    int offset = offsets[metadata.ordinal(field)];
+    return offset < 0 ? null : field.decodeView(seek(offset));
+  }
+
+  @Override
+  public ByteBuffer byteBuffer(String name) {
+    return decodeValue(name, ByteBufferField.class);
+  }
+
+  @Override
+  public boolean has(String name) {
+    return offsets[metadata.ordinal(metadata.getField(name))] >= 0;
+  }
+
+  @Override
+  public boolean boolOrDefault(String name, boolean defaultValue) {
+    BoolField field = metadata.getField(name, BoolField.class);
+    int offset = offsets[metadata.ordinal(field)];
+    return offset < 0 ? defaultValue : field.decodeBoolean(seek(offset));
+  }
+
+  @Override
+  public char chrOrDefault(String name, char defaultValue) {
+    CharField field = metadata.getField(name, CharField.class);
+    int offset = offsets[metadata.ordinal(field)];
+    return offset < 0 ? defaultValue : field.decodeChar(seek(offset));
+  }
+
+  @Override
+  public int int32OrDefault(String name, int defaultValue) {
+    Int32Field field = metadata.getField(name, Int32Field.class);
+    int offset = offsets[metadata.ordinal(field)];
+    return offset < 0 ? defaultValue : field.decodeInt(seek(offset));
+  }
+
+  @Override
+  public long int64OrDefault(String name, long defaultValue) {
+    Int64Field field = metadata.getField(name, Int64Field.class);
+    int offset = offsets[metadata.ordinal(field)];
+    return offset < 0 ? defaultValue : field.decodeLong(seek(offset));
+  }
+
+  @Override
+  public int vint32OrDefault(String name, int defaultValue) {
+    VarInt32Field field = metadata.getField(name, VarInt32Field.class);
+    int offset = offsets[metadata.ordinal(field)];
+    return offset < 0 ? defaultValue : field.decodeInt(seek(offset));
+  }
+
+  @Override
+  public long vint64OrDefault(String name, long defaultValue) {
+    VarInt64Field field = metadata.getField(name, VarInt64Field.class);
+    int offset = offsets[metadata.ordinal(field)];
+    return offset < 0 ? defaultValue : field.decodeLong(seek(offset));
+  }
+
+  @Override
+  public double fp64OrDefault(String name, double defaultValue) {
+    FloatingPoint64Field field = metadata.getField(name, FloatingPoint64Field.class);
+    int offset = offsets[metadata.ordinal(field)];
+    return offset < 0 ? defaultValue : field.decodeDouble(seek(offset));
+  }
+
+  @Override
+  public Boolean bool(BoolHandle handle) {
+    return decodeValue(handle);
+  }
+
+  @Override
+  public Character chr(CharHandle handle) {
+    return decodeValue(handle);
+  }
+
+  @Override
+  public Integer int32(Int32Handle handle) {
+    return decodeValue(handle);
+  }
+
+  @Override
+  public <E> Enm<E> enm(EnumHandle<E> handle) {
+    Enm<E> enm = decodeValue(handle);
+    if (enm == null) {
+      return new Enm<E>(handle.name());
+    }
+    return enm;
+  }
+
+  @Override
+  public Long int64(Int64Handle handle) {
+    return decodeValue(handle);
+  }
+
+  @Override
+  public Double fp64(FloatingPoint64Handle handle) {
+    return decodeValue(handle);
+  }
+
+  @Override
+  public String string(StringHandle handle) {
+    return decodeValue(handle);
+  }
+
+  @Override
+  public Utf8View utf8(StringHandle handle) {
+    int offset = offset(handle);
+    return offset < 0 ? null : handle.field().decodeView(seek(offset));
+  }
+
+  @Override
+  public ByteBuffer byteBuffer(ByteBufferHandle handle) {
+    return decodeValue(handle);
+  }
+
+  @Override
+  public boolean has(FieldHandle<?> handle) {
+    return offset(handle) >= 0;
+  }
+
+  @Override
+  public boolean boolOrDefault(BoolHandle handle, boolean defaultValue) {
+    int offset = offset(handle);
+    return offset < 0 ? defaultValue : handle.field().decodeBoolean(seek(offset));
+  }
+
+  @Override
+  public char chrOrDefault(CharHandle handle, char defaultValue) {
+    int offset = offset(handle);
+    return offset < 0 ? defaultValue : handle.field().decodeChar(seek(offset));
+  }
+
+  @Override
+  public int int32OrDefault(Int32Handle handle, int defaultValue) {
+    int offset = offset(handle);
+    return offset < 0 ? defaultValue : handle.field().decodeInt(seek(offset));
+  }
+
+  @Override
+  public long int64OrDefault(Int64Handle handle, long defaultValue) {
+    int offset = offset(handle);
+    return offset < 0 ? defaultValue : handle.field().decodeLong(seek(offset));
+  }
+
+  @Override
+  public double fp64OrDefault(FloatingPoint64Handle handle, double defaultValue) {
+    int offset = offset(handle);
+    return offset < 0 ? defaultValue : handle.field().decodeDouble(seek(offset));
+  }
+
+
+  public ArrayDecoder<Integer, IndexedStructDecoder> int32s(String name) {
+    return decodeValueArray(name, Int32Field.class);
+  }
+
+  public ArrayDecoder<Boolean, IndexedStructDecoder> bools(String name) {
+    return decodeValueArray(name, BoolField.class);
+  }
+
+  public ArrayDecoder<Character, IndexedStructDecoder> chrs(String name) {
+    return decodeValueArray(name, CharField.class);
+  }
+
+  public ArrayDecoder<Long, IndexedStructDecoder> int64s(String name) {
+    return decodeValueArray(name, Int64Field.class);
+  }
+
+  public ArrayDecoder<Double, IndexedStructDecoder> fp64s(String name) {
+    return decodeValueArray(name, FloatingPoint64Field.class);
+  }
+
+  public long[] deltaInt64s(String name) {
+    return decodeValue(name, DeltaInt64ArrayField.class);
+  }
+
+  public ArrayDecoder<String, IndexedStructDecoder> strings(String name) {
+    return decodeValueArray(name, StringField.class);
+  }
+
+  public IndexedStructDecoder struct(String name) {
+    StructField field = metadata.getField(name, StructField.class);
+    return decodeStruct(field, offsets[metadata.ordinal(field)]);
+  }
+
+  public IndexedStructDecoder struct(StructHandle handle) {
+    return decodeStruct(handle.field(), offset(handle));
+  }
+
+  public StructArrayDecoder<IndexedStructDecoder> structs(String name) {
+    ArrayField field = arrayField(name, StructField.class);
+    int offset = offsets[metadata.ordinal(field)];
+    if (offset < 0) {
+      return null;
+    }
+    return new StructArrayDecoder<IndexedStructDecoder>((StructField) field.subField(), independentReadBuffer(offset), this);
+  }
+
+  private <T> T decodeValue(String name, Class<? extends ValueField<T>> clazz) {
+    ValueField<T> field = metadata.getField(name, clazz);
+    int offset = offsets[metadata.ordinal(field)];
+    return offset < 0 ? null : field.decode(seek(offset));
+  }
+
+  private <T, F extends ValueField<T>> T decodeValue(FieldHandle<F> handle) {
+    int offset = offset(handle);
+    return offset < 0 ? null : handle.field().decode(seek(offset));
+  }
+
+  private <T> ArrayDecoder<T, IndexedStructDecoder> decodeValueArray(String name, Class<? extends ValueField<T>> clazz) {
+    ArrayField field = arrayField(name, clazz);
+    int offset = offsets[metadata.ordinal(field)];
+    if (offset < 0) {
+      return null;
+    }
+    return new ArrayDecoder<T, IndexedStructDecoder>((ValueField<T>) field.subField(), independentReadBuffer(offset), this);
+  }
+
+  private IndexedStructDecoder decodeStruct(StructField field, int offset) {
+    if (offset < 0) {
+      return null;
+    }
+    ByteBuffer structData = data.duplicate();
+    structData.position(offset);
+    return new IndexedStructDecoder(field, structData);
+  }
+
+  private ArrayField arrayField(String name, Class<? extends Field> subFieldClazz) {
+    ArrayField field = metadata.getField(name, ArrayField.class);
+    Field subField = field.subField();
+    if (subField.getClass() != subFieldClazz) {
+      throw new IllegalArgumentException("Invalid subtype for field '" + name + "', expected : '" + subFieldClazz.getSimpleName() + "' but was '" + subField.getClass().getSimpleName() + "'");
+    }
+    return field;
+  }
+
+  private int offset(FieldHandle<?> handle) {
+    if (handle.metadata() != metadata) {
+      throw new IllegalArgumentException("Field handle '" + handle.name() + "' does not belong to this struct");
+    }
+    return offsets[handle.ordinal()];
+  }
+
+  private ReadBuffer seek(int offset) {
+    data.position(offset);
+    return readBuffer;
+  }
+
+  private ReadBuffer independentReadBuffer(int offset) {
+    ByteBuffer arrayData = data.duplicate();
+    arrayData.position(offset);
+    return new ReadBuffer(arrayData);
+  }
+
+}
@@ -15,10 +15,22 @@
  */
 package org.terracotta.runnel.decoding;
 
+import org.terracotta.runnel.handles.BoolHandle;
+import org.terracotta.runnel.handles.ByteBufferHandle;
+import org.terracotta.runnel.handles.CharHandle;
+import org.terracotta.runnel.handles.EnumHandle;
+import org.terracotta.runnel.handles.FieldHandle;
+import org.terracotta.runnel.handles.FloatingPoint64Handle;
+import org.terracotta.runnel.handles.Int32Handle;
+import org.terracotta.runnel.handles.Int64Handle;
+import org.terracotta.runnel.handles.StringHandle;
+
 import java.nio.ByteBuffer;
 
 /**
  * Primitive types decoder interface.
+ * Every field can be designated either by name or by a {@link FieldHandle} obtained from the struct, the latter
+ * saving the field lookup.
  */
 public interface PrimitiveDecodingSupport {
 
@@ -58,6 +70,20 @@ public interface PrimitiveDecodingSupport {
    */
   Long int64(String name);
 
+  /**
+   * Decode a zigzag VLQ encoded 32-bit integer.
+   * @param name the field name.
+   * @return the decoded value, or null if it was absent from the data.
+   */
+  Integer vint32(String name);
+
+  /**
+   * Decode a zigzag VLQ encoded 64-bit integer.
+   * @param name the field name.
+   * @return the decoded value, or null if it was absent from the data.
+   */
+  Long vint64(String name);
+
   /**
    * Decode a 64-bit, double-precision floating point number.
    * @param name the field name.
@@ -73,10 +99,195 @@ public interface PrimitiveDecodingSupport {
   String string(String name);
 
   /**
-   * Decode a byte buffer.
+   * Decode a character string as a view over the encoded bytes, without allocating a {@link String}.
+   * @param name the field name.
+   * @return the view, or null if it was absent from the data.
+   * @see Utf8View
+   */
+  Utf8View utf8(String name);
+
+  /**
+   * Decode a byte buffer. The bytes are not copied: the returned buffer is a read-only slice of the decoded one,
+   * so it must not be used anymore once the latter's content changes.
    * @param name the field name.
    * @return the decoded value, or null if it was absent from the data.
    */
   ByteBuffer byteBuffer(String name);
 
+  /**
+   * Check if a field is present in the data, without consuming it.
+   * @param name the field name.
+   * @return true if the field is present, false otherwise.
+   */
+  boolean has(String name);
+
+  /**
+   * Decode a boolean without boxing it.
+   * @param name the field name.
+   * @param defaultValue the value to return if the field was absent from the data.
+   * @return the decoded value, or defaultValue if it was absent from the data.
+   */
+  boolean boolOrDefault(String name, boolean defaultValue);
+
+  /**
+   * Decode a character without boxing it.
+   * @param name the field name.
+   * @param defaultValue the value to return if the field was absent from the data.
+   * @return the decoded value, or defaultValue if it was absent from the data.
+   */
+  char chrOrDefault(String name, char defaultValue);
+
+  /**
+   * Decode a 32-bit integer without boxing it.
+   * @param name the field name.
+   * @param defaultValue the value to return if the field was absent from the data.
+   * @return the decoded value, or defaultValue if it was absent from the data.
+   */
+  int int32OrDefault(String name, int defaultValue);
+
+  /**
+   * Decode a 64-bit integer without boxing it.
+   * @param name the field name.
+   * @param defaultValue the value to return if the field was absent from the data.
+   * @return the decoded value, or defaultValue if it was absent from the data.
+   */
+  long int64OrDefault(String name, long defaultValue);
+
+  /**
+   * Decode a zigzag VLQ encoded 32-bit integer without boxing it.
+   * @param name the field name.
+   * @param defaultValue the value to return if the field was absent from the data.
+   * @return the decoded value, or defaultValue if it was absent from the data.
+   */
+  int vint32OrDefault(String name, int defaultValue);
+
+  /**
+   * Decode a zigzag VLQ encoded 64-bit integer without boxing it.
+   * @param name the field name.
+   * @param defaultValue the value to return if the field was absent from the data.
+   * @return the decoded value, or defaultValue if it was absent from the data.
+   */
+  long vint64OrDefault(String name, long defaultValue);
+
+  /**
+   * Decode a 64-bit, double-precision floating point number without boxing it.
+   * @param name the field name.
+   * @param defaultValue the value to return if the field was absent from the data.
+   * @return the decoded value, or defaultValue if it was absent from the data.
+   */
+  double fp64OrDefault(String name, double defaultValue);
+
+  /**
+   * Decode a boolean.
+   * @param handle the field handle.
+   * @return the decoded value, or null if it was absent from the data.
+   */
+  Boolean bool(BoolHandle handle);
+
+  /**
+   * Decode a character.
+   * @param handle the field handle.
+   * @return the decoded value, or null if it was absent from the data.
+   */
+  Character chr(CharHandle handle);
+
+  /**
+   * Decode a 32-bit integer.
+   * @param handle the field handle.
+   * @return the decoded value, or null if it was absent from the data.
+   */
+  Integer int32(Int32Handle handle);
+
+  /**
+   * Decode an enumeration.
+   * @param handle the field handle.
+   * @param <E> the enumration's actual type.
+   * @return the decoded enumeration representation which can never be null.
+   */
+  <E> Enm<E> enm(EnumHandle<E> handle);
+
+  /**
+   * Decode a 64-bit integer.
+   * @param handle the field handle.
+   * @return the decoded value, or null if it was absent from the data.
+   */
+  Long int64(Int64Handle handle);
+
+  /**
+   * Decode a 64-bit, double-precision floating point number.
+   * @param handle the field handle.
+   * @return the decoded value, or null if it was absent from the data.
+   */
+  Double fp64(FloatingPoint64Handle handle);
+
+  /**
+   * Decode a character string.
+   * @param handle the field handle.
+   * @return the decoded value, or null if it was absent from the data.
+   */
+  String string(StringHandle handle);
+
+  /**
+   * Decode a character string as a view over the encoded bytes, without allocating a {@link String}.
+   * @param handle the field handle.
+   * @return the view, or null if it was absent from the data.
+   * @see Utf8View
+   */
+  Utf8View utf8(StringHandle handle);
+
+  /**
+   * Decode a byte buffer. The bytes are not copied: the returned buffer is a read-only slice of the decoded one,
+   * so it must not be used anymore once the latter's content changes.
+   * @param handle the field handle.
+   * @return the decoded value, or null if it was absent from the data.
+   */
+  ByteBuffer byteBuffer(ByteBufferHandle handle);
+
+  /**
+   * Check if a field is present in the data, without consuming it.
+   * @param handle the field handle.
+   * @return true if the field is present, false otherwise.
+   */
+  boolean has(FieldHandle<?> handle);
+
+  /**
+   * Decode a boolean without boxing it.
+   * @param handle the field handle.
+   * @param defaultValue the value to return if the field was absent from the data.
+   * @return the decoded value, or defaultValue if it was absent from the data.
+   */
+  boolean boolOrDefault(BoolHandle handle, boolean defaultValue);
+
+  /**
+   * Decode a character without boxing it.
+   * @param handle the field handle.
+   * @param defaultValue the value to return if the field was absent from the data.
+   * @return the decoded value, or defaultValue if it was absent from the data.
+   */
+  char chrOrDefault(CharHandle handle, char defaultValue);
+
+  /**
+   * Decode a 32-bit integer without boxing it.
+   * @param handle the field handle.
+   * @param defaultValue the value to return if the field was absent from the data.
+   * @return the decoded value, or defaultValue if it was absent from the data.
+   */
+  int int32OrDefault(Int32Handle handle, int defaultValue);
+
+  /**
+   * Decode a 64-bit integer without boxing it.
+   * @param handle the field handle.
+   * @param defaultValue the value to return if the field was absent from the data.
+   * @return the decoded value, or defaultValue if it was absent from the data.
+   */
+  long int64OrDefault(Int64Handle handle, long defaultValue);
+
+  /**
+   * Decode a 64-bit, double-precision floating point number without boxing it.
+   * @param handle the field handle.
+   * @param defaultValue the value to return if the field was absent from the data.
+   * @return the decoded value, or defaultValue if it was absent from the data.
+   */
+  double fp64OrDefault(FloatingPoint64Handle handle, double defaultValue);
+
 }
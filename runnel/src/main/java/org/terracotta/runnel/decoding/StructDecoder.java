@@ -18,12 +18,25 @@ package org.terracotta.runnel.decoding;
 import org.terracotta.runnel.decoding.fields.BoolField;
 import org.terracotta.runnel.decoding.fields.ByteBufferField;
 import org.terracotta.runnel.decoding.fields.CharField;
+import org.terracotta.runnel.decoding.fields.DeltaInt64ArrayField;
 import org.terracotta.runnel.decoding.fields.EnumField;
 import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
 import org.terracotta.runnel.decoding.fields.Int32Field;
 import org.terracotta.runnel.decoding.fields.Int64Field;
 import org.terracotta.runnel.decoding.fields.StringField;
 import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.decoding.fields.VarInt32Field;
+import org.terracotta.runnel.decoding.fields.VarInt64Field;
+import org.terracotta.runnel.handles.BoolHandle;
+import org.terracotta.runnel.handles.ByteBufferHandle;
+import org.terracotta.runnel.handles.CharHandle;
+import org.terracotta.runnel.handles.EnumHandle;
+import org.terracotta.runnel.handles.FieldHandle;
+import org.terracotta.runnel.handles.FloatingPoint64Handle;
+import org.terracotta.runnel.handles.Int32Handle;
+import org.terracotta.runnel.handles.Int64Handle;
+import org.terracotta.runnel.handles.StringHandle;
+import org.terracotta.runnel.handles.StructHandle;
 import org.terracotta.runnel.metadata.FieldDecoder;
 import org.terracotta.runnel.utils.ReadBuffer;
 
@@ -79,6 +92,16 @@ public class StructDecoder<P> implements PrimitiveDecodingSupport {
     return fieldDecoder.decodeValue(name, Int64Field.class);
   }
 
+  @Override
+  public Integer vint32(String name) {
+    return fieldDecoder.decodeValue(name, VarInt32Field.class);
+  }
+
+  @Override
+  public Long vint64(String name) {
+    return fieldDecoder.decodeValue(name, VarInt64Field.class);
+  }
+
   @Override
   public Double fp64(String name) {
     return fieldDecoder.decodeValue(name, FloatingPoint64Field.class);
@@ -89,11 +112,135 @@ public class StructDecoder<P> implements PrimitiveDecodingSupport {
     return fieldDecoder.decodeValue(name, StringField.class);
   }
 
+  @Override
+  public Utf8View utf8(String name) {
+    return fieldDecoder.decodeUtf8(name);
+  }
+
   @Override
   public ByteBuffer byteBuffer(String name) {
     return fieldDecoder.decodeValue(name, ByteBufferField.class);
   }
 
+  @Override
+  public boolean has(String name) {
+    return fieldDecoder.isPresent(name);
+  }
+
+  @Override
+  public boolean boolOrDefault(String name, boolean defaultValue) {
+    return fieldDecoder.decodeBoolean(name, defaultValue);
+  }
+
+  @Override
+  public char chrOrDefault(String name, char defaultValue) {
+    return fieldDecoder.decodeChar(name, defaultValue);
+  }
+
+  @Override
+  public int int32OrDefault(String name, int defaultValue) {
+    return fieldDecoder.decodeInt(name, defaultValue);
+  }
+
+  @Override
+  public long int64OrDefault(String name, long defaultValue) {
+    return fieldDecoder.decodeLong(name, defaultValue);
+  }
+
+  @Override
+  public int vint32OrDefault(String name, int defaultValue) {
+    return fieldDecoder.decodeVarInt(name, defaultValue);
+  }
+
+  @Override
+  public long vint64OrDefault(String name, long defaultValue) {
+    return fieldDecoder.decodeVarLong(name, defaultValue);
+  }
+
+  @Override
+  public double fp64OrDefault(String name, double defaultValue) {
+    return fieldDecoder.decodeDouble(name, defaultValue);
+  }
+
+  @Override
+  public Boolean bool(BoolHandle handle) {
+    return fieldDecoder.decodeValue(handle);
+  }
+
+  @Override
+  public Character chr(CharHandle handle) {
+    return fieldDecoder.decodeValue(handle);
+  }
+
+  @Override
+  public Integer int32(Int32Handle handle) {
+    return fieldDecoder.decodeValue(handle);
+  }
+
+  @Override
+  public <E> Enm<E> enm(EnumHandle<E> handle) {
+    Enm<E> enm = fieldDecoder.decodeValue(handle);
+    if (enm == null) {
+      return new Enm<E>(handle.name());
+    }
+    return enm;
+  }
+
+  @Override
+  public Long int64(Int64Handle handle) {
+    return fieldDecoder.decodeValue(handle);
+  }
+
+  @Override
+  public Double fp64(FloatingPoint64Handle handle) {
+    return fieldDecoder.decodeValue(handle);
+  }
+
+  @Override
+  public String string(StringHandle handle) {
+    return fieldDecoder.decodeValue(handle);
+  }
+
+  @Override
+  public Utf8View utf8(StringHandle handle) {
+    return fieldDecoder.decodeUtf8(handle);
+  }
+
+  @Override
+  public ByteBuffer byteBuffer(ByteBufferHandle handle) {
+    return fieldDecoder.decodeValue(handle);
+  }
+
+  @Override
+  public boolean has(FieldHandle<?> handle) {
+    return fieldDecoder.isPresent(handle);
+  }
+
+  @Override
+  public boolean boolOrDefault(BoolHandle handle, boolean defaultValue) {
+    return fieldDecoder.decodeBoolean(handle, defaultValue);
+  }
+
+  @Override
+  public char chrOrDefault(CharHandle handle, char defaultValue) {
+    return fieldDecoder.decodeChar(handle, defaultValue);
+  }
+
+  @Override
+  public int int32OrDefault(Int32Handle handle, int defaultValue) {
+    return fieldDecoder.decodeInt(handle, defaultValue);
+  }
+
+  @Override
+  public long int64OrDefault(Int64Handle handle, long defaultValue) {
+    return fieldDecoder.decodeLong(handle, defaultValue);
+  }
+
+  @Override
+  public double fp64OrDefault(FloatingPoint64Handle handle, double defaultValue) {
+    return fieldDecoder.decodeDouble(handle, defaultValue);
+  }
+
 
   public ArrayDecoder<Integer, StructDecoder<P>> int32s(String name) {
     return fieldDecoder.decodeValueArray(name, Int32Field.class, this);
@@ -115,6 +262,15 @@ public class StructDecoder<P> implements PrimitiveDecodingSupport {
     return fieldDecoder.decodeValueArray(name, FloatingPoint64Field.class, this);
   }
 
+  /**
+   * Decode a delta-encoded array of 64-bit integers.
+   * @param name the field name.
+   * @return the decoded values, or null if the array was absent from the data.
+   */
+  public long[] deltaInt64s(String name) {
+    return fieldDecoder.decodeValue(name, DeltaInt64ArrayField.class);
+  }
+
   public ArrayDecoder<String, StructDecoder<P>> strings(String name) {
     return fieldDecoder.decodeValueArray(name, StringField.class, this);
   }
@@ -123,6 +279,10 @@ public class StructDecoder<P> implements PrimitiveDecodingSupport {
     return fieldDecoder.decodeStruct(name, this);
   }
 
+  public StructDecoder<StructDecoder<P>> struct(StructHandle handle) {
+    return fieldDecoder.decodeStruct(handle, this);
+  }
+
   public StructArrayDecoder<StructDecoder<P>> structs(String name) {
     return fieldDecoder.decodeStructArray(name, this);
   }
@@ -0,0 +1,248 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding;
+
+import org.terracotta.runnel.utils.CorruptDataException;
+import org.terracotta.runnel.utils.StringTool;
+
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+
+/**
+ * A character string field left in its encoded form, i.e.: a view over the modified UTF-8 bytes of the buffer
+ * it was decoded from. Nothing is decoded until a method actually needs the characters, and {@link #equals(Object)},
+ * {@link #hashCode()} and {@link #contentEquals(CharSequence)} work on the raw bytes, so a view can be used to route
+ * messages or to look values up in a map keyed by views without allocating any string.
+ * <p>
+ * Since modified UTF-8 has a single encoding per character, two views are equal if and only if their strings are.
+ * Note that the hash code is computed on the bytes and hence differs from the one of the equivalent {@link String}.
+ * <p>
+ * A view shares the buffer it was decoded from, it must not be used anymore once that buffer's content changes.
+ * Note: Instances of this class are not thread-safe.
+ */
+public final class Utf8View implements CharSequence {
+
+  private final ByteBuffer bytes;
+  private final int offset;
+  private final int byteLength;
+  private int length = -1;
+  private int hash;
+  private String string;
+
+  private Utf8View(ByteBuffer bytes, int offset, int byteLength) {
+    this.bytes = bytes;
+    this.offset = offset;
+    this.byteLength = byteLength;
+  }
+
+  /**
+   * Create a view over the remaining bytes of a buffer, which must contain a modified UTF-8 encoded string.
+   * The buffer's position and limit are not modified and the bytes are not copied.
+   * @param encoded the buffer containing the encoded string.
+   * @return the view.
+   */
+  public static Utf8View wrap(ByteBuffer encoded) {
+    return wrap(encoded, encoded.position(), encoded.remaining());
+  }
+
+  /**
+   * Create a view over a range of bytes of a buffer, which must contain a modified UTF-8 encoded string.
+   * The buffer's position and limit are ignored and the bytes are not copied.
+   * @param buffer the buffer containing the encoded string.
+   * @param offset the absolute offset of the encoded string in the buffer.
+   * @param byteLength the number of bytes of the encoded string.
+   * @return the view.
+   */
+  public static Utf8View wrap(ByteBuffer buffer, int offset, int byteLength) {
+    if (offset < 0 || byteLength < 0 || offset + byteLength > buffer.capacity()) {
+      throw new IndexOutOfBoundsException("offset: " + offset + ", byteLength: " + byteLength + ", capacity: " + buffer.capacity());
+    }
+    return new Utf8View(buffer, offset, byteLength);
+  }
+
+  /**
+   * Create a view of a string, e.g.: to be used as a key to look decoded views up.
+   * @param s the string.
+   * @return the view.
+   */
+  public static Utf8View of(String s) {
+    ByteBuffer encoded = ByteBuffer.allocate(StringTool.getEncodedLength(s));
+    StringTool.putEncoded(encoded, s, s.length());
+    encoded.flip();
+    Utf8View view = wrap(encoded);
+    view.string = s;
+    return view;
+  }
+
+  /**
+   * @return the number of bytes of the encoded string.
+   */
+  public int byteLength() {
+    return byteLength;
+  }
+
+  /**
+   * @return a read-only buffer containing the encoded string, sharing the bytes of this view.
+   */
+  public ByteBuffer bytes() {
+    ByteBuffer slice = bytes.duplicate();
+    slice.limit(offset + byteLength).position(offset);
+    return slice.slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * @return true if the string is only made of 7-bit ASCII characters, i.e.: one byte per character.
+   */
+  public boolean isAscii() {
+    return length() == byteLength;
+  }
+
+  @Override
+  public int length() {
+    int length = this.length;
+    if (length < 0) {
+      // every character starts with exactly one byte that is not a continuation byte
+      length = 0;
+      for (int i = offset, end = offset + byteLength; i < end; i++) {
+        if ((bytes.get(i) & 0xC0) != 0x80) {
+          length++;
+        }
+      }
+      this.length = length;
+    }
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length()) {
+      throw new IndexOutOfBoundsException("index: " + index + ", length: " + length());
+    }
+    if (isAscii()) {
+      return (char) bytes.get(offset + index);
+    }
+    return toString().charAt(index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return toString().subSequence(start, end);
+  }
+
+  /**
+   * Compare the characters of this view with the ones of a char sequence, without decoding this view.
+   * @param cs the char sequence to compare against.
+   * @return true if both contain the same characters, false otherwise.
+   */
+  public boolean contentEquals(CharSequence cs) {
+    if (cs instanceof Utf8View) {
+      return equals(cs);
+    }
+    if (string != null) {
+      return string.contentEquals(cs);
+    }
+    int csLength = cs.length();
+    if (csLength > byteLength) {
+      return false;
+    }
+    int pos = offset;
+    int end = offset + byteLength;
+    for (int i = 0; i < csLength; i++) {
+      char c = cs.charAt(i);
+      if (c <= '\u007F' && c != '\u0000') {
+        if (pos >= end || bytes.get(pos++) != (byte) c) {
+          return false;
+        }
+      } else if (c <= '\u07FF') {
+        if (pos + 2 > end
+            || bytes.get(pos++) != (byte) (0xC0 | c >>> 6)
+            || bytes.get(pos++) != (byte) (0x80 | (c & 0x3F))) {
+          return false;
+        }
+      } else {
+        if (pos + 3 > end
+            || bytes.get(pos++) != (byte) (0xE0 | c >>> 12)
+            || bytes.get(pos++) != (byte) (0x80 | ((c >>> 6) & 0x3F))
+            || bytes.get(pos++) != (byte) (0x80 | (c & 0x3F))) {
+          return false;
+        }
+      }
+    }
+    return pos == end;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Utf8View)) {
+      return false;
+    }
+    Utf8View other = (Utf8View) o;
+    if (byteLength != other.byteLength) {
+      return false;
+    }
+    int h = hash;
+    int otherHash = other.hash;
+    if (h != 0 && otherHash != 0 && h != otherHash) {
+      return false;
+    }
+    for (int i = 0; i < byteLength; i++) {
+      if (bytes.get(offset + i) != other.bytes.get(other.offset + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      for (int i = offset, end = offset + byteLength; i < end; i++) {
+        h = 31 * h + bytes.get(i);
+      }
+      hash = h;
+    }
+    return h;
+  }
+
+  /**
+   * @return the decoded string, which is cached.
+   */
+  @Override
+  public String toString() {
+    String s = string;
+    if (s == null) {
+      ByteBuffer slice = bytes.duplicate();
+      slice.limit(offset + byteLength).position(offset);
+      try {
+        s = StringTool.attemptDecodeAsAscii(slice);
+        if (s == null) {
+          s = StringTool.decodeString(slice, byteLength);
+        }
+      } catch (UTFDataFormatException e) {
+        CorruptDataException cde = new CorruptDataException("Unexpected encoding");
+        cde.addSuppressed(e);
+        throw cde;
+      }
+      string = s;
+    }
+    return s;
+  }
+
+}
@@ -29,6 +29,10 @@ public class BoolField extends AbstractValueField<Boolean> {
 
   @Override
   public Boolean decode(ReadBuffer readBuffer) {
+    return decodeBoolean(readBuffer);
+  }
+
+  public boolean decodeBoolean(ReadBuffer readBuffer) {
     int size = readBuffer.getVlqInt();
     if (size != 1) {
       throw new CorruptDataException("Expected field size of 1, read : " + size);
@@ -29,6 +29,10 @@ public class CharField extends AbstractValueField<Character> {
 
   @Override
   public Character decode(ReadBuffer readBuffer) {
+    return decodeChar(readBuffer);
+  }
+
+  public char decodeChar(ReadBuffer readBuffer) {
     int size = readBuffer.getVlqInt();
     if (size != 2) {
       throw new CorruptDataException("Expected field size of 2, read : " + size);
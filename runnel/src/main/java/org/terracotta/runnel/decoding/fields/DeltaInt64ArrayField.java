@@ -0,0 +1,64 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding.fields;
+
+import org.terracotta.runnel.utils.CorruptDataException;
+import org.terracotta.runnel.utils.ReadBuffer;
+import org.terracotta.runnel.utils.VLQ;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * An array of 64-bit integers, each one encoded as the zigzag VLQ of its difference with the previous one.
+ * Encoding is:
+ * <pre>
+ *   index:size:length:[delta1][delta2][delta3]...
+ * </pre>
+ * Monotonic values like identifiers or timestamps hence take a byte or two each instead of 9.
+ */
+public class DeltaInt64ArrayField extends AbstractValueField<long[]> {
+
+  public DeltaInt64ArrayField(String name, int index) {
+    super(name, index);
+  }
+
+  @Override
+  public long[] decode(ReadBuffer parentBuffer) {
+    int size = parentBuffer.getVlqInt();
+    ReadBuffer readBuffer = parentBuffer.limit(size);
+    int length = readBuffer.getVlqInt();
+    if (length > size) {
+      throw new CorruptDataException("Array length " + length + " greater than its size : " + size);
+    }
+    long[] values = new long[length];
+    long value = 0L;
+    for (int i = 0; i < length; i++) {
+      value += VLQ.unZigZag(readBuffer.getVlqLong());
+      values[i] = value;
+    }
+    readBuffer.skipAll();
+    return values;
+  }
+
+  @Override
+  public void dump(ReadBuffer readBuffer, PrintStream out, int depth) {
+    out.append(" type: ").append(getClass().getSimpleName());
+    out.append(" name: ").append(name());
+    out.append(" decoded: ").append(Arrays.toString(decode(readBuffer)));
+  }
+
+}
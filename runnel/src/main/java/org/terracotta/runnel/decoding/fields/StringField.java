@@ -15,6 +15,7 @@
  */
 package org.terracotta.runnel.decoding.fields;
 
+import org.terracotta.runnel.decoding.Utf8View;
 import org.terracotta.runnel.utils.ReadBuffer;
 
 /**
@@ -31,4 +32,9 @@ public class StringField extends AbstractValueField<String> {
     return readBuffer.getString(len);
   }
 
+  public Utf8View decodeView(ReadBuffer readBuffer) {
+    int len = readBuffer.getVlqInt();
+    return readBuffer.getUtf8View(len);
+  }
+
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding.fields;
+
+import org.terracotta.runnel.utils.CorruptDataException;
+import org.terracotta.runnel.utils.ReadBuffer;
+import org.terracotta.runnel.utils.VLQ;
+
+/**
+ * A 32-bit integer encoded as a zigzag VLQ, taking from 1 byte for values of small magnitude up to 5 bytes.
+ */
+public class VarInt32Field extends AbstractValueField<Integer> {
+
+  public VarInt32Field(String name, int index) {
+    super(name, index);
+  }
+
+  @Override
+  public Integer decode(ReadBuffer readBuffer) {
+    return decodeInt(readBuffer);
+  }
+
+  public int decodeInt(ReadBuffer readBuffer) {
+    int size = readBuffer.getVlqInt();
+    if (size < 1 || size > 5) {
+      throw new CorruptDataException("Expected field size between 1 and 5, read : " + size);
+    }
+    long value = VLQ.unZigZag(readBuffer.getVlqLong());
+    if (value != (int) value) {
+      throw new CorruptDataException("Expected 32-bit integer, read : " + value);
+    }
+    return (int) value;
+  }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.decoding.fields;
+
+import org.terracotta.runnel.utils.CorruptDataException;
+import org.terracotta.runnel.utils.ReadBuffer;
+import org.terracotta.runnel.utils.VLQ;
+
+/**
+ * A 64-bit integer encoded as a zigzag VLQ, taking from 1 byte for values of small magnitude up to 10 bytes.
+ */
+public class VarInt64Field extends AbstractValueField<Long> {
+
+  public VarInt64Field(String name, int index) {
+    super(name, index);
+  }
+
+  @Override
+  public Long decode(ReadBuffer readBuffer) {
+    return decodeLong(readBuffer);
+  }
+
+  public long decodeLong(ReadBuffer readBuffer) {
+    int size = readBuffer.getVlqInt();
+    if (size < 1 || size > 10) {
+      throw new CorruptDataException("Expected field size between 1 and 10, read : " + size);
+    }
+    return VLQ.unZigZag(readBuffer.getVlqLong());
+  }
+
+}
@@ -25,13 +25,17 @@ import java.util.List;
 public abstract class ArrayEncoder<T, P> {
 
   private final P parent;
-  private final List<DataHolder> values;
+  private List<DataHolder> values;
 
   ArrayEncoder(List<DataHolder> values, P parent) {
     this.values = values;
     this.parent = parent;
   }
 
+  void reuse(List<DataHolder> values) {
+    this.values = values;
+  }
+
   public ArrayEncoder<T, P> value(T value) {
     DataHolder dataHolder = buildDataHolder(value);
     this.values.add(dataHolder);
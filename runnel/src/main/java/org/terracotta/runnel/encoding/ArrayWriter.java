@@ -0,0 +1,55 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.encoding;
+
+import org.terracotta.runnel.utils.WriteBuffer;
+
+/**
+ * Writes an array of values straight into a buffer, see {@link StructWriter}.
+ * Both the size and the length of the array are back-patched when it is ended.
+ */
+public abstract class ArrayWriter<T, P> {
+
+  private final WriteBuffer writeBuffer;
+  private final P parent;
+  private final int sizePosition;
+  private final int lengthPosition;
+  private final int lengthWidth;
+  private int length = 0;
+
+  ArrayWriter(WriteBuffer writeBuffer, P parent) {
+    this.writeBuffer = writeBuffer;
+    this.parent = parent;
+    this.sizePosition = writeBuffer.reserveVlqInt();
+    this.lengthPosition = writeBuffer.reserveVlqInt();
+    this.lengthWidth = writeBuffer.position() - lengthPosition;
+  }
+
+  public ArrayWriter<T, P> value(T value) {
+    writeValue(writeBuffer, value);
+    length++;
+    return this;
+  }
+
+  protected abstract void writeValue(WriteBuffer writeBuffer, T value);
+
+  public P end() {
+    writeBuffer.putVlqIntAt(lengthPosition, lengthWidth, length);
+    writeBuffer.putVlqIntAt(sizePosition, lengthPosition - sizePosition, writeBuffer.position() - lengthPosition);
+    return parent;
+  }
+
+}
@@ -15,10 +15,21 @@
  */
 package org.terracotta.runnel.encoding;
 
+import org.terracotta.runnel.handles.BoolHandle;
+import org.terracotta.runnel.handles.ByteBufferHandle;
+import org.terracotta.runnel.handles.CharHandle;
+import org.terracotta.runnel.handles.EnumHandle;
+import org.terracotta.runnel.handles.FloatingPoint64Handle;
+import org.terracotta.runnel.handles.Int32Handle;
+import org.terracotta.runnel.handles.Int64Handle;
+import org.terracotta.runnel.handles.StringHandle;
+
 import java.nio.ByteBuffer;
 
 /**
  * Primitive types encoder interface.
+ * Every field can be designated either by name or by a {@link org.terracotta.runnel.handles.FieldHandle} obtained
+ * from the struct, the latter saving the field lookup.
  * @param <T> The actual encoder type.
  */
 public interface PrimitiveEncodingSupport<T extends PrimitiveEncodingSupport> {
@@ -64,6 +75,22 @@ public interface PrimitiveEncodingSupport<T extends PrimitiveEncodingSupport> {
    */
   T int64(String name, long value);
 
+  /**
+   * Encode a 32-bit integer as a zigzag VLQ.
+   * @param name the field name.
+   * @param value the value to encode.
+   * @return this.
+   */
+  T vint32(String name, int value);
+
+  /**
+   * Encode a 64-bit integer as a zigzag VLQ.
+   * @param name the field name.
+   * @param value the value to encode.
+   * @return this.
+   */
+  T vint64(String name, long value);
+
   /**
    * Encode a 64-bit, double-precision floating point number.
    * @param name the field name.
@@ -88,4 +115,69 @@ public interface PrimitiveEncodingSupport<T extends PrimitiveEncodingSupport> {
    */
   T byteBuffer(String name, ByteBuffer value);
 
+  /**
+   * Encode a boolean.
+   * @param handle the field handle.
+   * @param value the value to encode.
+   * @return this.
+   */
+  T bool(BoolHandle handle, boolean value);
+
+  /**
+   * Encode a character.
+   * @param handle the field handle.
+   * @param value the value to encode.
+   * @return this.
+   */
+  T chr(CharHandle handle, char value);
+
+  /**
+   * Encode an enumeration.
+   * @param handle the field handle.
+   * @param value the boolean value to encode.
+   * @param <E> the enumration's actual type.
+   * @return this.
+   */
+  <E> T enm(EnumHandle<E> handle, E value);
+
+  /**
+   * Encode a 32-bit integer.
+   * @param handle the field handle.
+   * @param value the value to encode.
+   * @return this.
+   */
+  T int32(Int32Handle handle, int value);
+
+  /**
+   * Encode a 64-bit integer.
+   * @param handle the field handle.
+   * @param value the value to encode.
+   * @return this.
+   */
+  T int64(Int64Handle handle, long value);
+
+  /**
+   * Encode a 64-bit, double-precision floating point number.
+   * @param handle the field handle.
+   * @param value the value to encode.
+   * @return this.
+   */
+  T fp64(FloatingPoint64Handle handle, double value);
+
+  /**
+   * Encode a character string.
+   * @param handle the field handle.
+   * @param value the value to encode.
+   * @return this.
+   */
+  T string(StringHandle handle, String value);
+
+  /**
+   * Encode a byte buffer.
+   * @param handle the field handle.
+   * @param value the value to encode.
+   * @return this.
+   */
+  T byteBuffer(ByteBufferHandle handle, ByteBuffer value);
+
 }
@@ -15,29 +15,11 @@
  */
 package org.terracotta.runnel.encoding;
 
-import org.terracotta.runnel.decoding.fields.BoolField;
-import org.terracotta.runnel.decoding.fields.CharField;
-import org.terracotta.runnel.decoding.fields.EnumField;
-import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
 import org.terracotta.runnel.decoding.fields.StructField;
-import org.terracotta.runnel.encoding.dataholders.BoolDataHolder;
-import org.terracotta.runnel.encoding.dataholders.ByteBufferDataHolder;
-import org.terracotta.runnel.encoding.dataholders.CharDataHolder;
 import org.terracotta.runnel.encoding.dataholders.DataHolder;
-import org.terracotta.runnel.encoding.dataholders.EnumDataHolder;
-import org.terracotta.runnel.encoding.dataholders.FloatingPoint64DataHolder;
-import org.terracotta.runnel.encoding.dataholders.Int32DataHolder;
-import org.terracotta.runnel.encoding.dataholders.Int64DataHolder;
-import org.terracotta.runnel.encoding.dataholders.StringDataHolder;
+import org.terracotta.runnel.encoding.dataholders.DataHolderPool;
 import org.terracotta.runnel.encoding.dataholders.StructDataHolder;
-import org.terracotta.runnel.decoding.fields.ByteBufferField;
-import org.terracotta.runnel.decoding.fields.Int32Field;
-import org.terracotta.runnel.decoding.fields.Int64Field;
-import org.terracotta.runnel.metadata.FieldSearcher;
-import org.terracotta.runnel.decoding.fields.StringField;
 
-import java.nio.ByteBuffer;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -45,28 +27,42 @@ import java.util.List;
  */
 public class StructArrayEncoder<P> {
 
-  private final List<StructDataHolder> values;
+  private List<StructDataHolder> values;
   private final P parent;
   private final StructField structField;
+  private final DataHolderPool pool;
   private List<DataHolder> currentData;
+  private StructEncoder<StructArrayEncoder<P>> currentEncoder;
 
-  StructArrayEncoder(List<StructDataHolder> values, P parent, StructField structField) {
+  StructArrayEncoder(List<StructDataHolder> values, P parent, StructField structField, DataHolderPool pool) {
     this.structField = structField;
     this.values = values;
     this.parent = parent;
-    this.currentData = new ArrayList<DataHolder>();
+    this.pool = pool;
+    this.currentData = pool.list();
+  }
+
+  void reuse(List<StructDataHolder> values) {
+    this.values = values;
+    this.currentData = pool.list();
   }
 
   public StructEncoder<StructArrayEncoder<P>> add() {
     if (!currentData.isEmpty()) {
-      values.add(new StructDataHolder(currentData, -1));
+      values.add(pool.struct(currentData, -1));
+    }
+    currentData = pool.list();
+    if (currentEncoder == null || !pool.isRecycling()) {
+      currentEncoder = new StructEncoder<StructArrayEncoder<P>>(structField, currentData, this, pool);
+    } else {
+      currentEncoder.reuse(currentData);
     }
-    return new StructEncoder<StructArrayEncoder<P>>(structField, currentData = new ArrayList<DataHolder>(), this);
+    return currentEncoder;
   }
 
   public P end() {
     if (!currentData.isEmpty()) {
-      values.add(new StructDataHolder(currentData, -1));
+      values.add(pool.struct(currentData, -1));
     }
     return parent;
   }
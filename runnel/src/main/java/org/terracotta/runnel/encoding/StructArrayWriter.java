@@ -0,0 +1,71 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.encoding;
+
+import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.utils.WriteBuffer;
+
+/**
+ * Writes an array of structs straight into a buffer, see {@link StructWriter}.
+ * Both the size and the length of the array are back-patched when it is ended.
+ */
+public class StructArrayWriter<P> {
+
+  private final WriteBuffer writeBuffer;
+  private final P parent;
+  private final StructField structField;
+  private final int sizePosition;
+  private final int lengthPosition;
+  private final int lengthWidth;
+  private int length = 0;
+  private StructWriter<StructArrayWriter<P>> current;
+
+  StructArrayWriter(WriteBuffer writeBuffer, P parent, StructField structField) {
+    this.writeBuffer = writeBuffer;
+    this.parent = parent;
+    this.structField = structField;
+    this.sizePosition = writeBuffer.reserveVlqInt();
+    this.lengthPosition = writeBuffer.reserveVlqInt();
+    this.lengthWidth = writeBuffer.position() - lengthPosition;
+  }
+
+  /**
+   * Start writing a new element of the array, ending the previous one if that was not done yet.
+   * @return the element's writer.
+   */
+  public StructWriter<StructArrayWriter<P>> add() {
+    endCurrent();
+    length++;
+    return current = new StructWriter<StructArrayWriter<P>>(structField, writeBuffer, this);
+  }
+
+  public P end() {
+    endCurrent();
+    writeBuffer.putVlqIntAt(lengthPosition, lengthWidth, length);
+    writeBuffer.putVlqIntAt(sizePosition, lengthPosition - sizePosition, writeBuffer.position() - lengthPosition);
+    return parent;
+  }
+
+  private void endCurrent() {
+    if (current != null) {
+      if (!current.isEnded()) {
+        current.end();
+      }
+      current = null;
+    }
+  }
+
+}
@@ -19,31 +19,43 @@ import org.terracotta.runnel.decoding.fields.ArrayField;
 import org.terracotta.runnel.decoding.fields.BoolField;
 import org.terracotta.runnel.decoding.fields.ByteBufferField;
 import org.terracotta.runnel.decoding.fields.CharField;
+import org.terracotta.runnel.decoding.fields.DeltaInt64ArrayField;
 import org.terracotta.runnel.decoding.fields.EnumField;
+import org.terracotta.runnel.decoding.fields.Field;
 import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
 import org.terracotta.runnel.decoding.fields.Int32Field;
 import org.terracotta.runnel.decoding.fields.Int64Field;
 import org.terracotta.runnel.decoding.fields.StringField;
 import org.terracotta.runnel.decoding.fields.StructField;
-import org.terracotta.runnel.encoding.dataholders.ArrayDataHolder;
-import org.terracotta.runnel.encoding.dataholders.BoolDataHolder;
-import org.terracotta.runnel.encoding.dataholders.ByteBufferDataHolder;
-import org.terracotta.runnel.encoding.dataholders.CharDataHolder;
+import org.terracotta.runnel.decoding.fields.VarInt32Field;
+import org.terracotta.runnel.decoding.fields.VarInt64Field;
 import org.terracotta.runnel.encoding.dataholders.DataHolder;
-import org.terracotta.runnel.encoding.dataholders.EnumDataHolder;
-import org.terracotta.runnel.encoding.dataholders.FloatingPoint64DataHolder;
-import org.terracotta.runnel.encoding.dataholders.Int32DataHolder;
-import org.terracotta.runnel.encoding.dataholders.Int64DataHolder;
-import org.terracotta.runnel.encoding.dataholders.StringDataHolder;
+import org.terracotta.runnel.encoding.dataholders.DataHolderPool;
 import org.terracotta.runnel.encoding.dataholders.StructDataHolder;
+import org.terracotta.runnel.handles.BoolHandle;
+import org.terracotta.runnel.handles.ByteBufferHandle;
+import org.terracotta.runnel.handles.CharHandle;
+import org.terracotta.runnel.handles.EnumHandle;
+import org.terracotta.runnel.handles.FloatingPoint64Handle;
+import org.terracotta.runnel.handles.Int32Handle;
+import org.terracotta.runnel.handles.Int64Handle;
+import org.terracotta.runnel.handles.StringHandle;
+import org.terracotta.runnel.handles.StructHandle;
 import org.terracotta.runnel.metadata.FieldSearcher;
+import org.terracotta.runnel.utils.BufferPool;
+import org.terracotta.runnel.utils.EncodedSizeHistogram;
 import org.terracotta.runnel.utils.VLQ;
 import org.terracotta.runnel.utils.WriteBuffer;
 
 import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An encoder allows encoding structured data described by a {@link org.terracotta.runnel.Struct}.
@@ -52,58 +64,104 @@ import java.util.List;
 public class StructEncoder<P> implements PrimitiveEncodingSupport<StructEncoder<P>> {
 
   private final FieldSearcher fieldSearcher;
-  private final List<DataHolder> data;
+  private final EncodedSizeHistogram sizeHistogram;
+  private final DataHolderPool pool;
+  private final Map<Field, Object> subEncoders;
+  private List<DataHolder> data;
   private final P parent;
+  private WriteBuffer writeBuffer;
 
   public StructEncoder(StructField structField) {
-    this(structField, new ArrayList<DataHolder>(), null);
+    this(structField, DataHolderPool.allocating());
   }
 
-  StructEncoder(StructField structField, List<DataHolder> values, P parent) {
+  public StructEncoder(StructField structField, DataHolderPool pool) {
+    this(structField, new ArrayList<DataHolder>(), null, pool);
+  }
+
+  StructEncoder(StructField structField, List<DataHolder> values, P parent, DataHolderPool pool) {
     this.fieldSearcher = structField.getMetadata().fieldSearcher();
+    this.sizeHistogram = structField.getMetadata().sizeHistogram();
     this.data = values;
     this.parent = parent;
+    this.pool = pool;
+    this.subEncoders = pool.isRecycling() ? new IdentityHashMap<Field, Object>() : null;
+  }
+
+  void reuse(List<DataHolder> values) {
+    this.data = values;
+    this.fieldSearcher.reset();
+  }
+
+  /**
+   * Forget everything encoded so far so that this encoder can be used again from scratch.
+   * When this encoder recycles its data holders, all the encoders obtained from it before
+   * the reset must not be used anymore.
+   * @return this.
+   */
+  public StructEncoder<P> reset() {
+    if (parent != null) {
+      throw new IllegalStateException("Cannot reset non-root encoder");
+    }
+    data.clear();
+    fieldSearcher.reset();
+    pool.recycle();
+    return this;
   }
 
   @Override
   public StructEncoder<P> bool(String name, boolean value) {
     BoolField field = fieldSearcher.findField(name, BoolField.class, null);
-    data.add(new BoolDataHolder(value, field.index()));
+    data.add(pool.bool(value, field.index()));
     return this;
   }
 
   @Override
   public StructEncoder<P> chr(String name, char value) {
     CharField field = fieldSearcher.findField(name, CharField.class, null);
-    data.add(new CharDataHolder(value, field.index()));
+    data.add(pool.chr(value, field.index()));
     return this;
   }
 
   @Override
   public <E> StructEncoder<P> enm(String name, E value) {
     EnumField<E> field = (EnumField<E>) fieldSearcher.findField(name, EnumField.class, null);
-    data.add(new EnumDataHolder<E>(value, field.index(), field.getEnumMapping()));
+    data.add(pool.enm(value, field.index(), field.getEnumMapping()));
     return this;
   }
 
   @Override
   public StructEncoder<P> int32(String name, int value) {
     Int32Field field = fieldSearcher.findField(name, Int32Field.class, null);
-    data.add(new Int32DataHolder(value, field.index()));
+    data.add(pool.int32(value, field.index()));
     return this;
   }
 
   @Override
   public StructEncoder<P> int64(String name, long value) {
     Int64Field field = fieldSearcher.findField(name, Int64Field.class, null);
-    data.add(new Int64DataHolder(value, field.index()));
+    data.add(pool.int64(value, field.index()));
+    return this;
+  }
+
+  @Override
+  public StructEncoder<P> vint32(String name, int value) {
+    VarInt32Field field = fieldSearcher.findField(name, VarInt32Field.class, null);
+    data.add(pool.varInt(value, field.index()));
+    return this;
+  }
+
+  @Override
+  public StructEncoder<P> vint64(String name, long value) {
+    VarInt64Field field = fieldSearcher.findField(name, VarInt64Field.class, null);
+    data.add(pool.varInt(value, field.index()));
     return this;
   }
 
   @Override
   public StructEncoder<P> fp64(String name, double value) {
     FloatingPoint64Field field = fieldSearcher.findField(name, FloatingPoint64Field.class, null);
-    data.add(new FloatingPoint64DataHolder(value, field.index()));
+    data.add(pool.fp64(value, field.index()));
     return this;
   }
 
@@ -111,7 +169,7 @@ public class StructEncoder<P> implements PrimitiveEncodingSupport<StructEncoder<
   public StructEncoder<P> string(String name, String value) {
     StringField field = fieldSearcher.findField(name, StringField.class, null);
     if (value != null) {
-      data.add(new StringDataHolder(value, field.index()));
+      data.add(pool.string(value, field.index()));
     }
     return this;
   }
@@ -119,7 +177,65 @@ public class StructEncoder<P> implements PrimitiveEncodingSupport<StructEncoder<
   @Override
   public StructEncoder<P> byteBuffer(String name, ByteBuffer value) {
     ByteBufferField field = fieldSearcher.findField(name, ByteBufferField.class, null);
-    data.add(new ByteBufferDataHolder(value, field.index()));
+    data.add(pool.byteBuffer(value, field.index()));
+    return this;
+  }
+
+  @Override
+  public StructEncoder<P> bool(BoolHandle handle, boolean value) {
+    BoolField field = fieldSearcher.checkHandle(handle);
+    data.add(pool.bool(value, field.index()));
+    return this;
+  }
+
+  @Override
+  public StructEncoder<P> chr(CharHandle handle, char value) {
+    CharField field = fieldSearcher.checkHandle(handle);
+    data.add(pool.chr(value, field.index()));
+    return this;
+  }
+
+  @Override
+  public <E> StructEncoder<P> enm(EnumHandle<E> handle, E value) {
+    EnumField<E> field = fieldSearcher.checkHandle(handle);
+    data.add(pool.enm(value, field.index(), field.getEnumMapping()));
+    return this;
+  }
+
+  @Override
+  public StructEncoder<P> int32(Int32Handle handle, int value) {
+    Int32Field field = fieldSearcher.checkHandle(handle);
+    data.add(pool.int32(value, field.index()));
+    return this;
+  }
+
+  @Override
+  public StructEncoder<P> int64(Int64Handle handle, long value) {
+    Int64Field field = fieldSearcher.checkHandle(handle);
+    data.add(pool.int64(value, field.index()));
+    return this;
+  }
+
+  @Override
+  public StructEncoder<P> fp64(FloatingPoint64Handle handle, double value) {
+    FloatingPoint64Field field = fieldSearcher.checkHandle(handle);
+    data.add(pool.fp64(value, field.index()));
+    return this;
+  }
+
+  @Override
+  public StructEncoder<P> string(StringHandle handle, String value) {
+    StringField field = fieldSearcher.checkHandle(handle);
+    if (value != null) {
+      data.add(pool.string(value, field.index()));
+    }
+    return this;
+  }
+
+  @Override
+  public StructEncoder<P> byteBuffer(ByteBufferHandle handle, ByteBuffer value) {
+    ByteBufferField field = fieldSearcher.checkHandle(handle);
+    data.add(pool.byteBuffer(value, field.index()));
     return this;
   }
 
@@ -131,10 +247,24 @@ public class StructEncoder<P> implements PrimitiveEncodingSupport<StructEncoder<
   }
 
   public StructEncoder<StructEncoder<P>> struct(String name) {
-    StructField field = fieldSearcher.findField(name, StructField.class, null);
-    List<DataHolder> values = new ArrayList<DataHolder>();
-    data.add(new StructDataHolder(values, field.index()));
-    return new StructEncoder<StructEncoder<P>>(field, values, this);
+    return struct(fieldSearcher.findField(name, StructField.class, null));
+  }
+
+  public StructEncoder<StructEncoder<P>> struct(StructHandle handle) {
+    return struct(fieldSearcher.checkHandle(handle));
+  }
+
+  private StructEncoder<StructEncoder<P>> struct(StructField field) {
+    List<DataHolder> values = pool.list();
+    data.add(pool.struct(values, field.index()));
+    StructEncoder<StructEncoder<P>> subStructEncoder = subEncoder(field);
+    if (subStructEncoder == null) {
+      subStructEncoder = new StructEncoder<StructEncoder<P>>(field, values, this, pool);
+      cacheSubEncoder(field, subStructEncoder);
+    } else {
+      subStructEncoder.reuse(values);
+    }
+    return subStructEncoder;
   }
 
   public P end() {
@@ -146,81 +276,234 @@ public class StructEncoder<P> implements PrimitiveEncodingSupport<StructEncoder<
 
   public ArrayEncoder<Boolean, StructEncoder<P>> bools(String name) {
     final ArrayField field = fieldSearcher.findField(name, ArrayField.class, BoolField.class);
-    List<DataHolder> values = new ArrayList<DataHolder>();
-    data.add(new ArrayDataHolder(values, field.index()));
-    return new ArrayEncoder<Boolean, StructEncoder<P>>(values, this) {
-      @Override
-      protected DataHolder buildDataHolder(Boolean value) {
-        return new BoolDataHolder(value, field.index());
-      }
-    };
+    List<DataHolder> values = pool.list();
+    data.add(pool.array(values, field.index()));
+    ArrayEncoder<Boolean, StructEncoder<P>> arrayEncoder = subEncoder(field);
+    if (arrayEncoder == null) {
+      arrayEncoder = new ArrayEncoder<Boolean, StructEncoder<P>>(values, this) {
+        @Override
+        protected DataHolder buildDataHolder(Boolean value) {
+          return pool.bool(value, field.index());
+        }
+      };
+      cacheSubEncoder(field, arrayEncoder);
+    } else {
+      arrayEncoder.reuse(values);
+    }
+    return arrayEncoder;
   }
 
   public ArrayEncoder<Character, StructEncoder<P>> chrs(String name) {
     final ArrayField field = fieldSearcher.findField(name, ArrayField.class, CharField.class);
-    List<DataHolder> values = new ArrayList<DataHolder>();
-    data.add(new ArrayDataHolder(values, field.index()));
-    return new ArrayEncoder<Character, StructEncoder<P>>(values, this) {
-      @Override
-      protected DataHolder buildDataHolder(Character value) {
-        return new CharDataHolder(value, field.index());
-      }
-    };
+    List<DataHolder> values = pool.list();
+    data.add(pool.array(values, field.index()));
+    ArrayEncoder<Character, StructEncoder<P>> arrayEncoder = subEncoder(field);
+    if (arrayEncoder == null) {
+      arrayEncoder = new ArrayEncoder<Character, StructEncoder<P>>(values, this) {
+        @Override
+        protected DataHolder buildDataHolder(Character value) {
+          return pool.chr(value, field.index());
+        }
+      };
+      cacheSubEncoder(field, arrayEncoder);
+    } else {
+      arrayEncoder.reuse(values);
+    }
+    return arrayEncoder;
   }
 
   public ArrayEncoder<Integer, StructEncoder<P>> int32s(String name) {
     final ArrayField field = fieldSearcher.findField(name, ArrayField.class, Int32Field.class);
-    List<DataHolder> values = new ArrayList<DataHolder>();
-    data.add(new ArrayDataHolder(values, field.index()));
-    return new ArrayEncoder<Integer, StructEncoder<P>>(values, this) {
-      @Override
-      protected DataHolder buildDataHolder(Integer value) {
-        return new Int32DataHolder(value, field.index());
-      }
-    };
+    List<DataHolder> values = pool.list();
+    data.add(pool.array(values, field.index()));
+    ArrayEncoder<Integer, StructEncoder<P>> arrayEncoder = subEncoder(field);
+    if (arrayEncoder == null) {
+      arrayEncoder = new ArrayEncoder<Integer, StructEncoder<P>>(values, this) {
+        @Override
+        protected DataHolder buildDataHolder(Integer value) {
+          return pool.int32(value, field.index());
+        }
+      };
+      cacheSubEncoder(field, arrayEncoder);
+    } else {
+      arrayEncoder.reuse(values);
+    }
+    return arrayEncoder;
   }
 
   public ArrayEncoder<Long, StructEncoder<P>> int64s(String name) {
     final ArrayField field = fieldSearcher.findField(name, ArrayField.class, Int64Field.class);
-    List<DataHolder> values = new ArrayList<DataHolder>();
-    data.add(new ArrayDataHolder(values, field.index()));
-    return new ArrayEncoder<Long, StructEncoder<P>>(values, this) {
-      @Override
-      protected DataHolder buildDataHolder(Long value) {
-        return new Int64DataHolder(value, field.index());
-      }
-    };
+    List<DataHolder> values = pool.list();
+    data.add(pool.array(values, field.index()));
+    ArrayEncoder<Long, StructEncoder<P>> arrayEncoder = subEncoder(field);
+    if (arrayEncoder == null) {
+      arrayEncoder = new ArrayEncoder<Long, StructEncoder<P>>(values, this) {
+        @Override
+        protected DataHolder buildDataHolder(Long value) {
+          return pool.int64(value, field.index());
+        }
+      };
+      cacheSubEncoder(field, arrayEncoder);
+    } else {
+      arrayEncoder.reuse(values);
+    }
+    return arrayEncoder;
   }
 
   public ArrayEncoder<Double, StructEncoder<P>> fp64s(String name) {
     final ArrayField field = fieldSearcher.findField(name, ArrayField.class, FloatingPoint64Field.class);
-    List<DataHolder> values = new ArrayList<DataHolder>();
-    data.add(new ArrayDataHolder(values, field.index()));
-    return new ArrayEncoder<Double, StructEncoder<P>>(values, this) {
-      @Override
-      protected DataHolder buildDataHolder(Double value) {
-        return new FloatingPoint64DataHolder(value, field.index());
-      }
-    };
+    List<DataHolder> values = pool.list();
+    data.add(pool.array(values, field.index()));
+    ArrayEncoder<Double, StructEncoder<P>> arrayEncoder = subEncoder(field);
+    if (arrayEncoder == null) {
+      arrayEncoder = new ArrayEncoder<Double, StructEncoder<P>>(values, this) {
+        @Override
+        protected DataHolder buildDataHolder(Double value) {
+          return pool.fp64(value, field.index());
+        }
+      };
+      cacheSubEncoder(field, arrayEncoder);
+    } else {
+      arrayEncoder.reuse(values);
+    }
+    return arrayEncoder;
+  }
+
+  /**
+   * Encode a whole array of 32-bit integers at once, without boxing them.
+   * The values are not copied, they must not be modified until the encoding is done.
+   * @param name the field name.
+   * @param values the values.
+   * @return this encoder.
+   */
+  public StructEncoder<P> int32s(String name, int[] values) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, Int32Field.class);
+    data.add(pool.int32s(values, field.index()));
+    return this;
+  }
+
+  /**
+   * Encode the remaining 32-bit integers of a buffer at once, without boxing them nor modifying the buffer's position.
+   * The values are not copied, they must not be modified until the encoding is done.
+   * @param name the field name.
+   * @param values the values.
+   * @return this encoder.
+   */
+  public StructEncoder<P> int32s(String name, IntBuffer values) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, Int32Field.class);
+    data.add(pool.int32s(values, field.index()));
+    return this;
+  }
+
+  /**
+   * Encode a whole array of 64-bit integers at once, without boxing them.
+   * The values are not copied, they must not be modified until the encoding is done.
+   * @param name the field name.
+   * @param values the values.
+   * @return this encoder.
+   */
+  public StructEncoder<P> int64s(String name, long[] values) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, Int64Field.class);
+    data.add(pool.int64s(values, field.index()));
+    return this;
+  }
+
+  /**
+   * Encode the remaining 64-bit integers of a buffer at once, without boxing them nor modifying the buffer's position.
+   * The values are not copied, they must not be modified until the encoding is done.
+   * @param name the field name.
+   * @param values the values.
+   * @return this encoder.
+   */
+  public StructEncoder<P> int64s(String name, LongBuffer values) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, Int64Field.class);
+    data.add(pool.int64s(values, field.index()));
+    return this;
+  }
+
+  /**
+   * Encode a whole array of 64-bit floating point numbers at once, without boxing them.
+   * The values are not copied, they must not be modified until the encoding is done.
+   * @param name the field name.
+   * @param values the values.
+   * @return this encoder.
+   */
+  public StructEncoder<P> fp64s(String name, double[] values) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, FloatingPoint64Field.class);
+    data.add(pool.fp64s(values, field.index()));
+    return this;
+  }
+
+  /**
+   * Encode the remaining 64-bit floating point numbers of a buffer at once, without boxing them nor modifying the buffer's position.
+   * The values are not copied, they must not be modified until the encoding is done.
+   * @param name the field name.
+   * @param values the values.
+   * @return this encoder.
+   */
+  public StructEncoder<P> fp64s(String name, DoubleBuffer values) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, FloatingPoint64Field.class);
+    data.add(pool.fp64s(values, field.index()));
+    return this;
+  }
+
+  /**
+   * Encode a whole delta-encoded array of 64-bit integers.
+   * The values are not copied, they must not be modified until the encoding is done.
+   * @param name the field name.
+   * @param values the values.
+   * @return this encoder.
+   */
+  public StructEncoder<P> deltaInt64s(String name, long[] values) {
+    DeltaInt64ArrayField field = fieldSearcher.findField(name, DeltaInt64ArrayField.class, null);
+    data.add(pool.deltaInt64s(values, field.index()));
+    return this;
+  }
+
+  /**
+   * Encode the remaining 64-bit integers of a buffer as a delta-encoded array, without modifying the buffer's position.
+   * The values are not copied, they must not be modified until the encoding is done.
+   * @param name the field name.
+   * @param values the values.
+   * @return this encoder.
+   */
+  public StructEncoder<P> deltaInt64s(String name, LongBuffer values) {
+    DeltaInt64ArrayField field = fieldSearcher.findField(name, DeltaInt64ArrayField.class, null);
+    data.add(pool.deltaInt64s(values, field.index()));
+    return this;
   }
 
   public ArrayEncoder<String, StructEncoder<P>> strings(String name) {
     final ArrayField field = fieldSearcher.findField(name, ArrayField.class, StringField.class);
-    List<DataHolder> values = new ArrayList<DataHolder>();
-    data.add(new ArrayDataHolder(values, field.index()));
-    return new ArrayEncoder<String, StructEncoder<P>>(values, this) {
-      @Override
-      protected DataHolder buildDataHolder(String value) {
-        return new StringDataHolder(value, field.index());
-      }
-    };
+    List<DataHolder> values = pool.list();
+    data.add(pool.array(values, field.index()));
+    ArrayEncoder<String, StructEncoder<P>> arrayEncoder = subEncoder(field);
+    if (arrayEncoder == null) {
+      arrayEncoder = new ArrayEncoder<String, StructEncoder<P>>(values, this) {
+        @Override
+        protected DataHolder buildDataHolder(String value) {
+          return pool.string(value, field.index());
+        }
+      };
+      cacheSubEncoder(field, arrayEncoder);
+    } else {
+      arrayEncoder.reuse(values);
+    }
+    return arrayEncoder;
   }
 
   public StructArrayEncoder<StructEncoder<P>> structs(String name) {
     final ArrayField field = fieldSearcher.findField(name, ArrayField.class, StructField.class);
-    List<StructDataHolder> values = new ArrayList<StructDataHolder>();
-    data.add(new ArrayDataHolder(values, field.index()));
-    return new StructArrayEncoder<StructEncoder<P>>(values, this, ((StructField) field.subField()));
+    List<StructDataHolder> values = pool.list();
+    data.add(pool.array(values, field.index()));
+    StructArrayEncoder<StructEncoder<P>> structArrayEncoder = subEncoder(field);
+    if (structArrayEncoder == null) {
+      structArrayEncoder = new StructArrayEncoder<StructEncoder<P>>(values, this, ((StructField) field.subField()), pool);
+      cacheSubEncoder(field, structArrayEncoder);
+    } else {
+      structArrayEncoder.reuse(values);
+    }
+    return structArrayEncoder;
   }
 
   public <T> StructEncoder<P> structs(String name, T[] array, StructEncoderFunction<T> function) {
@@ -237,8 +520,36 @@ public class StructEncoder<P> implements PrimitiveEncodingSupport<StructEncoder<
   }
 
 
+  @SuppressWarnings("unchecked")
+  private <E> E subEncoder(Field field) {
+    if (subEncoders == null) {
+      return null;
+    }
+    return (E) subEncoders.get(field);
+  }
+
+  private void cacheSubEncoder(Field field, Object subEncoder) {
+    if (subEncoders != null) {
+      subEncoders.put(field, subEncoder);
+    }
+  }
+
+  /**
+   * Calculate the size the encoded structure is going to take, size prefix included.
+   * This is the minimum amount of bytes the buffer passed to {@link #encode(ByteBuffer)} must have remaining.
+   * @return the encoded size.
+   */
+  public int encodedSize() {
+    if (parent != null) {
+      throw new IllegalStateException("Cannot encode non-root encoder");
+    }
+    int size = calculateSize();
+    return size + VLQ.encodedSize(size);
+  }
+
   /**
    * Encode the structure in the passed byte buffer.
+   * The buffer can be a heap or a direct one, its position is advanced by the encoded size.
    * @param bb the byte buffer to fill with the encoded structure.
    * @return the passed-in byte buffer.
    */
@@ -264,6 +575,22 @@ public class StructEncoder<P> implements PrimitiveEncodingSupport<StructEncoder<
     return performEncoding(bb, size);
   }
 
+  /**
+   * Size the structure and encode it in a byte buffer acquired from the passed pool.
+   * The returned buffer's position is advanced by the encoded size, as with {@link #encode(ByteBuffer)}, and it must
+   * be released to the pool once the encoded structure has been consumed.
+   * @param bufferPool the pool to acquire the byte buffer from.
+   * @return the encoded structure in a pooled byte buffer.
+   */
+  public ByteBuffer encode(BufferPool bufferPool) {
+    if (parent != null) {
+      throw new IllegalStateException("Cannot encode non-root encoder");
+    }
+    int size = calculateSize();
+    ByteBuffer bb = bufferPool.acquire(size + VLQ.encodedSize(size));
+    return performEncoding(bb, size);
+  }
+
   private int calculateSize() {
     int size = 0;
     for (DataHolder dataHolder : data) {
@@ -273,13 +600,20 @@ public class StructEncoder<P> implements PrimitiveEncodingSupport<StructEncoder<
   }
 
   private ByteBuffer performEncoding(ByteBuffer bb, int size) {
-    WriteBuffer writeBuffer = new WriteBuffer(bb);
+    WriteBuffer writeBuffer = this.writeBuffer;
+    if (writeBuffer == null || !writeBuffer.wraps(bb)) {
+      writeBuffer = new WriteBuffer(bb);
+      if (pool.isRecycling()) {
+        this.writeBuffer = writeBuffer;
+      }
+    }
     writeBuffer.putVlqInt(size);
 
     for (DataHolder dataHolder : data) {
       dataHolder.encode(writeBuffer, true);
     }
 
+    sizeHistogram.record(size + VLQ.encodedSize(size));
     return bb;
   }
 
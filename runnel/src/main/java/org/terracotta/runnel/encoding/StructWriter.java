@@ -0,0 +1,527 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.encoding;
+
+import org.terracotta.runnel.decoding.fields.ArrayField;
+import org.terracotta.runnel.decoding.fields.BoolField;
+import org.terracotta.runnel.decoding.fields.ByteBufferField;
+import org.terracotta.runnel.decoding.fields.CharField;
+import org.terracotta.runnel.decoding.fields.DeltaInt64ArrayField;
+import org.terracotta.runnel.decoding.fields.EnumField;
+import org.terracotta.runnel.decoding.fields.Field;
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.decoding.fields.StringField;
+import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.decoding.fields.VarInt32Field;
+import org.terracotta.runnel.decoding.fields.VarInt64Field;
+import org.terracotta.runnel.handles.BoolHandle;
+import org.terracotta.runnel.handles.ByteBufferHandle;
+import org.terracotta.runnel.handles.CharHandle;
+import org.terracotta.runnel.handles.EnumHandle;
+import org.terracotta.runnel.handles.FloatingPoint64Handle;
+import org.terracotta.runnel.handles.Int32Handle;
+import org.terracotta.runnel.handles.Int64Handle;
+import org.terracotta.runnel.handles.StringHandle;
+import org.terracotta.runnel.handles.StructHandle;
+import org.terracotta.runnel.metadata.FieldSearcher;
+import org.terracotta.runnel.utils.EncodedSizeHistogram;
+import org.terracotta.runnel.utils.StringTool;
+import org.terracotta.runnel.utils.VLQ;
+import org.terracotta.runnel.utils.WriteBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * A writer allows encoding structured data described by a {@link org.terracotta.runnel.Struct} in a single pass,
+ * straight into a byte buffer, without building an intermediate representation first.
+ * <p>
+ * Struct and array sizes are not known until they are ended, so space is reserved for their size prefix, large
+ * enough for whatever is left in the buffer, and back-patched once the size is known. When the size needs less
+ * bytes than reserved, the prefix is padded with leading zero VLQ groups which any decoder skips over, so the
+ * written data can be read by any version of the decoders, it may only be a few bytes larger than what a
+ * {@link StructEncoder} produces.
+ * <p>
+ * A {@link java.nio.BufferOverflowException} is thrown when the buffer is too small.
+ * Note: Instances of this class are not thread-safe.
+ */
+public class StructWriter<P> implements PrimitiveEncodingSupport<StructWriter<P>> {
+
+  private final FieldSearcher fieldSearcher;
+  private final EncodedSizeHistogram sizeHistogram;
+  private final WriteBuffer writeBuffer;
+  private final P parent;
+  private final int sizePosition;
+  private final int sizeWidth;
+  private boolean ended = false;
+
+  public StructWriter(StructField structField, ByteBuffer byteBuffer) {
+    this(structField, new WriteBuffer(byteBuffer), null);
+  }
+
+  StructWriter(StructField structField, WriteBuffer writeBuffer, P parent) {
+    this.fieldSearcher = structField.getMetadata().fieldSearcher();
+    this.sizeHistogram = structField.getMetadata().sizeHistogram();
+    this.writeBuffer = writeBuffer;
+    this.parent = parent;
+    this.sizePosition = writeBuffer.reserveVlqInt();
+    this.sizeWidth = writeBuffer.position() - sizePosition;
+  }
+
+  @Override
+  public StructWriter<P> bool(String name, boolean value) {
+    return bool(fieldSearcher.findField(name, BoolField.class, null), value);
+  }
+
+  @Override
+  public StructWriter<P> chr(String name, char value) {
+    return chr(fieldSearcher.findField(name, CharField.class, null), value);
+  }
+
+  @Override
+  public <E> StructWriter<P> enm(String name, E value) {
+    return enm((EnumField<E>) fieldSearcher.findField(name, EnumField.class, null), value);
+  }
+
+  @Override
+  public StructWriter<P> int32(String name, int value) {
+    return int32(fieldSearcher.findField(name, Int32Field.class, null), value);
+  }
+
+  @Override
+  public StructWriter<P> int64(String name, long value) {
+    return int64(fieldSearcher.findField(name, Int64Field.class, null), value);
+  }
+
+  @Override
+  public StructWriter<P> vint32(String name, int value) {
+    return varInt(fieldSearcher.findField(name, VarInt32Field.class, null), value);
+  }
+
+  @Override
+  public StructWriter<P> vint64(String name, long value) {
+    return varInt(fieldSearcher.findField(name, VarInt64Field.class, null), value);
+  }
+
+  @Override
+  public StructWriter<P> fp64(String name, double value) {
+    return fp64(fieldSearcher.findField(name, FloatingPoint64Field.class, null), value);
+  }
+
+  @Override
+  public StructWriter<P> string(String name, String value) {
+    return string(fieldSearcher.findField(name, StringField.class, null), value);
+  }
+
+  @Override
+  public StructWriter<P> byteBuffer(String name, ByteBuffer value) {
+    return byteBuffer(fieldSearcher.findField(name, ByteBufferField.class, null), value);
+  }
+
+  @Override
+  public StructWriter<P> bool(BoolHandle handle, boolean value) {
+    return bool(fieldSearcher.checkHandle(handle), value);
+  }
+
+  @Override
+  public StructWriter<P> chr(CharHandle handle, char value) {
+    return chr(fieldSearcher.checkHandle(handle), value);
+  }
+
+  @Override
+  public <E> StructWriter<P> enm(EnumHandle<E> handle, E value) {
+    return enm(fieldSearcher.checkHandle(handle), value);
+  }
+
+  @Override
+  public StructWriter<P> int32(Int32Handle handle, int value) {
+    return int32(fieldSearcher.checkHandle(handle), value);
+  }
+
+  @Override
+  public StructWriter<P> int64(Int64Handle handle, long value) {
+    return int64(fieldSearcher.checkHandle(handle), value);
+  }
+
+  @Override
+  public StructWriter<P> fp64(FloatingPoint64Handle handle, double value) {
+    return fp64(fieldSearcher.checkHandle(handle), value);
+  }
+
+  @Override
+  public StructWriter<P> string(StringHandle handle, String value) {
+    return string(fieldSearcher.checkHandle(handle), value);
+  }
+
+  @Override
+  public StructWriter<P> byteBuffer(ByteBufferHandle handle, ByteBuffer value) {
+    return byteBuffer(fieldSearcher.checkHandle(handle), value);
+  }
+
+  private StructWriter<P> bool(BoolField field, boolean value) {
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(1);
+    writeBuffer.putBoolean(value);
+    return this;
+  }
+
+  private StructWriter<P> chr(CharField field, char value) {
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(2);
+    writeBuffer.putChar(value);
+    return this;
+  }
+
+  private <E> StructWriter<P> enm(EnumField<E> field, E value) {
+    int intValue = field.getEnumMapping().toInt(value);
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(VLQ.encodedSize(intValue));
+    writeBuffer.putVlqInt(intValue);
+    return this;
+  }
+
+  private StructWriter<P> int32(Int32Field field, int value) {
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(4);
+    writeBuffer.putInt(value);
+    return this;
+  }
+
+  private StructWriter<P> int64(Int64Field field, long value) {
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(8);
+    writeBuffer.putLong(value);
+    return this;
+  }
+
+  private StructWriter<P> varInt(Field field, long value) {
+    long zigZag = VLQ.zigZag(value);
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(VLQ.encodedSizeUnsigned(zigZag));
+    writeBuffer.putVlqLong(zigZag);
+    return this;
+  }
+
+  private StructWriter<P> fp64(FloatingPoint64Field field, double value) {
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(8);
+    writeBuffer.putDouble(value);
+    return this;
+  }
+
+  private StructWriter<P> string(StringField field, String value) {
+    if (value != null) {
+      writeBuffer.putVlqInt(field.index());
+      writeString(writeBuffer, value);
+    }
+    return this;
+  }
+
+  private StructWriter<P> byteBuffer(ByteBufferField field, ByteBuffer value) {
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(value.remaining());
+    writeBuffer.putByteBuffer(value);
+    return this;
+  }
+
+  public <T> StructWriter<P> struct(String name, T value, StructWriterFunction<T> function) {
+    StructWriter<StructWriter<P>> subStructWriter = struct(name);
+    function.write(subStructWriter, value);
+    subStructWriter.end();
+    return this;
+  }
+
+  public StructWriter<StructWriter<P>> struct(String name) {
+    return struct(fieldSearcher.findField(name, StructField.class, null));
+  }
+
+  public StructWriter<StructWriter<P>> struct(StructHandle handle) {
+    return struct(fieldSearcher.checkHandle(handle));
+  }
+
+  private StructWriter<StructWriter<P>> struct(StructField field) {
+    writeBuffer.putVlqInt(field.index());
+    return new StructWriter<StructWriter<P>>(field, writeBuffer, this);
+  }
+
+  public ArrayWriter<Boolean, StructWriter<P>> bools(String name) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, BoolField.class);
+    writeBuffer.putVlqInt(field.index());
+    return new ArrayWriter<Boolean, StructWriter<P>>(writeBuffer, this) {
+      @Override
+      protected void writeValue(WriteBuffer writeBuffer, Boolean value) {
+        writeBuffer.putVlqInt(1);
+        writeBuffer.putBoolean(value);
+      }
+    };
+  }
+
+  public ArrayWriter<Character, StructWriter<P>> chrs(String name) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, CharField.class);
+    writeBuffer.putVlqInt(field.index());
+    return new ArrayWriter<Character, StructWriter<P>>(writeBuffer, this) {
+      @Override
+      protected void writeValue(WriteBuffer writeBuffer, Character value) {
+        writeBuffer.putVlqInt(2);
+        writeBuffer.putChar(value);
+      }
+    };
+  }
+
+  public ArrayWriter<Integer, StructWriter<P>> int32s(String name) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, Int32Field.class);
+    writeBuffer.putVlqInt(field.index());
+    return new ArrayWriter<Integer, StructWriter<P>>(writeBuffer, this) {
+      @Override
+      protected void writeValue(WriteBuffer writeBuffer, Integer value) {
+        writeBuffer.putVlqInt(4);
+        writeBuffer.putInt(value);
+      }
+    };
+  }
+
+  public ArrayWriter<Long, StructWriter<P>> int64s(String name) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, Int64Field.class);
+    writeBuffer.putVlqInt(field.index());
+    return new ArrayWriter<Long, StructWriter<P>>(writeBuffer, this) {
+      @Override
+      protected void writeValue(WriteBuffer writeBuffer, Long value) {
+        writeBuffer.putVlqInt(8);
+        writeBuffer.putLong(value);
+      }
+    };
+  }
+
+  public ArrayWriter<Double, StructWriter<P>> fp64s(String name) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, FloatingPoint64Field.class);
+    writeBuffer.putVlqInt(field.index());
+    return new ArrayWriter<Double, StructWriter<P>>(writeBuffer, this) {
+      @Override
+      protected void writeValue(WriteBuffer writeBuffer, Double value) {
+        writeBuffer.putVlqInt(8);
+        writeBuffer.putDouble(value);
+      }
+    };
+  }
+
+  /**
+   * Write a whole array of 32-bit integers at once, without boxing them.
+   * @param name the field name.
+   * @param values the values.
+   * @return this writer.
+   */
+  public StructWriter<P> int32s(String name, int[] values) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, Int32Field.class);
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(VLQ.encodedSize(values.length) + values.length * (1 + 4));
+    writeBuffer.putVlqInt(values.length);
+    writeBuffer.putInts(values, 0, values.length);
+    return this;
+  }
+
+  /**
+   * Write the remaining 32-bit integers of a buffer at once, without boxing them nor modifying the buffer's position.
+   * @param name the field name.
+   * @param values the values.
+   * @return this writer.
+   */
+  public StructWriter<P> int32s(String name, IntBuffer values) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, Int32Field.class);
+    int length = values.remaining();
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(VLQ.encodedSize(length) + length * (1 + 4));
+    writeBuffer.putVlqInt(length);
+    writeBuffer.putInts(values);
+    return this;
+  }
+
+  /**
+   * Write a whole array of 64-bit integers at once, without boxing them.
+   * @param name the field name.
+   * @param values the values.
+   * @return this writer.
+   */
+  public StructWriter<P> int64s(String name, long[] values) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, Int64Field.class);
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(VLQ.encodedSize(values.length) + values.length * (1 + 8));
+    writeBuffer.putVlqInt(values.length);
+    writeBuffer.putLongs(values, 0, values.length);
+    return this;
+  }
+
+  /**
+   * Write the remaining 64-bit integers of a buffer at once, without boxing them nor modifying the buffer's position.
+   * @param name the field name.
+   * @param values the values.
+   * @return this writer.
+   */
+  public StructWriter<P> int64s(String name, LongBuffer values) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, Int64Field.class);
+    int length = values.remaining();
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(VLQ.encodedSize(length) + length * (1 + 8));
+    writeBuffer.putVlqInt(length);
+    writeBuffer.putLongs(values);
+    return this;
+  }
+
+  /**
+   * Write a whole array of 64-bit floating point numbers at once, without boxing them.
+   * @param name the field name.
+   * @param values the values.
+   * @return this writer.
+   */
+  public StructWriter<P> fp64s(String name, double[] values) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, FloatingPoint64Field.class);
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(VLQ.encodedSize(values.length) + values.length * (1 + 8));
+    writeBuffer.putVlqInt(values.length);
+    writeBuffer.putDoubles(values, 0, values.length);
+    return this;
+  }
+
+  /**
+   * Write the remaining 64-bit floating point numbers of a buffer at once, without boxing them nor modifying the buffer's position.
+   * @param name the field name.
+   * @param values the values.
+   * @return this writer.
+   */
+  public StructWriter<P> fp64s(String name, DoubleBuffer values) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, FloatingPoint64Field.class);
+    int length = values.remaining();
+    writeBuffer.putVlqInt(field.index());
+    writeBuffer.putVlqInt(VLQ.encodedSize(length) + length * (1 + 8));
+    writeBuffer.putVlqInt(length);
+    writeBuffer.putDoubles(values);
+    return this;
+  }
+
+  /**
+   * Write a whole delta-encoded array of 64-bit integers.
+   * @param name the field name.
+   * @param values the values.
+   * @return this writer.
+   */
+  public StructWriter<P> deltaInt64s(String name, long[] values) {
+    return deltaInt64s(name, LongBuffer.wrap(values));
+  }
+
+  /**
+   * Write the remaining 64-bit integers of a buffer as a delta-encoded array, without modifying the buffer's position.
+   * @param name the field name.
+   * @param values the values.
+   * @return this writer.
+   */
+  public StructWriter<P> deltaInt64s(String name, LongBuffer values) {
+    DeltaInt64ArrayField field = fieldSearcher.findField(name, DeltaInt64ArrayField.class, null);
+    writeBuffer.putVlqInt(field.index());
+    int sizePosition = writeBuffer.reserveVlqInt();
+    int lengthPosition = writeBuffer.position();
+    writeBuffer.putVlqInt(values.remaining());
+    long previous = 0L;
+    for (int i = values.position(); i < values.limit(); i++) {
+      long value = values.get(i);
+      writeBuffer.putVlqLong(VLQ.zigZag(value - previous));
+      previous = value;
+    }
+    writeBuffer.putVlqIntAt(sizePosition, lengthPosition - sizePosition, writeBuffer.position() - lengthPosition);
+    return this;
+  }
+
+  public ArrayWriter<String, StructWriter<P>> strings(String name) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, StringField.class);
+    writeBuffer.putVlqInt(field.index());
+    return new ArrayWriter<String, StructWriter<P>>(writeBuffer, this) {
+      @Override
+      protected void writeValue(WriteBuffer writeBuffer, String value) {
+        writeString(writeBuffer, value);
+      }
+    };
+  }
+
+  public StructArrayWriter<StructWriter<P>> structs(String name) {
+    ArrayField field = fieldSearcher.findField(name, ArrayField.class, StructField.class);
+    writeBuffer.putVlqInt(field.index());
+    return new StructArrayWriter<StructWriter<P>>(writeBuffer, this, ((StructField) field.subField()));
+  }
+
+  public <T> StructWriter<P> structs(String name, T[] array, StructWriterFunction<T> function) {
+    return structs(name, Arrays.asList(array), function);
+  }
+
+  public <T> StructWriter<P> structs(String name, Iterable<T> iterable, StructWriterFunction<T> function) {
+    StructArrayWriter<StructWriter<P>> subStructArrayWriter = structs(name);
+    for (T t : iterable) {
+      StructWriter<StructArrayWriter<StructWriter<P>>> elementWriter = subStructArrayWriter.add();
+      function.write(elementWriter, t);
+      elementWriter.end();
+    }
+    subStructArrayWriter.end();
+    return this;
+  }
+
+  /**
+   * End the writing of a sub-structure. Every sub-structure and array must be ended before writing the next field
+   * of its enclosing structure.
+   * @return the parent writer.
+   */
+  public P end() {
+    if (parent == null) {
+      throw new IllegalStateException("Cannot end root writer");
+    }
+    backPatchSize();
+    return parent;
+  }
+
+  boolean isEnded() {
+    return ended;
+  }
+
+  /**
+   * Complete the writing of the structure.
+   * @return the byte buffer the structure was written to, positioned right after the structure.
+   */
+  public ByteBuffer finish() {
+    if (parent != null) {
+      throw new IllegalStateException("Cannot finish non-root writer");
+    }
+    int size = backPatchSize();
+    sizeHistogram.record(size + sizeWidth);
+    return writeBuffer.getByteBuffer();
+  }
+
+  private int backPatchSize() {
+    if (ended) {
+      throw new IllegalStateException("Writer already ended");
+    }
+    ended = true;
+    int size = writeBuffer.position() - sizePosition - sizeWidth;
+    writeBuffer.putVlqIntAt(sizePosition, sizeWidth, size);
+    return size;
+  }
+
+  private static void writeString(WriteBuffer writeBuffer, String value) {
+    writeBuffer.putVlqInt(StringTool.getEncodedLength(value));
+    StringTool.putEncoded(writeBuffer.getByteBuffer(), value, value.length());
+  }
+
+}
@@ -23,12 +23,16 @@ import org.terracotta.runnel.utils.WriteBuffer;
  */
 public abstract class AbstractDataHolder implements DataHolder {
 
-  private final int index;
+  private int index;
 
   protected AbstractDataHolder(int index) {
     this.index = index;
   }
 
+  void reuse(int index) {
+    this.index = index;
+  }
+
   @Override
   public final int size(boolean withIndex) {
     int dataSize = valueSize();
@@ -22,13 +22,18 @@ import org.terracotta.runnel.utils.WriteBuffer;
  */
 public class BoolDataHolder extends AbstractDataHolder {
 
-  private final boolean value;
+  private boolean value;
 
   public BoolDataHolder(boolean value, int index) {
     super(index);
     this.value = value;
   }
 
+  void reuse(boolean value, int index) {
+    reuse(index);
+    this.value = value;
+  }
+
   @Override
   protected int valueSize() {
     return 1;
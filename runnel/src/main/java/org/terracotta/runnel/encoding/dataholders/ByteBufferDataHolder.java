@@ -24,13 +24,18 @@ import java.nio.ByteBuffer;
  */
 public class ByteBufferDataHolder extends AbstractDataHolder {
 
-  private final ByteBuffer value;
+  private ByteBuffer value;
 
   public ByteBufferDataHolder(ByteBuffer value, int index) {
     super(index);
     this.value = value;
   }
 
+  void reuse(ByteBuffer value, int index) {
+    reuse(index);
+    this.value = value;
+  }
+
   @Override
   protected int valueSize() {
     return value.remaining();
@@ -22,13 +22,18 @@ import org.terracotta.runnel.utils.WriteBuffer;
  */
 public class CharDataHolder extends AbstractDataHolder {
 
-  private final char value;
+  private char value;
 
   public CharDataHolder(char value, int index) {
     super(index);
     this.value = value;
   }
 
+  void reuse(char value, int index) {
+    reuse(index);
+    this.value = value;
+  }
+
   @Override
   protected int valueSize() {
     return 2;
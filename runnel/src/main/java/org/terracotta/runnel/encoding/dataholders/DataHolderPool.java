@@ -0,0 +1,326 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.encoding.dataholders;
+
+import org.terracotta.runnel.EnumMapping;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Source of the data holders used by an encoder.
+ * A recycling pool hands out the same holder instances again after {@link #recycle()} was called, so that
+ * an encoder reused over and over stops allocating once warmed up. The allocating pool simply creates new
+ * holders and is stateless.
+ * Note: Recycling instances of this class are not thread-safe.
+ */
+public class DataHolderPool {
+
+  private static final DataHolderPool ALLOCATING = new DataHolderPool(false);
+
+  private final boolean recycling;
+  private final Recycler<BoolDataHolder> bools;
+  private final Recycler<CharDataHolder> chrs;
+  private final Recycler<EnumDataHolder> enms;
+  private final Recycler<Int32DataHolder> int32s;
+  private final Recycler<Int64DataHolder> int64s;
+  private final Recycler<FloatingPoint64DataHolder> fp64s;
+  private final Recycler<VarIntDataHolder> varInts;
+  private final Recycler<StringDataHolder> strings;
+  private final Recycler<ByteBufferDataHolder> byteBuffers;
+  private final Recycler<StructDataHolder> structs;
+  private final Recycler<ArrayDataHolder> arrays;
+  private final Recycler<Int32ArrayDataHolder> int32Arrays;
+  private final Recycler<Int64ArrayDataHolder> int64Arrays;
+  private final Recycler<FloatingPoint64ArrayDataHolder> fp64Arrays;
+  private final Recycler<DeltaInt64ArrayDataHolder> deltaInt64Arrays;
+  private final Recycler<List<DataHolder>> lists;
+
+  public static DataHolderPool allocating() {
+    return ALLOCATING;
+  }
+
+  public static DataHolderPool recycling() {
+    return new DataHolderPool(true);
+  }
+
+  private DataHolderPool(boolean recycling) {
+    this.recycling = recycling;
+    this.bools = new Recycler<BoolDataHolder>(recycling);
+    this.chrs = new Recycler<CharDataHolder>(recycling);
+    this.enms = new Recycler<EnumDataHolder>(recycling);
+    this.int32s = new Recycler<Int32DataHolder>(recycling);
+    this.int64s = new Recycler<Int64DataHolder>(recycling);
+    this.fp64s = new Recycler<FloatingPoint64DataHolder>(recycling);
+    this.varInts = new Recycler<VarIntDataHolder>(recycling);
+    this.strings = new Recycler<StringDataHolder>(recycling);
+    this.byteBuffers = new Recycler<ByteBufferDataHolder>(recycling);
+    this.structs = new Recycler<StructDataHolder>(recycling);
+    this.arrays = new Recycler<ArrayDataHolder>(recycling);
+    this.int32Arrays = new Recycler<Int32ArrayDataHolder>(recycling);
+    this.int64Arrays = new Recycler<Int64ArrayDataHolder>(recycling);
+    this.fp64Arrays = new Recycler<FloatingPoint64ArrayDataHolder>(recycling);
+    this.deltaInt64Arrays = new Recycler<DeltaInt64ArrayDataHolder>(recycling);
+    this.lists = new Recycler<List<DataHolder>>(recycling);
+  }
+
+  public boolean isRecycling() {
+    return recycling;
+  }
+
+  /**
+   * Make all the holders handed out so far available again. Holders obtained before this call must not be used
+   * anymore.
+   */
+  public void recycle() {
+    bools.rewind();
+    chrs.rewind();
+    enms.rewind();
+    int32s.rewind();
+    int64s.rewind();
+    fp64s.rewind();
+    varInts.rewind();
+    strings.rewind();
+    byteBuffers.rewind();
+    structs.rewind();
+    arrays.rewind();
+    int32Arrays.rewind();
+    int64Arrays.rewind();
+    fp64Arrays.rewind();
+    deltaInt64Arrays.rewind();
+    lists.rewind();
+  }
+
+  public BoolDataHolder bool(boolean value, int index) {
+    BoolDataHolder holder = bools.next();
+    if (holder == null) {
+      return bools.add(new BoolDataHolder(value, index));
+    }
+    holder.reuse(value, index);
+    return holder;
+  }
+
+  public CharDataHolder chr(char value, int index) {
+    CharDataHolder holder = chrs.next();
+    if (holder == null) {
+      return chrs.add(new CharDataHolder(value, index));
+    }
+    holder.reuse(value, index);
+    return holder;
+  }
+
+  public <E> EnumDataHolder<E> enm(E value, int index, EnumMapping<E> enumMapping) {
+    EnumDataHolder<E> holder = enms.next();
+    if (holder == null) {
+      return enms.add(new EnumDataHolder<E>(value, index, enumMapping));
+    }
+    holder.reuse(value, index, enumMapping);
+    return holder;
+  }
+
+  public Int32DataHolder int32(int value, int index) {
+    Int32DataHolder holder = int32s.next();
+    if (holder == null) {
+      return int32s.add(new Int32DataHolder(value, index));
+    }
+    holder.reuse(value, index);
+    return holder;
+  }
+
+  public Int64DataHolder int64(long value, int index) {
+    Int64DataHolder holder = int64s.next();
+    if (holder == null) {
+      return int64s.add(new Int64DataHolder(value, index));
+    }
+    holder.reuse(value, index);
+    return holder;
+  }
+
+  public FloatingPoint64DataHolder fp64(double value, int index) {
+    FloatingPoint64DataHolder holder = fp64s.next();
+    if (holder == null) {
+      return fp64s.add(new FloatingPoint64DataHolder(value, index));
+    }
+    holder.reuse(value, index);
+    return holder;
+  }
+
+  public VarIntDataHolder varInt(long value, int index) {
+    VarIntDataHolder holder = varInts.next();
+    if (holder == null) {
+      return varInts.add(new VarIntDataHolder(value, index));
+    }
+    holder.reuse(value, index);
+    return holder;
+  }
+
+  public StringDataHolder string(String value, int index) {
+    StringDataHolder holder = strings.next();
+    if (holder == null) {
+      return strings.add(new StringDataHolder(value, index));
+    }
+    holder.reuse(value, index);
+    return holder;
+  }
+
+  public ByteBufferDataHolder byteBuffer(ByteBuffer value, int index) {
+    ByteBufferDataHolder holder = byteBuffers.next();
+    if (holder == null) {
+      return byteBuffers.add(new ByteBufferDataHolder(value, index));
+    }
+    holder.reuse(value, index);
+    return holder;
+  }
+
+  public StructDataHolder struct(List<? extends DataHolder> values, int index) {
+    StructDataHolder holder = structs.next();
+    if (holder == null) {
+      return structs.add(new StructDataHolder(values, index));
+    }
+    holder.reuse(values, index);
+    return holder;
+  }
+
+  public ArrayDataHolder array(List<? extends DataHolder> values, int index) {
+    ArrayDataHolder holder = arrays.next();
+    if (holder == null) {
+      return arrays.add(new ArrayDataHolder(values, index));
+    }
+    holder.reuse(values, index);
+    return holder;
+  }
+
+  public Int32ArrayDataHolder int32s(int[] values, int index) {
+    Int32ArrayDataHolder holder = int32Arrays.next();
+    if (holder == null) {
+      return int32Arrays.add(new Int32ArrayDataHolder(values, index));
+    }
+    holder.reuse(values, index);
+    return holder;
+  }
+
+  public Int32ArrayDataHolder int32s(IntBuffer values, int index) {
+    Int32ArrayDataHolder holder = int32Arrays.next();
+    if (holder == null) {
+      return int32Arrays.add(new Int32ArrayDataHolder(values, index));
+    }
+    holder.reuse(values, index);
+    return holder;
+  }
+
+  public Int64ArrayDataHolder int64s(long[] values, int index) {
+    Int64ArrayDataHolder holder = int64Arrays.next();
+    if (holder == null) {
+      return int64Arrays.add(new Int64ArrayDataHolder(values, index));
+    }
+    holder.reuse(values, index);
+    return holder;
+  }
+
+  public Int64ArrayDataHolder int64s(LongBuffer values, int index) {
+    Int64ArrayDataHolder holder = int64Arrays.next();
+    if (holder == null) {
+      return int64Arrays.add(new Int64ArrayDataHolder(values, index));
+    }
+    holder.reuse(values, index);
+    return holder;
+  }
+
+  public FloatingPoint64ArrayDataHolder fp64s(double[] values, int index) {
+    FloatingPoint64ArrayDataHolder holder = fp64Arrays.next();
+    if (holder == null) {
+      return fp64Arrays.add(new FloatingPoint64ArrayDataHolder(values, index));
+    }
+    holder.reuse(values, index);
+    return holder;
+  }
+
+  public FloatingPoint64ArrayDataHolder fp64s(DoubleBuffer values, int index) {
+    FloatingPoint64ArrayDataHolder holder = fp64Arrays.next();
+    if (holder == null) {
+      return fp64Arrays.add(new FloatingPoint64ArrayDataHolder(values, index));
+    }
+    holder.reuse(values, index);
+    return holder;
+  }
+
+  public DeltaInt64ArrayDataHolder deltaInt64s(long[] values, int index) {
+    DeltaInt64ArrayDataHolder holder = deltaInt64Arrays.next();
+    if (holder == null) {
+      return deltaInt64Arrays.add(new DeltaInt64ArrayDataHolder(values, index));
+    }
+    holder.reuse(values, index);
+    return holder;
+  }
+
+  public DeltaInt64ArrayDataHolder deltaInt64s(LongBuffer values, int index) {
+    DeltaInt64ArrayDataHolder holder = deltaInt64Arrays.next();
+    if (holder == null) {
+      return deltaInt64Arrays.add(new DeltaInt64ArrayDataHolder(values, index));
+    }
+    holder.reuse(values, index);
+    return holder;
+  }
+
+  /**
+   * @param <T> the type of data holders the list is going to contain.
+   * @return an empty list to collect data holders in.
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends DataHolder> List<T> list() {
+    List<DataHolder> list = lists.next();
+    if (list == null) {
+      return (List<T>) lists.add(new ArrayList<DataHolder>());
+    }
+    list.clear();
+    return (List<T>) list;
+  }
+
+  private static final class Recycler<T> {
+    private final boolean recycling;
+    private final List<T> items = new ArrayList<T>();
+    private int used = 0;
+
+    Recycler(boolean recycling) {
+      this.recycling = recycling;
+    }
+
+    @SuppressWarnings("unchecked")
+    <U extends T> U next() {
+      if (used < items.size()) {
+        return (U) items.get(used++);
+      }
+      return null;
+    }
+
+    <U extends T> U add(U item) {
+      if (recycling) {
+        items.add(item);
+        used++;
+      }
+      return item;
+    }
+
+    void rewind() {
+      used = 0;
+    }
+  }
+
+}
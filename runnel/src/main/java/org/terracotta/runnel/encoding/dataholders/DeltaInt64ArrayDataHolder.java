@@ -0,0 +1,86 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.encoding.dataholders;
+
+import org.terracotta.runnel.utils.VLQ;
+import org.terracotta.runnel.utils.WriteBuffer;
+
+import java.nio.LongBuffer;
+
+/**
+ * Holds a delta-encoded array of 64-bit integers, see {@link org.terracotta.runnel.decoding.fields.DeltaInt64ArrayField}.
+ * The values are not copied, they must not be modified until the encoding is done.
+ */
+public class DeltaInt64ArrayDataHolder extends AbstractDataHolder {
+
+  private long[] array;
+  private LongBuffer buffer;
+
+  public DeltaInt64ArrayDataHolder(long[] array, int index) {
+    super(index);
+    this.array = array;
+  }
+
+  public DeltaInt64ArrayDataHolder(LongBuffer buffer, int index) {
+    super(index);
+    this.buffer = buffer;
+  }
+
+  void reuse(long[] array, int index) {
+    reuse(index);
+    this.array = array;
+    this.buffer = null;
+  }
+
+  void reuse(LongBuffer buffer, int index) {
+    reuse(index);
+    this.array = null;
+    this.buffer = buffer;
+  }
+
+  private int length() {
+    return array != null ? array.length : buffer.remaining();
+  }
+
+  private long get(int i) {
+    return array != null ? array[i] : buffer.get(buffer.position() + i);
+  }
+
+  @Override
+  protected int valueSize() {
+    int length = length();
+    int size = VLQ.encodedSize(length);
+    long previous = 0L;
+    for (int i = 0; i < length; i++) {
+      long value = get(i);
+      size += VLQ.encodedSizeUnsigned(VLQ.zigZag(value - previous));
+      previous = value;
+    }
+    return size;
+  }
+
+  @Override
+  protected void encodeValue(WriteBuffer writeBuffer) {
+    int length = length();
+    writeBuffer.putVlqInt(length); // length field
+    long previous = 0L;
+    for (int i = 0; i < length; i++) {
+      long value = get(i);
+      writeBuffer.putVlqLong(VLQ.zigZag(value - previous));
+      previous = value;
+    }
+  }
+}
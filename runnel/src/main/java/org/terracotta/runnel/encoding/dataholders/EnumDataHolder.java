@@ -24,13 +24,18 @@ import org.terracotta.runnel.utils.WriteBuffer;
  */
 public class EnumDataHolder<E> extends AbstractDataHolder {
 
-  private final int value;
+  private int value;
 
   public EnumDataHolder(E value, int index, EnumMapping<E> enumMapping) {
     super(index);
     this.value = enumMapping.toInt(value);
   }
 
+  void reuse(E value, int index, EnumMapping<E> enumMapping) {
+    reuse(index);
+    this.value = enumMapping.toInt(value);
+  }
+
   @Override
   protected int valueSize() {
     return VLQ.encodedSize(value);
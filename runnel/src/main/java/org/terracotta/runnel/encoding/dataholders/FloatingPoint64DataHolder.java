@@ -22,13 +22,18 @@ import org.terracotta.runnel.utils.WriteBuffer;
  */
 public class FloatingPoint64DataHolder extends AbstractDataHolder {
 
-  private final double value;
+  private double value;
 
   public FloatingPoint64DataHolder(double value, int index) {
     super(index);
     this.value = value;
   }
 
+  void reuse(double value, int index) {
+    reuse(index);
+    this.value = value;
+  }
+
   @Override
   protected int valueSize() {
     return 8;
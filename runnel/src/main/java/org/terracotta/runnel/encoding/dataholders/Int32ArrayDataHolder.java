@@ -0,0 +1,77 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.encoding.dataholders;
+
+import org.terracotta.runnel.utils.VLQ;
+import org.terracotta.runnel.utils.WriteBuffer;
+
+import java.nio.IntBuffer;
+
+/**
+ * Holds a whole array of 32-bit integers, which is encoded the same way as an {@link ArrayDataHolder} of
+ * single values:
+ * <pre>
+ *   index:size:length:[4:value][4:value][4:value]...
+ * </pre>
+ * The values are not copied, they must not be modified until the encoding is done.
+ */
+public class Int32ArrayDataHolder extends AbstractDataHolder {
+
+  private int[] array;
+  private IntBuffer buffer;
+
+  public Int32ArrayDataHolder(int[] array, int index) {
+    super(index);
+    this.array = array;
+  }
+
+  public Int32ArrayDataHolder(IntBuffer buffer, int index) {
+    super(index);
+    this.buffer = buffer;
+  }
+
+  void reuse(int[] array, int index) {
+    reuse(index);
+    this.array = array;
+    this.buffer = null;
+  }
+
+  void reuse(IntBuffer buffer, int index) {
+    reuse(index);
+    this.array = null;
+    this.buffer = buffer;
+  }
+
+  private int length() {
+    return array != null ? array.length : buffer.remaining();
+  }
+
+  @Override
+  protected int valueSize() {
+    int length = length();
+    return VLQ.encodedSize(length) + length * (1 + 4);
+  }
+
+  @Override
+  protected void encodeValue(WriteBuffer writeBuffer) {
+    writeBuffer.putVlqInt(length()); // length field
+    if (array != null) {
+      writeBuffer.putInts(array, 0, array.length);
+    } else {
+      writeBuffer.putInts(buffer);
+    }
+  }
+}
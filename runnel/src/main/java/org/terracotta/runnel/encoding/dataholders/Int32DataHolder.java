@@ -22,13 +22,18 @@ import org.terracotta.runnel.utils.WriteBuffer;
  */
 public class Int32DataHolder extends AbstractDataHolder {
 
-  private final int value;
+  private int value;
 
   public Int32DataHolder(int value, int index) {
     super(index);
     this.value = value;
   }
 
+  void reuse(int value, int index) {
+    reuse(index);
+    this.value = value;
+  }
+
   @Override
   protected int valueSize() {
     return 4;
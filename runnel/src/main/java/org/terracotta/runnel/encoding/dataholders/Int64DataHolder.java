@@ -22,13 +22,18 @@ import org.terracotta.runnel.utils.WriteBuffer;
  */
 public class Int64DataHolder extends AbstractDataHolder {
 
-  private final long value;
+  private long value;
 
   public Int64DataHolder(long value, int index) {
     super(index);
     this.value = value;
   }
 
+  void reuse(long value, int index) {
+    reuse(index);
+    this.value = value;
+  }
+
   @Override
   protected int valueSize() {
     return 8;
@@ -29,13 +29,24 @@ public class StringDataHolder extends AbstractDataHolder {
 
   private static final boolean V1_STRING_ENCODING = false;
 
-  private final ByteBuffer encodedString;
+  private ByteBuffer encodedString;
 
   public StringDataHolder(String value, int index) {
     super(index);
     this.encodedString = encodeString(value);
   }
 
+  void reuse(String value, int index) {
+    reuse(index);
+    if (V1_STRING_ENCODING || encodedString.capacity() < StringTool.getEncodedLength(value)) {
+      this.encodedString = encodeString(value);
+    } else {
+      encodedString.clear();
+      StringTool.putEncoded(encodedString, value, value.length());
+      encodedString.flip();
+    }
+  }
+
   @Override
   protected int valueSize() {
     return encodedString.remaining();
@@ -44,6 +55,7 @@ public class StringDataHolder extends AbstractDataHolder {
   @Override
   protected void encodeValue(WriteBuffer writeBuffer) {
     writeBuffer.putByteBuffer(encodedString);
+    encodedString.rewind();
   }
 
   private ByteBuffer encodeString(String object) {
@@ -86,10 +98,11 @@ public class StringDataHolder extends AbstractDataHolder {
       }
       return ByteBuffer.wrap(bout.toByteArray());
     } else {
-      ByteBuffer w = ByteBuffer.allocate(4 * object.length() + 1);
+      // exact size, instead of the 3 bytes per char worst case that over-allocates for mostly ASCII strings
+      ByteBuffer w = ByteBuffer.allocate(StringTool.getEncodedLength(object));
       StringTool.putEncoded(w, object, object.length());
       w.flip();
-      return w.slice();
+      return w;
     }
   }
 
@@ -27,13 +27,18 @@ import java.util.List;
  */
 public class StructDataHolder extends AbstractDataHolder {
 
-  private final List<? extends DataHolder> values;
+  private List<? extends DataHolder> values;
 
   public StructDataHolder(List<? extends DataHolder> values, int index) {
     super(index);
     this.values = values;
   }
 
+  void reuse(List<? extends DataHolder> values, int index) {
+    reuse(index);
+    this.values = values;
+  }
+
   @Override
   protected int valueSize() {
     int size = 0;
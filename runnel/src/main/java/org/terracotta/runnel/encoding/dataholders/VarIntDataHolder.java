@@ -0,0 +1,47 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.encoding.dataholders;
+
+import org.terracotta.runnel.utils.VLQ;
+import org.terracotta.runnel.utils.WriteBuffer;
+
+/**
+ * Holds either a 32 or a 64-bit integer, which are both encoded as a zigzag VLQ.
+ */
+public class VarIntDataHolder extends AbstractDataHolder {
+
+  private long value;
+
+  public VarIntDataHolder(long value, int index) {
+    super(index);
+    this.value = value;
+  }
+
+  void reuse(long value, int index) {
+    reuse(index);
+    this.value = value;
+  }
+
+  @Override
+  protected int valueSize() {
+    return VLQ.encodedSizeUnsigned(VLQ.zigZag(value));
+  }
+
+  @Override
+  protected void encodeValue(WriteBuffer writeBuffer) {
+    writeBuffer.putVlqLong(VLQ.zigZag(value));
+  }
+}
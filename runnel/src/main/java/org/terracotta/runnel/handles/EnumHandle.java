@@ -0,0 +1,32 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.handles;
+
+import org.terracotta.runnel.decoding.fields.EnumField;
+import org.terracotta.runnel.metadata.Metadata;
+
+/**
+ * Handle of an enumeration field.
+ * @param <E> the enumeration's actual type.
+ */
+public class EnumHandle<E> extends FieldHandle<EnumField<E>> {
+
+  @SuppressWarnings("unchecked")
+  public EnumHandle(Metadata metadata, String name) {
+    super(metadata, name, (Class) EnumField.class);
+  }
+
+}
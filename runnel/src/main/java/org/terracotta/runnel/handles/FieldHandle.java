@@ -0,0 +1,76 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.handles;
+
+import org.terracotta.runnel.decoding.fields.Field;
+import org.terracotta.runnel.metadata.Metadata;
+
+/**
+ * A field handle is a field of a {@link org.terracotta.runnel.Struct} resolved once and for all, by name and by type,
+ * so that encoders and decoders can access the field without looking it up again.
+ * Handles are obtained from the struct, e.g.: {@code struct.int32Handle("x")}, and are meant to be kept around,
+ * typically in static final fields next to the struct itself. They can only be used with the encoders and decoders
+ * of the struct they were obtained from.
+ * Note: Instances of this class are thread-safe.
+ * @param <F> the type of the field.
+ */
+public abstract class FieldHandle<F extends Field> {
+
+  private final Metadata metadata;
+  private final F field;
+  private final int ordinal;
+
+  protected FieldHandle(Metadata metadata, String name, Class<F> fieldClazz) {
+    this.metadata = metadata;
+    this.field = metadata.getField(name, fieldClazz);
+    this.ordinal = metadata.ordinal(field);
+  }
+
+  public String name() {
+    return field.name();
+  }
+
+  public int index() {
+    return field.index();
+  }
+
+  /**
+   * @return the resolved field, for use by the encoders and decoders.
+   */
+  public F field() {
+    return field;
+  }
+
+  /**
+   * @return the position of the field in the struct, fields being ordered by index.
+   */
+  public int ordinal() {
+    return ordinal;
+  }
+
+  /**
+   * @return the metadata of the struct this handle was obtained from, for use by the encoders and decoders.
+   */
+  public Metadata metadata() {
+    return metadata;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{name='" + field.name() + "', index=" + field.index() + "}";
+  }
+
+}
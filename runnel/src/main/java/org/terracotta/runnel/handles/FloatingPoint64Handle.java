@@ -0,0 +1,30 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.handles;
+
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.metadata.Metadata;
+
+/**
+ * Handle of a 64-bit, double-precision floating point number field.
+ */
+public class FloatingPoint64Handle extends FieldHandle<FloatingPoint64Field> {
+
+  public FloatingPoint64Handle(Metadata metadata, String name) {
+    super(metadata, name, FloatingPoint64Field.class);
+  }
+
+}
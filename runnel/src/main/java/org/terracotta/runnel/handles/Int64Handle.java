@@ -0,0 +1,30 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.handles;
+
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.metadata.Metadata;
+
+/**
+ * Handle of a 64-bit integer field.
+ */
+public class Int64Handle extends FieldHandle<Int64Field> {
+
+  public Int64Handle(Metadata metadata, String name) {
+    super(metadata, name, Int64Field.class);
+  }
+
+}
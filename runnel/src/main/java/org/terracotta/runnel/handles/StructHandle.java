@@ -0,0 +1,31 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.handles;
+
+import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.metadata.Metadata;
+
+/**
+ * Handle of a struct field.
+ * Handles of the sub-struct's own fields are obtained from the {@link org.terracotta.runnel.Struct} it was built with.
+ */
+public class StructHandle extends FieldHandle<StructField> {
+
+  public StructHandle(Metadata metadata, String name) {
+    super(metadata, name, StructField.class);
+  }
+
+}
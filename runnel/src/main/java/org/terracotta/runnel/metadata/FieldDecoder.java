@@ -18,10 +18,27 @@ package org.terracotta.runnel.metadata;
 import org.terracotta.runnel.decoding.ArrayDecoder;
 import org.terracotta.runnel.decoding.StructArrayDecoder;
 import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.decoding.Utf8View;
 import org.terracotta.runnel.decoding.fields.ArrayField;
+import org.terracotta.runnel.decoding.fields.BoolField;
+import org.terracotta.runnel.decoding.fields.CharField;
 import org.terracotta.runnel.decoding.fields.Field;
+import org.terracotta.runnel.decoding.fields.FloatingPoint64Field;
+import org.terracotta.runnel.decoding.fields.Int32Field;
+import org.terracotta.runnel.decoding.fields.Int64Field;
+import org.terracotta.runnel.decoding.fields.StringField;
 import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.decoding.fields.VarInt32Field;
+import org.terracotta.runnel.decoding.fields.VarInt64Field;
 import org.terracotta.runnel.decoding.fields.ValueField;
+import org.terracotta.runnel.handles.BoolHandle;
+import org.terracotta.runnel.handles.CharHandle;
+import org.terracotta.runnel.handles.FieldHandle;
+import org.terracotta.runnel.handles.FloatingPoint64Handle;
+import org.terracotta.runnel.handles.Int32Handle;
+import org.terracotta.runnel.handles.Int64Handle;
+import org.terracotta.runnel.handles.StringHandle;
+import org.terracotta.runnel.handles.StructHandle;
 import org.terracotta.runnel.utils.ReadBuffer;
 
 /**
@@ -33,6 +50,8 @@ public class FieldDecoder {
   private final ReadBuffer readBuffer;
   private int lastIndex = -1;
   private int readAheadIndex = -1;
+  private Field peekedField;
+  private boolean peekedFieldPresent;
 
   FieldDecoder(Metadata metadata, ReadBuffer readBuffer) {
     this.metadata = metadata;
@@ -71,11 +90,175 @@ public class FieldDecoder {
     return field.decode(readBuffer);
   }
 
-  private  <T extends Field, S extends Field> T nextField(String name, Class<T> fieldClazz, Class<S> subFieldClazz) {
-    Field field = findFieldWithIndex(name, fieldClazz, subFieldClazz);
-    if (readBuffer.limitReached()) {
+  public boolean decodeBoolean(String name, boolean defaultValue) {
+    BoolField field = nextField(name, BoolField.class, null);
+    return field == null ? defaultValue : field.decodeBoolean(readBuffer);
+  }
+
+  public char decodeChar(String name, char defaultValue) {
+    CharField field = nextField(name, CharField.class, null);
+    return field == null ? defaultValue : field.decodeChar(readBuffer);
+  }
+
+  public int decodeInt(String name, int defaultValue) {
+    Int32Field field = nextField(name, Int32Field.class, null);
+    return field == null ? defaultValue : field.decodeInt(readBuffer);
+  }
+
+  public long decodeLong(String name, long defaultValue) {
+    Int64Field field = nextField(name, Int64Field.class, null);
+    return field == null ? defaultValue : field.decodeLong(readBuffer);
+  }
+
+  public int decodeVarInt(String name, int defaultValue) {
+    VarInt32Field field = nextField(name, VarInt32Field.class, null);
+    return field == null ? defaultValue : field.decodeInt(readBuffer);
+  }
+
+  public long decodeVarLong(String name, long defaultValue) {
+    VarInt64Field field = nextField(name, VarInt64Field.class, null);
+    return field == null ? defaultValue : field.decodeLong(readBuffer);
+  }
+
+  public double decodeDouble(String name, double defaultValue) {
+    FloatingPoint64Field field = nextField(name, FloatingPoint64Field.class, null);
+    return field == null ? defaultValue : field.decodeDouble(readBuffer);
+  }
+
+  public Utf8View decodeUtf8(String name) {
+    StringField field = nextField(name, StringField.class, null);
+    return field == null ? null : field.decodeView(readBuffer);
+  }
+
+  public <P> StructDecoder<P> decodeStruct(StructHandle handle, P parent) {
+    StructField field = nextField(handle);
+    if (field == null) {
       return null;
     }
+    return new StructDecoder<P>(field, readBuffer, parent);
+  }
+
+  public <T, F extends ValueField<T>> T decodeValue(FieldHandle<F> handle) {
+    F field = nextField(handle);
+    if (field == null) {
+      return null;
+    }
+    return field.decode(readBuffer);
+  }
+
+  public boolean decodeBoolean(BoolHandle handle, boolean defaultValue) {
+    BoolField field = nextField(handle);
+    return field == null ? defaultValue : field.decodeBoolean(readBuffer);
+  }
+
+  public char decodeChar(CharHandle handle, char defaultValue) {
+    CharField field = nextField(handle);
+    return field == null ? defaultValue : field.decodeChar(readBuffer);
+  }
+
+  public int decodeInt(Int32Handle handle, int defaultValue) {
+    Int32Field field = nextField(handle);
+    return field == null ? defaultValue : field.decodeInt(readBuffer);
+  }
+
+  public long decodeLong(Int64Handle handle, long defaultValue) {
+    Int64Field field = nextField(handle);
+    return field == null ? defaultValue : field.decodeLong(readBuffer);
+  }
+
+  public double decodeDouble(FloatingPoint64Handle handle, double defaultValue) {
+    FloatingPoint64Field field = nextField(handle);
+    return field == null ? defaultValue : field.decodeDouble(readBuffer);
+  }
+
+  public Utf8View decodeUtf8(StringHandle handle) {
+    StringField field = nextField(handle);
+    return field == null ? null : field.decodeView(readBuffer);
+  }
+
+  /**
+   * Position the decoder on the named field without consuming it, so that the next read of the same field
+   * does not have to search for it again.
+   * @param name the field name.
+   * @return true if the field is present in the data, false otherwise.
+   */
+  public boolean isPresent(String name) {
+    if (peekedField != null && peekedField.name().equals(name)) {
+      return peekedFieldPresent;
+    }
+    skipPeekedField();
+    Field field = findFieldWithIndex(name);
+    peekedFieldPresent = seek(field);
+    peekedField = field;
+    return peekedFieldPresent;
+  }
+
+  /**
+   * Position the decoder on the handle's field without consuming it.
+   * @param handle the field handle.
+   * @return true if the field is present in the data, false otherwise.
+   * @see #isPresent(String)
+   */
+  public boolean isPresent(FieldHandle<?> handle) {
+    Field field = checkHandle(handle);
+    if (peekedField == field) {
+      return peekedFieldPresent;
+    }
+    skipPeekedField();
+    checkIndex(field);
+    peekedFieldPresent = seek(field);
+    peekedField = field;
+    return peekedFieldPresent;
+  }
+
+  private <T extends Field> T nextField(FieldHandle<T> handle) {
+    T field = checkHandle(handle);
+    if (peekedField == field) {
+      peekedField = null;
+      return peekedFieldPresent ? field : null;
+    }
+    skipPeekedField();
+
+    checkIndex(field);
+    return seek(field) ? field : null;
+  }
+
+  private <T extends Field> T checkHandle(FieldHandle<T> handle) {
+    if (handle.metadata() != metadata) {
+      throw new IllegalArgumentException("Field handle '" + handle.name() + "' does not belong to this struct");
+    }
+    return handle.field();
+  }
+
+  private <T extends Field, S extends Field> T nextField(String name, Class<T> fieldClazz, Class<S> subFieldClazz) {
+    if (peekedField != null && peekedField.name().equals(name)) {
+      Field field = peekedField;
+      // check before consuming the peeked field, so that it is still positioned on if the type does not match
+      checkType(name, field, fieldClazz, subFieldClazz);
+      peekedField = null;
+      return peekedFieldPresent ? (T) field : null;
+    }
+    skipPeekedField();
+
+    Field field = findFieldWithIndex(name);
+    checkType(name, field, fieldClazz, subFieldClazz);
+    return seek(field) ? (T) field : null;
+  }
+
+  private void skipPeekedField() {
+    if (peekedField != null) {
+      if (peekedFieldPresent) {
+        int fieldSize = readBuffer.getVlqInt();
+        readBuffer.skip(fieldSize);
+      }
+      peekedField = null;
+    }
+  }
+
+  private boolean seek(Field field) {
+    if (readBuffer.limitReached()) {
+      return false;
+    }
 
     int index = readAheadIndex > 0 ? readAheadIndex : readBuffer.getVlqInt();
     readAheadIndex = -1;
@@ -84,31 +267,35 @@ public class FieldDecoder {
       int fieldSize = readBuffer.getVlqInt();
       readBuffer.skip(fieldSize);
       if (readBuffer.limitReached()) {
-        return null;
+        return false;
       }
       index = readBuffer.getVlqInt();
     }
 
     if (index > field.index()) {
       readAheadIndex = index;
-      return null;
-    } else if (index != field.index()) {
-      return null;
-    } else {
-      return (T) field;
+      return false;
     }
+    return true;
   }
 
-  private <T extends Field, S extends Field> Field findFieldWithIndex(String name, Class<T> fieldClazz, Class<S> subFieldClazz) {
+  private Field findFieldWithIndex(String name) {
     Field field = metadata.getFieldByName(name);
     if (field == null) {
       throw new IllegalArgumentException("No such field : " + name);
     }
+    checkIndex(field);
+    return field;
+  }
+
+  private void checkIndex(Field field) {
     if (field.index() <= lastIndex) {
-      throw new IllegalArgumentException("No such field left : '" + name + "'");
+      throw new IllegalArgumentException("No such field left : '" + field.name() + "'");
     }
     lastIndex = field.index();
+  }
 
+  private static <T extends Field, S extends Field> void checkType(String name, Field field, Class<T> fieldClazz, Class<S> subFieldClazz) {
     if (field.getClass() != fieldClazz) {
       throw new IllegalArgumentException("Invalid type for field '" + name + "', expected : '" + fieldClazz.getSimpleName() + "' but was '" + field.getClass().getSimpleName() + "'");
     }
@@ -119,7 +306,6 @@ public class FieldDecoder {
         throw new IllegalArgumentException("Invalid subtype for field '" + name + "', expected : '" + subFieldClazz.getSimpleName() + "' but was '" + nextSubField.getClass().getSimpleName() + "'");
       }
     }
-    return field;
   }
 
 }
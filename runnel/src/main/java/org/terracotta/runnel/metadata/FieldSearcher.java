@@ -17,6 +17,7 @@ package org.terracotta.runnel.metadata;
 
 import org.terracotta.runnel.decoding.fields.ArrayField;
 import org.terracotta.runnel.decoding.fields.Field;
+import org.terracotta.runnel.handles.FieldHandle;
 
 /**
  * @author Ludovic Orban
@@ -30,6 +31,10 @@ public class FieldSearcher {
     this.metadata = metadata;
   }
 
+  public void reset() {
+    lastIndex = -1;
+  }
+
   public <T extends Field, S extends Field> T findField(String name, Class<T> fieldClazz, Class<S> subFieldClazz) {
     T field = (T) metadata.getFieldByName(name);
     if (field == null) {
@@ -53,4 +58,16 @@ public class FieldSearcher {
     return field;
   }
 
+  public <T extends Field> T checkHandle(FieldHandle<T> handle) {
+    if (handle.metadata() != metadata) {
+      throw new IllegalArgumentException("Field handle '" + handle.name() + "' does not belong to this struct");
+    }
+    T field = handle.field();
+    if (field.index() <= lastIndex) {
+      throw new IllegalArgumentException("No such field left : '" + field.name() + "'");
+    }
+    lastIndex = field.index();
+    return field;
+  }
+
 }
@@ -17,9 +17,11 @@ package org.terracotta.runnel.metadata;
 
 import org.terracotta.runnel.decoding.fields.Field;
 import org.terracotta.runnel.decoding.fields.StructField;
+import org.terracotta.runnel.utils.EncodedSizeHistogram;
 import org.terracotta.runnel.utils.ReadBuffer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,9 +33,11 @@ public class Metadata {
 
   private final List<Field> fields = new ArrayList<Field>();
   private final Map<String, Field> fieldsByName = new HashMap<String, Field>();
+  private int[] fieldIndices;
   private volatile boolean initialized = false;
   private volatile boolean initializationFullyChecked = false;
   private final ThreadLocal<Boolean> checkingForFullInitialization = new ThreadLocal<Boolean>();
+  private final EncodedSizeHistogram sizeHistogram = new EncodedSizeHistogram();
 
   public Metadata() {
   }
@@ -49,8 +53,11 @@ public class Metadata {
     if (initialized) {
       throw new IllegalStateException("Metadata already initialized");
     }
-    for (Field field : fields) {
+    fieldIndices = new int[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
       fieldsByName.put(field.name(), field);
+      fieldIndices[i] = field.index();
     }
     initialized = true;
   }
@@ -93,6 +100,79 @@ public class Metadata {
     return map;
   }
 
+  /**
+   * Resolve a field by name.
+   * @param name the field name.
+   * @return the field.
+   */
+  public Field getField(String name) {
+    if (!initialized) {
+      throw new IllegalStateException("Metadata not yet initialized");
+    }
+    Field field = fieldsByName.get(name);
+    if (field == null) {
+      throw new IllegalArgumentException("No such field : " + name);
+    }
+    return field;
+  }
+
+  /**
+   * Resolve a field by name and type, e.g.: to build a field handle.
+   * @param name the field name.
+   * @param fieldClazz the expected field type.
+   * @param <T> the expected field type.
+   * @return the field.
+   */
+  public <T extends Field> T getField(String name, Class<T> fieldClazz) {
+    Field field = getField(name);
+    if (field.getClass() != fieldClazz) {
+      throw new IllegalArgumentException("Invalid type for field '" + name + "', expected : '" + fieldClazz.getSimpleName() + "' but was '" + field.getClass().getSimpleName() + "'");
+    }
+    return fieldClazz.cast(field);
+  }
+
+  /**
+   * @return the number of fields.
+   */
+  public int fieldCount() {
+    return fields.size();
+  }
+
+  /**
+   * @param ordinal the position of the field, fields being ordered by index.
+   * @return the field.
+   */
+  public Field fieldAt(int ordinal) {
+    return fields.get(ordinal);
+  }
+
+  /**
+   * @param ordinal the position of the field, fields being ordered by index.
+   * @return the index of the field.
+   */
+  public int fieldIndexAt(int ordinal) {
+    return fieldIndices[ordinal];
+  }
+
+  /**
+   * @param field a field of this metadata.
+   * @return the position of the field, fields being ordered by index.
+   */
+  public int ordinal(Field field) {
+    int ordinal = Arrays.binarySearch(fieldIndices, field.index());
+    if (ordinal < 0 || fields.get(ordinal) != field) {
+      throw new IllegalArgumentException("No such field : " + field.name());
+    }
+    return ordinal;
+  }
+
+  /**
+   * @return the histogram of the sizes this structure was encoded to as a root structure.
+   */
+  public EncodedSizeHistogram sizeHistogram() {
+    return sizeHistogram;
+  }
+
   Field getFieldByName(String name) {
     return fieldsByName.get(name);
   }
@@ -0,0 +1,237 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.utils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of heap or direct byte buffers, which capacities are powers of two between a minimum and a maximum size.
+ * A buffer is first looked up in a small cache local to the calling thread, then in a bounded queue shared by all
+ * threads and only allocated when both are empty. Buffers larger than the maximum size are never pooled.
+ * <p>
+ * A buffer must be given back with {@link #release(ByteBuffer)} once it is not used anymore, e.g.: after the
+ * transport has consumed it, and must not be used after that. Releasing a buffer twice corrupts the pool.
+ * <p>
+ * The pool keeps track of its hit rate and of the bytes wasted by rounding requested sizes up to their size class.
+ * Note: Instances of this class are thread-safe.
+ */
+public class BufferPool {
+
+  public static final int DEFAULT_MIN_SIZE = 64;
+  public static final int DEFAULT_MAX_SIZE = 1024 * 1024;
+  public static final int DEFAULT_THREAD_LOCAL_CAPACITY = 4;
+  public static final int DEFAULT_SHARED_CAPACITY = 64;
+
+  private final boolean direct;
+  private final int minShift;
+  private final int maxShift;
+  private final int threadLocalCapacity;
+  private final ArrayBlockingQueue<ByteBuffer>[] shared;
+  private final ThreadLocal<ByteBuffer[][]> threadLocalCaches;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder unpooled = new LongAdder();
+  private final LongAdder wastedBytes = new LongAdder();
+  private final LongAdder requestedBytes = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+
+  public static BufferPool heap() {
+    return new BufferPool(false, DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_THREAD_LOCAL_CAPACITY, DEFAULT_SHARED_CAPACITY);
+  }
+
+  public static BufferPool direct() {
+    return new BufferPool(true, DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_THREAD_LOCAL_CAPACITY, DEFAULT_SHARED_CAPACITY);
+  }
+
+  /**
+   * @param direct true to pool direct buffers, false for heap ones.
+   * @param minSize the capacity of the smallest buffers, rounded up to a power of two.
+   * @param maxSize the capacity of the largest pooled buffers, rounded up to a power of two.
+   * @param threadLocalCapacity the number of buffers of each size class cached per thread.
+   * @param sharedCapacity the number of buffers of each size class shared by all threads.
+   */
+  @SuppressWarnings("unchecked")
+  public BufferPool(boolean direct, int minSize, int maxSize, int threadLocalCapacity, int sharedCapacity) {
+    if (minSize <= 0 || maxSize < minSize || maxSize > (1 << 30)) {
+      throw new IllegalArgumentException("Invalid size range : [" + minSize + ", " + maxSize + "]");
+    }
+    if (threadLocalCapacity < 0 || sharedCapacity <= 0) {
+      throw new IllegalArgumentException("Invalid capacities : " + threadLocalCapacity + " / " + sharedCapacity);
+    }
+    this.direct = direct;
+    this.minShift = shift(minSize);
+    this.maxShift = shift(maxSize);
+    this.threadLocalCapacity = threadLocalCapacity;
+    final int classCount = maxShift - minShift + 1;
+    this.shared = new ArrayBlockingQueue[classCount];
+    for (int i = 0; i < classCount; i++) {
+      shared[i] = new ArrayBlockingQueue<ByteBuffer>(sharedCapacity);
+    }
+    this.threadLocalCaches = ThreadLocal.withInitial(() -> new ByteBuffer[classCount][]);
+  }
+
+  public boolean isDirect() {
+    return direct;
+  }
+
+  /**
+   * Get a cleared buffer of at least the requested capacity.
+   * @param size the requested capacity.
+   * @return the buffer, which capacity is the requested one rounded up to its size class.
+   */
+  public ByteBuffer acquire(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("size cannot be < 0");
+    }
+    requestedBytes.add(size);
+    int shift = Math.max(minShift, shift(size));
+    if (shift > maxShift) {
+      unpooled.increment();
+      return allocate(size);
+    }
+    int sizeClass = shift - minShift;
+    wastedBytes.add((1 << shift) - size);
+
+    ByteBuffer buffer = pollLocal(sizeClass);
+    if (buffer == null) {
+      buffer = shared[sizeClass].poll();
+    }
+    if (buffer == null) {
+      misses.increment();
+      return allocate(1 << shift);
+    }
+    hits.increment();
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Give a buffer obtained from {@link #acquire(int)} back to the pool. Buffers that are not of a pooled size class
+   * or that do not fit in the pool anymore are left to the garbage collector.
+   * @param buffer the buffer, which must not be used anymore.
+   */
+  public void release(ByteBuffer buffer) {
+    int capacity = buffer.capacity();
+    if (buffer.isDirect() != direct || Integer.bitCount(capacity) != 1) {
+      return;
+    }
+    int shift = Integer.numberOfTrailingZeros(capacity);
+    if (shift < minShift || shift > maxShift) {
+      return;
+    }
+    int sizeClass = shift - minShift;
+    if (!offerLocal(sizeClass, buffer) && !shared[sizeClass].offer(buffer)) {
+      dropped.increment();
+    }
+  }
+
+  /**
+   * @return the number of acquisitions served by a pooled buffer.
+   */
+  public long hits() {
+    return hits.sum();
+  }
+
+  /**
+   * @return the number of acquisitions of a pooled size class that had to allocate a new buffer.
+   */
+  public long misses() {
+    return misses.sum();
+  }
+
+  /**
+   * @return the number of acquisitions larger than the largest size class, which always allocate.
+   */
+  public long unpooled() {
+    return unpooled.sum();
+  }
+
+  /**
+   * @return the fraction of all acquisitions served by a pooled buffer, or 0 if there was none.
+   */
+  public double hitRate() {
+    long hits = this.hits.sum();
+    long total = hits + misses.sum() + unpooled.sum();
+    return total == 0L ? 0.0 : (double) hits / total;
+  }
+
+  /**
+   * @return the cumulated difference between the capacity of the acquired buffers and the requested sizes.
+   */
+  public long wastedBytes() {
+    return wastedBytes.sum();
+  }
+
+  /**
+   * @return the cumulated requested sizes.
+   */
+  public long requestedBytes() {
+    return requestedBytes.sum();
+  }
+
+  /**
+   * @return the number of released buffers that were left to the garbage collector because the pool was full.
+   */
+  public long dropped() {
+    return dropped.sum();
+  }
+
+  private ByteBuffer pollLocal(int sizeClass) {
+    ByteBuffer[] cache = threadLocalCaches.get()[sizeClass];
+    if (cache == null) {
+      return null;
+    }
+    for (int i = cache.length - 1; i >= 0; i--) {
+      ByteBuffer buffer = cache[i];
+      if (buffer != null) {
+        cache[i] = null;
+        return buffer;
+      }
+    }
+    return null;
+  }
+
+  private boolean offerLocal(int sizeClass, ByteBuffer buffer) {
+    if (threadLocalCapacity == 0) {
+      return false;
+    }
+    ByteBuffer[][] caches = threadLocalCaches.get();
+    ByteBuffer[] cache = caches[sizeClass];
+    if (cache == null) {
+      cache = new ByteBuffer[threadLocalCapacity];
+      caches[sizeClass] = cache;
+    }
+    for (int i = 0; i < cache.length; i++) {
+      if (cache[i] == null) {
+        cache[i] = buffer;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private ByteBuffer allocate(int capacity) {
+    return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+  }
+
+  private static int shift(int size) {
+    return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.utils;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running histogram of the encoded sizes of a structure, with power of two buckets, used to pick a buffer size
+ * that is large enough on the first try, e.g.: for a {@link org.terracotta.runnel.encoding.StructWriter} or from a
+ * {@link BufferPool}.
+ * Note: Instances of this class are thread-safe.
+ */
+public class EncodedSizeHistogram {
+
+  private static final int BUCKET_COUNT = 32;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+  public EncodedSizeHistogram() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Record the size of an encoded structure.
+   * @param size the size, in bytes.
+   */
+  public void record(int size) {
+    if (size < 0) {
+      throw new IllegalArgumentException("size cannot be < 0");
+    }
+    buckets[bucket(size)].increment();
+    count.increment();
+    sum.add(size);
+    max.accumulate(size);
+  }
+
+  /**
+   * @return the number of recorded sizes.
+   */
+  public long count() {
+    return count.sum();
+  }
+
+  /**
+   * @return the mean of the recorded sizes, or 0 if none was recorded.
+   */
+  public double mean() {
+    long count = this.count.sum();
+    return count == 0L ? 0.0 : (double) sum.sum() / count;
+  }
+
+  /**
+   * @return the largest recorded size, or 0 if none was recorded.
+   */
+  public int max() {
+    return (int) max.get();
+  }
+
+  /**
+   * Estimate the size the given fraction of the encoded structures fit in.
+   * The estimate is the upper bound of the power of two bucket the quantile falls in, capped to the largest
+   * recorded size, so that it is never smaller than the sizes it covers.
+   * @param quantile the fraction of the sizes to cover, between 0 and 1.
+   * @return the estimated size, or 0 if no size was recorded.
+   */
+  public int estimate(double quantile) {
+    if (quantile < 0.0 || quantile > 1.0) {
+      throw new IllegalArgumentException("quantile must be between 0 and 1 : " + quantile);
+    }
+    long total = 0L;
+    long[] counts = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = buckets[i].sum();
+      total += counts[i];
+    }
+    if (total == 0L) {
+      return 0;
+    }
+    long target = Math.max(1L, (long) Math.ceil(quantile * total));
+    long seen = 0L;
+    int bucket = BUCKET_COUNT - 1;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= target) {
+        bucket = i;
+        break;
+      }
+    }
+    return (int) Math.min(1L << bucket, max.get());
+  }
+
+  /**
+   * Bucket i holds the sizes in ]2^(i-1), 2^i], bucket 0 holds 0 and 1.
+   */
+  private static int bucket(int size) {
+    return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+  }
+
+}
@@ -15,8 +15,13 @@
  */
 package org.terracotta.runnel.utils;
 
+import org.terracotta.runnel.decoding.Utf8View;
+
 import java.io.UTFDataFormatException;
 import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 
 /**
  * @author Ludovic Orban
@@ -39,45 +44,180 @@ public class ReadBuffer {
     }
   }
 
-  public Boolean getBoolean() {
+  public boolean getBoolean() {
     if (byteBuffer.position() + 1 > limit) {
       throw new LimitReachedException();
     }
-    return byteBuffer.get() == (byte) 0 ? Boolean.FALSE : Boolean.TRUE;
+    return byteBuffer.get() != (byte) 0;
   }
 
-  public Double getDouble() {
+  public double getDouble() {
     if (byteBuffer.position() + 8 > limit) {
       throw new LimitReachedException();
     }
     return byteBuffer.getDouble();
   }
 
-  public Long getLong() {
+  public long getLong() {
     if (byteBuffer.position() + 8 > limit) {
       throw new LimitReachedException();
     }
     return byteBuffer.getLong();
   }
 
-  public Character getChar() {
+  public char getChar() {
     if (byteBuffer.position() + 2 > limit) {
       throw new LimitReachedException();
     }
     return byteBuffer.getChar();
   }
 
-  public Integer getInt() {
+  public int getInt() {
     if (byteBuffer.position() + 4 > limit) {
       throw new LimitReachedException();
     }
     return byteBuffer.getInt();
   }
 
+  /**
+   * Get consecutive 32-bit integer array elements, i.e.: each one prefixed with its size.
+   * When enough data is left, it is checked once and the elements are read with absolute gets, the usual
+   * checks only apply to elements whose size prefix is padded.
+   * @param values the array to fill.
+   * @param offset the index of the first value to get.
+   * @param count the number of values to get.
+   */
+  public void getInts(int[] values, int offset, int count) {
+    int i = offset;
+    int end = offset + count;
+    int position = byteBuffer.position();
+    if (position + count * 5L <= limit) {
+      for (; i < end && byteBuffer.get(position) == 4; i++, position += 5) {
+        values[i] = byteBuffer.getInt(position + 1);
+      }
+      byteBuffer.position(position);
+    }
+    for (; i < end; i++) {
+      values[i] = getSizedInt();
+    }
+  }
+
+  /**
+   * Get consecutive 32-bit integer array elements into a buffer, advancing its position.
+   * @param values the buffer to fill.
+   * @param count the number of values to get.
+   */
+  public void getInts(IntBuffer values, int count) {
+    if (values.hasArray()) {
+      getInts(values.array(), values.arrayOffset() + values.position(), count);
+      values.position(values.position() + count);
+      return;
+    }
+    for (int i = 0; i < count; i++) {
+      values.put(getSizedInt());
+    }
+  }
+
+  /**
+   * Get consecutive 64-bit integer array elements, i.e.: each one prefixed with its size.
+   * @param values the array to fill.
+   * @param offset the index of the first value to get.
+   * @param count the number of values to get.
+   * @see #getInts(int[], int, int)
+   */
+  public void getLongs(long[] values, int offset, int count) {
+    int i = offset;
+    int end = offset + count;
+    int position = byteBuffer.position();
+    if (position + count * 9L <= limit) {
+      for (; i < end && byteBuffer.get(position) == 8; i++, position += 9) {
+        values[i] = byteBuffer.getLong(position + 1);
+      }
+      byteBuffer.position(position);
+    }
+    for (; i < end; i++) {
+      values[i] = getSizedLong();
+    }
+  }
+
+  /**
+   * Get consecutive 64-bit integer array elements into a buffer, advancing its position.
+   * @param values the buffer to fill.
+   * @param count the number of values to get.
+   */
+  public void getLongs(LongBuffer values, int count) {
+    if (values.hasArray()) {
+      getLongs(values.array(), values.arrayOffset() + values.position(), count);
+      values.position(values.position() + count);
+      return;
+    }
+    for (int i = 0; i < count; i++) {
+      values.put(getSizedLong());
+    }
+  }
+
+  /**
+   * Get consecutive 64-bit floating point array elements, i.e.: each one prefixed with its size.
+   * @param values the array to fill.
+   * @param offset the index of the first value to get.
+   * @param count the number of values to get.
+   * @see #getInts(int[], int, int)
+   */
+  public void getDoubles(double[] values, int offset, int count) {
+    int i = offset;
+    int end = offset + count;
+    int position = byteBuffer.position();
+    if (position + count * 9L <= limit) {
+      for (; i < end && byteBuffer.get(position) == 8; i++, position += 9) {
+        values[i] = byteBuffer.getDouble(position + 1);
+      }
+      byteBuffer.position(position);
+    }
+    for (; i < end; i++) {
+      values[i] = Double.longBitsToDouble(getSizedLong());
+    }
+  }
+
+  /**
+   * Get consecutive 64-bit floating point array elements into a buffer, advancing its position.
+   * @param values the buffer to fill.
+   * @param count the number of values to get.
+   */
+  public void getDoubles(DoubleBuffer values, int count) {
+    if (values.hasArray()) {
+      getDoubles(values.array(), values.arrayOffset() + values.position(), count);
+      values.position(values.position() + count);
+      return;
+    }
+    for (int i = 0; i < count; i++) {
+      values.put(Double.longBitsToDouble(getSizedLong()));
+    }
+  }
+
+  private int getSizedInt() {
+    int size = getVlqInt();
+    if (size != 4) {
+      throw new CorruptDataException("Expected field size of 4, read : " + size);
+    }
+    return getInt();
+  }
+
+  private long getSizedLong() {
+    int size = getVlqInt();
+    if (size != 8) {
+      throw new CorruptDataException("Expected field size of 8, read : " + size);
+    }
+    return getLong();
+  }
+
   public int getVlqInt() {
     return VLQ.decode(this);
   }
 
+  public long getVlqLong() {
+    return VLQ.decodeUnsigned(this);
+  }
+
   byte getByte() {
     if (byteBuffer.position() + 1 > limit) {
       throw new LimitReachedException();
@@ -85,6 +225,11 @@ public class ReadBuffer {
     return byteBuffer.get();
   }
 
+  /**
+   * Get the next bytes without copying them.
+   * @param size the number of bytes.
+   * @return a read-only slice sharing the bytes of the underlying buffer.
+   */
   public ByteBuffer getByteBuffer(int size) {
     if (byteBuffer.position() + size > limit) {
       throw new LimitReachedException();
@@ -92,7 +237,21 @@ public class ReadBuffer {
     ByteBuffer slice = byteBuffer.slice();
     slice.limit(size);
     byteBuffer.position(byteBuffer.position() + size);
-    return slice;
+    return slice.asReadOnlyBuffer();
+  }
+
+  /**
+   * Get the next bytes as an encoded string, without copying nor decoding them.
+   * @param size the number of bytes.
+   * @return a view sharing the bytes of the underlying buffer.
+   */
+  public Utf8View getUtf8View(int size) {
+    if (byteBuffer.position() + size > limit) {
+      throw new LimitReachedException();
+    }
+    Utf8View view = Utf8View.wrap(byteBuffer, byteBuffer.position(), size);
+    byteBuffer.position(byteBuffer.position() + size);
+    return view;
   }
 
   public String getString(int size) {
@@ -327,26 +327,17 @@ public final class StringTool {
                                 final String str,
                                 final int strLength) throws BufferOverflowException, ReadOnlyBufferException {
 
-    final char[] slice = new char[MAX_SLICE_LENGTH];
-    int sz = 0;
-    for (int offset = 0; offset < strLength; offset += MAX_SLICE_LENGTH) {
-      final int sliceLength = Math.min(MAX_SLICE_LENGTH, strLength - offset);
-      str.getChars(offset, offset + sliceLength, slice, 0);
-      for (int i = 0; i < sliceLength; i++) {
-        final char c = slice[i];
-        if (c <= '\u007F' && c != '\u0000') {
-          buffer.put((byte) c);
-          sz++;
-        } else if (c <= '\u07FF') {
-          buffer.put((byte) (0xC0 | c >>> 6)).put((byte) (0x80 | (c & 0x3F)));
-          sz = sz + 2;
-        } else {
-          buffer.put((byte) (0xE0 | c >>> 12)).put((byte) (0x80 | ((c >>> 6) & 0x3F))).put((byte) (0x80 | (c & 0x3F)));
-          sz = sz + 3;
-        }
+    // no char slice here: encoding into a buffer must not allocate
+    for (int i = 0; i < strLength; i++) {
+      final char c = str.charAt(i);
+      if (c <= '\u007F' && c != '\u0000') {
+        buffer.put((byte) c);
+      } else if (c <= '\u07FF') {
+        buffer.put((byte) (0xC0 | c >>> 6)).put((byte) (0x80 | (c & 0x3F)));
+      } else {
+        buffer.put((byte) (0xE0 | c >>> 12)).put((byte) (0x80 | ((c >>> 6) & 0x3F))).put((byte) (0x80 | (c & 0x3F)));
       }
     }
-
   }
 
   /**
@@ -494,6 +485,21 @@ public final class StringTool {
     return (int) len;
   }
 
+  /**
+   * Calculates the number of bytes {@link #putEncoded(ByteBuffer, String, int)} writes for a {@code String}.
+   *
+   * @param str the {@code String} for which the length is to be calculated
+   * @return the byte length of the raw encoding
+   * @throws IllegalStateException if the calculated length is greater than {@code Integer.MAX_VALUE}
+   */
+  public static int getEncodedLength(final String str) {
+    long len = getEncodedLen(str);
+    if (len > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Encoded length greater than Integer.MAX_VALUE: " + len);
+    }
+    return (int) len;
+  }
+
   /**
    * Calculates the length of a {@code String} when encoded using modified UTF-8.
    *
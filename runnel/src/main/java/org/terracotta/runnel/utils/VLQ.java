@@ -52,6 +52,28 @@ public class VLQ {
     out.put((byte) (b));
   }
 
+  /**
+   * Encode a value using exactly the given amount of bytes, at the given absolute index, without changing
+   * the buffer's position. The value is left-padded with zero groups that the decoder skips over.
+   * @param value the value to encode.
+   * @param width the amount of bytes to use, must be at least {@link #encodedSize(int)} of the value and at most 5.
+   * @param out the buffer to write to.
+   * @param index the absolute index at which to write.
+   */
+  public static void encodeFixedWidth(int value, int width, ByteBuffer out, int index) {
+    if (width > 5 || encodedSize(value) > width) {
+      throw new IllegalArgumentException("Cannot encode " + value + " in " + width + " bytes");
+    }
+    for (int i = width - 1; i >= 0; i--) {
+      int b = value & 0x7F;
+      if (i < width - 1) {
+        b |= 0x80;
+      }
+      out.put(index + i, (byte) b);
+      value >>>= 7;
+    }
+  }
+
   public static int decode(ReadBuffer in) {
     int b;
     int value = 0;
@@ -68,6 +90,68 @@ public class VLQ {
     throw new IllegalArgumentException("Cannot decode value greater than Integer.MAX_VALUE");
   }
 
+  /**
+   * Encode a 64-bit value, taken as unsigned, with the same big-endian 7-bit groups as {@link #encode(int, ByteBuffer)}
+   * but with up to 10 groups.
+   * @param value the value, treated as unsigned.
+   * @param out the buffer to write to.
+   */
+  public static void encodeUnsigned(long value, ByteBuffer out) {
+    for (int shift = (encodedSizeUnsigned(value) - 1) * 7; shift > 0; shift -= 7) {
+      out.put((byte) (((value >>> shift) & 0x7F) | 0x80));
+    }
+    out.put((byte) (value & 0x7F));
+  }
+
+  /**
+   * Decode a value encoded with {@link #encodeUnsigned(long, ByteBuffer)}, consuming up to 10 bytes.
+   * @param in the buffer to read from.
+   * @return the value, to be treated as unsigned.
+   */
+  public static long decodeUnsigned(ReadBuffer in) {
+    long value = 0L;
+    for (int i = 0; i < 10; i++) {
+      int b = in.getByte();
+      value = (value << 7) | (b & 0x7F);
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new CorruptDataException("VLQ longer than 10 bytes");
+  }
+
+  /**
+   * @param value the value, treated as unsigned.
+   * @return the number of bytes {@link #encodeUnsigned(long, ByteBuffer)} writes.
+   */
+  public static int encodedSizeUnsigned(long value) {
+    int i = 1;
+    while ((value & 0xFFFFFFFFFFFFFF80L) != 0L) {
+      value >>>= 7;
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * Map a signed value to an unsigned one so that values of small magnitude, negative ones included, encode
+   * on few bytes: 0, -1, 1, -2, 2... become 0, 1, 2, 3, 4...
+   * @param value the signed value.
+   * @return the zigzag-encoded value.
+   */
+  public static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  /**
+   * Reverse {@link #zigZag(long)}.
+   * @param value the zigzag-encoded value.
+   * @return the signed value.
+   */
+  public static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1L);
+  }
+
   public static int encodedSize(int value) {
     if (value < 0) {
       throw new IllegalArgumentException("Cannot encode negative values");
@@ -15,7 +15,11 @@
  */
 package org.terracotta.runnel.utils;
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 
 /**
  * @author Ludovic Orban
@@ -28,6 +32,10 @@ public class WriteBuffer {
     this.byteBuffer = byteBuffer;
   }
 
+  public boolean wraps(ByteBuffer byteBuffer) {
+    return this.byteBuffer == byteBuffer;
+  }
+
   public void putBoolean(boolean value) {
     byteBuffer.put(value ? (byte) 1 : (byte) 0);
   }
@@ -52,8 +60,153 @@ public class WriteBuffer {
     VLQ.encode(value, byteBuffer);
   }
 
+  public void putVlqLong(long value) {
+    VLQ.encodeUnsigned(value, byteBuffer);
+  }
+
   public void putByteBuffer(ByteBuffer buffer) {
     byteBuffer.put(buffer);
   }
 
+  /**
+   * Put 32-bit integers as array elements, i.e.: each one prefixed with its size.
+   * The space left is checked once, then the elements are written with absolute puts.
+   * @param values the values.
+   * @param offset the index of the first value to put.
+   * @param length the number of values to put.
+   */
+  public void putInts(int[] values, int offset, int length) {
+    int position = reserve(length, 4);
+    for (int i = offset, end = offset + length; i < end; i++, position += 5) {
+      byteBuffer.put(position, (byte) 4);
+      byteBuffer.putInt(position + 1, values[i]);
+    }
+  }
+
+  /**
+   * Put the remaining 32-bit integers of a buffer as array elements, without modifying the buffer's position.
+   * @param values the values.
+   */
+  public void putInts(IntBuffer values) {
+    if (values.hasArray()) {
+      putInts(values.array(), values.arrayOffset() + values.position(), values.remaining());
+      return;
+    }
+    int position = reserve(values.remaining(), 4);
+    for (int i = values.position(), end = values.limit(); i < end; i++, position += 5) {
+      byteBuffer.put(position, (byte) 4);
+      byteBuffer.putInt(position + 1, values.get(i));
+    }
+  }
+
+  /**
+   * Put 64-bit integers as array elements, i.e.: each one prefixed with its size.
+   * @param values the values.
+   * @param offset the index of the first value to put.
+   * @param length the number of values to put.
+   * @see #putInts(int[], int, int)
+   */
+  public void putLongs(long[] values, int offset, int length) {
+    int position = reserve(length, 8);
+    for (int i = offset, end = offset + length; i < end; i++, position += 9) {
+      byteBuffer.put(position, (byte) 8);
+      byteBuffer.putLong(position + 1, values[i]);
+    }
+  }
+
+  /**
+   * Put the remaining 64-bit integers of a buffer as array elements, without modifying the buffer's position.
+   * @param values the values.
+   */
+  public void putLongs(LongBuffer values) {
+    if (values.hasArray()) {
+      putLongs(values.array(), values.arrayOffset() + values.position(), values.remaining());
+      return;
+    }
+    int position = reserve(values.remaining(), 8);
+    for (int i = values.position(), end = values.limit(); i < end; i++, position += 9) {
+      byteBuffer.put(position, (byte) 8);
+      byteBuffer.putLong(position + 1, values.get(i));
+    }
+  }
+
+  /**
+   * Put 64-bit floating point numbers as array elements, i.e.: each one prefixed with its size.
+   * @param values the values.
+   * @param offset the index of the first value to put.
+   * @param length the number of values to put.
+   * @see #putInts(int[], int, int)
+   */
+  public void putDoubles(double[] values, int offset, int length) {
+    int position = reserve(length, 8);
+    for (int i = offset, end = offset + length; i < end; i++, position += 9) {
+      byteBuffer.put(position, (byte) 8);
+      byteBuffer.putDouble(position + 1, values[i]);
+    }
+  }
+
+  /**
+   * Put the remaining 64-bit floating point numbers of a buffer as array elements, without modifying the buffer's
+   * position.
+   * @param values the values.
+   */
+  public void putDoubles(DoubleBuffer values) {
+    if (values.hasArray()) {
+      putDoubles(values.array(), values.arrayOffset() + values.position(), values.remaining());
+      return;
+    }
+    int position = reserve(values.remaining(), 8);
+    for (int i = values.position(), end = values.limit(); i < end; i++, position += 9) {
+      byteBuffer.put(position, (byte) 8);
+      byteBuffer.putDouble(position + 1, values.get(i));
+    }
+  }
+
+  /**
+   * Advance the position past the space needed by array elements whose size fits in a single VLQ byte.
+   * @return the position of the first element.
+   */
+  private int reserve(int length, int elementSize) {
+    int position = byteBuffer.position();
+    long size = (long) length * (elementSize + 1);
+    if (size > byteBuffer.remaining()) {
+      throw new BufferOverflowException();
+    }
+    byteBuffer.position(position + (int) size);
+    return position;
+  }
+
+  /**
+   * Skip enough bytes to later write, with {@link #putVlqIntAt(int, int, int)}, a VLQ of any value up to
+   * the space left in the buffer.
+   * @return the position of the reserved bytes.
+   */
+  public int reserveVlqInt() {
+    int position = byteBuffer.position();
+    int width = VLQ.encodedSize(byteBuffer.remaining());
+    if (width > byteBuffer.remaining()) {
+      throw new BufferOverflowException();
+    }
+    byteBuffer.position(position + width);
+    return position;
+  }
+
+  /**
+   * Write a VLQ in bytes previously reserved with {@link #reserveVlqInt()}.
+   * @param position the position returned by {@link #reserveVlqInt()}.
+   * @param width the amount of reserved bytes, i.e.: the difference between the reserved position and the next one.
+   * @param value the value to write.
+   */
+  public void putVlqIntAt(int position, int width, int value) {
+    VLQ.encodeFixedWidth(value, width, byteBuffer, position);
+  }
+
+  public int position() {
+    return byteBuffer.position();
+  }
+
+  public ByteBuffer getByteBuffer() {
+    return byteBuffer;
+  }
+
 }
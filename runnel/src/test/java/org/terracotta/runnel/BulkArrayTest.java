@@ -0,0 +1,196 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel;
+
+import org.junit.Test;
+import org.terracotta.runnel.decoding.ArrayDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.encoding.ArrayEncoder;
+import org.terracotta.runnel.encoding.StructEncoder;
+import org.terracotta.runnel.utils.CorruptDataException;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class BulkArrayTest {
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .int32s("ints", 1)
+      .int64s("longs", 2)
+      .fp64s("doubles", 3)
+      .int32("last", 4)
+      .build();
+
+  private static final int[] INTS = {0, 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE};
+  private static final long[] LONGS = {0L, 1L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, 1_000_000_000_000L};
+  private static final double[] DOUBLES = {0.0, -1.5, Double.NaN, Double.MAX_VALUE};
+
+  @Test
+  public void testBulkEncodingSameAsBoxed() throws Exception {
+    ByteBuffer boxed = fillBoxed(STRUCT.encoder()).encode();
+
+    ByteBuffer bulk = STRUCT.encoder()
+        .int32s("ints", INTS)
+        .int64s("longs", LONGS)
+        .fp64s("doubles", DOUBLES)
+        .int32("last", 42)
+        .encode();
+
+    assertThat(bulk, is(boxed));
+  }
+
+  @Test
+  public void testBufferEncodingDoesNotConsumeBuffers() throws Exception {
+    IntBuffer ints = ByteBuffer.allocateDirect(INTS.length * 4).asIntBuffer().put(INTS);
+    ints.flip();
+    LongBuffer longs = LongBuffer.allocate(LONGS.length + 1).put(-5L).put(LONGS);
+    longs.position(1);
+    DoubleBuffer doubles = DoubleBuffer.wrap(DOUBLES);
+
+    ByteBuffer encoded = STRUCT.encoder()
+        .int32s("ints", ints)
+        .int64s("longs", longs.slice())
+        .fp64s("doubles", doubles)
+        .int32("last", 42)
+        .encode();
+
+    assertThat(ints.remaining(), is(INTS.length));
+    assertThat(longs.position(), is(1));
+    assertThat(doubles.remaining(), is(DOUBLES.length));
+
+    encoded.rewind();
+    assertDecoded(STRUCT.decoder(encoded));
+  }
+
+  @Test
+  public void testWriterBulkArrays() throws Exception {
+    ByteBuffer written = STRUCT.writer(ByteBuffer.allocateDirect(512))
+        .int32s("ints", INTS)
+        .int64s("longs", LongBuffer.wrap(LONGS))
+        .fp64s("doubles", DOUBLES)
+        .int32("last", 42)
+        .finish();
+    written.flip();
+
+    assertDecoded(STRUCT.decoder(written));
+  }
+
+  @Test
+  public void testFillBuffers() throws Exception {
+    ByteBuffer encoded = STRUCT.encoder()
+        .int32s("ints", INTS)
+        .int64s("longs", LONGS)
+        .fp64s("doubles", DOUBLES)
+        .encode();
+    encoded.rewind();
+
+    StructDecoder<Void> decoder = STRUCT.decoder(encoded);
+
+    IntBuffer ints = ByteBuffer.allocateDirect(64).asIntBuffer();
+    ArrayDecoder<Integer, StructDecoder<Void>> intsDecoder = decoder.int32s("ints");
+    assertThat(intsDecoder.fill(ints), is(INTS.length));
+    ints.flip();
+    for (int value : INTS) {
+      assertThat(ints.get(), is(value));
+    }
+    intsDecoder.end();
+
+    LongBuffer longs = LongBuffer.allocate(3);
+    ArrayDecoder<Long, StructDecoder<Void>> longsDecoder = decoder.int64s("longs");
+    assertThat(longsDecoder.fill(longs), is(3));
+    assertThat(longs.remaining(), is(0));
+    assertThat(longs.get(2), is(-1L));
+    longs.clear();
+    assertThat(longsDecoder.fill(longs), is(3));
+    assertThat(longs.get(0), is(Long.MAX_VALUE));
+    assertThat(longsDecoder.fill(longs), is(0));
+    longsDecoder.end();
+
+    DoubleBuffer doubles = DoubleBuffer.allocate(16);
+    assertThat(decoder.fp64s("doubles").fill(doubles), is(DOUBLES.length));
+    assertThat(Double.isNaN(doubles.get(2)), is(true));
+  }
+
+  @Test
+  public void testFillWithPaddedElementSizes() throws Exception {
+    // struct size, then ints field : index, size, length and elements whose size is padded with a zero VLQ group
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    buffer.put((byte) 16);
+    buffer.put((byte) 1).put((byte) 14).put((byte) 2);
+    buffer.put((byte) 4).putInt(10);
+    buffer.put((byte) 0x80).put((byte) 4).putInt(20);
+    buffer.flip();
+
+    int[] values = new int[2];
+    assertThat(STRUCT.decoder(buffer).int32s("ints").fill(values), is(2));
+    assertThat(values[0], is(10));
+    assertThat(values[1], is(20));
+  }
+
+  @Test(expected = CorruptDataException.class)
+  public void testFillWithInvalidElementSize() throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    buffer.put((byte) 9);
+    buffer.put((byte) 1).put((byte) 7).put((byte) 1);
+    buffer.put((byte) 5).putInt(10).put((byte) 0);
+    buffer.flip();
+
+    STRUCT.decoder(buffer).int32s("ints").fill(new int[1]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongArrayType() throws Exception {
+    STRUCT.encoder().int64s("ints", new long[] {1L});
+  }
+
+  private static void assertDecoded(StructDecoder<Void> decoder) {
+    int[] ints = new int[INTS.length];
+    assertThat(decoder.int32s("ints").fill(ints), is(INTS.length));
+    assertThat(ints, is(INTS));
+    long[] longs = new long[LONGS.length];
+    assertThat(decoder.int64s("longs").fill(longs), is(LONGS.length));
+    assertThat(longs, is(LONGS));
+    double[] doubles = new double[DOUBLES.length];
+    assertThat(decoder.fp64s("doubles").fill(doubles), is(DOUBLES.length));
+    assertThat(doubles, is(DOUBLES));
+    assertThat(decoder.int32("last"), is(42));
+  }
+
+  private static StructEncoder<Void> fillBoxed(StructEncoder<Void> encoder) {
+    ArrayEncoder<Integer, StructEncoder<Void>> ints = encoder.int32s("ints");
+    for (int value : INTS) {
+      ints.value(value);
+    }
+    ints.end();
+    ArrayEncoder<Long, StructEncoder<Void>> longs = encoder.int64s("longs");
+    for (long value : LONGS) {
+      longs.value(value);
+    }
+    longs.end();
+    ArrayEncoder<Double, StructEncoder<Void>> doubles = encoder.fp64s("doubles");
+    for (double value : DOUBLES) {
+      doubles.value(value);
+    }
+    doubles.end();
+    return encoder.int32("last", 42);
+  }
+
+}
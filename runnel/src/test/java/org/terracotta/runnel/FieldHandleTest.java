@@ -0,0 +1,187 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel;
+
+import org.junit.Test;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.handles.BoolHandle;
+import org.terracotta.runnel.handles.ByteBufferHandle;
+import org.terracotta.runnel.handles.CharHandle;
+import org.terracotta.runnel.handles.EnumHandle;
+import org.terracotta.runnel.handles.FloatingPoint64Handle;
+import org.terracotta.runnel.handles.Int32Handle;
+import org.terracotta.runnel.handles.Int64Handle;
+import org.terracotta.runnel.handles.StringHandle;
+import org.terracotta.runnel.handles.StructHandle;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class FieldHandleTest {
+
+  enum Color {RED, GREEN}
+
+  private static final Struct SUB = StructBuilder.newStructBuilder()
+      .string("name", 1)
+      .int64("value", 2)
+      .build();
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .bool("b", 1)
+      .chr("c", 2)
+      .enm("color", 3, EnumMappingBuilder.newEnumMappingBuilder(Color.class).mapping(Color.RED, 1).mapping(Color.GREEN, 2).build())
+      .int32("i", 4)
+      .int64("l", 5)
+      .fp64("d", 6)
+      .string("s", 7)
+      .byteBuffer("blob", 8)
+      .struct("sub", 9, SUB)
+      .int32("last", 10)
+      .build();
+
+  private static final BoolHandle B = STRUCT.boolHandle("b");
+  private static final CharHandle C = STRUCT.chrHandle("c");
+  private static final EnumHandle<Color> COLOR = STRUCT.enmHandle("color");
+  private static final Int32Handle I = STRUCT.int32Handle("i");
+  private static final Int64Handle L = STRUCT.int64Handle("l");
+  private static final FloatingPoint64Handle D = STRUCT.fp64Handle("d");
+  private static final StringHandle S = STRUCT.stringHandle("s");
+  private static final ByteBufferHandle BLOB = STRUCT.byteBufferHandle("blob");
+  private static final StructHandle SUB_HANDLE = STRUCT.structHandle("sub");
+  private static final Int32Handle LAST = STRUCT.int32Handle("last");
+  private static final StringHandle SUB_NAME = SUB.stringHandle("name");
+  private static final Int64Handle SUB_VALUE = SUB.int64Handle("value");
+
+  @Test
+  public void testHandleEncodingSameAsNameEncoding() throws Exception {
+    ByteBuffer byHandle = STRUCT.encoder()
+        .bool(B, true)
+        .chr(C, 'x')
+        .enm(COLOR, Color.GREEN)
+        .int32(I, 42)
+        .int64(L, -1L)
+        .fp64(D, 1.5)
+        .string(S, "str")
+        .byteBuffer(BLOB, ByteBuffer.wrap(new byte[] {1, 2}))
+        .struct(SUB_HANDLE)
+          .string(SUB_NAME, "sub")
+          .int64(SUB_VALUE, 7L)
+        .end()
+        .int32(LAST, 1)
+        .encode();
+
+    ByteBuffer byName = STRUCT.encoder()
+        .bool("b", true)
+        .chr("c", 'x')
+        .enm("color", Color.GREEN)
+        .int32("i", 42)
+        .int64("l", -1L)
+        .fp64("d", 1.5)
+        .string("s", "str")
+        .byteBuffer("blob", ByteBuffer.wrap(new byte[] {1, 2}))
+        .struct("sub")
+          .string("name", "sub")
+          .int64("value", 7L)
+        .end()
+        .int32("last", 1)
+        .encode();
+
+    assertThat(byHandle, is(byName));
+  }
+
+  @Test
+  public void testDecodeWithHandles() throws Exception {
+    ByteBuffer encoded = STRUCT.writer(ByteBuffer.allocate(256))
+        .bool(B, true)
+        .chr(C, 'x')
+        .enm(COLOR, Color.RED)
+        .int32(I, 42)
+        .fp64(D, 1.5)
+        .string(S, "str")
+        .byteBuffer(BLOB, ByteBuffer.wrap(new byte[] {1, 2}))
+        .struct(SUB_HANDLE)
+          .int64(SUB_VALUE, 7L)
+        .end()
+        .int32(LAST, 1)
+        .finish();
+    encoded.flip();
+
+    StructDecoder<Void> decoder = STRUCT.decoder(encoded);
+    assertThat(decoder.bool(B), is(true));
+    assertThat(decoder.chrOrDefault(C, ' '), is('x'));
+    assertThat(decoder.enm(COLOR).get(), is(Color.RED));
+    assertThat(decoder.int32OrDefault(I, -1), is(42));
+    assertThat(decoder.has(L), is(false));
+    assertThat(decoder.int64OrDefault(L, -1L), is(-1L));
+    assertThat(decoder.has(D), is(true));
+    assertThat(decoder.fp64(D), is(1.5));
+    assertThat(decoder.string(S), is("str"));
+    assertThat(decoder.byteBuffer(BLOB).remaining(), is(2));
+    StructDecoder<StructDecoder<Void>> sub = decoder.struct(SUB_HANDLE);
+    assertThat(sub.string(SUB_NAME), is(nullValue()));
+    assertThat(sub.int64(SUB_VALUE), is(7L));
+    sub.end();
+    assertThat(decoder.int32(LAST), is(1));
+  }
+
+  @Test
+  public void testMixNamesAndHandles() throws Exception {
+    ByteBuffer encoded = STRUCT.encoder()
+        .int32(I, 42)
+        .string("s", "str")
+        .int32(LAST, 1)
+        .encode();
+    encoded.flip();
+
+    StructDecoder<Void> decoder = STRUCT.decoder(encoded);
+    assertThat(decoder.has("i"), is(true));
+    assertThat(decoder.int32(I), is(42));
+    assertThat(decoder.has(S), is(true));
+    assertThat(decoder.string("s"), is("str"));
+    assertThat(decoder.int32("last"), is(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHandleOfOtherStructIsRejected() throws Exception {
+    STRUCT.encoder().string(SUB_NAME, "wrong struct");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHandleOfOtherStructIsRejectedByDecoder() throws Exception {
+    ByteBuffer encoded = STRUCT.encoder().int32(I, 1).encode();
+    encoded.flip();
+    STRUCT.decoder(encoded).int64(SUB_VALUE);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHandleOfWrongType() throws Exception {
+    STRUCT.int64Handle("i");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHandleOfNonExistentField() throws Exception {
+    STRUCT.int32Handle("nope");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHandlesMustBeUsedInOrder() throws Exception {
+    STRUCT.encoder().int32(LAST, 1).int32(I, 2);
+  }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel;
+
+import org.junit.Test;
+import org.terracotta.runnel.decoding.ArrayDecoder;
+import org.terracotta.runnel.decoding.IndexedStructDecoder;
+import org.terracotta.runnel.decoding.StructArrayDecoder;
+import org.terracotta.runnel.handles.Int32Handle;
+import org.terracotta.runnel.handles.StringHandle;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class IndexedStructDecoderTest {
+
+  enum Color {RED, GREEN}
+
+  private static final Struct SUB = StructBuilder.newStructBuilder()
+      .string("name", 1)
+      .int64("value", 2)
+      .build();
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .bool("b", 1)
+      .enm("color", 2, EnumMappingBuilder.newEnumMappingBuilder(Color.class).mapping(Color.RED, 1).mapping(Color.GREEN, 2).build())
+      .int64("l", 3)
+      .string("s", 4)
+      .struct("sub", 5, SUB)
+      .int32s("is", 6)
+      .structs("subs", 7, SUB)
+      .fp64("d", 8)
+      .int32("type", 9)
+      .build();
+
+  private static final Int32Handle TYPE = STRUCT.int32Handle("type");
+  private static final StringHandle SUB_NAME = SUB.stringHandle("name");
+
+  @Test
+  public void testOutOfOrderAndRepeatedReads() throws Exception {
+    ByteBuffer encoded = encode();
+
+    IndexedStructDecoder decoder = STRUCT.indexedDecoder(encoded);
+    assertThat(decoder.int32(TYPE), is(3));
+    assertThat(decoder.string("s"), is("str"));
+    assertThat(decoder.boolOrDefault("b", false), is(true));
+    assertThat(decoder.int32OrDefault(TYPE, -1), is(3));
+    assertThat(decoder.<Color>enm("color").get(), is(Color.GREEN));
+    assertThat(decoder.string("s"), is("str"));
+    assertThat(decoder.fp64("d"), is(0.5));
+    assertThat(decoder.int32("type"), is(3));
+  }
+
+  @Test
+  public void testAbsentFields() throws Exception {
+    ByteBuffer encoded = STRUCT.encoder()
+        .int32("type", 1)
+        .encode();
+    encoded.flip();
+
+    IndexedStructDecoder decoder = STRUCT.indexedDecoder(encoded);
+    assertThat(decoder.has(TYPE), is(true));
+    assertThat(decoder.has("b"), is(false));
+    assertThat(decoder.bool("b"), is(nullValue()));
+    assertThat(decoder.int64OrDefault("l", -1L), is(-1L));
+    assertThat(decoder.enm("color").isFound(), is(false));
+    assertThat(decoder.struct("sub"), is(nullValue()));
+    assertThat(decoder.int32s("is"), is(nullValue()));
+    assertThat(decoder.structs("subs"), is(nullValue()));
+  }
+
+  @Test
+  public void testSubStructsAndArrays() throws Exception {
+    ByteBuffer encoded = encode();
+
+    IndexedStructDecoder decoder = STRUCT.indexedDecoder(encoded);
+    ArrayDecoder<Integer, IndexedStructDecoder> is = decoder.int32s("is");
+    assertThat(is.length(), is(2));
+    assertThat(is.value(), is(10));
+
+    IndexedStructDecoder sub = decoder.struct("sub");
+    assertThat(sub.int64("value"), is(1L));
+    assertThat(sub.string(SUB_NAME), is("sub"));
+
+    // reads in between do not disturb an array being decoded
+    assertThat(is.value(), is(20));
+    assertThat(is.end() == decoder, is(true));
+
+    StructArrayDecoder<IndexedStructDecoder> subs = decoder.structs("subs");
+    assertThat(subs.length(), is(2));
+    assertThat(subs.next().string("name"), is("first"));
+    assertThat(subs.next().string("name"), is("second"));
+    subs.end();
+
+    assertThat(decoder.struct(STRUCT.structHandle("sub")).string("name"), is("sub"));
+  }
+
+  @Test
+  public void testUnknownFieldsAreSkipped() throws Exception {
+    Struct newer = StructBuilder.newStructBuilder()
+        .bool("b", 1)
+        .string("added", 2)
+        .int64("l", 3)
+        .int32("added2", 4)
+        .int32("type", 9)
+        .int32("added3", 10)
+        .build();
+    ByteBuffer encoded = newer.encoder()
+        .bool("b", true)
+        .string("added", "new")
+        .int64("l", 5L)
+        .int32("added2", 6)
+        .int32("type", 7)
+        .int32("added3", 8)
+        .encode();
+    encoded.flip();
+
+    IndexedStructDecoder decoder = STRUCT.indexedDecoder(encoded);
+    assertThat(decoder.int32(TYPE), is(7));
+    assertThat(decoder.int64("l"), is(5L));
+    assertThat(decoder.bool("b"), is(true));
+  }
+
+  @Test
+  public void testBufferPositionedAfterStruct() throws Exception {
+    ByteBuffer encoded = encode();
+    int end = encoded.limit();
+    ByteBuffer larger = ByteBuffer.allocate(end + 4);
+    larger.put(encoded).putInt(42).flip();
+
+    IndexedStructDecoder decoder = STRUCT.indexedDecoder(larger);
+    assertThat(larger.position(), is(end));
+    assertThat(decoder.string("s"), is("str"));
+    assertThat(larger.position(), is(end));
+    assertThat(larger.getInt(), is(42));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHandleOfOtherStructIsRejected() throws Exception {
+    STRUCT.indexedDecoder(encode()).string(SUB_NAME);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidType() throws Exception {
+    STRUCT.indexedDecoder(encode()).int64("type");
+  }
+
+  private static ByteBuffer encode() {
+    ByteBuffer encoded = STRUCT.encoder()
+        .bool("b", true)
+        .enm("color", Color.GREEN)
+        .string("s", "str")
+        .struct("sub")
+          .string("name", "sub")
+          .int64("value", 1L)
+        .end()
+        .int32s("is")
+          .value(10)
+          .value(20)
+        .end()
+        .structs("subs")
+          .add().string("name", "first").end()
+          .add().string("name", "second").end()
+        .end()
+        .fp64("d", 0.5)
+        .int32("type", 3)
+        .encode();
+    encoded.flip();
+    return encoded;
+  }
+
+}
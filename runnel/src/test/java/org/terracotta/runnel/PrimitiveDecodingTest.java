@@ -0,0 +1,184 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel;
+
+import org.junit.Test;
+import org.terracotta.runnel.decoding.ArrayDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+
+public class PrimitiveDecodingTest {
+
+  private final Struct struct = StructBuilder.newStructBuilder()
+      .bool("b", 1)
+      .chr("c", 2)
+      .int32("i", 3)
+      .int64("l", 4)
+      .fp64("d", 5)
+      .int32s("is", 6)
+      .int64s("ls", 7)
+      .fp64s("ds", 8)
+      .string("s", 9)
+      .build();
+
+  @Test
+  public void testPrimitiveDecoding() throws Exception {
+    ByteBuffer encoded = struct.encoder()
+        .bool("b", true)
+        .chr("c", 'x')
+        .int32("i", 1000)
+        .int64("l", Long.MIN_VALUE)
+        .fp64("d", 1.5)
+        .encode();
+    encoded.rewind();
+
+    StructDecoder<Void> decoder = struct.decoder(encoded);
+    assertThat(decoder.boolOrDefault("b", false), is(true));
+    assertThat(decoder.chrOrDefault("c", ' '), is('x'));
+    assertThat(decoder.int32OrDefault("i", -1), is(1000));
+    assertThat(decoder.int64OrDefault("l", -1L), is(Long.MIN_VALUE));
+    assertThat(decoder.fp64OrDefault("d", -1.0), is(1.5));
+  }
+
+  @Test
+  public void testPrimitiveDecodingOfAbsentFieldsReturnsDefault() throws Exception {
+    ByteBuffer encoded = struct.encoder()
+        .int64("l", 42L)
+        .encode();
+    encoded.rewind();
+
+    StructDecoder<Void> decoder = struct.decoder(encoded);
+    assertThat(decoder.boolOrDefault("b", true), is(true));
+    assertThat(decoder.chrOrDefault("c", '?'), is('?'));
+    assertThat(decoder.int32OrDefault("i", -1), is(-1));
+    assertThat(decoder.int64OrDefault("l", -1L), is(42L));
+    assertThat(decoder.fp64OrDefault("d", -1.0), is(-1.0));
+  }
+
+  @Test
+  public void testHas() throws Exception {
+    ByteBuffer encoded = struct.encoder()
+        .int32("i", 10)
+        .fp64("d", 2.0)
+        .string("s", "hello")
+        .encode();
+    encoded.rewind();
+
+    StructDecoder<Void> decoder = struct.decoder(encoded);
+    assertThat(decoder.has("b"), is(false));
+    assertThat(decoder.has("i"), is(true));
+    assertThat(decoder.has("i"), is(true));
+    assertThat(decoder.int32OrDefault("i", -1), is(10));
+    assertThat(decoder.has("l"), is(false));
+    assertThat(decoder.has("d"), is(true));
+    // skipping over a present field that was checked but not read
+    assertThat(decoder.string("s"), is("hello"));
+  }
+
+  @Test
+  public void testHasThenBoxedRead() throws Exception {
+    ByteBuffer encoded = struct.encoder()
+        .int64("l", 10L)
+        .encode();
+    encoded.rewind();
+
+    StructDecoder<Void> decoder = struct.decoder(encoded);
+    assertThat(decoder.has("l"), is(true));
+    assertThat(decoder.int64("l"), is(10L));
+  }
+
+  @Test
+  public void testHasWithInvalidTypeThrowsOnRead() throws Exception {
+    ByteBuffer encoded = struct.encoder()
+        .int64("l", 10L)
+        .encode();
+    encoded.rewind();
+
+    StructDecoder<Void> decoder = struct.decoder(encoded);
+    assertThat(decoder.has("l"), is(true));
+    try {
+      decoder.int32OrDefault("l", -1);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    // the peeked field is still the current one
+    assertThat(decoder.has("l"), is(true));
+    assertThat(decoder.int64OrDefault("l", -1L), is(10L));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testHasNonExistentNameThrows() throws Exception {
+    ByteBuffer encoded = struct.encoder()
+        .encode();
+    encoded.rewind();
+
+    struct.decoder(encoded).has("unknown");
+  }
+
+  @Test
+  public void testPrimitiveArrayDecoding() throws Exception {
+    ByteBuffer encoded = struct.encoder()
+        .int32s("is").value(1).value(2).value(3).end()
+        .int64s("ls").value(4L).value(5L).end()
+        .fp64s("ds").value(6.0).value(7.0).value(8.0).end()
+        .encode();
+    encoded.rewind();
+
+    StructDecoder<Void> decoder = struct.decoder(encoded);
+
+    ArrayDecoder<Integer, StructDecoder<Void>> ints = decoder.int32s("is");
+    int[] intValues = new int[2];
+    assertThat(ints.fill(intValues), is(2));
+    assertThat(intValues[0], is(1));
+    assertThat(intValues[1], is(2));
+    assertThat(ints.fill(intValues), is(1));
+    assertThat(intValues[0], is(3));
+    assertThat(ints.fill(intValues), is(0));
+    ints.end();
+
+    ArrayDecoder<Long, StructDecoder<Void>> longs = decoder.int64s("ls");
+    assertThat(longs.value(), is(4L));
+    long[] longValues = new long[10];
+    assertThat(longs.fill(longValues), is(1));
+    assertThat(longValues[0], is(5L));
+    longs.end();
+
+    ArrayDecoder<Double, StructDecoder<Void>> doubles = decoder.fp64s("ds");
+    double[] doubleValues = new double[3];
+    assertThat(doubles.fill(doubleValues), is(3));
+    assertThat(doubleValues[0], is(6.0));
+    assertThat(doubleValues[1], is(7.0));
+    assertThat(doubleValues[2], is(8.0));
+    doubles.end();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPrimitiveArrayDecodingOfInvalidTypeThrows() throws Exception {
+    ByteBuffer encoded = struct.encoder()
+        .int32s("is").value(1).end()
+        .encode();
+    encoded.rewind();
+
+    struct.decoder(encoded).int32s("is").fill(new long[1]);
+  }
+
+}
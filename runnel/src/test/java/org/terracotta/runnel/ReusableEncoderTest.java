@@ -0,0 +1,173 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel;
+
+import org.junit.Test;
+import org.terracotta.runnel.decoding.StructArrayDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.encoding.StructEncoder;
+import org.terracotta.runnel.utils.BufferPool;
+import org.terracotta.runnel.utils.EncodedSizeHistogram;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ReusableEncoderTest {
+
+  enum Color {RED, GREEN}
+
+  private static final Struct ELEMENT = StructBuilder.newStructBuilder()
+      .string("name", 1)
+      .int64("value", 2)
+      .build();
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .enm("color", 1, EnumMappingBuilder.newEnumMappingBuilder(Color.class).mapping(Color.RED, 1).mapping(Color.GREEN, 2).build())
+      .int32("id", 2)
+      .string("name", 3)
+      .struct("sub", 4, ELEMENT)
+      .int32s("ints", 5)
+      .structs("elements", 6, ELEMENT)
+      .byteBuffer("blob", 7)
+      .build();
+
+  @Test
+  public void testReusedEncoderProducesSameBytesAsFreshEncoder() throws Exception {
+    StructEncoder<Void> reusable = STRUCT.reusableEncoder();
+
+    for (int i = 0; i < 5; i++) {
+      String name = i % 2 == 0 ? "short" : "a somewhat longer name éè";
+      ByteBuffer reused = fill(reusable.reset(), i, name).encode();
+      ByteBuffer fresh = fill(STRUCT.encoder(), i, name).encode();
+      assertThat(reused, is(fresh));
+    }
+  }
+
+  @Test
+  public void testReusedEncoderWithFewerFields() throws Exception {
+    StructEncoder<Void> reusable = STRUCT.reusableEncoder();
+    fill(reusable, 1, "first").encode();
+
+    ByteBuffer encoded = reusable.reset()
+        .int32("id", 2)
+        .encode();
+    encoded.rewind();
+
+    StructDecoder<Void> decoder = STRUCT.decoder(encoded);
+    assertThat(decoder.int32("id"), is(2));
+    assertThat(decoder.has("name"), is(false));
+    assertThat(decoder.struct("sub") == null, is(true));
+  }
+
+  @Test
+  public void testEncodeIntoDirectBuffer() throws Exception {
+    StructEncoder<Void> reusable = STRUCT.reusableEncoder();
+    for (int i = 0; i < 3; i++) {
+      fill(reusable.reset(), i, "direct");
+      ByteBuffer direct = ByteBuffer.allocateDirect(reusable.encodedSize());
+      reusable.encode(direct);
+      assertThat(direct.remaining(), is(0));
+      direct.flip();
+
+      StructDecoder<Void> decoder = STRUCT.decoder(direct);
+      assertThat(decoder.<Color>enm("color").get(), is(Color.GREEN));
+      assertThat(decoder.int32("id"), is(i));
+      assertThat(decoder.string("name"), is("direct"));
+      StructDecoder<StructDecoder<Void>> sub = decoder.struct("sub");
+      assertThat(sub.string("name"), is("sub"));
+      assertThat(sub.int64("value"), is((long) i));
+      sub.end();
+      decoder.int32s("ints").end();
+      StructArrayDecoder<StructDecoder<Void>> elements = decoder.structs("elements");
+      assertThat(elements.length(), is(2));
+      assertThat(elements.next().int64("value"), is(10L));
+      assertThat(elements.next().int64("value"), is(11L));
+      elements.end();
+      assertThat(decoder.byteBuffer("blob").remaining(), is(3));
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCannotResetNonRootEncoder() throws Exception {
+    STRUCT.reusableEncoder().struct("sub").reset();
+  }
+
+  @Test
+  public void testEncodeIntoPooledBuffer() throws Exception {
+    BufferPool pool = BufferPool.heap();
+    StructEncoder<Void> reusable = STRUCT.reusableEncoder();
+
+    for (int i = 0; i < 3; i++) {
+      ByteBuffer fresh = fill(STRUCT.encoder(), i, "pooled").encode();
+      ByteBuffer pooled = fill(reusable.reset(), i, "pooled").encode(pool);
+      assertThat(pooled.position(), is(fresh.capacity()));
+      pooled.flip();
+      fresh.rewind();
+      assertThat(pooled, is(fresh));
+      pool.release(pooled);
+    }
+
+    assertThat(pool.hits(), is(2L));
+    assertThat(pool.misses(), is(1L));
+  }
+
+  @Test
+  public void testEncodedSizesAreRecorded() throws Exception {
+    Struct struct = StructBuilder.newStructBuilder()
+        .string("name", 1)
+        .struct("sub", 2, ELEMENT)
+        .build();
+
+    ByteBuffer encoded = struct.encoder().string("name", "0123456789").encode();
+    ByteBuffer written = struct.writer(ByteBuffer.allocate(256)).string("name", "0123456789012345678901234567890123456789").finish();
+
+    EncodedSizeHistogram histogram = struct.sizeHistogram();
+    assertThat(histogram.count(), is(2L));
+    assertThat(histogram.max(), is(written.position()));
+    assertThat(histogram.estimate(0.5), is(16));
+    assertThat(encoded.capacity() <= 16, is(true));
+    // only root structures are recorded
+    assertThat(ELEMENT.sizeHistogram().count(), is(0L));
+  }
+
+  private static StructEncoder<Void> fill(StructEncoder<Void> encoder, int i, String name) {
+    return encoder
+        .enm("color", Color.GREEN)
+        .int32("id", i)
+        .string("name", name)
+        .struct("sub")
+          .string("name", "sub")
+          .int64("value", i)
+        .end()
+        .int32s("ints")
+          .value(i)
+          .value(i + 1)
+        .end()
+        .structs("elements")
+          .add()
+            .int64("value", 10L)
+          .end()
+          .add()
+            .string("name", name)
+            .int64("value", 11L)
+          .end()
+        .end()
+        .byteBuffer("blob", ByteBuffer.wrap(new byte[] {1, 2, 3}));
+  }
+
+}
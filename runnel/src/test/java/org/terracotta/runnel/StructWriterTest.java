@@ -0,0 +1,212 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel;
+
+import org.junit.Test;
+import org.terracotta.runnel.decoding.ArrayDecoder;
+import org.terracotta.runnel.decoding.StructArrayDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.encoding.StructWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class StructWriterTest {
+
+  enum Color {RED, GREEN}
+
+  private static final Struct ELEMENT = StructBuilder.newStructBuilder()
+      .string("name", 1)
+      .int64("value", 2)
+      .build();
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .bool("b", 1)
+      .chr("c", 2)
+      .enm("color", 3, EnumMappingBuilder.newEnumMappingBuilder(Color.class).mapping(Color.RED, 1).mapping(Color.GREEN, 200).build())
+      .int32("i", 4)
+      .int64("l", 5)
+      .fp64("d", 6)
+      .string("s", 7)
+      .byteBuffer("blob", 8)
+      .struct("sub", 9, ELEMENT)
+      .int32s("is", 10)
+      .strings("ss", 11)
+      .structs("elements", 12, ELEMENT)
+      .int32("last", 13)
+      .build();
+
+  @Test
+  public void testWriteThenDecode() throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+    buffer.position(10);
+
+    ByteBuffer written = STRUCT.writer(buffer)
+        .bool("b", true)
+        .chr("c", 'z')
+        .enm("color", Color.GREEN)
+        .int32("i", -5)
+        .int64("l", Long.MAX_VALUE)
+        .fp64("d", 2.5)
+        .string("s", "héllo\u0000世")
+        .byteBuffer("blob", ByteBuffer.wrap(new byte[] {1, 2, 3, 4}))
+        .struct("sub")
+          .string("name", "sub")
+          .int64("value", 1L)
+        .end()
+        .int32s("is")
+          .value(1)
+          .value(2)
+        .end()
+        .strings("ss")
+          .value("a")
+          .value("bc")
+        .end()
+        .structs("elements")
+          .add()
+            .int64("value", 10L)
+          .end()
+          .add()
+            .string("name", "second")
+          .end()
+        .end()
+        .int32("last", 42)
+        .finish();
+
+    assertThat(written == buffer, is(true));
+    buffer.limit(buffer.position());
+    buffer.position(10);
+
+    StructDecoder<Void> decoder = STRUCT.decoder(buffer);
+    assertThat(decoder.bool("b"), is(true));
+    assertThat(decoder.chr("c"), is('z'));
+    assertThat(decoder.<Color>enm("color").get(), is(Color.GREEN));
+    assertThat(decoder.int32("i"), is(-5));
+    assertThat(decoder.int64("l"), is(Long.MAX_VALUE));
+    assertThat(decoder.fp64("d"), is(2.5));
+    assertThat(decoder.string("s"), is("héllo\u0000世"));
+    assertThat(decoder.byteBuffer("blob").remaining(), is(4));
+
+    StructDecoder<StructDecoder<Void>> sub = decoder.struct("sub");
+    assertThat(sub.string("name"), is("sub"));
+    assertThat(sub.int64("value"), is(1L));
+    sub.end();
+
+    ArrayDecoder<Integer, StructDecoder<Void>> is = decoder.int32s("is");
+    assertThat(is.length(), is(2));
+    assertThat(is.value(), is(1));
+    assertThat(is.value(), is(2));
+    is.end();
+
+    ArrayDecoder<String, StructDecoder<Void>> ss = decoder.strings("ss");
+    assertThat(ss.length(), is(2));
+    assertThat(ss.value(), is("a"));
+    assertThat(ss.value(), is("bc"));
+    ss.end();
+
+    StructArrayDecoder<StructDecoder<Void>> elements = decoder.structs("elements");
+    assertThat(elements.length(), is(2));
+    StructDecoder<StructArrayDecoder<StructDecoder<Void>>> element = elements.next();
+    assertThat(element.string("name"), is(nullValue()));
+    assertThat(element.int64("value"), is(10L));
+    element = elements.next();
+    assertThat(element.string("name"), is("second"));
+    assertThat(element.int64("value"), is(nullValue()));
+    elements.end();
+
+    assertThat(decoder.int32("last"), is(42));
+    assertThat(buffer.remaining(), is(0));
+
+    buffer.position(10);
+    STRUCT.dump(buffer, new PrintStream(new ByteArrayOutputStream()));
+  }
+
+  @Test
+  public void testDecodedSameAsEncoded() throws Exception {
+    List<Long> values = new ArrayList<Long>();
+    for (long i = 0; i < 1000; i++) {
+      values.add(i);
+    }
+
+    ByteBuffer written = STRUCT.writer(ByteBuffer.allocate(64 * 1024))
+        .string("s", "large")
+        .structs("elements", values, (writer, value) -> writer.string("name", "#" + value).int64("value", value))
+        .finish();
+    written.flip();
+
+    ByteBuffer encoded = STRUCT.encoder()
+        .string("s", "large")
+        .structs("elements", values, (encoder, value) -> encoder.string("name", "#" + value).int64("value", value))
+        .encode();
+    encoded.flip();
+
+    ByteArrayOutputStream writtenDump = new ByteArrayOutputStream();
+    STRUCT.dump(written, new PrintStream(writtenDump));
+    ByteArrayOutputStream encodedDump = new ByteArrayOutputStream();
+    STRUCT.dump(encoded, new PrintStream(encodedDump));
+
+    // sizes are padded, so only compare what follows them
+    assertThat(writtenDump.toString().replaceAll("size: \\d+", ""), is(encodedDump.toString().replaceAll("size: \\d+", "")));
+  }
+
+  @Test
+  public void testElementsAreEndedByArrayWriter() throws Exception {
+    ByteBuffer written = STRUCT.writer(ByteBuffer.allocate(256))
+        .structs("elements")
+          .add().int64("value", 1L).end()
+          .add().int64("value", 2L)
+          .end()
+        .end()
+        .int32("last", 3)
+        .finish();
+    written.flip();
+
+    StructDecoder<Void> decoder = STRUCT.decoder(written);
+    StructArrayDecoder<StructDecoder<Void>> elements = decoder.structs("elements");
+    assertThat(elements.length(), is(2));
+    assertThat(elements.next().int64("value"), is(1L));
+    assertThat(elements.next().int64("value"), is(2L));
+    elements.end();
+    assertThat(decoder.int32("last"), is(3));
+  }
+
+  @Test(expected = BufferOverflowException.class)
+  public void testBufferTooSmall() throws Exception {
+    STRUCT.writer(ByteBuffer.allocate(16))
+        .string("s", "this string does not fit in the buffer")
+        .finish();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCannotEndRootWriter() throws Exception {
+    STRUCT.writer(ByteBuffer.allocate(16)).end();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCannotFinishNonRootWriter() throws Exception {
+    StructWriter<StructWriter<Void>> sub = STRUCT.writer(ByteBuffer.allocate(64)).struct("sub");
+    sub.finish();
+  }
+
+}
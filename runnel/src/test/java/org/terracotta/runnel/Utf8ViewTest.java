@@ -0,0 +1,144 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel;
+
+import org.junit.Test;
+import org.terracotta.runnel.decoding.IndexedStructDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.decoding.Utf8View;
+import org.terracotta.runnel.handles.StringHandle;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class Utf8ViewTest {
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .string("ascii", 1)
+      .string("nonAscii", 2)
+      .string("absent", 3)
+      .byteBuffer("blob", 4)
+      .build();
+
+  private static final String NON_ASCII = "héllo\u0000世!";
+
+  private static ByteBuffer encode() {
+    ByteBuffer encoded = STRUCT.encoder()
+        .string("ascii", "SystemLeaseAcquirer")
+        .string("nonAscii", NON_ASCII)
+        .byteBuffer("blob", ByteBuffer.wrap(new byte[] {1, 2, 3}))
+        .encode();
+    encoded.rewind();
+    return encoded;
+  }
+
+  @Test
+  public void testAsciiView() throws Exception {
+    StructDecoder<Void> decoder = STRUCT.decoder(encode());
+    Utf8View view = decoder.utf8("ascii");
+
+    assertThat(view.isAscii(), is(true));
+    assertThat(view.length(), is(19));
+    assertThat(view.byteLength(), is(19));
+    assertThat(view.charAt(6), is('L'));
+    assertThat(view.subSequence(6, 11).toString(), is("Lease"));
+    assertThat(view.contentEquals("SystemLeaseAcquirer"), is(true));
+    assertThat(view.contentEquals("SystemLeaseAcquirex"), is(false));
+    assertThat(view.contentEquals("SystemLease"), is(false));
+    assertThat(view.toString(), is("SystemLeaseAcquirer"));
+  }
+
+  @Test
+  public void testNonAsciiView() throws Exception {
+    StructDecoder<Void> decoder = STRUCT.decoder(encode());
+    decoder.utf8("ascii");
+    Utf8View view = decoder.utf8("nonAscii");
+
+    assertThat(view.isAscii(), is(false));
+    assertThat(view.length(), is(NON_ASCII.length()));
+    assertThat(view.byteLength(), is(12));
+    assertThat(view.contentEquals(NON_ASCII), is(true));
+    assertThat(view.contentEquals("hello\u0000世!"), is(false));
+    assertThat(view.charAt(1), is('é'));
+    assertThat(view.charAt(6), is('世'));
+    assertThat(view.toString(), is(NON_ASCII));
+
+    assertThat(decoder.utf8("absent"), is(nullValue()));
+  }
+
+  @Test
+  public void testEqualityOnRawBytes() throws Exception {
+    Utf8View decoded = STRUCT.decoder(encode()).utf8("nonAscii");
+    Utf8View decodedAgain = STRUCT.decoder(encode()).utf8("nonAscii");
+
+    assertThat(decoded.equals(decodedAgain), is(true));
+    assertThat(decoded.hashCode(), is(decodedAgain.hashCode()));
+    assertThat(decoded.equals(Utf8View.of(NON_ASCII)), is(true));
+    assertThat(decoded.hashCode(), is(Utf8View.of(NON_ASCII).hashCode()));
+    assertThat(decoded.equals(Utf8View.of("other")), is(false));
+    assertThat(decoded.equals(NON_ASCII), is(false));
+
+    Map<Utf8View, String> routes = new HashMap<Utf8View, String>();
+    routes.put(Utf8View.of("SystemLeaseAcquirer"), "lease");
+    routes.put(Utf8View.of(NON_ASCII), "other");
+    assertThat(routes.get(STRUCT.decoder(encode()).utf8("ascii")), is("lease"));
+  }
+
+  @Test
+  public void testViewDoesNotModifyBuffer() throws Exception {
+    ByteBuffer encoded = encode();
+    Utf8View view = Utf8View.wrap(encoded, 0, encoded.remaining());
+    ByteBuffer bytes = view.bytes();
+
+    assertThat(bytes.isReadOnly(), is(true));
+    assertThat(bytes.remaining(), is(encoded.remaining()));
+    assertThat(encoded.position(), is(0));
+  }
+
+  @Test(expected = ReadOnlyBufferException.class)
+  public void testDecodedByteBufferIsReadOnly() throws Exception {
+    StructDecoder<Void> decoder = STRUCT.decoder(encode());
+    ByteBuffer blob = decoder.byteBuffer("blob");
+    assertThat(blob.remaining(), is(3));
+    assertThat(blob.get(0), is((byte) 1));
+    blob.put(0, (byte) 0);
+  }
+
+  @Test
+  public void testHandlesAndIndexedDecoder() throws Exception {
+    StringHandle ascii = STRUCT.stringHandle("ascii");
+    StringHandle nonAscii = STRUCT.stringHandle("nonAscii");
+    StringHandle absent = STRUCT.stringHandle("absent");
+
+    StructDecoder<Void> decoder = STRUCT.decoder(encode());
+    assertThat(decoder.utf8(ascii).contentEquals("SystemLeaseAcquirer"), is(true));
+    assertThat(decoder.utf8(nonAscii).contentEquals(NON_ASCII), is(true));
+    assertThat(decoder.utf8(absent), is(nullValue()));
+
+    IndexedStructDecoder indexed = STRUCT.indexedDecoder(encode());
+    assertThat(indexed.utf8(nonAscii).toString(), is(NON_ASCII));
+    assertThat(indexed.utf8("ascii").toString(), is("SystemLeaseAcquirer"));
+    assertThat(indexed.utf8(absent), is(nullValue()));
+    assertThat(indexed.byteBuffer("blob").isReadOnly(), is(true));
+  }
+
+}
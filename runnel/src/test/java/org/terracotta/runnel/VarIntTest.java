@@ -0,0 +1,162 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel;
+
+import org.junit.Test;
+import org.terracotta.runnel.decoding.IndexedStructDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class VarIntTest {
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .vint32("counter", 1)
+      .vint64("id", 2)
+      .deltaInt64s("timestamps", 3)
+      .int32("last", 4)
+      .build();
+
+  private static final int[] INTS = {0, 1, -1, 63, -64, 64, 1_000_000, Integer.MAX_VALUE, Integer.MIN_VALUE};
+  private static final long[] LONGS = {0L, 1L, -1L, 1L << 40, -(1L << 40), Long.MAX_VALUE, Long.MIN_VALUE};
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    for (int i : INTS) {
+      for (long l : LONGS) {
+        ByteBuffer encoded = STRUCT.encoder()
+            .vint32("counter", i)
+            .vint64("id", l)
+            .int32("last", 42)
+            .encode();
+        encoded.rewind();
+
+        StructDecoder<Void> decoder = STRUCT.decoder(encoded);
+        assertThat(decoder.vint32("counter"), is(i));
+        assertThat(decoder.vint64("id"), is(l));
+        assertThat(decoder.deltaInt64s("timestamps"), is(nullValue()));
+        assertThat(decoder.int32("last"), is(42));
+      }
+    }
+  }
+
+  @Test
+  public void testSmallValuesAreCompact() throws Exception {
+    ByteBuffer encoded = STRUCT.encoder()
+        .vint32("counter", -3)
+        .vint64("id", 100L)
+        .encode();
+
+    // struct size + 2 * (index, size, 1 or 2 bytes value)
+    assertThat(encoded.capacity(), is(1 + 3 + 4));
+  }
+
+  @Test
+  public void testDefaults() throws Exception {
+    ByteBuffer encoded = STRUCT.encoder().vint64("id", -5L).encode();
+    encoded.rewind();
+
+    StructDecoder<Void> decoder = STRUCT.decoder(encoded);
+    assertThat(decoder.vint32OrDefault("counter", 7), is(7));
+    assertThat(decoder.vint64OrDefault("id", 0L), is(-5L));
+  }
+
+  @Test
+  public void testDeltaArray() throws Exception {
+    long base = 1_600_000_000_000L;
+    long[] timestamps = {base, base + 10, base + 25, base + 20, base, 0L, -1L, Long.MAX_VALUE, Long.MIN_VALUE};
+
+    ByteBuffer encoded = STRUCT.encoder()
+        .deltaInt64s("timestamps", timestamps)
+        .int32("last", 42)
+        .encode();
+    encoded.rewind();
+
+    StructDecoder<Void> decoder = STRUCT.decoder(encoded);
+    assertThat(decoder.deltaInt64s("timestamps"), is(timestamps));
+    assertThat(decoder.int32("last"), is(42));
+
+    encoded.rewind();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    STRUCT.dump(encoded, new PrintStream(out));
+    assertThat(out.toString(), containsString(Long.toString(base + 25)));
+  }
+
+  @Test
+  public void testDeltaArrayIsCompact() throws Exception {
+    long[] timestamps = new long[100];
+    for (int i = 0; i < timestamps.length; i++) {
+      timestamps[i] = 1_600_000_000_000L + i * 100L;
+    }
+    Struct fixed = StructBuilder.newStructBuilder().int64s("timestamps", 3).build();
+
+    ByteBuffer delta = STRUCT.encoder().deltaInt64s("timestamps", timestamps).encode();
+    ByteBuffer fixedWidth = fixed.encoder().int64s("timestamps", timestamps).encode();
+
+    assertThat(fixedWidth.capacity() > 900, is(true));
+    assertThat(delta.capacity() < 220, is(true));
+  }
+
+  @Test
+  public void testEmptyDeltaArray() throws Exception {
+    ByteBuffer encoded = STRUCT.encoder().deltaInt64s("timestamps", new long[0]).encode();
+    encoded.rewind();
+
+    assertThat(STRUCT.decoder(encoded).deltaInt64s("timestamps").length, is(0));
+  }
+
+  @Test
+  public void testWriterSameAsEncoder() throws Exception {
+    long[] timestamps = {5L, 3L, 1_000L, -8L};
+    ByteBuffer encoded = STRUCT.encoder()
+        .vint32("counter", -300)
+        .vint64("id", Long.MIN_VALUE)
+        .deltaInt64s("timestamps", LongBuffer.wrap(timestamps))
+        .int32("last", 1)
+        .encode();
+    encoded.rewind();
+
+    ByteBuffer written = STRUCT.writer(ByteBuffer.allocate(256))
+        .vint32("counter", -300)
+        .vint64("id", Long.MIN_VALUE)
+        .deltaInt64s("timestamps", timestamps)
+        .int32("last", 1)
+        .finish();
+    written.flip();
+
+    for (ByteBuffer buffer : new ByteBuffer[] {encoded, written}) {
+      IndexedStructDecoder decoder = STRUCT.indexedDecoder(buffer);
+      assertThat(decoder.int32("last"), is(1));
+      assertThat(decoder.deltaInt64s("timestamps"), is(timestamps));
+      assertThat(decoder.vint64OrDefault("id", 0L), is(Long.MIN_VALUE));
+      assertThat(decoder.vint32("counter"), is(-300));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFixedAndVariableWidthAreDistinctTypes() throws Exception {
+    STRUCT.encoder().int32("counter", 1);
+  }
+
+}
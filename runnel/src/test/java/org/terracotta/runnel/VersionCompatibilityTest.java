@@ -142,4 +142,51 @@ public class VersionCompatibilityTest {
     STRUCT_V2.dump(encoded_v1, new PrintStream(new ByteArrayOutputStream()));
   }
 
+  @Test
+  public void testForwardWithWriter() throws Exception {
+    ByteBuffer encoded_v2 = STRUCT_V2.writer(ByteBuffer.allocate(1024))
+        .int32("age", 30)
+        .string("name", "john doe")
+        .int64("id", 1234L)
+        .enm("letter", TestEnum_v2.C)
+        .enm("2ndLetter", TestEnum_v2.A)
+        .finish();
+
+    encoded_v2.flip();
+    StructDecoder decoder_v1 = STRUCT_V1.decoder(encoded_v2);
+
+    assertThat(decoder_v1.int32("age"), is(30));
+    assertThat(decoder_v1.int64("id"), is(1234L));
+    Enm<TestEnum_v1> letter = decoder_v1.enm("letter");
+    assertThat(letter.isValid(), is(false));
+    assertThat(letter.isFound(), is(true));
+    assertThat(letter.raw(), is(30));
+
+    encoded_v2.rewind();
+    STRUCT_V1.dump(encoded_v2, new PrintStream(new ByteArrayOutputStream()));
+  }
+
+  @Test
+  public void testBackwardWithWriter() throws Exception {
+    ByteBuffer encoded_v1 = STRUCT_V1.writer(ByteBuffer.allocate(1024))
+        .int32("age", 30)
+        .int64("id", 1234L)
+        .enm("letter", TestEnum_v1.B)
+        .finish();
+
+    encoded_v1.flip();
+    StructDecoder decoder_v2 = STRUCT_V2.decoder(encoded_v1);
+
+    assertThat(decoder_v2.int32("age"), is(30));
+    assertThat(decoder_v2.string("name"), is(nullValue()));
+    assertThat(decoder_v2.int64("id"), is(1234L));
+    Enm<TestEnum_v1> letter = decoder_v2.enm("letter");
+    assertThat(letter.isFound(), is(true));
+    assertThat(letter.raw(), is(20));
+    assertThat(decoder_v2.enm("2ndLetter").isFound(), is(false));
+
+    encoded_v1.rewind();
+    STRUCT_V2.dump(encoded_v1, new PrintStream(new ByteArrayOutputStream()));
+  }
+
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.decoding.ArrayDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the boxed and the primitive decoding paths.
+ * Run with the GC profiler to observe the per-operation allocation rate, e.g.:
+ * <pre>
+ *   java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main DecodingBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodingBenchmark {
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .bool("connectionGood", 10)
+      .bool("leaseGranted", 20)
+      .int64("leaseLength", 30)
+      .int32("sequence", 40)
+      .fp64("ratio", 50)
+      .int64s("samples", 60)
+      .build();
+
+  private ByteBuffer encoded;
+  private final long[] samples = new long[16];
+
+  @Setup
+  public void setUp() {
+    encoded = STRUCT.encoder()
+        .bool("connectionGood", true)
+        .bool("leaseGranted", true)
+        .int64("leaseLength", 150_000L)
+        .int32("sequence", 1_000_000)
+        .fp64("ratio", 0.75)
+        .int64s("samples")
+          .value(1_000L).value(2_000L).value(3_000L).value(4_000L)
+          .value(5_000L).value(6_000L).value(7_000L).value(8_000L)
+        .end()
+        .encode();
+  }
+
+  @Benchmark
+  public void boxed(Blackhole blackhole) {
+    encoded.rewind();
+    StructDecoder<Void> decoder = STRUCT.decoder(encoded);
+    blackhole.consume(decoder.bool("connectionGood"));
+    blackhole.consume(decoder.bool("leaseGranted"));
+    blackhole.consume(decoder.int64("leaseLength"));
+    blackhole.consume(decoder.int32("sequence"));
+    blackhole.consume(decoder.fp64("ratio"));
+    ArrayDecoder<Long, StructDecoder<Void>> arrayDecoder = decoder.int64s("samples");
+    for (int i = 0; i < arrayDecoder.length(); i++) {
+      blackhole.consume(arrayDecoder.value());
+    }
+  }
+
+  @Benchmark
+  public void primitive(Blackhole blackhole) {
+    encoded.rewind();
+    StructDecoder<Void> decoder = STRUCT.decoder(encoded);
+    blackhole.consume(decoder.boolOrDefault("connectionGood", false));
+    blackhole.consume(decoder.boolOrDefault("leaseGranted", false));
+    blackhole.consume(decoder.int64OrDefault("leaseLength", -1L));
+    blackhole.consume(decoder.int32OrDefault("sequence", -1));
+    blackhole.consume(decoder.fp64OrDefault("ratio", 0.0));
+    int count = decoder.int64s("samples").fill(samples);
+    for (int i = 0; i < count; i++) {
+      blackhole.consume(samples[i]);
+    }
+  }
+
+}
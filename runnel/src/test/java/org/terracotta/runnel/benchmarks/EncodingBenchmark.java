@@ -0,0 +1,111 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.encoding.StructEncoder;
+import org.terracotta.runnel.utils.BufferPool;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares single-use encoders with a reused one encoding into a direct or a pooled buffer and with a single-pass writer.
+ * Run with the GC profiler to observe the per-operation allocation rate, e.g.:
+ * <pre>
+ *   java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main EncodingBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+
+  private static final Struct LEASE_REQUEST = StructBuilder.newStructBuilder()
+      .int64("connectionSequenceNumber", 10)
+      .build();
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .int32("messageType", 10)
+      .struct("leaseRequest", 20, LEASE_REQUEST)
+      .string("entityName", 30)
+      .bool("leaseGranted", 40)
+      .int64("leaseLength", 50)
+      .build();
+
+  private final StructEncoder<Void> reusableEncoder = STRUCT.reusableEncoder();
+  private final ByteBuffer directBuffer = ByteBuffer.allocateDirect(256);
+  private final BufferPool bufferPool = BufferPool.direct();
+  private long sequence = 0L;
+
+  @Benchmark
+  public ByteBuffer singleUse() {
+    return fill(STRUCT.encoder()).encode();
+  }
+
+  @Benchmark
+  public ByteBuffer reusedIntoDirectBuffer() {
+    directBuffer.clear();
+    return fill(reusableEncoder.reset()).encode(directBuffer);
+  }
+
+  @Benchmark
+  public int reusedIntoPooledBuffer() {
+    ByteBuffer pooled = fill(reusableEncoder.reset()).encode(bufferPool);
+    int position = pooled.position();
+    bufferPool.release(pooled);
+    return position;
+  }
+
+  @Benchmark
+  public ByteBuffer writtenIntoDirectBuffer() {
+    directBuffer.clear();
+    return STRUCT.writer(directBuffer)
+        .int32("messageType", 1)
+        .struct("leaseRequest")
+          .int64("connectionSequenceNumber", sequence++)
+        .end()
+        .string("entityName", "SystemLeaseAcquirer")
+        .bool("leaseGranted", true)
+        .int64("leaseLength", 150_000L)
+        .finish();
+  }
+
+  private StructEncoder<Void> fill(StructEncoder<Void> encoder) {
+    return encoder
+        .int32("messageType", 1)
+        .struct("leaseRequest")
+          .int64("connectionSequenceNumber", sequence++)
+        .end()
+        .string("entityName", "SystemLeaseAcquirer")
+        .bool("leaseGranted", true)
+        .int64("leaseLength", 150_000L);
+  }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.encoding.StructEncoder;
+import org.terracotta.runnel.handles.BoolHandle;
+import org.terracotta.runnel.handles.FloatingPoint64Handle;
+import org.terracotta.runnel.handles.Int32Handle;
+import org.terracotta.runnel.handles.Int64Handle;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares accessing fields by name with accessing them through precompiled field handles, both when encoding
+ * with a reused encoder and when decoding.
+ * <pre>
+ *   java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main FieldAccessBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldAccessBenchmark {
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .bool("connectionGood", 10)
+      .bool("leaseGranted", 20)
+      .int64("leaseLength", 30)
+      .int32("sequence", 40)
+      .fp64("ratio", 50)
+      .int64("timestamp", 60)
+      .build();
+
+  private static final BoolHandle CONNECTION_GOOD = STRUCT.boolHandle("connectionGood");
+  private static final BoolHandle LEASE_GRANTED = STRUCT.boolHandle("leaseGranted");
+  private static final Int64Handle LEASE_LENGTH = STRUCT.int64Handle("leaseLength");
+  private static final Int32Handle SEQUENCE = STRUCT.int32Handle("sequence");
+  private static final FloatingPoint64Handle RATIO = STRUCT.fp64Handle("ratio");
+  private static final Int64Handle TIMESTAMP = STRUCT.int64Handle("timestamp");
+
+  private final StructEncoder<Void> reusableEncoder = STRUCT.reusableEncoder();
+  private final ByteBuffer directBuffer = ByteBuffer.allocateDirect(256);
+  private ByteBuffer encoded;
+
+  @Setup
+  public void setUp() {
+    encoded = STRUCT.encoder()
+        .bool("connectionGood", true)
+        .bool("leaseGranted", true)
+        .int64("leaseLength", 150_000L)
+        .int32("sequence", 1_000_000)
+        .fp64("ratio", 0.75)
+        .int64("timestamp", 1_500_000_000_000L)
+        .encode();
+  }
+
+  @Benchmark
+  public ByteBuffer encodeByName() {
+    directBuffer.clear();
+    return reusableEncoder.reset()
+        .bool("connectionGood", true)
+        .bool("leaseGranted", true)
+        .int64("leaseLength", 150_000L)
+        .int32("sequence", 1_000_000)
+        .fp64("ratio", 0.75)
+        .int64("timestamp", 1_500_000_000_000L)
+        .encode(directBuffer);
+  }
+
+  @Benchmark
+  public ByteBuffer encodeByHandle() {
+    directBuffer.clear();
+    return reusableEncoder.reset()
+        .bool(CONNECTION_GOOD, true)
+        .bool(LEASE_GRANTED, true)
+        .int64(LEASE_LENGTH, 150_000L)
+        .int32(SEQUENCE, 1_000_000)
+        .fp64(RATIO, 0.75)
+        .int64(TIMESTAMP, 1_500_000_000_000L)
+        .encode(directBuffer);
+  }
+
+  @Benchmark
+  public void decodeByName(Blackhole blackhole) {
+    encoded.rewind();
+    StructDecoder<Void> decoder = STRUCT.decoder(encoded);
+    blackhole.consume(decoder.boolOrDefault("connectionGood", false));
+    blackhole.consume(decoder.boolOrDefault("leaseGranted", false));
+    blackhole.consume(decoder.int64OrDefault("leaseLength", -1L));
+    blackhole.consume(decoder.int32OrDefault("sequence", -1));
+    blackhole.consume(decoder.fp64OrDefault("ratio", 0.0));
+    blackhole.consume(decoder.int64OrDefault("timestamp", -1L));
+  }
+
+  @Benchmark
+  public void decodeByHandle(Blackhole blackhole) {
+    encoded.rewind();
+    StructDecoder<Void> decoder = STRUCT.decoder(encoded);
+    blackhole.consume(decoder.boolOrDefault(CONNECTION_GOOD, false));
+    blackhole.consume(decoder.boolOrDefault(LEASE_GRANTED, false));
+    blackhole.consume(decoder.int64OrDefault(LEASE_LENGTH, -1L));
+    blackhole.consume(decoder.int32OrDefault(SEQUENCE, -1));
+    blackhole.consume(decoder.fp64OrDefault(RATIO, 0.0));
+    blackhole.consume(decoder.int64OrDefault(TIMESTAMP, -1L));
+  }
+
+}
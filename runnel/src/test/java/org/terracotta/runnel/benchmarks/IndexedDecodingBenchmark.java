@@ -0,0 +1,109 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.decoding.IndexedStructDecoder;
+import org.terracotta.runnel.encoding.StructEncoder;
+import org.terracotta.runnel.handles.Int32Handle;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a forward-only decoder with an indexed decoder, reading a routing field located at the end of a large
+ * structure, and reading all fields in reverse order which requires a new forward-only decoder per field.
+ * <pre>
+ *   java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main IndexedDecodingBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexedDecodingBenchmark {
+
+  private static final int FIELD_COUNT = 32;
+  private static final String[] PAYLOAD_NAMES = new String[FIELD_COUNT + 1];
+  private static final Struct STRUCT;
+  static {
+    StructBuilder builder = StructBuilder.newStructBuilder();
+    for (int i = 1; i <= FIELD_COUNT; i++) {
+      PAYLOAD_NAMES[i] = "payload" + i;
+      builder.string(PAYLOAD_NAMES[i], i);
+    }
+    STRUCT = builder.int32("messageType", FIELD_COUNT + 1).build();
+  }
+  private static final Int32Handle MESSAGE_TYPE = STRUCT.int32Handle("messageType");
+
+  private ByteBuffer encoded;
+
+  @Setup
+  public void setUp() {
+    StructEncoder<Void> encoder = STRUCT.encoder();
+    for (int i = 1; i <= FIELD_COUNT; i++) {
+      encoder.string(PAYLOAD_NAMES[i], "some payload of field #" + i);
+    }
+    encoded = encoder.int32("messageType", 7).encode();
+  }
+
+  @Benchmark
+  public int forwardOnly() {
+    encoded.rewind();
+    return STRUCT.decoder(encoded).int32OrDefault(MESSAGE_TYPE, -1);
+  }
+
+  @Benchmark
+  public int indexed() {
+    encoded.rewind();
+    return STRUCT.indexedDecoder(encoded).int32OrDefault(MESSAGE_TYPE, -1);
+  }
+
+  @Benchmark
+  public int forwardOnlyAllFieldsReversed() {
+    int length = 0;
+    for (int i = FIELD_COUNT; i > 0; i--) {
+      encoded.rewind();
+      length += STRUCT.decoder(encoded).string(PAYLOAD_NAMES[i]).length();
+    }
+    return length;
+  }
+
+  @Benchmark
+  public int indexedAllFieldsReversed() {
+    encoded.rewind();
+    IndexedStructDecoder decoder = STRUCT.indexedDecoder(encoded);
+    int length = 0;
+    for (int i = FIELD_COUNT; i > 0; i--) {
+      length += decoder.string(PAYLOAD_NAMES[i]).length();
+    }
+    return length;
+  }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.decoding.ArrayDecoder;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.encoding.ArrayEncoder;
+import org.terracotta.runnel.encoding.StructEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding and decoding a statistics-like sample array element by element and in bulk.
+ * Run with the GC profiler to observe the per-operation allocation rate, e.g.:
+ * <pre>
+ *   java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main PrimitiveArrayBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveArrayBenchmark {
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .int64s("samples", 10)
+      .build();
+
+  private final long[] samples = new long[256];
+  private final long[] decoded = new long[256];
+  private final StructEncoder<Void> reusableEncoder = STRUCT.reusableEncoder();
+  private final ByteBuffer directBuffer = ByteBuffer.allocateDirect(4096);
+  private ByteBuffer encoded;
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = System.nanoTime() + i * 1_000L;
+    }
+    encoded = STRUCT.encoder().int64s("samples", samples).encode();
+  }
+
+  @Benchmark
+  public ByteBuffer encodeBoxed() {
+    directBuffer.clear();
+    ArrayEncoder<Long, StructEncoder<Void>> arrayEncoder = reusableEncoder.reset().int64s("samples");
+    for (long sample : samples) {
+      arrayEncoder.value(sample);
+    }
+    return arrayEncoder.end().encode(directBuffer);
+  }
+
+  @Benchmark
+  public ByteBuffer encodeBulk() {
+    directBuffer.clear();
+    return reusableEncoder.reset().int64s("samples", samples).encode(directBuffer);
+  }
+
+  @Benchmark
+  public long decodeBoxed() {
+    encoded.rewind();
+    ArrayDecoder<Long, StructDecoder<Void>> arrayDecoder = STRUCT.decoder(encoded).int64s("samples");
+    long sum = 0L;
+    for (int i = 0; i < arrayDecoder.length(); i++) {
+      sum += arrayDecoder.value();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long decodeBulk() {
+    encoded.rewind();
+    int count = STRUCT.decoder(encoded).int64s("samples").fill(decoded);
+    long sum = 0L;
+    for (int i = 0; i < count; i++) {
+      sum += decoded[i];
+    }
+    return sum;
+  }
+
+}
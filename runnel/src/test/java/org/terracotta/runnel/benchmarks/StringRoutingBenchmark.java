@@ -0,0 +1,93 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.decoding.Utf8View;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares routing a message on a string field decoded as a {@link String} and as a {@link Utf8View}.
+ * Run with the GC profiler to observe the per-operation allocation rate, e.g.:
+ * <pre>
+ *   java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main StringRoutingBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringRoutingBenchmark {
+
+  private static final Struct STRUCT = StructBuilder.newStructBuilder()
+      .string("entityName", 10)
+      .int64("sequence", 20)
+      .build();
+
+  private static final String[] ENTITY_NAMES = {"SystemLeaseAcquirer", "clustered-map-1", "clustered-map-2", "management"};
+
+  private final Map<String, Integer> stringRoutes = new HashMap<String, Integer>();
+  private final Map<Utf8View, Integer> viewRoutes = new HashMap<Utf8View, Integer>();
+  private ByteBuffer encoded;
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < ENTITY_NAMES.length; i++) {
+      stringRoutes.put(ENTITY_NAMES[i], i);
+      viewRoutes.put(Utf8View.of(ENTITY_NAMES[i]), i);
+    }
+    encoded = STRUCT.encoder()
+        .string("entityName", "clustered-map-2")
+        .int64("sequence", 42L)
+        .encode();
+  }
+
+  @Benchmark
+  public Integer string() {
+    encoded.rewind();
+    return stringRoutes.get(STRUCT.decoder(encoded).string("entityName"));
+  }
+
+  @Benchmark
+  public Integer view() {
+    encoded.rewind();
+    return viewRoutes.get(STRUCT.decoder(encoded).utf8("entityName"));
+  }
+
+  @Benchmark
+  public boolean viewContentEquals() {
+    encoded.rewind();
+    return STRUCT.decoder(encoded).utf8("entityName").contentEquals("clustered-map-2");
+  }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terracotta.runnel.Struct;
+import org.terracotta.runnel.StructBuilder;
+import org.terracotta.runnel.decoding.StructDecoder;
+import org.terracotta.runnel.encoding.StructEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the fixed-width integer fields and arrays with their zigzag VLQ and delta-encoded counterparts on a
+ * statistics-like message made of small counters, an identifier and a series of timestamps.
+ * The encoded sizes are printed when the benchmark is set up. Run with the GC profiler, e.g.:
+ * <pre>
+ *   java -cp target/test-classes:&lt;test classpath&gt; org.openjdk.jmh.Main VarIntBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VarIntBenchmark {
+
+  private static final Struct FIXED = StructBuilder.newStructBuilder()
+      .int32("hits", 10)
+      .int32("misses", 20)
+      .int64("id", 30)
+      .int64s("timestamps", 40)
+      .build();
+
+  private static final Struct VARIABLE = StructBuilder.newStructBuilder()
+      .vint32("hits", 10)
+      .vint32("misses", 20)
+      .vint64("id", 30)
+      .deltaInt64s("timestamps", 40)
+      .build();
+
+  private final long[] timestamps = new long[64];
+  private final long[] decoded = new long[64];
+  private final StructEncoder<Void> fixedEncoder = FIXED.reusableEncoder();
+  private final StructEncoder<Void> variableEncoder = VARIABLE.reusableEncoder();
+  private final ByteBuffer directBuffer = ByteBuffer.allocateDirect(4096);
+  private ByteBuffer fixedEncoded;
+  private ByteBuffer variableEncoded;
+
+  @Setup
+  public void setUp() {
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < timestamps.length; i++) {
+      timestamps[i] = now + i * 1_000L + (i % 7);
+    }
+    fixedEncoded = fill(FIXED.encoder()).encode();
+    variableEncoded = fillVariable(VARIABLE.encoder()).encode();
+  }
+
+  @Benchmark
+  public ByteBuffer encodeFixed() {
+    directBuffer.clear();
+    return fill(fixedEncoder.reset()).encode(directBuffer);
+  }
+
+  @Benchmark
+  public ByteBuffer encodeVariable() {
+    directBuffer.clear();
+    return fillVariable(variableEncoder.reset()).encode(directBuffer);
+  }
+
+  @Benchmark
+  public long decodeFixed() {
+    fixedEncoded.rewind();
+    StructDecoder<Void> decoder = FIXED.decoder(fixedEncoded);
+    long sum = decoder.int32OrDefault("hits", 0) + decoder.int32OrDefault("misses", 0) + decoder.int64OrDefault("id", 0L);
+    int count = decoder.int64s("timestamps").fill(decoded);
+    for (int i = 0; i < count; i++) {
+      sum += decoded[i];
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long decodeVariable() {
+    variableEncoded.rewind();
+    StructDecoder<Void> decoder = VARIABLE.decoder(variableEncoded);
+    long sum = decoder.vint32OrDefault("hits", 0) + decoder.vint32OrDefault("misses", 0) + decoder.vint64OrDefault("id", 0L);
+    for (long timestamp : decoder.deltaInt64s("timestamps")) {
+      sum += timestamp;
+    }
+    return sum;
+  }
+
+  private StructEncoder<Void> fill(StructEncoder<Void> encoder) {
+    return encoder
+        .int32("hits", 1_234)
+        .int32("misses", 12)
+        .int64("id", 987_654L)
+        .int64s("timestamps", timestamps);
+  }
+
+  private StructEncoder<Void> fillVariable(StructEncoder<Void> encoder) {
+    return encoder
+        .vint32("hits", 1_234)
+        .vint32("misses", 12)
+        .vint64("id", 987_654L)
+        .deltaInt64s("timestamps", timestamps);
+  }
+
+}
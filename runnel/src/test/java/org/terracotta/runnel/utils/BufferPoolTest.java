@@ -0,0 +1,110 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class BufferPoolTest {
+
+  @Test
+  public void testSizeClasses() throws Exception {
+    BufferPool pool = new BufferPool(false, 64, 1024, 2, 2);
+
+    assertThat(pool.acquire(0).capacity(), is(64));
+    assertThat(pool.acquire(64).capacity(), is(64));
+    assertThat(pool.acquire(65).capacity(), is(128));
+    assertThat(pool.acquire(1024).capacity(), is(1024));
+    assertThat(pool.acquire(1025).capacity(), is(1025));
+
+    assertThat(pool.misses(), is(4L));
+    assertThat(pool.unpooled(), is(1L));
+    assertThat(pool.requestedBytes(), is(0L + 64 + 65 + 1024 + 1025));
+    assertThat(pool.wastedBytes(), is(64L + 63L));
+  }
+
+  @Test
+  public void testReleasedBufferIsReused() throws Exception {
+    BufferPool pool = BufferPool.direct();
+
+    ByteBuffer buffer = pool.acquire(100);
+    assertThat(buffer.isDirect(), is(true));
+    buffer.putInt(42);
+    pool.release(buffer);
+
+    ByteBuffer reused = pool.acquire(120);
+    assertThat(reused == buffer, is(true));
+    assertThat(reused.position(), is(0));
+    assertThat(reused.remaining(), is(128));
+    assertThat(pool.hits(), is(1L));
+    assertThat(pool.misses(), is(1L));
+    assertThat(pool.hitRate(), is(0.5));
+  }
+
+  @Test
+  public void testSharedQueueAcrossThreads() throws Exception {
+    BufferPool pool = new BufferPool(false, 64, 1024, 0, 2);
+    AtomicReference<ByteBuffer> released = new AtomicReference<ByteBuffer>();
+
+    Thread thread = new Thread(() -> {
+      ByteBuffer buffer = pool.acquire(256);
+      released.set(buffer);
+      pool.release(buffer);
+    });
+    thread.start();
+    thread.join();
+
+    assertThat(pool.acquire(200) == released.get(), is(true));
+    assertThat(pool.hits(), is(1L));
+  }
+
+  @Test
+  public void testFullPoolDropsBuffers() throws Exception {
+    BufferPool pool = new BufferPool(false, 64, 1024, 1, 1);
+
+    pool.release(pool.acquire(64));
+    pool.release(ByteBuffer.allocate(64));
+    pool.release(ByteBuffer.allocate(64));
+    assertThat(pool.dropped(), is(1L));
+
+    // foreign buffers that do not match a size class are ignored
+    pool.release(ByteBuffer.allocate(100));
+    pool.release(ByteBuffer.allocateDirect(64));
+    pool.release(ByteBuffer.allocate(2048));
+    assertThat(pool.dropped(), is(1L));
+  }
+
+  @Test
+  public void testEmptyPoolHitRate() throws Exception {
+    assertThat(BufferPool.heap().hitRate(), is(0.0));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeSize() throws Exception {
+    BufferPool.heap().acquire(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSizeRange() throws Exception {
+    new BufferPool(false, 1024, 64, 1, 1);
+  }
+
+}
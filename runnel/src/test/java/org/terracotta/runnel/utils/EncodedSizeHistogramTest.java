@@ -0,0 +1,77 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.runnel.utils;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class EncodedSizeHistogramTest {
+
+  @Test
+  public void testEmpty() throws Exception {
+    EncodedSizeHistogram histogram = new EncodedSizeHistogram();
+
+    assertThat(histogram.count(), is(0L));
+    assertThat(histogram.mean(), is(0.0));
+    assertThat(histogram.max(), is(0));
+    assertThat(histogram.estimate(0.99), is(0));
+  }
+
+  @Test
+  public void testEstimate() throws Exception {
+    EncodedSizeHistogram histogram = new EncodedSizeHistogram();
+    for (int i = 0; i < 90; i++) {
+      histogram.record(30);
+    }
+    for (int i = 0; i < 9; i++) {
+      histogram.record(100);
+    }
+    histogram.record(300);
+
+    assertThat(histogram.count(), is(100L));
+    assertThat(histogram.max(), is(300));
+    assertThat(histogram.mean(), is((90 * 30 + 9 * 100 + 300) / 100.0));
+    assertThat(histogram.estimate(0.0), is(32));
+    assertThat(histogram.estimate(0.5), is(32));
+    assertThat(histogram.estimate(0.9), is(32));
+    assertThat(histogram.estimate(0.95), is(128));
+    assertThat(histogram.estimate(0.99), is(128));
+    // capped to the largest recorded size rather than the bucket bound of 512
+    assertThat(histogram.estimate(1.0), is(300));
+  }
+
+  @Test
+  public void testSmallSizes() throws Exception {
+    EncodedSizeHistogram histogram = new EncodedSizeHistogram();
+    histogram.record(0);
+    histogram.record(1);
+
+    assertThat(histogram.estimate(1.0), is(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeSize() throws Exception {
+    new EncodedSizeHistogram().record(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidQuantile() throws Exception {
+    new EncodedSizeHistogram().estimate(1.5);
+  }
+
+}
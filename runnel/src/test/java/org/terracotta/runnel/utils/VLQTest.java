@@ -80,6 +80,89 @@ public class VLQTest {
     assertThat(VLQ.encodedSize(Integer.MAX_VALUE), is(5));
   }
 
+  @Test
+  public void testEncodeFixedWidth() throws Exception {
+    checkFixedWidthEncoding(0x7F, 1, 0x7F);
+    checkFixedWidthEncoding(0x7F, 3, 0x80, 0x80, 0x7F);
+    checkFixedWidthEncoding(0x80, 2, 0x81, 0x00);
+    checkFixedWidthEncoding(0x80, 4, 0x80, 0x80, 0x81, 0x00);
+    checkFixedWidthEncoding(0, 5, 0x80, 0x80, 0x80, 0x80, 0x00);
+    checkFixedWidthEncoding(Integer.MAX_VALUE, 5, 0x87, 0xFF, 0xFF, 0xFF, 0x7F);
+  }
+
+  @Test
+  public void testDecodePadded() throws Exception {
+    checkDecoding(0x7F, 0x80, 0x80, 0x7F);
+    checkDecoding(0x80, 0x80, 0x80, 0x81, 0x00);
+    checkDecoding(0, 0x80, 0x80, 0x80, 0x80, 0x00);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testEncodeFixedWidthTooNarrowFails() throws Exception {
+    VLQ.encodeFixedWidth(0x80, 1, ByteBuffer.allocate(8), 0);
+  }
+
+  @Test
+  public void testUnsignedLongRoundTrip() throws Exception {
+    long[] values = {0L, 0x7FL, 0x80L, Integer.MAX_VALUE, 0xFFFFFFFFL, Long.MAX_VALUE, -1L, Long.MIN_VALUE};
+    for (long value : values) {
+      ByteBuffer bb = ByteBuffer.allocate(16);
+      VLQ.encodeUnsigned(value, bb);
+      assertThat(bb.position(), is(VLQ.encodedSizeUnsigned(value)));
+      bb.flip();
+      assertThat(VLQ.decodeUnsigned(new ReadBuffer(bb)), is(value));
+    }
+    assertThat(VLQ.encodedSizeUnsigned(0x7FL), is(1));
+    assertThat(VLQ.encodedSizeUnsigned(Integer.MAX_VALUE), is(5));
+    assertThat(VLQ.encodedSizeUnsigned(-1L), is(10));
+  }
+
+  @Test
+  public void testUnsignedLongSameAsIntEncoding() throws Exception {
+    ByteBuffer intEncoded = ByteBuffer.allocate(8);
+    VLQ.encode(0x200000, intEncoded);
+    ByteBuffer longEncoded = ByteBuffer.allocate(8);
+    VLQ.encodeUnsigned(0x200000L, longEncoded);
+    intEncoded.flip();
+    longEncoded.flip();
+    assertThat(longEncoded, is(intEncoded));
+  }
+
+  @Test
+  public void testZigZag() throws Exception {
+    assertThat(VLQ.zigZag(0L), is(0L));
+    assertThat(VLQ.zigZag(-1L), is(1L));
+    assertThat(VLQ.zigZag(1L), is(2L));
+    assertThat(VLQ.zigZag(-2L), is(3L));
+    assertThat(VLQ.zigZag(Long.MIN_VALUE), is(-1L));
+    for (long value : new long[] {0L, -1L, 1L, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE}) {
+      assertThat(VLQ.unZigZag(VLQ.zigZag(value)), is(value));
+    }
+  }
+
+  @Test(expected = CorruptDataException.class)
+  public void testDecodeUnsignedTooLongFails() throws Exception {
+    ByteBuffer bb = ByteBuffer.allocate(16);
+    for (int i = 0; i < 11; i++) {
+      bb.put((byte) 0x81);
+    }
+    bb.flip();
+    VLQ.decodeUnsigned(new ReadBuffer(bb));
+  }
+
+  private void checkFixedWidthEncoding(int value, int width, int... bytes) {
+    ByteBuffer bb = ByteBuffer.allocate(8);
+    VLQ.encodeFixedWidth(value, width, bb, 1);
+    assertThat(bb.position(), is(0));
+
+    int[] ba = new int[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      ba[i] = bb.get(i + 1);
+      if (ba[i] < 0) ba[i] += 256;
+    }
+    assertArrayEquals(bytes, ba);
+  }
+
   private void checkDecoding(int value, int... bytes) {
     ByteBuffer bb = ByteBuffer.allocate(8);
 